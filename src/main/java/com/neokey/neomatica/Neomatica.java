@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import com.neokey.neomatica.config.ConfigHandler;
 import com.neokey.neomatica.schematic.SchematicManager;
 import com.neokey.neomatica.network.OnlineRepository;
+import com.neokey.neomatica.util.SaveQueue;
 
 /**
  * Neomatica - Gestión avanzada de schematics para Minecraft
@@ -22,6 +23,7 @@ public class Neomatica implements ModInitializer {
     public static final Logger LOGGER = LoggerFactory.getLogger(MOD_NAME);
     
     private static Neomatica instance;
+    private SaveQueue saveQueue;
     private ConfigHandler configHandler;
     private SchematicManager schematicManager;
     private OnlineRepository onlineRepository;
@@ -32,6 +34,9 @@ public class Neomatica implements ModInitializer {
         
         LOGGER.info("Inicializando {} v{}", MOD_NAME, VERSION);
         
+        // Cola de guardado en segundo plano, usada por la configuración y las exportaciones
+        saveQueue = new SaveQueue();
+        
         // Inicializar componentes principales
         initializeConfig();
         initializeManagers();
@@ -44,7 +49,7 @@ public class Neomatica implements ModInitializer {
      */
     private void initializeConfig() {
         try {
-            configHandler = new ConfigHandler();
+            configHandler = new ConfigHandler(saveQueue);
             configHandler.load();
             LOGGER.info("Configuración cargada");
         } catch (Exception e) {
@@ -58,7 +63,7 @@ public class Neomatica implements ModInitializer {
     private void initializeManagers() {
         try {
             // Gestor de schematics
-            schematicManager = new SchematicManager();
+            schematicManager = new SchematicManager(saveQueue);
             LOGGER.info("SchematicManager inicializado");
             
             // Repositorio online
@@ -77,6 +82,13 @@ public class Neomatica implements ModInitializer {
         return instance;
     }
     
+    /**
+     * Obtiene la cola de guardado en segundo plano
+     */
+    public SaveQueue getSaveQueue() {
+        return saveQueue;
+    }
+    
     /**
      * Obtiene el gestor de configuración
      */
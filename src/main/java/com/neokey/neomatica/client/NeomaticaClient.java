@@ -1,12 +1,21 @@
 package com.neokey.neomatica.client;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
 
 import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.config.ConfigHandler;
+import com.neokey.neomatica.render.PackedVertexFormat;
+import com.neokey.neomatica.render.RenderBatch;
+import com.neokey.neomatica.render.RenderStatsOverlay;
 import com.neokey.neomatica.render.SchematicWorldRenderer;
 import com.neokey.neomatica.render.SelectionBoxRenderer;
+import com.neokey.neomatica.render.ThumbnailCache;
+import com.neokey.neomatica.schematic.SchematicVerifier;
 import com.neokey.neomatica.tools.ToolManager;
 import com.neokey.neomatica.integration.LitematicaIntegration;
 
@@ -17,9 +26,12 @@ public class NeomaticaClient implements ClientModInitializer {
     
     private static NeomaticaClient instance;
     private KeyBindings keyBindings;
+    private RenderBatch renderBatch;
     private SchematicWorldRenderer worldRenderer;
     private SelectionBoxRenderer selectionRenderer;
     private ToolManager toolManager;
+    private SchematicVerifier verifier;
+    private ThumbnailCache thumbnailCache;
     
     @Override
     public void onInitializeClient() {
@@ -31,19 +43,34 @@ public class NeomaticaClient implements ClientModInitializer {
         keyBindings = new KeyBindings();
         keyBindings.register();
         
-        // Inicializar renderizadores
-        worldRenderer = new SchematicWorldRenderer();
-        selectionRenderer = new SelectionBoxRenderer();
+        // Inicializar renderizadores; comparten el lote de dibujo de cada frame
+        renderBatch = new RenderBatch();
+        worldRenderer = new SchematicWorldRenderer(renderBatch);
+        selectionRenderer = new SelectionBoxRenderer(renderBatch);
         
         // Inicializar gestor de herramientas
         toolManager = new ToolManager();
         
+        // Inicializar verificador de schematics contra el mundo
+        verifier = new SchematicVerifier(Neomatica.getInstance().getSchematicManager());
+        
+        // Miniaturas de los archivos de schematic para las listas
+        thumbnailCache = new ThumbnailCache(Neomatica.getInstance().getSchematicManager().getSchematicsDirectory());
+        
         // Registrar eventos de renderizado
         registerRenderEvents();
         
         // Registrar eventos de tick
         registerTickEvents();
         
+        // Vaciar la cola de guardado y detener los hilos de mallado al cerrar el juego
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+            worldRenderer.shutdown();
+            thumbnailCache.shutdown();
+            renderBatch.close();
+            Neomatica.getInstance().getSaveQueue().shutdown();
+        });
+        
         // Intentar integración con Litematica
         tryLitematicaIntegration();
         
@@ -54,13 +81,25 @@ public class NeomaticaClient implements ClientModInitializer {
      * Registra eventos de renderizado
      */
     private void registerRenderEvents() {
+        // Shader del formato de vértice compacto de las mallas de schematic
+        PackedVertexFormat.registerShader();
+        
         WorldRenderEvents.AFTER_TRANSLUCENT.register(context -> {
+            renderBatch.beginFrame();
+            
             // Renderizar schematics cargados
             worldRenderer.render(context);
             
             // Renderizar caja de selección
             selectionRenderer.render(context);
+            
+            // Dibujar la geometría acumulada y restaurar el estado una sola vez
+            renderBatch.endFrame();
         });
+        
+        // Estadísticas del render junto a la pantalla de depuración
+        RenderStatsOverlay statsOverlay = new RenderStatsOverlay();
+        HudRenderCallback.EVENT.register((drawContext, tickCounter) -> statsOverlay.render(drawContext));
     }
     
     /**
@@ -73,7 +112,20 @@ public class NeomaticaClient implements ClientModInitializer {
             
             // Actualizar herramientas activas
             toolManager.tick(client);
+            
+            // Comprobar las secciones pendientes del verificador
+            verifier.tick();
+            
+            // Volcar las estadísticas del render para los paneles de rendimiento
+            ConfigHandler configHandler = Neomatica.getInstance().getConfigHandler();
+            if (configHandler != null) {
+                renderBatch.getStats().dumpIfDue(configHandler.getConfig().getRenderStatsDumpInterval());
+            }
         });
+        
+        // Solo se vuelven a comprobar los chunks que se cargan
+        ClientChunkEvents.CHUNK_LOAD.register(verifier::onChunkLoad);
+        ClientChunkEvents.CHUNK_UNLOAD.register(verifier::onChunkUnload);
     }
     
     /**
@@ -95,6 +147,13 @@ public class NeomaticaClient implements ClientModInitializer {
         return instance;
     }
     
+    /**
+     * Obtiene el lote de dibujo del frame, con los contadores de llamadas de dibujo
+     */
+    public RenderBatch getRenderBatch() {
+        return renderBatch;
+    }
+    
     /**
      * Obtiene el renderizador de mundo
      */
@@ -116,6 +175,20 @@ public class NeomaticaClient implements ClientModInitializer {
         return toolManager;
     }
     
+    /**
+     * Obtiene el verificador de schematics contra el mundo
+     */
+    public SchematicVerifier getVerifier() {
+        return verifier;
+    }
+    
+    /**
+     * Obtiene la caché de miniaturas de schematics
+     */
+    public ThumbnailCache getThumbnailCache() {
+        return thumbnailCache;
+    }
+    
     /**
      * Obtiene los keybinds
      */
@@ -3,11 +3,12 @@ package com.neokey.neomatica.config;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.util.SaveQueue;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Gestor de configuración para cargar y guardar opciones
@@ -19,9 +20,11 @@ public class ConfigHandler {
     
     private final Gson gson;
     private final File configFile;
+    private final SaveQueue saveQueue;
     private NeomaticaConfig config;
     
-    public ConfigHandler() {
+    public ConfigHandler(SaveQueue saveQueue) {
+        this.saveQueue = saveQueue;
         this.gson = new GsonBuilder()
                 .setPrettyPrinting()
                 .create();
@@ -65,15 +68,19 @@ public class ConfigHandler {
     
     /**
      * Guarda la configuración actual al archivo
+     * La escritura se hace en segundo plano; los guardados seguidos se fusionan
      */
     public void save() {
-        try (FileWriter writer = new FileWriter(configFile)) {
-            gson.toJson(config, writer);
-            Neomatica.LOGGER.info("Configuración guardada exitosamente");
-            
-        } catch (IOException e) {
-            Neomatica.LOGGER.error("Error al guardar la configuración", e);
-        }
+        // Serializar en el hilo actual para que la escritura use una copia consistente
+        byte[] json = gson.toJson(config).getBytes(StandardCharsets.UTF_8);
+        
+        saveQueue.submitWrite(configFile, out -> out.write(json)).thenAccept(success -> {
+            if (success) {
+                Neomatica.LOGGER.info("Configuración guardada exitosamente");
+            } else {
+                Neomatica.LOGGER.error("Error al guardar la configuración");
+            }
+        });
     }
     
     /**
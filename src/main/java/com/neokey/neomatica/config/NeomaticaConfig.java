@@ -12,6 +12,10 @@ public class NeomaticaConfig {
     private String colorScheme = "default";
     private boolean renderThroughBlocks = false;
     private boolean showSelectionBox = true;
+    private int lodDistance = 64; // Bloques hasta el primer nivel simplificado (0 = desactivado)
+    private float renderBudgetMs = 2.0f; // Tiempo por frame del render de schematics (0 = calidad fija)
+    private boolean showRenderStats = true; // Estadísticas del render junto a la pantalla de depuración (F3)
+    private int renderStatsDumpInterval = 0; // Segundos entre volcados de estadísticas a JSON (0 = desactivado)
     
     // Configuración de comportamiento
     private boolean autoImportToLitematica = false;
@@ -76,6 +80,38 @@ public class NeomaticaConfig {
         this.showSelectionBox = showSelectionBox;
     }
     
+    public int getLodDistance() {
+        return lodDistance;
+    }
+    
+    public void setLodDistance(int lodDistance) {
+        this.lodDistance = Math.max(0, Math.min(512, lodDistance));
+    }
+    
+    public float getRenderBudgetMs() {
+        return renderBudgetMs;
+    }
+    
+    public void setRenderBudgetMs(float renderBudgetMs) {
+        this.renderBudgetMs = Math.max(0.0f, Math.min(16.0f, renderBudgetMs));
+    }
+    
+    public boolean isShowRenderStats() {
+        return showRenderStats;
+    }
+    
+    public void setShowRenderStats(boolean showRenderStats) {
+        this.showRenderStats = showRenderStats;
+    }
+    
+    public int getRenderStatsDumpInterval() {
+        return renderStatsDumpInterval;
+    }
+    
+    public void setRenderStatsDumpInterval(int renderStatsDumpInterval) {
+        this.renderStatsDumpInterval = Math.max(0, Math.min(3600, renderStatsDumpInterval));
+    }
+    
     public boolean isAutoImportToLitematica() {
         return autoImportToLitematica;
     }
@@ -46,10 +46,13 @@ public class SchematicPreviewScreen extends Screen {
     protected void init() {
         super.init();
         
-        // Widget de preview 3D
+        // Widget de preview 3D; al redimensionar se crea otro y hay que liberar el anterior
         int previewWidth = this.width - 220;
         int previewHeight = this.height - 100;
         
+        if (preview3D != null) {
+            preview3D.close();
+        }
         preview3D = new Preview3DWidget(
             10,
             50,
@@ -324,6 +327,14 @@ public class SchematicPreviewScreen extends Screen {
         }
     }
     
+    @Override
+    public void removed() {
+        // Liberar el framebuffer del preview
+        if (preview3D != null) {
+            preview3D.close();
+        }
+    }
+    
     @Override
     public boolean shouldPause() {
         return false;
@@ -1,28 +1,25 @@
 package com.neokey.neomatica.gui.widgets;
 
+import com.neokey.neomatica.render.PreviewCache;
 import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
-import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
 
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.Drawable;
 import net.minecraft.client.gui.Element;
-import net.minecraft.client.render.*;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3i;
 
 import org.joml.Matrix4f;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
-import java.util.Map;
-
 /**
  * Widget para preview 3D de schematics
  */
-public class Preview3DWidget implements Drawable, Element {
+public class Preview3DWidget implements Drawable, Element, AutoCloseable {
     
     private final MinecraftClient client;
+    private final PreviewCache previewCache = new PreviewCache();
     private final int x;
     private final int y;
     private final int width;
@@ -133,6 +130,8 @@ public class Preview3DWidget implements Drawable, Element {
     
     /**
      * Renderiza el preview 3D del schematic
+     * La imagen se guarda en un framebuffer; mientras se arrastra se usa una malla simplificada
+     * y al soltar se vuelve a dibujar con todo el detalle
      */
     private void renderPreview3D(DrawContext context, int viewportX, int viewportY, int viewportWidth, int viewportHeight) {
         Vec3i size = schematic.getSize();
@@ -147,107 +146,17 @@ public class Preview3DWidget implements Drawable, Element {
         float maxDimension = Math.max(size.getX(), Math.max(size.getY(), size.getZ()));
         float scale = (Math.min(viewportWidth, viewportHeight) / maxDimension) * zoom * 0.8f;
         
-        // Preparar renderizado
-        Tessellator tessellator = Tessellator.getInstance();
-        BufferBuilder buffer = tessellator.getBuffer();
-        
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-        RenderSystem.disableDepthTest();
-        RenderSystem.setShader(GameRenderer::getPositionColorProgram);
-        
-        context.getMatrices().push();
-        
-        // Trasladar al centro del viewport
-        context.getMatrices().translate(
-            viewportX + viewportWidth / 2.0f,
-            viewportY + viewportHeight / 2.0f,
-            0
-        );
-        
-        // Aplicar rotación
+        // Rotación, escala (-scale en Y para invertir eje Y) y centro, relativos al centro del viewport
         Quaternionf rotation = new Quaternionf()
             .rotateY((float) Math.toRadians(rotationY))
             .rotateX((float) Math.toRadians(rotationX));
-        context.getMatrices().multiply(rotation);
-        
-        // Aplicar escala
-        context.getMatrices().scale(scale, -scale, scale); // -scale en Y para invertir eje Y
-        
-        // Trasladar al centro del schematic
-        context.getMatrices().translate(-centerX + offset.x, -centerY + offset.y, -centerZ + offset.z);
+        Matrix4f view = new Matrix4f()
+            .rotate(rotation)
+            .scale(scale, -scale, scale)
+            .translate(-centerX + offset.x, -centerY + offset.y, -centerZ + offset.z);
         
-        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
-        
-        // Renderizar bloques
-        Map<BlockPos, SchematicBlock> blocks = schematic.getBlocks();
-        for (Map.Entry<BlockPos, SchematicBlock> entry : blocks.entrySet()) {
-            BlockPos pos = entry.getKey();
-            SchematicBlock block = entry.getValue();
-            
-            renderBlockCube(buffer, context.getMatrices().peek().getPositionMatrix(), 
-                           pos, getBlockColor(block.getBlockId()));
-        }
-        
-        tessellator.draw();
-        
-        context.getMatrices().pop();
-        
-        RenderSystem.enableDepthTest();
-        RenderSystem.disableBlend();
-    }
-    
-    /**
-     * Renderiza un cubo de bloque simplificado
-     */
-    private void renderBlockCube(BufferBuilder buffer, Matrix4f matrix, BlockPos pos, int color) {
-        float x1 = pos.getX();
-        float y1 = pos.getY();
-        float z1 = pos.getZ();
-        float x2 = x1 + 1.0f;
-        float y2 = y1 + 1.0f;
-        float z2 = z1 + 1.0f;
-        
-        float r = ((color >> 16) & 0xFF) / 255.0f;
-        float g = ((color >> 8) & 0xFF) / 255.0f;
-        float b = (color & 0xFF) / 255.0f;
-        float a = 0.8f;
-        
-        // Renderizar solo las caras visibles (simplificado)
-        // Cara superior
-        buffer.vertex(matrix, x1, y2, z1).color(r, g, b, a).next();
-        buffer.vertex(matrix, x1, y2, z2).color(r, g, b, a).next();
-        buffer.vertex(matrix, x2, y2, z2).color(r, g, b, a).next();
-        buffer.vertex(matrix, x2, y2, z1).color(r, g, b, a).next();
-        
-        // Cara frontal
-        buffer.vertex(matrix, x1, y1, z2).color(r * 0.8f, g * 0.8f, b * 0.8f, a).next();
-        buffer.vertex(matrix, x2, y1, z2).color(r * 0.8f, g * 0.8f, b * 0.8f, a).next();
-        buffer.vertex(matrix, x2, y2, z2).color(r * 0.8f, g * 0.8f, b * 0.8f, a).next();
-        buffer.vertex(matrix, x1, y2, z2).color(r * 0.8f, g * 0.8f, b * 0.8f, a).next();
-        
-        // Cara derecha
-        buffer.vertex(matrix, x2, y1, z2).color(r * 0.6f, g * 0.6f, b * 0.6f, a).next();
-        buffer.vertex(matrix, x2, y1, z1).color(r * 0.6f, g * 0.6f, b * 0.6f, a).next();
-        buffer.vertex(matrix, x2, y2, z1).color(r * 0.6f, g * 0.6f, b * 0.6f, a).next();
-        buffer.vertex(matrix, x2, y2, z2).color(r * 0.6f, g * 0.6f, b * 0.6f, a).next();
-    }
-    
-    /**
-     * Obtiene un color básico para un tipo de bloque
-     */
-    private int getBlockColor(String blockId) {
-        if (blockId.contains("stone")) return 0x808080;
-        if (blockId.contains("wood") || blockId.contains("planks")) return 0x8B4513;
-        if (blockId.contains("dirt")) return 0x654321;
-        if (blockId.contains("grass")) return 0x7CFC00;
-        if (blockId.contains("glass")) return 0x87CEEB;
-        if (blockId.contains("brick")) return 0xB22222;
-        if (blockId.contains("gold")) return 0xFFD700;
-        if (blockId.contains("iron")) return 0xC0C0C0;
-        if (blockId.contains("diamond")) return 0x00FFFF;
-        if (blockId.contains("wool")) return 0xFFFFFF;
-        return 0xCCCCCC; // Gris por defecto
+        previewCache.draw(context.getMatrices(), schematic, view,
+            viewportX, viewportY, viewportWidth, viewportHeight, isDragging);
     }
     
     /**
@@ -320,6 +229,14 @@ public class Preview3DWidget implements Drawable, Element {
         return mouseX >= x && mouseX < x + width && mouseY >= y && mouseY < y + height;
     }
     
+    /**
+     * Libera el framebuffer y las mallas del preview
+     */
+    @Override
+    public void close() {
+        previewCache.close();
+    }
+    
     @Override
     public void setFocused(boolean focused) {
     }
@@ -1,12 +1,18 @@
 package com.neokey.neomatica.gui.widgets;
 
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.client.NeomaticaClient;
 import com.neokey.neomatica.network.OnlineRepository.SchematicInfo;
+import com.neokey.neomatica.render.ThumbnailCache;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.widget.AlwaysSelectedEntryListWidget;
 import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.Vec3i;
 
+import java.io.File;
 import java.util.function.Consumer;
 
 /**
@@ -14,6 +20,9 @@ import java.util.function.Consumer;
  */
 public class SchematicListWidget extends AlwaysSelectedEntryListWidget<SchematicListWidget.SchematicEntry> {
     
+    // Cada cuánto se vuelve a buscar el archivo de una entrada aún sin descargar
+    private static final long KEY_CHECK_INTERVAL_MS = 1000;
+    
     private Consumer<SchematicInfo> selectionCallback;
     
     public SchematicListWidget(MinecraftClient client, int width, int height, int top, int bottom, int itemHeight) {
@@ -51,6 +60,13 @@ public class SchematicListWidget extends AlwaysSelectedEntryListWidget<Schematic
         }
     }
     
+    @Override
+    protected void renderWidget(DrawContext context, int mouseX, int mouseY, float delta) {
+        // Subir las miniaturas terminadas en segundo plano antes de dibujar las entradas
+        NeomaticaClient.getInstance().getThumbnailCache().uploadFinished();
+        super.renderWidget(context, mouseX, mouseY, delta);
+    }
+    
     @Override
     public int getRowWidth() {
         return this.width - 20;
@@ -70,10 +86,29 @@ public class SchematicListWidget extends AlwaysSelectedEntryListWidget<Schematic
         private final SchematicListWidget parent;
         private final MinecraftClient client;
         
+        // Archivo descargado del schematic, del que sale la miniatura
+        private final File localFile;
+        
+        // Clave de la miniatura; mientras el archivo no exista se vuelve a comprobar cada segundo,
+        // no en cada frame, para no consultar el disco desde el hilo de render
+        private String thumbnailKey;
+        private long nextKeyCheck;
+        
         public SchematicEntry(SchematicInfo schematicInfo, SchematicListWidget parent) {
             this.schematicInfo = schematicInfo;
             this.parent = parent;
             this.client = MinecraftClient.getInstance();
+            this.localFile = Neomatica.getInstance().getOnlineRepository().getLocalFile(schematicInfo);
+            this.thumbnailKey = ThumbnailCache.keyOf(localFile);
+            this.nextKeyCheck = Util.getMeasuringTimeMs() + KEY_CHECK_INTERVAL_MS;
+        }
+        
+        private String getThumbnailKey() {
+            if (thumbnailKey == null && Util.getMeasuringTimeMs() >= nextKeyCheck) {
+                thumbnailKey = ThumbnailCache.keyOf(localFile);
+                nextKeyCheck = Util.getMeasuringTimeMs() + KEY_CHECK_INTERVAL_MS;
+            }
+            return thumbnailKey;
         }
         
         @Override
@@ -85,11 +120,20 @@ public class SchematicListWidget extends AlwaysSelectedEntryListWidget<Schematic
                 context.fill(x, y, x + entryWidth, y + entryHeight, 0x80FFFFFF);
             }
             
+            // Miniatura, solo si el schematic está descargado; se genera en segundo plano
+            int thumbnailSize = entryHeight - 4;
+            Identifier thumbnail = NeomaticaClient.getInstance().getThumbnailCache().getThumbnail(getThumbnailKey(), localFile);
+            if (thumbnail != null) {
+                context.drawTexture(thumbnail, x + 2, y + 2, thumbnailSize, thumbnailSize, 0, 0,
+                    ThumbnailCache.SIZE, ThumbnailCache.SIZE, ThumbnailCache.SIZE, ThumbnailCache.SIZE);
+            }
+            int textX = x + thumbnailSize + 7;
+            
             // Renderizar nombre del schematic
             context.drawText(
                 client.textRenderer,
                 schematicInfo.getName(),
-                x + 5,
+                textX,
                 y + 2,
                 0xFFFFFF,
                 false
@@ -100,7 +144,7 @@ public class SchematicListWidget extends AlwaysSelectedEntryListWidget<Schematic
             context.drawText(
                 client.textRenderer,
                 author,
-                x + 5,
+                textX,
                 y + 13,
                 0xAAAAAA,
                 false
@@ -0,0 +1,34 @@
+package com.neokey.neomatica.mixin;
+
+import com.neokey.neomatica.client.NeomaticaClient;
+import com.neokey.neomatica.schematic.SchematicVerifier;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Avisa al verificador de cada bloque que cambia en el mundo del cliente
+ * updateListeners se llama tanto con los paquetes del servidor como con las predicciones locales
+ */
+@Mixin(ClientWorld.class)
+public abstract class ClientWorldMixin {
+    
+    @Inject(method = "updateListeners", at = @At("HEAD"))
+    private void neomatica$onBlockUpdate(BlockPos pos, BlockState oldState, BlockState newState, int flags, CallbackInfo ci) {
+        NeomaticaClient client = NeomaticaClient.getInstance();
+        if (client == null) {
+            return;
+        }
+        
+        SchematicVerifier verifier = client.getVerifier();
+        if (verifier != null) {
+            verifier.onBlockChanged(pos, newState);
+        }
+    }
+}
\ No newline at end of file
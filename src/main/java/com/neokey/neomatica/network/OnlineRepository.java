@@ -182,9 +182,7 @@ public class OnlineRepository {
     public boolean downloadSchematic(SchematicInfo schematicInfo) {
         try {
             String downloadUrl = schematicInfo.getDownloadUrl();
-            String fileName = schematicInfo.getName() + getFileExtension(schematicInfo.getFormat());
-            
-            File outputFile = new File("schematics/downloaded", fileName);
+            File outputFile = getLocalFile(schematicInfo);
             
             return downloader.download(downloadUrl, outputFile);
             
@@ -194,10 +192,21 @@ public class OnlineRepository {
         }
     }
     
+    /**
+     * Archivo en el que se guarda un schematic al descargarlo; puede no existir todavía
+     */
+    public File getLocalFile(SchematicInfo schematicInfo) {
+        return new File("schematics/downloaded", schematicInfo.getName() + getFileExtension(schematicInfo.getFormat()));
+    }
+    
     /**
      * Obtiene la extensión de archivo según el formato
      */
     private String getFileExtension(String format) {
+        if (format == null) {
+            return ".litematic";
+        }
+        
         return switch (format.toLowerCase()) {
             case "litematic" -> ".litematic";
             case "schem", "sponge" -> ".schem";
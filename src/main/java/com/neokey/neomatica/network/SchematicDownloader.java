@@ -1,6 +1,7 @@
 package com.neokey.neomatica.network;
 
 import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.util.FileUtil;
 
 import java.io.*;
 import java.net.HttpURLConnection;
@@ -51,23 +52,24 @@ public class SchematicDownloader {
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 long fileSize = connection.getContentLengthLong();
                 
-                try (InputStream in = connection.getInputStream();
-                     FileOutputStream out = new FileOutputStream(outputFile)) {
-                    
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    int bytesRead;
-                    long totalBytesRead = 0;
-                    
-                    while ((bytesRead = in.read(buffer)) != -1) {
-                        out.write(buffer, 0, bytesRead);
-                        totalBytesRead += bytesRead;
+                // Descarga atómica: una descarga interrumpida no deja un archivo truncado
+                try (InputStream in = connection.getInputStream()) {
+                    FileUtil.writeAtomically(outputFile, out -> {
+                        byte[] buffer = new byte[BUFFER_SIZE];
+                        int bytesRead;
+                        long totalBytesRead = 0;
                         
-                        // Log de progreso cada 10%
-                        if (fileSize > 0 && totalBytesRead % (fileSize / 10) < BUFFER_SIZE) {
-                            int progress = (int) ((totalBytesRead * 100) / fileSize);
-                            Neomatica.LOGGER.debug("Descarga: {}%", progress);
+                        while ((bytesRead = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, bytesRead);
+                            totalBytesRead += bytesRead;
+                            
+                            // Log de progreso cada 10%
+                            if (fileSize > 0 && totalBytesRead % (fileSize / 10) < BUFFER_SIZE) {
+                                int progress = (int) ((totalBytesRead * 100) / fileSize);
+                                Neomatica.LOGGER.debug("Descarga: {}%", progress);
+                            }
                         }
-                    }
+                    });
                 }
                 
                 Neomatica.LOGGER.info("Descarga completada: {}", outputFile.getName());
@@ -141,27 +143,27 @@ public class SchematicDownloader {
                 if (responseCode == HttpURLConnection.HTTP_OK) {
                     long fileSize = connection.getContentLengthLong();
                     
-                    try (InputStream in = connection.getInputStream();
-                         FileOutputStream out = new FileOutputStream(outputFile)) {
-                        
-                        byte[] buffer = new byte[BUFFER_SIZE];
-                        int bytesRead;
-                        long totalBytesRead = 0;
-                        int lastProgress = 0;
-                        
-                        while ((bytesRead = in.read(buffer)) != -1) {
-                            out.write(buffer, 0, bytesRead);
-                            totalBytesRead += bytesRead;
+                    try (InputStream in = connection.getInputStream()) {
+                        FileUtil.writeAtomically(outputFile, out -> {
+                            byte[] buffer = new byte[BUFFER_SIZE];
+                            int bytesRead;
+                            long totalBytesRead = 0;
+                            int lastProgress = 0;
                             
-                            // Actualizar progreso
-                            if (fileSize > 0 && progressCallback != null) {
-                                int progress = (int) ((totalBytesRead * 100) / fileSize);
-                                if (progress != lastProgress) {
-                                    progressCallback.accept(progress);
-                                    lastProgress = progress;
+                            while ((bytesRead = in.read(buffer)) != -1) {
+                                out.write(buffer, 0, bytesRead);
+                                totalBytesRead += bytesRead;
+                                
+                                // Actualizar progreso
+                                if (fileSize > 0 && progressCallback != null) {
+                                    int progress = (int) ((totalBytesRead * 100) / fileSize);
+                                    if (progress != lastProgress) {
+                                        progressCallback.accept(progress);
+                                        lastProgress = progress;
+                                    }
                                 }
                             }
-                        }
+                        });
                     }
                     
                     if (completionCallback != null) {
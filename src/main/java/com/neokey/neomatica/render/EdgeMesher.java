@@ -0,0 +1,138 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.util.math.Direction;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Mallado de aristas para el modo esqueleto
+ * Solo emite las aristas donde la superficie del schematic dobla, no las 12 de cada bloque:
+ * de los cuatro bloques que rodean una arista, uno o tres llenos es una esquina
+ * y dos llenos en diagonal son dos; dos llenos contiguos son una cara plana
+ * Las aristas seguidas del mismo color se unen en una sola línea
+ * Las posiciones son relativas al origen de la sección (modo DEBUG_LINES)
+ */
+public class EdgeMesher {
+    
+    private static final int SIZE = SchematicStorage.SECTION_SIZE;
+    
+    private int lineCount = 0;
+    
+    /**
+     * Emite las aristas de la sección
+     * Las líneas sobre el borde positivo solo se emiten si la vecina de ese lado está vacía;
+     * si no, las emite la vecina en su borde negativo
+     */
+    public void mesh(SectionSnapshot snapshot, VertexConsumer buffer, IntUnaryOperator colorOf) {
+        for (Direction.Axis axis : Direction.Axis.values()) {
+            Direction[] perpendicular = perpendicularFaces(axis);
+            int maxP = snapshot.hasNeighbour(perpendicular[0]) ? SIZE - 1 : SIZE;
+            int maxQ = snapshot.hasNeighbour(perpendicular[1]) ? SIZE - 1 : SIZE;
+            
+            for (int p = 0; p <= maxP; p++) {
+                for (int q = 0; q <= maxQ; q++) {
+                    meshLine(snapshot, axis, p, q, buffer, colorOf);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Recorre una línea de la rejilla a lo largo de un eje y emite sus tramos de arista
+     */
+    private void meshLine(SectionSnapshot snapshot, Direction.Axis axis, int p, int q,
+                          VertexConsumer buffer, IntUnaryOperator colorOf) {
+        int runStart = -1;
+        int runColor = 0;
+        
+        for (int t = 0; t <= SIZE; t++) {
+            int color = t < SIZE ? edgeColor(snapshot, axis, t, p, q, colorOf) : 0;
+            
+            if (runStart >= 0 && color != runColor) {
+                emitLine(axis, runStart, t, p, q, runColor, buffer);
+                runStart = -1;
+            }
+            if (runStart < 0 && color != 0) {
+                runStart = t;
+                runColor = color;
+            }
+        }
+    }
+    
+    /**
+     * Color ARGB de la arista en la posición t de la línea, o 0 si no es una arista de la superficie
+     */
+    private static int edgeColor(SectionSnapshot snapshot, Direction.Axis axis, int t, int p, int q,
+                                 IntUnaryOperator colorOf) {
+        int a = stateAt(snapshot, axis, t, p - 1, q - 1);
+        int b = stateAt(snapshot, axis, t, p, q - 1);
+        int c = stateAt(snapshot, axis, t, p - 1, q);
+        int d = stateAt(snapshot, axis, t, p, q);
+        
+        boolean filledA = a != StatePalette.EMPTY;
+        boolean filledB = b != StatePalette.EMPTY;
+        boolean filledC = c != StatePalette.EMPTY;
+        boolean filledD = d != StatePalette.EMPTY;
+        
+        int filled = (filledA ? 1 : 0) + (filledB ? 1 : 0) + (filledC ? 1 : 0) + (filledD ? 1 : 0);
+        
+        boolean crease = filled == 1 || filled == 3 || (filled == 2 && filledA == filledD);
+        if (!crease) {
+            return 0;
+        }
+        
+        int state = filledA ? a : filledB ? b : filledC ? c : d;
+        return 0xFF000000 | colorOf.applyAsInt(state);
+    }
+    
+    /**
+     * Estado del bloque en la posición t del eje y (p, q) en los otros dos ejes
+     */
+    private static int stateAt(SectionSnapshot snapshot, Direction.Axis axis, int t, int p, int q) {
+        return switch (axis) {
+            case X -> snapshot.getState(t, p, q);
+            case Y -> snapshot.getState(p, t, q);
+            case Z -> snapshot.getState(p, q, t);
+        };
+    }
+    
+    private void emitLine(Direction.Axis axis, int from, int to, int p, int q, int color, VertexConsumer buffer) {
+        switch (axis) {
+            case X -> {
+                buffer.vertex(from, p, q).color(color);
+                buffer.vertex(to, p, q).color(color);
+            }
+            case Y -> {
+                buffer.vertex(p, from, q).color(color);
+                buffer.vertex(p, to, q).color(color);
+            }
+            case Z -> {
+                buffer.vertex(p, q, from).color(color);
+                buffer.vertex(p, q, to).color(color);
+            }
+        }
+        lineCount++;
+    }
+    
+    /**
+     * Caras positivas de los dos ejes que no son el de la línea, en el orden de (p, q)
+     */
+    private static Direction[] perpendicularFaces(Direction.Axis axis) {
+        return switch (axis) {
+            case X -> new Direction[] {Direction.UP, Direction.SOUTH};
+            case Y -> new Direction[] {Direction.EAST, Direction.SOUTH};
+            case Z -> new Direction[] {Direction.EAST, Direction.UP};
+        };
+    }
+    
+    /**
+     * Número de líneas emitidas hasta ahora
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,264 @@
+package com.neokey.neomatica.render;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GLCapabilities;
+
+/**
+ * Ajusta la calidad del render de schematics a un presupuesto de tiempo por frame
+ * Mide el tiempo de CPU del pase de schematics y, si el driver lo permite, su tiempo de GPU
+ * con marcas de tiempo (no con GL_TIME_ELAPSED, que el juego puede tener ya activo)
+ * Con el coste medio calcula una escala de calidad que reduce o amplía la distancia de
+ * renderizado y la de simplificación, y reparte el resto del presupuesto al mallado
+ */
+public class FrameBudgetController implements AutoCloseable {
+    
+    // Consultas de GPU en vuelo; se leen varios frames después para no esperar al driver
+    private static final int QUERY_SLOTS = 4;
+    
+    // Peso de cada frame nuevo en la media del coste
+    private static final double SMOOTHING = 0.1;
+    
+    // La escala se revisa cada cierto número de frames para no reconstruir mallas sin parar
+    private static final int ADJUST_INTERVAL = 10;
+    
+    // Por encima del presupuesto se baja rápido; muy por debajo se sube despacio
+    private static final double OVER_BUDGET = 1.1;
+    private static final double UNDER_BUDGET = 0.7;
+    private static final double DECREASE_FACTOR = 0.9;
+    private static final double INCREASE_FACTOR = 1.05;
+    
+    private static final double MIN_SCALE = 0.25;
+    private static final double MAX_SCALE = 2.0;
+    
+    // Límites de las distancias resultantes, en bloques
+    private static final double MIN_RENDER_DISTANCE = 32.0;
+    private static final double MAX_RENDER_DISTANCE = 512.0;
+    private static final double MIN_LOD_DISTANCE = 16.0;
+    
+    // Paso de la distancia de simplificación: cambiarla obliga a revisar el nivel de cada sección
+    private static final double LOD_DISTANCE_STEP = 8.0;
+    
+    // Tiempo mínimo de mallado por frame, aunque el dibujo ya gaste todo el presupuesto
+    private static final long MIN_MESH_BUDGET_NANOS = 500_000L;
+    
+    // Tiempo de mallado por frame con la calidad fija
+    private static final long FIXED_MESH_BUDGET_NANOS = 2_000_000L;
+    
+    private final int[] startQueries = new int[QUERY_SLOTS];
+    private final int[] endQueries = new int[QUERY_SLOTS];
+    private final boolean[] queryPending = new boolean[QUERY_SLOTS];
+    private int querySlot = 0;
+    private boolean gpuTimingChecked = false;
+    private boolean gpuTimingSupported = false;
+    
+    private long budgetNanos = 2_000_000L;
+    private double scale = 1.0;
+    private int framesSinceAdjust = 0;
+    
+    // Tiempo del frame en curso
+    private long frameStartNanos;
+    private long meshNanos;
+    private boolean inFrame = false;
+    
+    // Medias de los últimos frames, en nanosegundos
+    private double drawCpuNanos = 0.0;
+    private double meshCpuNanos = 0.0;
+    private double gpuNanos = 0.0;
+    
+    /**
+     * Cambia el presupuesto por frame
+     *
+     * @param budgetMs milisegundos para todo el pase de schematics, o 0 o menos para
+     *                 no adaptar la calidad
+     */
+    public void setBudgetMs(double budgetMs) {
+        this.budgetNanos = budgetMs > 0.0 ? (long) (budgetMs * 1_000_000.0) : 0L;
+        if (budgetNanos == 0L) {
+            scale = 1.0;
+        }
+    }
+    
+    /**
+     * Empieza a medir el pase de schematics de un frame
+     * Debe llamarse desde el hilo de render
+     */
+    public void beginFrame() {
+        RenderSystem.assertOnRenderThread();
+        
+        frameStartNanos = System.nanoTime();
+        meshNanos = 0L;
+        inFrame = true;
+        
+        if (isGpuTimingSupported() && !queryPending[querySlot]) {
+            GL33.glQueryCounter(startQueries[querySlot], GL33.GL_TIMESTAMP);
+        }
+    }
+    
+    /**
+     * Anota el tiempo gastado en subir y encargar mallas dentro del pase
+     * Ese trabajo ya tiene su propio límite, así que no cuenta como coste de dibujo
+     */
+    public void recordMeshTime(long nanos) {
+        meshNanos += nanos;
+    }
+    
+    /**
+     * Termina de medir el frame, recoge las medidas de GPU ya disponibles y revisa la escala
+     */
+    public void endFrame() {
+        if (!inFrame) {
+            return;
+        }
+        inFrame = false;
+        
+        long cpuNanos = System.nanoTime() - frameStartNanos;
+        drawCpuNanos = smooth(drawCpuNanos, Math.max(0L, cpuNanos - meshNanos));
+        meshCpuNanos = smooth(meshCpuNanos, meshNanos);
+        
+        if (isGpuTimingSupported()) {
+            if (!queryPending[querySlot]) {
+                GL33.glQueryCounter(endQueries[querySlot], GL33.GL_TIMESTAMP);
+                queryPending[querySlot] = true;
+            }
+            querySlot = (querySlot + 1) % QUERY_SLOTS;
+            collectGpuTimes();
+        }
+        
+        if (++framesSinceAdjust >= ADJUST_INTERVAL) {
+            framesSinceAdjust = 0;
+            adjustScale();
+        }
+    }
+    
+    /**
+     * Lee las consultas terminadas sin bloquear; las que no lo estén se leen en otro frame
+     */
+    private void collectGpuTimes() {
+        for (int slot = 0; slot < QUERY_SLOTS; slot++) {
+            if (!queryPending[slot]) {
+                continue;
+            }
+            if (GL15.glGetQueryObjecti(endQueries[slot], GL15.GL_QUERY_RESULT_AVAILABLE) == 0) {
+                continue;
+            }
+            
+            long start = GL33.glGetQueryObjecti64(startQueries[slot], GL15.GL_QUERY_RESULT);
+            long end = GL33.glGetQueryObjecti64(endQueries[slot], GL15.GL_QUERY_RESULT);
+            gpuNanos = smooth(gpuNanos, Math.max(0L, end - start));
+            queryPending[slot] = false;
+        }
+    }
+    
+    /**
+     * Baja la escala si el coste de dibujo pasa del presupuesto y la sube si sobra margen
+     * Se usa el mayor de CPU y GPU: el que limite es el que cuenta
+     */
+    private void adjustScale() {
+        if (budgetNanos == 0L) {
+            return;
+        }
+        
+        double cost = Math.max(drawCpuNanos, gpuNanos);
+        if (cost > budgetNanos * OVER_BUDGET) {
+            scale = Math.max(MIN_SCALE, scale * DECREASE_FACTOR);
+        } else if (cost < budgetNanos * UNDER_BUDGET) {
+            scale = Math.min(MAX_SCALE, scale * INCREASE_FACTOR);
+        }
+    }
+    
+    private static double smooth(double average, long sample) {
+        return average == 0.0 ? sample : average + (sample - average) * SMOOTHING;
+    }
+    
+    private boolean isGpuTimingSupported() {
+        if (!gpuTimingChecked) {
+            gpuTimingChecked = true;
+            GLCapabilities capabilities = GL.getCapabilities();
+            gpuTimingSupported = capabilities.OpenGL33 || capabilities.GL_ARB_timer_query;
+            
+            if (gpuTimingSupported) {
+                GL15.glGenQueries(startQueries);
+                GL15.glGenQueries(endQueries);
+            }
+        }
+        return gpuTimingSupported;
+    }
+    
+    /**
+     * Distancia de renderizado a usar este frame a partir de la configurada
+     */
+    public double scaleRenderDistance(double renderDistance) {
+        return Math.max(MIN_RENDER_DISTANCE, Math.min(MAX_RENDER_DISTANCE, renderDistance * scale));
+    }
+    
+    /**
+     * Distancia de simplificación a usar este frame a partir de la configurada
+     * Se redondea a pasos de LOD_DISTANCE_STEP bloques; 0 sigue desactivando la simplificación
+     */
+    public double scaleLodDistance(double lodDistance) {
+        if (lodDistance <= 0.0) {
+            return 0.0;
+        }
+        
+        double scaled = Math.round(lodDistance * scale / LOD_DISTANCE_STEP) * LOD_DISTANCE_STEP;
+        return Math.max(MIN_LOD_DISTANCE, scaled);
+    }
+    
+    /**
+     * Tiempo de este frame para subir mallas y encargar mallados: lo que el dibujo deja libre
+     * del presupuesto, con un mínimo para que las ediciones sigan apareciendo
+     */
+    public long getMeshBudgetNanos() {
+        if (budgetNanos == 0L) {
+            return FIXED_MESH_BUDGET_NANOS;
+        }
+        
+        long remaining = budgetNanos - (long) Math.max(drawCpuNanos, gpuNanos);
+        return Math.max(MIN_MESH_BUDGET_NANOS, Math.min(budgetNanos, remaining));
+    }
+    
+    /**
+     * Escala de calidad actual: 1 es la configurada, menos de 1 es más barata
+     */
+    public double getScale() {
+        return scale;
+    }
+    
+    /**
+     * Tiempo medio de CPU de dibujo por frame, sin el mallado, en milisegundos
+     */
+    public double getDrawCpuMs() {
+        return drawCpuNanos / 1_000_000.0;
+    }
+    
+    /**
+     * Tiempo medio de CPU de mallado (subidas y encargos) por frame, en milisegundos
+     */
+    public double getMeshCpuMs() {
+        return meshCpuNanos / 1_000_000.0;
+    }
+    
+    /**
+     * Tiempo medio de GPU del pase por frame en milisegundos, o 0 si no se puede medir
+     */
+    public double getGpuMs() {
+        return gpuNanos / 1_000_000.0;
+    }
+    
+    /**
+     * Libera las consultas de GPU
+     */
+    @Override
+    public void close() {
+        if (gpuTimingSupported) {
+            GL15.glDeleteQueries(startQueries);
+            GL15.glDeleteQueries(endQueries);
+            gpuTimingSupported = false;
+            gpuTimingChecked = false;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.util.math.Direction;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Mallado voraz: fusiona las caras visibles coplanares con la misma clave en rectángulos máximos
+ * Trabaja por cortes de 16x16 de la sección, una dirección cada vez
+ * No es seguro entre hilos: cada hilo de mallado debe usar su propia instancia
+ */
+public class GreedyMesher extends SectionMesher {
+    
+    private static final int SIZE = SchematicStorage.SECTION_SIZE;
+    
+    private final IntUnaryOperator mergeKey;
+    
+    // Máscara del corte actual: estado visible (0 = sin cara) y su clave de fusión
+    private final int[] maskStates = new int[SIZE * SIZE];
+    private final int[] maskKeys = new int[SIZE * SIZE];
+    
+    /**
+     * @param mergeKey clave por id de estado; normalmente el color, para fusionar estados
+     *                 distintos que se dibujan igual
+     */
+    public GreedyMesher(IntUnaryOperator mergeKey) {
+        this.mergeKey = mergeKey;
+    }
+    
+    @Override
+    public void mesh(SectionSnapshot snapshot, QuadSink sink) {
+        RenderStateTable table = RenderStateTable.getInstance();
+        int baseX = snapshot.getSectionX() << 4;
+        int baseY = snapshot.getSectionY() << 4;
+        int baseZ = snapshot.getSectionZ() << 4;
+        
+        for (Direction face : Direction.values()) {
+            int offsetX = face.getOffsetX();
+            int offsetY = face.getOffsetY();
+            int offsetZ = face.getOffsetZ();
+            
+            for (int d = 0; d < SIZE; d++) {
+                if (!buildMask(snapshot, table, face, d, offsetX, offsetY, offsetZ)) {
+                    continue;
+                }
+                
+                emitRectangles(face, d, baseX, baseY, baseZ, sink);
+            }
+        }
+    }
+    
+    /**
+     * Rellena la máscara del corte d; devuelve false si no tiene ninguna cara visible
+     */
+    private boolean buildMask(SectionSnapshot snapshot, RenderStateTable table, Direction face, int d,
+                              int offsetX, int offsetY, int offsetZ) {
+        boolean any = false;
+        
+        for (int v = 0; v < SIZE; v++) {
+            for (int u = 0; u < SIZE; u++) {
+                int x = blockX(face, u, v, d);
+                int y = blockY(face, u, v, d);
+                int z = blockZ(face, u, v, d);
+                
+                int state = snapshot.getState(x, y, z);
+                int index = v * SIZE + u;
+                
+                if (state != StatePalette.EMPTY
+                        && isFaceVisible(table, state, snapshot.getState(x + offsetX, y + offsetY, z + offsetZ))) {
+                    maskStates[index] = state;
+                    maskKeys[index] = mergeKey.applyAsInt(state);
+                    any = true;
+                } else {
+                    maskStates[index] = StatePalette.EMPTY;
+                }
+            }
+        }
+        
+        return any;
+    }
+    
+    /**
+     * Extrae rectángulos máximos de la máscara: primero a lo ancho (U) y luego a lo alto (V)
+     */
+    private void emitRectangles(Direction face, int d, int baseX, int baseY, int baseZ, QuadSink sink) {
+        for (int v = 0; v < SIZE; v++) {
+            for (int u = 0; u < SIZE; ) {
+                int index = v * SIZE + u;
+                int state = maskStates[index];
+                if (state == StatePalette.EMPTY) {
+                    u++;
+                    continue;
+                }
+                
+                int key = maskKeys[index];
+                
+                int width = 1;
+                while (u + width < SIZE && matches(index + width, key)) {
+                    width++;
+                }
+                
+                int height = 1;
+                expand:
+                while (v + height < SIZE) {
+                    int row = (v + height) * SIZE + u;
+                    for (int du = 0; du < width; du++) {
+                        if (!matches(row + du, key)) {
+                            break expand;
+                        }
+                    }
+                    height++;
+                }
+                
+                // Vaciar la zona ya emitida
+                for (int dv = 0; dv < height; dv++) {
+                    int row = (v + dv) * SIZE + u;
+                    for (int du = 0; du < width; du++) {
+                        maskStates[row + du] = StatePalette.EMPTY;
+                    }
+                }
+                
+                sink.quad(face,
+                    baseX + blockX(face, u, v, d),
+                    baseY + blockY(face, u, v, d),
+                    baseZ + blockZ(face, u, v, d),
+                    width, height, state);
+                
+                u += width;
+            }
+        }
+    }
+    
+    private boolean matches(int index, int key) {
+        return maskStates[index] != StatePalette.EMPTY && maskKeys[index] == key;
+    }
+    
+    // Ejes U y V de cada cara, los mismos que usa QuadSink
+    
+    private static int blockX(Direction face, int u, int v, int d) {
+        return face.getAxis() == Direction.Axis.X ? d : u;
+    }
+    
+    private static int blockY(Direction face, int u, int v, int d) {
+        return switch (face.getAxis()) {
+            case X, Z -> v;
+            case Y -> d;
+        };
+    }
+    
+    private static int blockZ(Direction face, int u, int v, int d) {
+        return switch (face.getAxis()) {
+            case X -> u;
+            case Y -> v;
+            case Z -> d;
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.LayerGuide;
+import com.neokey.neomatica.schematic.LayerGuide.LayerAxis;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.BufferAllocator;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import org.joml.Matrix4f;
+
+import java.util.Arrays;
+
+/**
+ * Malla de la guía de capas con las caras ordenadas por capa
+ * Se guarda dónde empieza cada capa, así que mostrar una capa o un rango de capas
+ * es dibujar un tramo del mismo buffer; solo se reconstruye al editar el schematic
+ * o al cambiar de eje
+ * Los vértices son blancos: el color de cada tramo lo pone el color del shader
+ */
+public class LayerMesh implements AutoCloseable {
+    
+    private final SchematicMesh mesh = new SchematicMesh();
+    
+    // Primera cara de cada capa; la capa i ocupa [layerStarts[i], layerStarts[i + 1])
+    private int[] layerStarts = new int[1];
+    
+    // Datos con los que se construyó la malla
+    private SchematicStorage builtStorage;
+    private long builtVersion;
+    private LayerAxis builtAxis;
+    
+    /**
+     * Reconstruye la malla si ha cambiado el schematic de la guía, su contenido o el eje
+     * Debe llamarse desde el hilo de render
+     */
+    public void update(LayerGuide layerGuide) {
+        SchematicStorage storage = layerGuide.getSchematic().getStorage();
+        
+        if (storage == builtStorage && storage.getVersion() == builtVersion && layerGuide.getAxis() == builtAxis) {
+            return;
+        }
+        
+        build(storage, layerGuide);
+        
+        this.builtStorage = storage;
+        this.builtVersion = storage.getVersion();
+        this.builtAxis = layerGuide.getAxis();
+    }
+    
+    /**
+     * Ordena los bloques por capa (ordenación por recuento) y genera la cara superior de cada uno
+     */
+    private void build(SchematicStorage storage, LayerGuide layerGuide) {
+        int[] counts = new int[Math.max(1, layerGuide.getTotalLayers())];
+        
+        for (Section section : storage.getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            
+            int baseX = section.getSectionX() << 4;
+            int baseY = section.getSectionY() << 4;
+            int baseZ = section.getSectionZ() << 4;
+            
+            for (int i = 0; i < SchematicStorage.SECTION_VOLUME; i++) {
+                if (section.getState(i) == StatePalette.EMPTY) {
+                    continue;
+                }
+                
+                int layer = layerGuide.getLayerOf(baseX + (i & 15), baseY + (i >> 8), baseZ + ((i >> 4) & 15));
+                if (layer < 0) {
+                    continue;
+                }
+                if (layer >= counts.length) {
+                    counts = Arrays.copyOf(counts, Math.max(layer + 1, counts.length * 2));
+                }
+                counts[layer]++;
+            }
+        }
+        
+        int[] starts = new int[counts.length + 1];
+        for (int layer = 0; layer < counts.length; layer++) {
+            starts[layer + 1] = starts[layer] + counts[layer];
+        }
+        
+        long[] positions = new long[starts[counts.length]];
+        int[] cursors = Arrays.copyOf(starts, counts.length);
+        
+        for (Section section : storage.getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            
+            int baseX = section.getSectionX() << 4;
+            int baseY = section.getSectionY() << 4;
+            int baseZ = section.getSectionZ() << 4;
+            
+            for (int i = 0; i < SchematicStorage.SECTION_VOLUME; i++) {
+                if (section.getState(i) == StatePalette.EMPTY) {
+                    continue;
+                }
+                
+                int x = baseX + (i & 15);
+                int y = baseY + (i >> 8);
+                int z = baseZ + ((i >> 4) & 15);
+                int layer = layerGuide.getLayerOf(x, y, z);
+                if (layer >= 0) {
+                    positions[cursors[layer]++] = BlockPos.asLong(x, y, z);
+                }
+            }
+        }
+        
+        this.layerStarts = starts;
+        
+        if (positions.length == 0) {
+            mesh.upload(null);
+            return;
+        }
+        
+        try (BufferAllocator allocator = new BufferAllocator(positions.length * 4 * VertexFormats.POSITION_COLOR.getVertexSizeByte())) {
+            BufferBuilder buffer = new BufferBuilder(allocator, VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+            VertexQuadSink sink = new VertexQuadSink(buffer, null, state -> 0xFFFFFF, 1.0f, false, 0.0f);
+            
+            // Solo la cara superior, como resaltado de la guía
+            for (long position : positions) {
+                sink.quad(Direction.UP, BlockPos.unpackLongX(position), BlockPos.unpackLongY(position),
+                    BlockPos.unpackLongZ(position), 1, 1, StatePalette.EMPTY);
+            }
+            
+            mesh.upload(buffer.endNullable());
+        }
+    }
+    
+    /**
+     * Dibuja las capas de fromLayer a toLayer, ambas incluidas, con el shader y el color activos
+     *
+     * @param modelView matriz ya trasladada a la colocación del schematic
+     * @return número de caras dibujadas
+     */
+    public int drawLayers(Matrix4f modelView, Matrix4f projection, int fromLayer, int toLayer) {
+        int from = Math.max(0, fromLayer);
+        int to = Math.min(getLayerCount() - 1, toLayer);
+        if (from > to) {
+            return 0;
+        }
+        
+        int firstQuad = layerStarts[from];
+        int quadCount = layerStarts[to + 1] - firstQuad;
+        mesh.drawQuads(modelView, projection, firstQuad, quadCount);
+        return quadCount;
+    }
+    
+    /**
+     * Número de capas con entrada en la malla
+     */
+    public int getLayerCount() {
+        return layerStarts.length - 1;
+    }
+    
+    /**
+     * Número de bloques de una capa, sin recorrer el schematic
+     */
+    public int getLayerBlockCount(int layer) {
+        if (layer < 0 || layer >= getLayerCount()) {
+            return 0;
+        }
+        return layerStarts[layer + 1] - layerStarts[layer];
+    }
+    
+    /**
+     * Libera la malla de la GPU; se reconstruye en el siguiente update
+     */
+    @Override
+    public void close() {
+        mesh.close();
+        layerStarts = new int[1];
+        builtStorage = null;
+        builtAxis = null;
+    }
+}
\ No newline at end of file
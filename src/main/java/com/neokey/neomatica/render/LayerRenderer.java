@@ -1,9 +1,9 @@
 ﻿package com.neokey.neomatica.render;
 
+import com.mojang.blaze3d.systems.RenderSystem;
 import com.neokey.neomatica.Neomatica;
 import com.neokey.neomatica.schematic.LayerGuide;
 import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
-import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
 
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.*;
@@ -13,14 +13,20 @@ import net.minecraft.util.math.Vec3d;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 import org.joml.Matrix4f;
 
-import java.util.Map;
-
 /**
  * Renderizador de capas para guía de construcción
+ * Las capas salen de una única malla ordenada por capa; cambiar de capa solo cambia
+ * el tramo que se dibuja
+ * El estado de render y las líneas indicadoras van por el lote del frame
  */
 public class LayerRenderer {
     
+    // Grosor de las líneas indicadoras
+    private static final float LINE_WIDTH = 2.0f;
+    
     private final MinecraftClient client;
+    private final RenderBatch renderBatch;
+    private final LayerMesh layerMesh = new LayerMesh();
     
     private boolean enabled = true;
     private boolean showIndicators = true;
@@ -31,8 +37,9 @@ public class LayerRenderer {
     private static final float[] COLOR_NEXT_LAYER = {1.0f, 1.0f, 0.0f, 0.4f};    // Amarillo
     private static final float[] COLOR_PREV_LAYER = {0.5f, 0.5f, 0.5f, 0.3f};    // Gris
     
-    public LayerRenderer() {
+    public LayerRenderer(RenderBatch renderBatch) {
         this.client = MinecraftClient.getInstance();
+        this.renderBatch = renderBatch;
     }
     
     /**
@@ -56,19 +63,18 @@ public class LayerRenderer {
             matrices.translate(-cameraPos.x, -cameraPos.y, -cameraPos.z);
             
             // Configurar renderizado
-            setupRenderState();
+            renderBatch.applyState();
             
             // Renderizar capa actual
-            renderLayer(matrices, layerGuide, layerGuide.getCurrentLayer(), COLOR_CURRENT_LAYER);
+            layerMesh.update(layerGuide);
+            int currentLayer = layerGuide.getCurrentLayer();
+            renderLayers(matrices, schematic, currentLayer, currentLayer, COLOR_CURRENT_LAYER);
             
             // Renderizar indicadores si está habilitado
             if (showIndicators) {
                 renderLayerIndicators(matrices, layerGuide);
             }
             
-            // Restaurar estado
-            restoreRenderState();
-            
             matrices.pop();
             
         } catch (Exception e) {
@@ -77,54 +83,30 @@ public class LayerRenderer {
     }
     
     /**
-     * Renderiza una capa específica
+     * Renderiza un rango de capas, ambas incluidas, con un color
+     * Espera la matriz ya trasladada a la cámara
      */
-    private void renderLayer(MatrixStack matrices, LayerGuide layerGuide, int layerNumber, float[] color) {
-        LoadedSchematic schematic = layerGuide.getSchematic();
-        Map<BlockPos, SchematicBlock> layerBlocks = layerGuide.getLayerBlocks(layerNumber);
-        
-        if (layerBlocks.isEmpty()) {
+    private void renderLayers(MatrixStack matrices, LoadedSchematic schematic,
+                              int fromLayer, int toLayer, float[] color) {
+        if (fromLayer > toLayer) {
             return;
         }
         
-        Tessellator tessellator = Tessellator.getInstance();
-        BufferBuilder buffer = tessellator.begin();
-        
-        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
-        
         BlockPos placement = schematic.getPlacement();
         
-        for (Map.Entry<BlockPos, SchematicBlock> entry : layerBlocks.entrySet()) {
-            BlockPos relativePos = entry.getKey();
-            BlockPos worldPos = placement.add(relativePos);
-            
-            renderBlockHighlight(buffer, matrices.peek().getPositionMatrix(), worldPos, color);
-        }
+        matrices.push();
+        matrices.translate(placement.getX(), placement.getY(), placement.getZ());
         
-        tessellator.draw();
-    }
-    
-    /**
-     * Renderiza el resaltado de un bloque
-     */
-    private void renderBlockHighlight(BufferBuilder buffer, Matrix4f matrix, BlockPos pos, float[] color) {
-        float x1 = pos.getX();
-        float y1 = pos.getY();
-        float z1 = pos.getZ();
-        float x2 = x1 + 1.0f;
-        float y2 = y1 + 1.0f;
-        float z2 = z1 + 1.0f;
+        RenderSystem.setShaderColor(color[0], color[1], color[2], color[3] * layerOpacity);
+        int quads = layerMesh.drawLayers(matrices.peek().getPositionMatrix(), RenderSystem.getProjectionMatrix(), fromLayer, toLayer);
+        RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
         
-        float r = color[0];
-        float g = color[1];
-        float b = color[2];
-        float a = color[3] * layerOpacity;
+        if (quads > 0) {
+            renderBatch.recordMeshDraws(1);
+            renderBatch.getStats().addVertices(quads * 4);
+        }
         
-        // Solo renderizar cara superior para la guía
-        buffer.vertex(matrix, x1, y2, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y2, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z1).color(r, g, b, a);
+        matrices.pop();
     }
     
     /**
@@ -152,11 +134,7 @@ public class LayerRenderer {
      */
     private void renderLayerLine(MatrixStack matrices, BlockPos placement, int y, net.minecraft.util.math.Vec3i size) {
         Matrix4f matrix = matrices.peek().getPositionMatrix();
-        
-        Tessellator tessellator = Tessellator.getInstance();
-        BufferBuilder buffer = tessellator.begin();
-        
-        buffer.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
+        BufferBuilder buffer = renderBatch.lines(LINE_WIDTH);
         
         float x1 = placement.getX() - 1;
         float x2 = placement.getX() + size.getX() + 1;
@@ -171,8 +149,6 @@ public class LayerRenderer {
         addLine(buffer, matrix, x2, yf, z1, x2, yf, z2, color);
         addLine(buffer, matrix, x2, yf, z2, x1, yf, z2, color);
         addLine(buffer, matrix, x1, yf, z2, x1, yf, z1, color);
-        
-        tessellator.draw();
     }
     
     /**
@@ -188,59 +164,51 @@ public class LayerRenderer {
     
     /**
      * Renderiza todas las capas con diferentes opacidades
+     * Respeta las opciones de la guía: solo la capa actual, o sin las capas anteriores
      */
     public void renderAllLayers(WorldRenderContext context, LayerGuide layerGuide) {
         if (!enabled || layerGuide == null) {
             return;
         }
         
+        LoadedSchematic schematic = layerGuide.getSchematic();
+        if (schematic == null || !schematic.isVisible()) {
+            return;
+        }
+        
         int currentLayer = layerGuide.getCurrentLayer();
         int totalLayers = layerGuide.getTotalLayers();
         
         MatrixStack matrices = context.matrixStack();
+        Vec3d cameraPos = context.camera().getPos();
         
         matrices.push();
+        matrices.translate(-cameraPos.x, -cameraPos.y, -cameraPos.z);
         
-        setupRenderState();
+        renderBatch.applyState();
+        layerMesh.update(layerGuide);
         
-        // Renderizar capas anteriores con baja opacidad
-        for (int i = 0; i < currentLayer; i++) {
-            renderLayer(matrices, layerGuide, i, COLOR_PREV_LAYER);
+        // Renderizar capas anteriores con baja opacidad, todas en una sola llamada
+        if (!layerGuide.isShowCurrentOnly() && !layerGuide.isHideBelow()) {
+            renderLayers(matrices, schematic, 0, currentLayer - 1, COLOR_PREV_LAYER);
         }
         
         // Renderizar capa actual
-        renderLayer(matrices, layerGuide, currentLayer, COLOR_CURRENT_LAYER);
+        renderLayers(matrices, schematic, currentLayer, currentLayer, COLOR_CURRENT_LAYER);
         
         // Renderizar siguiente capa con opacidad media
-        if (currentLayer + 1 < totalLayers) {
-            renderLayer(matrices, layerGuide, currentLayer + 1, COLOR_NEXT_LAYER);
+        if (!layerGuide.isShowCurrentOnly() && currentLayer + 1 < totalLayers) {
+            renderLayers(matrices, schematic, currentLayer + 1, currentLayer + 1, COLOR_NEXT_LAYER);
         }
         
-        restoreRenderState();
-        
         matrices.pop();
     }
     
     /**
-     * Configura el estado de renderizado
-     */
-    private void setupRenderState() {
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-        RenderSystem.disableDepthTest();
-        RenderSystem.depthMask(false);
-        RenderSystem.lineWidth(2.0f);
-        RenderSystem.setShader(GameRenderer::getPositionColorShader);
-    }
-    
-    /**
-     * Restaura el estado de renderizado
+     * Libera la malla de capas de la GPU
      */
-    private void restoreRenderState() {
-        RenderSystem.enableDepthTest();
-        RenderSystem.depthMask(true);
-        RenderSystem.disableBlend();
-        RenderSystem.lineWidth(1.0f);
+    public void clearMesh() {
+        layerMesh.close();
     }
     
     // Getters y Setters
@@ -0,0 +1,213 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Mallado simplificado de una sección para verla de lejos
+ * Agrupa los bloques en celdas de 2, 4 u 8 bloques de lado y dibuja cada celda como un cubo
+ * con el estado mayoritario de sus bloques no vacíos
+ * No es seguro entre hilos: cada hilo de mallado debe usar su propia instancia
+ */
+public class LodMesher extends SectionMesher {
+    
+    // Nivel más bajo de detalle: celdas de 8x8x8
+    public static final int MAX_LEVEL = 3;
+    
+    private static final Direction[] FACES = Direction.values();
+    
+    private final int level;
+    private final int cellSize;
+    private final int cells;
+    private final int paddedCells;
+    
+    // Estado de cada celda, con un borde de una celda tomado de las secciones vecinas
+    private final int[] cellStates;
+    
+    // Recuento de estados dentro de una celda para la votación
+    private final int[] voteStates;
+    private final int[] voteCounts;
+    
+    /**
+     * @param level nivel de detalle de 1 a MAX_LEVEL; cada nivel dobla el lado de la celda
+     */
+    public LodMesher(int level) {
+        if (level < 1 || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("Nivel de detalle fuera de rango: " + level);
+        }
+        
+        this.level = level;
+        this.cellSize = 1 << level;
+        this.cells = SchematicStorage.SECTION_SIZE >> level;
+        this.paddedCells = cells + 2;
+        this.cellStates = new int[paddedCells * paddedCells * paddedCells];
+        this.voteStates = new int[cellSize * cellSize * cellSize];
+        this.voteCounts = new int[cellSize * cellSize * cellSize];
+    }
+    
+    public int getLevel() {
+        return level;
+    }
+    
+    @Override
+    public void mesh(SectionSnapshot snapshot, QuadSink sink) {
+        downsample(snapshot);
+        
+        RenderStateTable table = RenderStateTable.getInstance();
+        int baseX = snapshot.getSectionX() << 4;
+        int baseY = snapshot.getSectionY() << 4;
+        int baseZ = snapshot.getSectionZ() << 4;
+        int far = cellSize - 1;
+        
+        for (int cy = 0; cy < cells; cy++) {
+            for (int cz = 0; cz < cells; cz++) {
+                for (int cx = 0; cx < cells; cx++) {
+                    int state = cellStates[cellIndex(cx, cy, cz)];
+                    if (state == StatePalette.EMPTY) {
+                        continue;
+                    }
+                    
+                    int x = baseX + cx * cellSize;
+                    int y = baseY + cy * cellSize;
+                    int z = baseZ + cz * cellSize;
+                    
+                    for (Direction face : FACES) {
+                        int neighbour = cellStates[cellIndex(
+                            cx + face.getOffsetX(), cy + face.getOffsetY(), cz + face.getOffsetZ())];
+                        if (!isFaceVisible(table, state, neighbour)) {
+                            continue;
+                        }
+                        
+                        // Las caras positivas cubren la última capa de bloques de la celda
+                        sink.quad(face,
+                            face == Direction.EAST ? x + far : x,
+                            face == Direction.UP ? y + far : y,
+                            face == Direction.SOUTH ? z + far : z,
+                            cellSize, cellSize, state);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Calcula el estado de cada celda de la sección y el borde de las vecinas
+     */
+    private void downsample(SectionSnapshot snapshot) {
+        // Una celda se dibuja si tiene al menos una capa completa de bloques; así los muros
+        // y suelos de un bloque de grosor se conservan y los bloques sueltos desaparecen
+        int minFilled = cellSize * cellSize;
+        
+        for (int cy = 0; cy < cells; cy++) {
+            for (int cz = 0; cz < cells; cz++) {
+                for (int cx = 0; cx < cells; cx++) {
+                    cellStates[cellIndex(cx, cy, cz)] = vote(snapshot, cx, cy, cz, minFilled);
+                }
+            }
+        }
+        
+        for (Direction face : FACES) {
+            for (int a = 0; a < cells; a++) {
+                for (int b = 0; b < cells; b++) {
+                    switch (face) {
+                        case DOWN -> cellStates[cellIndex(a, -1, b)] = borderState(snapshot, face, a, b);
+                        case UP -> cellStates[cellIndex(a, cells, b)] = borderState(snapshot, face, a, b);
+                        case NORTH -> cellStates[cellIndex(a, b, -1)] = borderState(snapshot, face, a, b);
+                        case SOUTH -> cellStates[cellIndex(a, b, cells)] = borderState(snapshot, face, a, b);
+                        case WEST -> cellStates[cellIndex(-1, b, a)] = borderState(snapshot, face, a, b);
+                        case EAST -> cellStates[cellIndex(cells, b, a)] = borderState(snapshot, face, a, b);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Estado mayoritario entre los bloques no vacíos de una celda, o vacío si tiene muy pocos
+     */
+    private int vote(SectionSnapshot snapshot, int cx, int cy, int cz, int minFilled) {
+        int distinct = 0;
+        int filled = 0;
+        int x0 = cx * cellSize;
+        int y0 = cy * cellSize;
+        int z0 = cz * cellSize;
+        
+        for (int y = y0; y < y0 + cellSize; y++) {
+            for (int z = z0; z < z0 + cellSize; z++) {
+                for (int x = x0; x < x0 + cellSize; x++) {
+                    int state = snapshot.getState(x, y, z);
+                    if (state == StatePalette.EMPTY) {
+                        continue;
+                    }
+                    
+                    filled++;
+                    
+                    int i = 0;
+                    while (i < distinct && voteStates[i] != state) {
+                        i++;
+                    }
+                    if (i == distinct) {
+                        voteStates[distinct] = state;
+                        voteCounts[distinct++] = 0;
+                    }
+                    voteCounts[i]++;
+                }
+            }
+        }
+        
+        if (filled < minFilled) {
+            return StatePalette.EMPTY;
+        }
+        
+        int best = 0;
+        for (int i = 1; i < distinct; i++) {
+            if (voteCounts[i] > voteCounts[best]) {
+                best = i;
+            }
+        }
+        return voteStates[best];
+    }
+    
+    /**
+     * Celda vecina a través de una cara de la sección
+     * Solo se conoce la capa de bloques que toca la sección, así que la celda solo tapa
+     * si toda esa capa es opaca
+     *
+     * @param a primera coordenada de la celda en la cara (ejes U y V de QuadSink)
+     * @param b segunda coordenada de la celda en la cara
+     */
+    private int borderState(SectionSnapshot snapshot, Direction face, int a, int b) {
+        RenderStateTable table = RenderStateTable.getInstance();
+        int first = StatePalette.EMPTY;
+        
+        for (int i = 0; i < cellSize; i++) {
+            for (int j = 0; j < cellSize; j++) {
+                int u = a * cellSize + i;
+                int v = b * cellSize + j;
+                int state = switch (face) {
+                    case DOWN -> snapshot.getState(u, -1, v);
+                    case UP -> snapshot.getState(u, 16, v);
+                    case NORTH -> snapshot.getState(u, v, -1);
+                    case SOUTH -> snapshot.getState(u, v, 16);
+                    case WEST -> snapshot.getState(-1, v, u);
+                    case EAST -> snapshot.getState(16, v, u);
+                };
+                
+                if (!table.isOpaque(state)) {
+                    return StatePalette.EMPTY;
+                }
+                if (first == StatePalette.EMPTY) {
+                    first = state;
+                }
+            }
+        }
+        
+        return first;
+    }
+    
+    private int cellIndex(int cx, int cy, int cz) {
+        return ((cy + 1) * paddedCells + (cz + 1)) * paddedCells + (cx + 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,314 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.Neomatica;
+
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.BufferAllocator;
+
+import org.joml.Matrix4f;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Hilos de mallado en segundo plano
+ * Los trabajadores generan los vértices en memoria de CPU; el hilo de render solo sube
+ * los buffers terminados, con un límite de tiempo por frame
+ * Las posiciones de los vértices son relativas al origen de cada sección
+ * También reordenan las caras de las mallas ya subidas cuando se mueve la cámara
+ */
+public class MeshBuilderPool {
+    
+    // Tamaño inicial del buffer de cada sección; crece según haga falta
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    
+    // Trabajos en vuelo por hilo; limita la memoria de copias y buffers pendientes
+    private static final int MAX_PENDING_PER_WORKER = 8;
+    
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Queue<MeshBuildResult> finished = new ConcurrentLinkedQueue<>();
+    private final Queue<SortResult> finishedSorts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    
+    public MeshBuilderPool() {
+        int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        AtomicInteger threadCount = new AtomicInteger();
+        
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "Neomatica-Mesher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        this.maxPending = workers * MAX_PENDING_PER_WORKER;
+    }
+    
+    /**
+     * Indica si se pueden encolar más trabajos en este momento
+     */
+    public boolean canSubmit() {
+        return pending.get() < maxPending;
+    }
+    
+    /**
+     * Encola el mallado de caras de una sección
+     *
+     * @param generation generación de la sección al tomar la copia; el resultado se descarta
+     *                   si la sección ha cambiado antes de subirlo
+     * @param mesher     mallador nuevo para este trabajo; solo lo usará el hilo trabajador
+     */
+    public void submit(RenderSection target, int generation, SectionSnapshot snapshot,
+                       SectionMesher mesher, IntUnaryOperator colorOf) {
+        execute(target, generation, allocator -> buildQuads(allocator, snapshot, mesher, colorOf));
+    }
+    
+    /**
+     * Encola el mallado de aristas de una sección para el modo esqueleto
+     */
+    public void submitEdges(RenderSection target, int generation, SectionSnapshot snapshot, IntUnaryOperator colorOf) {
+        execute(target, generation, allocator -> buildEdges(allocator, snapshot, colorOf));
+    }
+    
+    /**
+     * Encola la reordenación de las caras de una malla ya subida, de atrás hacia delante
+     *
+     * @param meshGeneration generación de la malla; el resultado se descarta si se sustituye antes
+     * @param cameraX        X de la cámara relativa al origen de la sección
+     * @param cameraY        Y de la cámara relativa al origen de la sección
+     * @param cameraZ        Z de la cámara relativa al origen de la sección
+     */
+    public void submitSort(RenderSection target, int meshGeneration, float[] quadCentroids,
+                           VertexFormat.IndexType indexType, float cameraX, float cameraY, float cameraZ) {
+        pending.incrementAndGet();
+        
+        try {
+            executor.execute(() -> {
+                BufferAllocator allocator = new BufferAllocator(quadCentroids.length * 2 * indexType.size);
+                BufferAllocator.CloseableBuffer indices = null;
+                
+                try {
+                    indices = QuadSorter.sort(allocator, quadCentroids, indexType, cameraX, cameraY, cameraZ);
+                } catch (Exception e) {
+                    Neomatica.LOGGER.error("Error al ordenar las caras de una sección del schematic", e);
+                }
+                
+                finishedSorts.add(new SortResult(target, meshGeneration, indices, allocator));
+                pending.decrementAndGet();
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            target.failSort(meshGeneration);
+        }
+    }
+    
+    /**
+     * Ejecuta un cálculo en los hilos de mallado, como la envolvente del modo fantasma
+     * No cuenta para el límite de trabajos pendientes; el hilo de render consulta el
+     * resultado cuando esté listo en lugar de esperarlo
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> job) {
+        try {
+            return CompletableFuture.supplyAsync(job, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private void execute(RenderSection target, int generation, Function<BufferAllocator, BuiltBuffer> builder) {
+        pending.incrementAndGet();
+        long submitNanos = System.nanoTime();
+        
+        try {
+            executor.execute(() -> build(target, generation, builder, submitNanos));
+        } catch (RejectedExecutionException e) {
+            // El pool ya se cerró: la sección se queda como estaba
+            pending.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Genera los vértices de una sección en un hilo trabajador
+     */
+    private void build(RenderSection target, int generation, Function<BufferAllocator, BuiltBuffer> builder,
+                       long submitNanos) {
+        BufferAllocator allocator = new BufferAllocator(INITIAL_BUFFER_SIZE);
+        BuiltBuffer builtBuffer = null;
+        float[] quadCentroids = null;
+        
+        try {
+            builtBuffer = builder.apply(allocator);
+            quadCentroids = QuadSorter.collectCentroids(builtBuffer);
+        } catch (Exception e) {
+            Neomatica.LOGGER.error("Error al mallar una sección del schematic", e);
+        }
+        
+        finished.add(new MeshBuildResult(target, generation, builtBuffer, quadCentroids, allocator, submitNanos));
+        pending.decrementAndGet();
+    }
+    
+    /**
+     * Caras de la sección, en el formato compacto si su shader está cargado
+     * Los vértices son opacos: la opacidad de cada colocación la pone el color del shader
+     */
+    private static BuiltBuffer buildQuads(BufferAllocator allocator, SectionSnapshot snapshot,
+                                          SectionMesher mesher, IntUnaryOperator colorOf) {
+        int originX = snapshot.getSectionX() << 4;
+        int originY = snapshot.getSectionY() << 4;
+        int originZ = snapshot.getSectionZ() << 4;
+        
+        if (PackedVertexFormat.isAvailable()) {
+            PackedQuadSink sink = new PackedQuadSink(allocator, colorOf, 1.0f, originX, originY, originZ);
+            mesher.mesh(snapshot, sink);
+            return sink.end();
+        }
+        
+        BufferBuilder buffer = new BufferBuilder(allocator, VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+        Matrix4f toSection = new Matrix4f().translation(-originX, -originY, -originZ);
+        // Ajustar ligeramente las caras para evitar z-fighting con el mundo
+        VertexQuadSink sink = new VertexQuadSink(buffer, toSection, colorOf, 1.0f, false, 0.001f);
+        mesher.mesh(snapshot, sink);
+        return buffer.endNullable();
+    }
+    
+    /**
+     * Líneas de las aristas de la superficie de la sección
+     */
+    private static BuiltBuffer buildEdges(BufferAllocator allocator, SectionSnapshot snapshot, IntUnaryOperator colorOf) {
+        BufferBuilder buffer = new BufferBuilder(allocator, VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
+        new EdgeMesher().mesh(snapshot, buffer, colorOf);
+        return buffer.endNullable();
+    }
+    
+    /**
+     * Sube los resultados terminados hasta agotar el tiempo indicado
+     * Primero los índices reordenados, que son pequeños, y después las mallas
+     * Debe llamarse desde el hilo de render
+     *
+     * @param stats estadísticas en las que anotar los bytes subidos y la latencia de cada malla
+     * @return número de secciones subidas
+     */
+    public int uploadFinished(long deadlineNanos, RenderStats stats) {
+        int uploaded = 0;
+        
+        SortResult sortResult;
+        while ((sortResult = finishedSorts.poll()) != null) {
+            try {
+                if (sortResult.indices == null) {
+                    sortResult.target.failSort(sortResult.meshGeneration);
+                } else if (sortResult.target.acceptSort(sortResult.meshGeneration)) {
+                    stats.addUpload(sortResult.indices.getBuffer().remaining(), -1L);
+                    sortResult.target.getMesh().uploadIndices(sortResult.indices);
+                }
+            } finally {
+                sortResult.allocator.close();
+            }
+            
+            if (System.nanoTime() >= deadlineNanos) {
+                return uploaded;
+            }
+        }
+        
+        MeshBuildResult result;
+        while ((result = finished.poll()) != null) {
+            try {
+                if (result.target.acceptBuild(result.generation)) {
+                    long bytes = result.builtBuffer != null ? result.builtBuffer.getBuffer().remaining() : 0L;
+                    stats.addUpload(bytes, System.nanoTime() - result.submitNanos);
+                    result.target.getMesh().upload(result.builtBuffer);
+                    result.target.onMeshUploaded(result.generation, result.quadCentroids,
+                        result.builtBuffer != null ? result.builtBuffer.getDrawParameters().indexType() : null);
+                    uploaded++;
+                } else if (result.builtBuffer != null) {
+                    result.builtBuffer.close();
+                }
+            } finally {
+                result.allocator.close();
+            }
+            
+            if (System.nanoTime() >= deadlineNanos) {
+                break;
+            }
+        }
+        
+        return uploaded;
+    }
+    
+    /**
+     * Número de trabajos encolados o en curso
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+    
+    /**
+     * Detiene los hilos y libera los resultados que no se llegaron a subir
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        
+        MeshBuildResult result;
+        while ((result = finished.poll()) != null) {
+            if (result.builtBuffer != null) {
+                result.builtBuffer.close();
+            }
+            result.allocator.close();
+        }
+        
+        SortResult sortResult;
+        while ((sortResult = finishedSorts.poll()) != null) {
+            sortResult.allocator.close();
+        }
+    }
+    
+    /**
+     * Vértices de una sección listos para subir
+     */
+    private static class MeshBuildResult {
+        final RenderSection target;
+        final int generation;
+        final BuiltBuffer builtBuffer;
+        final float[] quadCentroids;
+        final BufferAllocator allocator;
+        final long submitNanos;
+        
+        MeshBuildResult(RenderSection target, int generation, BuiltBuffer builtBuffer,
+                        float[] quadCentroids, BufferAllocator allocator, long submitNanos) {
+            this.target = target;
+            this.generation = generation;
+            this.builtBuffer = builtBuffer;
+            this.quadCentroids = quadCentroids;
+            this.allocator = allocator;
+            this.submitNanos = submitNanos;
+        }
+    }
+    
+    /**
+     * Índices reordenados de una malla listos para subir
+     */
+    private static class SortResult {
+        final RenderSection target;
+        final int meshGeneration;
+        final BufferAllocator.CloseableBuffer indices;
+        final BufferAllocator allocator;
+        
+        SortResult(RenderSection target, int meshGeneration, BufferAllocator.CloseableBuffer indices,
+                   BufferAllocator allocator) {
+            this.target = target;
+            this.meshGeneration = meshGeneration;
+            this.indices = indices;
+            this.allocator = allocator;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.config.ConfigHandler;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Estrategia de mallado de las secciones del schematic
+ */
+public enum MeshingMode {
+    CULLED("Caras visibles"),
+    GREEDY("Caras fusionadas");
+    
+    private final String displayName;
+    
+    MeshingMode(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Crea un mallador para este modo
+     *
+     * @param mergeKey clave por id de estado; el modo GREEDY fusiona caras con la misma clave
+     */
+    public SectionMesher createMesher(IntUnaryOperator mergeKey) {
+        return switch (this) {
+            case CULLED -> new SectionMesher();
+            case GREEDY -> new GreedyMesher(mergeKey);
+        };
+    }
+    
+    /**
+     * Obtiene el modo según la calidad de preview de la configuración
+     * Calidad baja y media fusionan caras; la alta dibuja cada cara de bloque
+     */
+    public static MeshingMode fromQuality(int previewQuality) {
+        return previewQuality >= 2 ? CULLED : GREEDY;
+    }
+    
+    /**
+     * Obtiene el modo según la calidad de preview configurada actualmente
+     */
+    public static MeshingMode fromConfig() {
+        ConfigHandler configHandler = Neomatica.getInstance().getConfigHandler();
+        if (configHandler == null) {
+            return CULLED;
+        }
+        return fromQuality(configHandler.getConfig().getPreviewQuality());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicVerifier;
+import com.neokey.neomatica.schematic.SchematicVerifier.Result;
+import com.neokey.neomatica.schematic.SchematicVerifier.SectionResult;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.Map;
+
+/**
+ * Mallado del modo diferencias: solo las posiciones ausentes o con otro estado según el verificador
+ * La copia de la sección no lleva ids de la paleta sino la clasificación de cada posición
+ * (ordinal de SchematicVerifier.Result, 0 si no hay nada que dibujar), que es también la clave
+ * de color; así una obra terminada no tiene ningún vértice
+ * No es seguro entre hilos: cada hilo de mallado debe usar su propia instancia
+ */
+public class MismatchMesher extends SectionMesher {
+    
+    private static final Direction[] FACES = Direction.values();
+    
+    private static final int MISSING_COLOR = 0xFF33CCFF;
+    private static final int WRONG_STATE_COLOR = 0xFFFF7F00;
+    
+    @Override
+    public void mesh(SectionSnapshot snapshot, QuadSink sink) {
+        int baseX = snapshot.getSectionX() << 4;
+        int baseY = snapshot.getSectionY() << 4;
+        int baseZ = snapshot.getSectionZ() << 4;
+        
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                int index = SectionSnapshot.index(0, y, z);
+                for (int x = 0; x < 16; x++, index += SectionSnapshot.STRIDE_X) {
+                    int category = snapshot.getState(index);
+                    if (category == StatePalette.EMPTY) {
+                        continue;
+                    }
+                    
+                    // Los grupos de la misma clase solo muestran su contorno
+                    for (Direction face : FACES) {
+                        if (snapshot.getState(index + SectionSnapshot.neighbourOffset(face)) != category) {
+                            sink.quad(face, baseX + x, baseY + y, baseZ + z, 1, 1, category);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Color ARGB de una clase de diferencia
+     */
+    public static int colorOf(int category) {
+        if (category == Result.MISSING.ordinal()) {
+            return MISSING_COLOR;
+        }
+        if (category == Result.WRONG_STATE.ordinal()) {
+            return WRONG_STATE_COLOR;
+        }
+        return 0;
+    }
+    
+    /**
+     * Copia las diferencias de una sección del schematic y de su borde en una colocación
+     *
+     * @return null si la sección no tiene ninguna posición ausente o con otro estado
+     */
+    public static SectionSnapshot capture(SchematicVerifier verifier, LoadedSchematic placement,
+                                          int sectionX, int sectionY, int sectionZ) {
+        Map<Long, SectionResult> results = verifier.getSectionResults(placement);
+        BlockPos origin = placement.getPlacement();
+        BlockBox box = getWorldBox(placement, sectionX, sectionY, sectionZ, 0);
+        
+        if (!hasMismatches(results, box)) {
+            return null;
+        }
+        
+        return SectionSnapshot.capture(sectionX, sectionY, sectionZ,
+            new ResultLookup(results, origin.getX(), origin.getY(), origin.getZ()));
+    }
+    
+    /**
+     * Revisión de las clasificaciones que afectan a la malla de una sección, incluido el borde
+     */
+    public static long revisionOf(SchematicVerifier verifier, LoadedSchematic placement, RenderSection section) {
+        BlockBox box = getWorldBox(placement, section.getMinX() >> 4, section.getMinY() >> 4, section.getMinZ() >> 4, 1);
+        return verifier.getAreaRevision(placement, box);
+    }
+    
+    private static boolean hasMismatches(Map<Long, SectionResult> results, BlockBox box) {
+        for (int sx = box.getMinX() >> 4; sx <= box.getMaxX() >> 4; sx++) {
+            for (int sy = box.getMinY() >> 4; sy <= box.getMaxY() >> 4; sy++) {
+                for (int sz = box.getMinZ() >> 4; sz <= box.getMaxZ() >> 4; sz++) {
+                    SectionResult result = results.get(ChunkSectionPos.asLong(sx, sy, sz));
+                    if (result != null
+                            && result.getCount(Result.MISSING) + result.getCount(Result.WRONG_STATE) > 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Caja en coordenadas de mundo de una sección del schematic, ampliada en un margen
+     */
+    private static BlockBox getWorldBox(LoadedSchematic placement, int sectionX, int sectionY, int sectionZ, int margin) {
+        BlockPos origin = placement.getPlacement();
+        int minX = origin.getX() + (sectionX << 4);
+        int minY = origin.getY() + (sectionY << 4);
+        int minZ = origin.getZ() + (sectionZ << 4);
+        return new BlockBox(minX - margin, minY - margin, minZ - margin,
+            minX + 15 + margin, minY + 15 + margin, minZ + 15 + margin);
+    }
+    
+    /**
+     * Lee las clasificaciones del verificador recordando la última sección del mundo consultada
+     */
+    private static class ResultLookup implements SectionSnapshot.StateSource {
+        private final Map<Long, SectionResult> results;
+        private final int originX;
+        private final int originY;
+        private final int originZ;
+        
+        private long lastKey = Long.MIN_VALUE;
+        private SectionResult lastResult;
+        
+        ResultLookup(Map<Long, SectionResult> results, int originX, int originY, int originZ) {
+            this.results = results;
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+        }
+        
+        @Override
+        public int getState(int x, int y, int z) {
+            int worldX = originX + x;
+            int worldY = originY + y;
+            int worldZ = originZ + z;
+            
+            long key = ChunkSectionPos.asLong(worldX >> 4, worldY >> 4, worldZ >> 4);
+            if (key != lastKey) {
+                lastKey = key;
+                lastResult = results.get(key);
+            }
+            if (lastResult == null) {
+                return StatePalette.EMPTY;
+            }
+            
+            Result result = lastResult.getResult(worldX, worldY, worldZ);
+            return result == Result.MISSING || result == Result.WRONG_STATE ? result.ordinal() : StatePalette.EMPTY;
+        }
+    }
+}
\ No newline at end of file
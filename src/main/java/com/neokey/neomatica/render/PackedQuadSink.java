@@ -0,0 +1,150 @@
+package com.neokey.neomatica.render;
+
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.util.BufferAllocator;
+import net.minecraft.util.math.Direction;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Escribe las caras de una sección en el formato compacto de PackedVertexFormat
+ * Las posiciones se guardan relativas al origen de la sección; el margen contra
+ * el z-fighting lo aplica el shader a lo largo de la normal de la cara
+ */
+public class PackedQuadSink implements QuadSink {
+    
+    private static final int QUAD_SIZE = PackedVertexFormat.VERTEX_SIZE * 4;
+    
+    private final BufferAllocator allocator;
+    private final IntUnaryOperator colorOf;
+    private final int alpha;
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    
+    private long pointer;
+    private int quadCount = 0;
+    
+    /**
+     * @param allocator destino de los vértices; no debe tener datos pendientes
+     * @param colorOf   color RGB de un id de estado
+     * @param alpha     opacidad de todas las caras
+     * @param originX   X local del primer bloque de la sección
+     * @param originY   Y local del primer bloque de la sección
+     * @param originZ   Z local del primer bloque de la sección
+     */
+    public PackedQuadSink(BufferAllocator allocator, IntUnaryOperator colorOf, float alpha,
+                          int originX, int originY, int originZ) {
+        this.allocator = allocator;
+        this.colorOf = colorOf;
+        this.alpha = Math.round(Math.max(0.0f, Math.min(1.0f, alpha)) * 255.0f);
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+    }
+    
+    @Override
+    public void quad(Direction face, int x, int y, int z, int width, int height, int state) {
+        int color = colorOf.applyAsInt(state);
+        int faceBits = face.ordinal();
+        
+        // Extensión del rectángulo según los ejes U y V de la cara
+        int sizeX = face.getAxis() == Direction.Axis.X ? 1 : width;
+        int sizeY = face.getAxis() == Direction.Axis.Y ? 1 : height;
+        int sizeZ = switch (face.getAxis()) {
+            case X -> width;
+            case Y -> height;
+            case Z -> 1;
+        };
+        
+        int x1 = x - originX;
+        int y1 = y - originY;
+        int z1 = z - originZ;
+        int x2 = x1 + sizeX;
+        int y2 = y1 + sizeY;
+        int z2 = z1 + sizeZ;
+        
+        pointer = allocator.allocate(QUAD_SIZE);
+        
+        // Mismo orden de esquinas que VertexQuadSink
+        switch (face) {
+            case DOWN -> {
+                vertex(x1, y1, z1, faceBits, color);
+                vertex(x2, y1, z1, faceBits, color);
+                vertex(x2, y1, z2, faceBits, color);
+                vertex(x1, y1, z2, faceBits, color);
+            }
+            case UP -> {
+                vertex(x1, y2, z1, faceBits, color);
+                vertex(x1, y2, z2, faceBits, color);
+                vertex(x2, y2, z2, faceBits, color);
+                vertex(x2, y2, z1, faceBits, color);
+            }
+            case NORTH -> {
+                vertex(x1, y1, z1, faceBits, color);
+                vertex(x1, y2, z1, faceBits, color);
+                vertex(x2, y2, z1, faceBits, color);
+                vertex(x2, y1, z1, faceBits, color);
+            }
+            case SOUTH -> {
+                vertex(x1, y1, z2, faceBits, color);
+                vertex(x2, y1, z2, faceBits, color);
+                vertex(x2, y2, z2, faceBits, color);
+                vertex(x1, y2, z2, faceBits, color);
+            }
+            case WEST -> {
+                vertex(x1, y1, z1, faceBits, color);
+                vertex(x1, y1, z2, faceBits, color);
+                vertex(x1, y2, z2, faceBits, color);
+                vertex(x1, y2, z1, faceBits, color);
+            }
+            case EAST -> {
+                vertex(x2, y1, z1, faceBits, color);
+                vertex(x2, y2, z1, faceBits, color);
+                vertex(x2, y2, z2, faceBits, color);
+                vertex(x2, y1, z2, faceBits, color);
+            }
+        }
+        
+        quadCount++;
+    }
+    
+    private void vertex(int x, int y, int z, int faceBits, int color) {
+        MemoryUtil.memPutByte(pointer, (byte) x);
+        MemoryUtil.memPutByte(pointer + 1, (byte) y);
+        MemoryUtil.memPutByte(pointer + 2, (byte) z);
+        MemoryUtil.memPutByte(pointer + 3, (byte) faceBits);
+        MemoryUtil.memPutByte(pointer + 4, (byte) (color >> 16));
+        MemoryUtil.memPutByte(pointer + 5, (byte) (color >> 8));
+        MemoryUtil.memPutByte(pointer + 6, (byte) color);
+        MemoryUtil.memPutByte(pointer + 7, (byte) alpha);
+        pointer += PackedVertexFormat.VERTEX_SIZE;
+    }
+    
+    /**
+     * Número de caras emitidas hasta ahora
+     */
+    public int getQuadCount() {
+        return quadCount;
+    }
+    
+    /**
+     * Cierra los vértices escritos en un buffer listo para subir, o null si no hay caras
+     */
+    public BuiltBuffer end() {
+        BufferAllocator.CloseableBuffer data = quadCount > 0 ? allocator.getAllocated() : null;
+        if (data == null) {
+            return null;
+        }
+        
+        int vertexCount = quadCount * 4;
+        VertexFormat.DrawMode drawMode = VertexFormat.DrawMode.QUADS;
+        int indexCount = drawMode.getIndexCount(vertexCount);
+        
+        return new BuiltBuffer(data, new BuiltBuffer.DrawParameters(
+            PackedVertexFormat.FORMAT, vertexCount, indexCount, drawMode, VertexFormat.IndexType.smallestFor(indexCount)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.Neomatica;
+
+import net.fabricmc.fabric.api.client.rendering.v1.CoreShaderRegistrationCallback;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormatElement;
+import net.minecraft.util.Identifier;
+
+/**
+ * Formato de vértice compacto de las mallas de sección: 8 bytes por vértice
+ * en lugar de los 16 de POSITION_COLOR
+ * Posición relativa a la sección en bytes (0 a 16), un byte con la cara y el color RGBA empaquetado
+ * Se dibuja con el shader core neomatica:schematic_packed, registrado a través de Fabric
+ */
+public final class PackedVertexFormat {
+    
+    // Id libre en el registro de elementos de vértice (vanilla usa del 0 al 5)
+    private static final int POSITION_ELEMENT_ID = 24;
+    
+    /**
+     * X, Y y Z de la esquina en bloques desde el origen de la sección, y la cara en el cuarto byte
+     */
+    public static final VertexFormatElement PACKED_POSITION = VertexFormatElement.register(
+        POSITION_ELEMENT_ID, 0, VertexFormatElement.ComponentType.UBYTE, VertexFormatElement.Usage.POSITION, 4);
+    
+    public static final VertexFormat FORMAT = VertexFormat.builder()
+        .add("Position", PACKED_POSITION)
+        .add("Color", VertexFormatElement.COLOR)
+        .build();
+    
+    public static final int VERTEX_SIZE = 8;
+    
+    public static final Identifier SHADER_ID = Identifier.of(Neomatica.MOD_ID, "schematic_packed");
+    
+    private static ShaderProgram shader;
+    
+    private PackedVertexFormat() {
+    }
+    
+    /**
+     * Registra el shader; se vuelve a cargar con cada recarga de recursos
+     */
+    public static void registerShader() {
+        CoreShaderRegistrationCallback.EVENT.register(context ->
+            context.register(SHADER_ID, FORMAT, program -> shader = program));
+    }
+    
+    /**
+     * Shader del formato compacto, o null si todavía no se ha cargado
+     */
+    public static ShaderProgram getShader() {
+        return shader;
+    }
+    
+    /**
+     * Indica si las mallas nuevas pueden usar el formato compacto
+     * Si el shader no está cargado se usa POSITION_COLOR con el shader de vanilla
+     */
+    public static boolean isAvailable() {
+        return shader != null;
+    }
+}
\ No newline at end of file
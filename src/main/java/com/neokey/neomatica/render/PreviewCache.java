@@ -0,0 +1,383 @@
+package com.neokey.neomatica.render;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.client.NeomaticaClient;
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicStorage;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.render.VertexSorter;
+import net.minecraft.client.util.BufferAllocator;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.Vec3i;
+
+import org.joml.Matrix4f;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Preview 3D de un schematic dibujado en un framebuffer propio
+ * Las mallas se construyen una vez por contenido y la imagen se reutiliza mientras no cambien
+ * la vista, el tamaño o los bloques; con la cámara quieta cada frame solo dibuja una textura
+ * Mientras la vista cambia se dibuja una malla simplificada y, cuando se detiene, se vuelve
+ * a dibujar una vez con todo el detalle
+ * La malla completa se construye en los hilos de MeshBuilderPool sobre una copia del
+ * almacenamiento; hasta que llega se sigue mostrando la imagen simplificada
+ * Las caras se dibujan opacas con prueba de profundidad y la opacidad se aplica al componer
+ * la imagen, así no depende del orden de las caras
+ * Debe usarse desde el hilo de render
+ */
+public class PreviewCache implements AutoCloseable {
+    
+    // Opacidad del preview al componerlo en la GUI
+    private static final float ALPHA = 0.9f;
+    
+    // Lado en celdas por encima del cual la vista en movimiento usa niveles de detalle
+    private static final int INTERACTIVE_CELLS = 64;
+    
+    // Profundidad de la proyección; cubre el schematic girado con el zoom máximo
+    private static final float DEPTH = 10000.0f;
+    
+    private final MinecraftClient client;
+    private final SchematicMesh fullMesh = new SchematicMesh();
+    private final SchematicMesh lodMesh = new SchematicMesh();
+    
+    private Framebuffer framebuffer;
+    
+    // Contenido con el que se construyeron las mallas
+    private SchematicStorage storage;
+    private long contentVersion;
+    private int colorVersion;
+    private MeshingMode meshingMode;
+    private boolean fullMeshBuilt = false;
+    private boolean lodMeshBuilt = false;
+    
+    // Malla completa en construcción en los hilos de mallado
+    private CompletableFuture<BuiltMesh> pendingFullMesh;
+    private int lodLevel = 0;
+    
+    // Vista de la imagen guardada en el framebuffer
+    private final Matrix4f imageView = new Matrix4f();
+    private boolean imageValid = false;
+    private boolean imageFull = false;
+    private int imageWidth;
+    private int imageHeight;
+    
+    public PreviewCache() {
+        this.client = MinecraftClient.getInstance();
+    }
+    
+    /**
+     * Dibuja el preview en la GUI, volviendo a generar la imagen solo si hace falta
+     *
+     * @param matrices    matrices de la GUI
+     * @param view        transformación del schematic a unidades de GUI relativas al centro del viewport
+     * @param interactive true mientras el usuario arrastra; fuerza la malla simplificada
+     */
+    public void draw(MatrixStack matrices, LoadedSchematic schematic, Matrix4f view,
+                     int x, int y, int width, int height, boolean interactive) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        
+        RenderSystem.assertOnRenderThread();
+        syncContent(schematic);
+        
+        double scaleFactor = client.getWindow().getScaleFactor();
+        int pixelWidth = Math.max(1, (int) Math.ceil(width * scaleFactor));
+        int pixelHeight = Math.max(1, (int) Math.ceil(height * scaleFactor));
+        
+        boolean viewChanged = !imageValid || !view.equals(imageView)
+            || pixelWidth != imageWidth || pixelHeight != imageHeight;
+        
+        if (viewChanged) {
+            // Un cambio de vista sobre una imagen ya hecha suele ser el principio de un movimiento
+            boolean full = !interactive && !imageValid;
+            renderImage(view, width, height, pixelWidth, pixelHeight, full);
+        } else if (!interactive && !imageFull && isFullMeshReady()) {
+            renderImage(view, width, height, pixelWidth, pixelHeight, true);
+        }
+        
+        // Sin ninguna malla lista todavía se mantiene la imagen anterior, si la hay
+        if (framebuffer != null) {
+            drawImage(matrices, x, y, width, height);
+        }
+    }
+    
+    /**
+     * Descarta las mallas y la imagen si han cambiado los bloques, los colores o el mallado
+     */
+    private void syncContent(LoadedSchematic schematic) {
+        RenderStateTable stateTable = RenderStateTable.getInstance();
+        stateTable.syncColorScheme();
+        
+        SchematicStorage currentStorage = schematic.getStorage();
+        MeshingMode currentMeshingMode = MeshingMode.fromConfig();
+        
+        if (currentStorage == storage
+                && currentStorage.getVersion() == contentVersion
+                && stateTable.getColorVersion() == colorVersion
+                && currentMeshingMode == meshingMode) {
+            return;
+        }
+        
+        storage = currentStorage;
+        contentVersion = currentStorage.getVersion();
+        colorVersion = stateTable.getColorVersion();
+        meshingMode = currentMeshingMode;
+        discardPendingFullMesh();
+        fullMeshBuilt = false;
+        lodMeshBuilt = false;
+        lodLevel = chooseLodLevel(schematic);
+        imageValid = false;
+    }
+    
+    /**
+     * Nivel de detalle de la vista en movimiento: el menor que deja el lado mayor en
+     * INTERACTIVE_CELLS celdas o menos
+     */
+    private static int chooseLodLevel(LoadedSchematic schematic) {
+        Vec3i size = schematic.getSize();
+        if (size == null) {
+            return 0;
+        }
+        
+        int maxDimension = Math.max(size.getX(), Math.max(size.getY(), size.getZ()));
+        int level = 0;
+        while (level < LodMesher.MAX_LEVEL && (maxDimension >> level) > INTERACTIVE_CELLS) {
+            level++;
+        }
+        return level;
+    }
+    
+    /**
+     * Dibuja el schematic en el framebuffer con la malla completa o, mientras esta se
+     * construye, con la simplificada
+     */
+    private void renderImage(Matrix4f view, int width, int height, int pixelWidth, int pixelHeight, boolean full) {
+        SchematicMesh mesh = null;
+        boolean meshFull = false;
+        
+        if ((full || lodLevel == 0) && isFullMeshReady()) {
+            mesh = fullMesh;
+            meshFull = true;
+        } else if (lodLevel > 0) {
+            mesh = getLodMesh();
+        }
+        
+        if (mesh == null) {
+            return;
+        }
+        
+        if (framebuffer == null) {
+            framebuffer = new SimpleFramebuffer(pixelWidth, pixelHeight, true, MinecraftClient.IS_SYSTEM_MAC);
+        } else if (framebuffer.textureWidth != pixelWidth || framebuffer.textureHeight != pixelHeight) {
+            framebuffer.resize(pixelWidth, pixelHeight, MinecraftClient.IS_SYSTEM_MAC);
+        }
+        
+        framebuffer.setClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC);
+        framebuffer.beginWrite(true);
+        
+        RenderSystem.backupProjectionMatrix();
+        Matrix4f projection = new Matrix4f().setOrtho(
+            -width / 2.0f, width / 2.0f, height / 2.0f, -height / 2.0f, -DEPTH, DEPTH);
+        RenderSystem.setProjectionMatrix(projection, VertexSorter.BY_Z);
+        
+        // Caras opacas con profundidad: solo queda la más cercana de cada píxel, sin importar el orden
+        RenderSystem.disableBlend();
+        RenderSystem.enableDepthTest();
+        RenderSystem.depthMask(true);
+        RenderSystem.setShader(GameRenderer::getPositionColorShader);
+        
+        mesh.draw(view, projection);
+        
+        RenderSystem.restoreProjectionMatrix();
+        
+        client.getFramebuffer().beginWrite(true);
+        
+        imageView.set(view);
+        imageWidth = pixelWidth;
+        imageHeight = pixelHeight;
+        imageValid = true;
+        imageFull = meshFull;
+    }
+    
+    /**
+     * Copia la imagen del framebuffer en la GUI con la opacidad del preview
+     */
+    private void drawImage(MatrixStack matrices, int x, int y, int width, int height) {
+        Matrix4f matrix = matrices.peek().getPositionMatrix();
+        
+        // La imagen está premultiplicada (el fondo es transparente): se escalan color y alfa
+        RenderSystem.enableBlend();
+        RenderSystem.blendFunc(GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+        RenderSystem.setShaderColor(ALPHA, ALPHA, ALPHA, ALPHA);
+        RenderSystem.setShaderTexture(0, framebuffer.getColorAttachment());
+        RenderSystem.setShader(GameRenderer::getPositionTexShader);
+        
+        // La textura del framebuffer tiene el origen abajo
+        BufferBuilder buffer = Tessellator.getInstance().begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+        buffer.vertex(matrix, x, y, 0.0f).texture(0.0f, 1.0f);
+        buffer.vertex(matrix, x, y + height, 0.0f).texture(0.0f, 0.0f);
+        buffer.vertex(matrix, x + width, y + height, 0.0f).texture(1.0f, 0.0f);
+        buffer.vertex(matrix, x + width, y, 0.0f).texture(1.0f, 1.0f);
+        BufferRenderer.drawWithGlobalProgram(buffer.end());
+        
+        RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.disableBlend();
+    }
+    
+    /**
+     * Indica si la malla completa está subida; la primera vez encarga su construcción a los
+     * hilos de mallado y, cuando termina, la sube
+     */
+    private boolean isFullMeshReady() {
+        if (fullMeshBuilt) {
+            return true;
+        }
+        
+        if (pendingFullMesh == null) {
+            // Copia propia: el almacenamiento se puede editar mientras se malla
+            SchematicStorage snapshot = storage.copy();
+            SectionMesher mesher = meshingMode.createMesher(RenderStateTable.getInstance()::getColor);
+            MeshBuilderPool pool = NeomaticaClient.getInstance().getWorldRenderer().getSchematicRenderer().getMeshBuilderPool();
+            pendingFullMesh = pool.supply(() -> BuiltMesh.build(snapshot, mesher));
+            return false;
+        }
+        
+        if (!pendingFullMesh.isDone()) {
+            return false;
+        }
+        
+        CompletableFuture<BuiltMesh> built = pendingFullMesh;
+        pendingFullMesh = null;
+        
+        try (BuiltMesh mesh = built.join()) {
+            fullMesh.upload(mesh.builtBuffer);
+        } catch (CompletionException | CancellationException e) {
+            // Se queda sin caras en lugar de volver a intentarlo en cada frame
+            Neomatica.LOGGER.error("Error al mallar el preview del schematic", e);
+            fullMesh.upload(null);
+        }
+        
+        fullMeshBuilt = true;
+        return true;
+    }
+    
+    /**
+     * Descarta la malla completa en construcción; si ya terminó, libera sus vértices
+     */
+    private void discardPendingFullMesh() {
+        if (pendingFullMesh != null) {
+            pendingFullMesh.thenAccept(BuiltMesh::discard);
+            pendingFullMesh = null;
+        }
+    }
+    
+    /**
+     * Malla simplificada, construyéndola la primera vez que se pide
+     * Tiene como mucho INTERACTIVE_CELLS celdas por lado, así que se malla en el hilo de render
+     */
+    private SchematicMesh getLodMesh() {
+        if (!lodMeshBuilt) {
+            try (BuiltMesh mesh = BuiltMesh.build(storage, new LodMesher(lodLevel))) {
+                lodMesh.upload(mesh.builtBuffer);
+            }
+            lodMeshBuilt = true;
+        }
+        return lodMesh;
+    }
+    
+    /**
+     * Descarta la imagen guardada; la próxima llamada a draw la vuelve a generar
+     */
+    public void invalidate() {
+        imageValid = false;
+    }
+    
+    /**
+     * Libera el framebuffer y las mallas
+     */
+    @Override
+    public void close() {
+        if (framebuffer != null) {
+            framebuffer.delete();
+            framebuffer = null;
+        }
+        discardPendingFullMesh();
+        fullMesh.close();
+        lodMesh.close();
+        storage = null;
+        fullMeshBuilt = false;
+        lodMeshBuilt = false;
+        imageValid = false;
+    }
+    
+    /**
+     * Vértices de todas las secciones en coordenadas locales del schematic, aún sin subir
+     * Al cerrarlo se libera la memoria del constructor; los vértices ya los consumió upload()
+     */
+    private static class BuiltMesh implements AutoCloseable {
+        final BufferAllocator allocator;
+        final BuiltBuffer builtBuffer;
+        
+        private BuiltMesh(BufferAllocator allocator, BuiltBuffer builtBuffer) {
+            this.allocator = allocator;
+            this.builtBuffer = builtBuffer;
+        }
+        
+        /**
+         * Malla las secciones con caras opacas; puede llamarse desde cualquier hilo
+         * si nadie más modifica el almacenamiento
+         */
+        static BuiltMesh build(SchematicStorage storage, SectionMesher mesher) {
+            BufferAllocator allocator = new BufferAllocator(256 * 1024);
+            
+            try {
+                BufferBuilder buffer = new BufferBuilder(allocator, VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+                VertexQuadSink sink = new VertexQuadSink(buffer, null, RenderStateTable.getInstance()::getColor, 1.0f, true, 0.0f);
+                
+                for (SchematicStorage.Section section : storage.getSections()) {
+                    if (!section.isEmpty()) {
+                        mesher.mesh(storage, section, sink);
+                    }
+                }
+                
+                return new BuiltMesh(allocator, buffer.endNullable());
+            } catch (RuntimeException e) {
+                allocator.close();
+                throw e;
+            }
+        }
+        
+        /**
+         * Libera una malla que no se llegó a subir
+         */
+        void discard() {
+            if (builtBuffer != null) {
+                builtBuffer.close();
+            }
+            allocator.close();
+        }
+        
+        @Override
+        public void close() {
+            allocator.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.neokey.neomatica.render;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Destino de las caras generadas por los mallados
+ * Cada cara es un rectángulo alineado a bloques en coordenadas locales del schematic
+ */
+public interface QuadSink {
+    
+    /**
+     * Añade una cara
+     *
+     * @param face   dirección hacia la que mira la cara
+     * @param x      X del primer bloque cubierto por la cara
+     * @param y      Y del primer bloque cubierto por la cara
+     * @param z      Z del primer bloque cubierto por la cara
+     * @param width  bloques que cubre en el eje U de la cara (X para caras Y y Z, Z para caras X)
+     * @param height bloques que cubre en el eje V de la cara (Z para caras Y, Y para caras X y Z)
+     * @param state  id de estado global de los bloques de la cara
+     */
+    void quad(Direction face, int x, int y, int z, int width, int height, int state);
+}
\ No newline at end of file
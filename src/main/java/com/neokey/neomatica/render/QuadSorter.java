@@ -0,0 +1,115 @@
+package com.neokey.neomatica.render;
+
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.util.BufferAllocator;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Ordenación de las caras de una malla de atrás hacia delante respecto a la cámara
+ * Los centros de las caras se calculan una vez al mallar; reordenar solo escribe un buffer
+ * de índices nuevo, sin tocar los vértices
+ * Todas las posiciones son relativas al origen de la sección
+ */
+public final class QuadSorter {
+    
+    private QuadSorter() {
+    }
+    
+    /**
+     * Calcula el centro de cada cara de un buffer de caras (x, y, z por cara)
+     *
+     * @return null si el buffer no es de caras o tiene menos de dos
+     */
+    public static float[] collectCentroids(BuiltBuffer builtBuffer) {
+        if (builtBuffer == null) {
+            return null;
+        }
+        
+        BuiltBuffer.DrawParameters parameters = builtBuffer.getDrawParameters();
+        int quadCount = parameters.vertexCount() / 4;
+        if (parameters.mode() != VertexFormat.DrawMode.QUADS || quadCount < 2) {
+            return null;
+        }
+        
+        ByteBuffer buffer = builtBuffer.getBuffer();
+        long address = MemoryUtil.memAddress(buffer);
+        int stride = parameters.format().getVertexSizeByte();
+        boolean packed = parameters.format() == PackedVertexFormat.FORMAT;
+        float[] centroids = new float[quadCount * 3];
+        
+        for (int quad = 0; quad < quadCount; quad++) {
+            float x = 0.0f;
+            float y = 0.0f;
+            float z = 0.0f;
+            
+            for (int corner = 0; corner < 4; corner++) {
+                long vertex = address + (long) (quad * 4 + corner) * stride;
+                if (packed) {
+                    x += MemoryUtil.memGetByte(vertex) & 0xFF;
+                    y += MemoryUtil.memGetByte(vertex + 1) & 0xFF;
+                    z += MemoryUtil.memGetByte(vertex + 2) & 0xFF;
+                } else {
+                    x += MemoryUtil.memGetFloat(vertex);
+                    y += MemoryUtil.memGetFloat(vertex + 4);
+                    z += MemoryUtil.memGetFloat(vertex + 8);
+                }
+            }
+            
+            centroids[quad * 3] = x * 0.25f;
+            centroids[quad * 3 + 1] = y * 0.25f;
+            centroids[quad * 3 + 2] = z * 0.25f;
+        }
+        
+        return centroids;
+    }
+    
+    /**
+     * Escribe los índices de las caras de la más lejana a la más cercana a la cámara
+     * Cada cara usa los mismos seis índices que el buffer secuencial de vanilla
+     *
+     * @param indexType tipo de índice de la malla; debe coincidir con el que se subió
+     */
+    public static BufferAllocator.CloseableBuffer sort(BufferAllocator allocator, float[] centroids,
+                                                      VertexFormat.IndexType indexType,
+                                                      float cameraX, float cameraY, float cameraZ) {
+        int quadCount = centroids.length / 3;
+        
+        // Distancia (positiva, así sus bits se ordenan como enteros) en la parte alta e índice en la baja
+        long[] keys = new long[quadCount];
+        for (int quad = 0; quad < quadCount; quad++) {
+            float dx = centroids[quad * 3] - cameraX;
+            float dy = centroids[quad * 3 + 1] - cameraY;
+            float dz = centroids[quad * 3 + 2] - cameraZ;
+            keys[quad] = ((long) Float.floatToRawIntBits(dx * dx + dy * dy + dz * dz) << 32) | quad;
+        }
+        Arrays.sort(keys);
+        
+        long pointer = allocator.allocate(quadCount * 6 * indexType.size);
+        
+        for (int i = quadCount - 1; i >= 0; i--) {
+            int first = (int) keys[i] * 4;
+            pointer = putIndex(pointer, indexType, first);
+            pointer = putIndex(pointer, indexType, first + 1);
+            pointer = putIndex(pointer, indexType, first + 2);
+            pointer = putIndex(pointer, indexType, first + 2);
+            pointer = putIndex(pointer, indexType, first + 3);
+            pointer = putIndex(pointer, indexType, first);
+        }
+        
+        return allocator.getAllocated();
+    }
+    
+    private static long putIndex(long pointer, VertexFormat.IndexType indexType, int index) {
+        if (indexType == VertexFormat.IndexType.SHORT) {
+            MemoryUtil.memPutShort(pointer, (short) index);
+        } else {
+            MemoryUtil.memPutInt(pointer, index);
+        }
+        return pointer + indexType.size;
+    }
+}
\ No newline at end of file
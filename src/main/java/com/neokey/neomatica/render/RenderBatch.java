@@ -0,0 +1,255 @@
+package com.neokey.neomatica.render;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.BufferAllocator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lote de dibujo de las superposiciones del mundo en un frame
+ * Configura el estado de render una sola vez para todos los renderizadores (schematics,
+ * selección y capas) y acumula la geometría inmediata por capa (modo de dibujo y grosor de
+ * línea) para dibujar cada capa con una sola llamada al final del frame
+ * También cuenta las llamadas de dibujo y los cambios de estado para depuración, y abre y
+ * cierra el frame de las estadísticas de render
+ */
+public class RenderBatch implements AutoCloseable {
+    
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    
+    // Capas en orden de creación; se dibujan en ese orden y se reutilizan entre frames
+    private final List<Layer> layers = new ArrayList<>();
+    private final RenderStats stats = new RenderStats();
+    
+    private boolean inFrame = false;
+    private boolean stateApplied = false;
+    private float lineWidth = 1.0f;
+    
+    // Contadores del frame en curso
+    private int meshDrawCalls = 0;
+    private int batchedDrawCalls = 0;
+    private int stateChanges = 0;
+    
+    // Contadores del último frame terminado
+    private int lastMeshDrawCalls = 0;
+    private int lastBatchedDrawCalls = 0;
+    private int lastStateChanges = 0;
+    
+    /**
+     * Empieza un frame: el estado se aplicará con la primera llamada que lo necesite
+     * Debe llamarse desde el hilo de render
+     */
+    public void beginFrame() {
+        RenderSystem.assertOnRenderThread();
+        
+        inFrame = true;
+        stateApplied = false;
+        meshDrawCalls = 0;
+        batchedDrawCalls = 0;
+        stateChanges = 0;
+        stats.beginFrame();
+    }
+    
+    /**
+     * Aplica el estado común de las superposiciones si aún no está aplicado en este frame:
+     * mezcla alfa, sin prueba ni escritura de profundidad y shader de posición y color
+     */
+    public void applyState() {
+        if (stateApplied) {
+            return;
+        }
+        
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.disableDepthTest();
+        RenderSystem.depthMask(false);
+        RenderSystem.setShader(GameRenderer::getPositionColorShader);
+        RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
+        stateApplied = true;
+        stateChanges++;
+    }
+    
+    /**
+     * Cambia el grosor de las líneas solo si es distinto del actual
+     */
+    public void setLineWidth(float width) {
+        applyState();
+        
+        if (width != lineWidth) {
+            RenderSystem.lineWidth(width);
+            lineWidth = width;
+            stateChanges++;
+        }
+    }
+    
+    /**
+     * Buffer de líneas (DEBUG_LINES, posición y color) con el grosor indicado
+     * Los vértices deben ir ya transformados por la matriz de la cámara
+     */
+    public BufferBuilder lines(float width) {
+        return getBuffer(VertexFormat.DrawMode.DEBUG_LINES, width);
+    }
+    
+    /**
+     * Buffer de caras translúcidas (QUADS, posición y color)
+     * Los vértices deben ir ya transformados por la matriz de la cámara
+     */
+    public BufferBuilder quads() {
+        return getBuffer(VertexFormat.DrawMode.QUADS, 1.0f);
+    }
+    
+    private BufferBuilder getBuffer(VertexFormat.DrawMode drawMode, float width) {
+        Layer layer = null;
+        for (Layer candidate : layers) {
+            if (candidate.drawMode == drawMode && candidate.lineWidth == width) {
+                layer = candidate;
+                break;
+            }
+        }
+        
+        if (layer == null) {
+            layer = new Layer(drawMode, width);
+            layers.add(layer);
+        }
+        
+        if (layer.buffer == null) {
+            layer.buffer = new BufferBuilder(layer.allocator, drawMode, VertexFormats.POSITION_COLOR);
+        }
+        return layer.buffer;
+    }
+    
+    /**
+     * Anota las llamadas de dibujo de mallas hechas con el estado del lote
+     */
+    public void recordMeshDraws(int count) {
+        meshDrawCalls += count;
+    }
+    
+    /**
+     * Dibuja la geometría acumulada, una llamada por capa, restaura el estado y cierra el frame
+     */
+    public void endFrame() {
+        RenderSystem.assertOnRenderThread();
+        
+        for (Layer layer : layers) {
+            if (layer.buffer == null) {
+                continue;
+            }
+            
+            BuiltBuffer builtBuffer = layer.buffer.endNullable();
+            layer.buffer = null;
+            if (builtBuffer == null) {
+                continue;
+            }
+            
+            if (batchedDrawCalls == 0) {
+                // Las mallas dibujadas antes pueden haber dejado el color de su colocación
+                applyState();
+                RenderSystem.setShader(GameRenderer::getPositionColorShader);
+                RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
+            }
+            setLineWidth(layer.lineWidth);
+            stats.addVertices(builtBuffer.getDrawParameters().vertexCount());
+            BufferRenderer.drawWithGlobalProgram(builtBuffer);
+            batchedDrawCalls++;
+        }
+        
+        if (stateApplied) {
+            RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
+            RenderSystem.lineWidth(1.0f);
+            RenderSystem.depthMask(true);
+            RenderSystem.enableDepthTest();
+            RenderSystem.disableBlend();
+            lineWidth = 1.0f;
+            stateApplied = false;
+        }
+        
+        lastMeshDrawCalls = meshDrawCalls;
+        lastBatchedDrawCalls = batchedDrawCalls;
+        lastStateChanges = stateChanges;
+        inFrame = false;
+        stats.endFrame(meshDrawCalls + batchedDrawCalls, stateChanges);
+    }
+    
+    /**
+     * Indica si hay un frame en curso entre beginFrame y endFrame
+     */
+    public boolean isInFrame() {
+        return inFrame;
+    }
+    
+    /**
+     * Estadísticas de render del frame, compartidas por todos los renderizadores del lote
+     */
+    public RenderStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Llamadas de dibujo del último frame: mallas más capas del lote
+     */
+    public int getDrawCalls() {
+        return lastMeshDrawCalls + lastBatchedDrawCalls;
+    }
+    
+    /**
+     * Llamadas de dibujo de mallas de secciones y de capas del último frame
+     */
+    public int getMeshDrawCalls() {
+        return lastMeshDrawCalls;
+    }
+    
+    /**
+     * Llamadas de dibujo de la geometría inmediata acumulada en el último frame
+     */
+    public int getBatchedDrawCalls() {
+        return lastBatchedDrawCalls;
+    }
+    
+    /**
+     * Cambios de estado de render del último frame
+     */
+    public int getStateChanges() {
+        return lastStateChanges;
+    }
+    
+    /**
+     * Libera la memoria de las capas
+     */
+    @Override
+    public void close() {
+        for (Layer layer : layers) {
+            if (layer.buffer != null) {
+                BuiltBuffer builtBuffer = layer.buffer.endNullable();
+                if (builtBuffer != null) {
+                    builtBuffer.close();
+                }
+            }
+            layer.allocator.close();
+        }
+        layers.clear();
+    }
+    
+    /**
+     * Geometría acumulada con un mismo modo de dibujo y grosor de línea
+     */
+    private static class Layer {
+        final VertexFormat.DrawMode drawMode;
+        final float lineWidth;
+        final BufferAllocator allocator = new BufferAllocator(INITIAL_BUFFER_SIZE);
+        BufferBuilder buffer;
+        
+        Layer(VertexFormat.DrawMode drawMode, float lineWidth) {
+            this.drawMode = drawMode;
+            this.lineWidth = lineWidth;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,336 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.List;
+
+/**
+ * Sección de render de 16^3 de un schematic, con su propia malla y caja envolvente
+ * La caja está en coordenadas locales del schematic
+ */
+public class RenderSection implements AutoCloseable {
+    
+    // Margen relativo alrededor de cada límite de distancia antes de cambiar de nivel
+    private static final double LOD_HYSTERESIS = 0.15;
+    
+    // Movimiento de la cámara que obliga a reordenar las caras; crece con la distancia
+    private static final double SORT_MIN_MOVEMENT = 1.0;
+    private static final double SORT_MOVEMENT_PER_BLOCK = 1.0 / 16.0;
+    
+    private final long key;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final SchematicMesh mesh = new SchematicMesh();
+    
+    // Aviso a los datos de render cuando la malla pasa de vacía a tener caras o al revés
+    private final Runnable onDrawableChanged;
+    private boolean drawable = false;
+    
+    private boolean dirty = true;
+    private int lodLevel = 0;
+    
+    // Revisión de las diferencias con el mundo con la que se malló, en el modo diferencias
+    private long mismatchRevision = Long.MIN_VALUE;
+    private boolean closed = false;
+    
+    // Aumenta con cada mallado encargado; los resultados de generaciones anteriores se descartan
+    private int generation = 0;
+    
+    // Orden de las caras de la malla subida: centros, generación y cámara de la última ordenación
+    private float[] quadCentroids;
+    private VertexFormat.IndexType indexType;
+    private int meshGeneration = -1;
+    private boolean sortPending = false;
+    private double sortedCameraX = Double.NaN;
+    private double sortedCameraY;
+    private double sortedCameraZ;
+    
+    // Distancia a la cámara del frame actual, para dibujar de atrás hacia delante
+    private double viewDistanceSq;
+    
+    /**
+     * @param onDrawableChanged se llama en el hilo de render cuando cambia isDrawable()
+     */
+    public RenderSection(long key, Runnable onDrawableChanged) {
+        this.key = key;
+        this.onDrawableChanged = onDrawableChanged;
+        this.minX = SchematicStorage.unpackX(key) << 4;
+        this.minY = SchematicStorage.unpackY(key) << 4;
+        this.minZ = SchematicStorage.unpackZ(key) << 4;
+    }
+    
+    /**
+     * Caja envolvente en coordenadas de mundo para una colocación
+     */
+    public Box getWorldBox(BlockPos placement) {
+        double x = placement.getX() + minX;
+        double y = placement.getY() + minY;
+        double z = placement.getZ() + minZ;
+        return new Box(x, y, z, x + SchematicStorage.SECTION_SIZE, y + SchematicStorage.SECTION_SIZE, z + SchematicStorage.SECTION_SIZE);
+    }
+    
+    /**
+     * Distancia al cuadrado desde un punto al punto más cercano de la sección
+     */
+    public double squaredDistanceTo(BlockPos placement, Vec3d point) {
+        return squaredDistance(getWorldBox(placement), point);
+    }
+    
+    /**
+     * Distancia al cuadrado desde un punto a la sección en la colocación más cercana
+     */
+    public double squaredDistanceTo(List<BlockPos> placements, Vec3d point) {
+        double nearest = Double.MAX_VALUE;
+        for (BlockPos placement : placements) {
+            nearest = Math.min(nearest, squaredDistanceTo(placement, point));
+        }
+        return nearest;
+    }
+    
+    /**
+     * Distancia al cuadrado desde un punto al punto más cercano de una caja
+     */
+    public static double squaredDistance(Box box, Vec3d point) {
+        double dx = Math.max(0.0, Math.max(box.minX - point.x, point.x - box.maxX));
+        double dy = Math.max(0.0, Math.max(box.minY - point.y, point.y - box.maxY));
+        double dz = Math.max(0.0, Math.max(box.minZ - point.z, point.z - box.maxZ));
+        return dx * dx + dy * dy + dz * dz;
+    }
+    
+    /**
+     * Origen de la sección en coordenadas locales del schematic; las mallas son relativas a él
+     */
+    public int getMinX() {
+        return minX;
+    }
+    
+    public int getMinY() {
+        return minY;
+    }
+    
+    public int getMinZ() {
+        return minZ;
+    }
+    
+    public long getKey() {
+        return key;
+    }
+    
+    public SchematicMesh getMesh() {
+        return mesh;
+    }
+    
+    public boolean isDirty() {
+        return dirty;
+    }
+    
+    public void markDirty() {
+        this.dirty = true;
+    }
+    
+    /**
+     * Indica si la malla subida tiene caras que dibujar
+     */
+    public boolean isDrawable() {
+        return drawable;
+    }
+    
+    /**
+     * Nivel de detalle de la malla: 0 es bloque a bloque y cada nivel dobla el lado de la celda
+     */
+    public int getLodLevel() {
+        return lodLevel;
+    }
+    
+    /**
+     * Elige el nivel de detalle según la distancia a la cámara de la colocación más cercana
+     * El nivel N empieza a lodDistance * 2^(N-1) bloques; para cambiar de nivel hay que pasar
+     * el límite con un margen, así la sección no alterna entre dos mallas al moverse cerca de él
+     *
+     * @param lodDistance distancia del primer nivel simplificado, o 0 o menos para desactivarlos
+     * @return true si el nivel ha cambiado y hay que volver a mallar
+     */
+    public boolean updateLodLevel(List<BlockPos> placements, Vec3d cameraPos, double lodDistance) {
+        int target = 0;
+        
+        if (lodDistance > 0.0) {
+            double distance = Math.sqrt(squaredDistanceTo(placements, cameraPos));
+            target = lodLevel;
+            
+            while (target < LodMesher.MAX_LEVEL
+                    && distance > lodThreshold(target + 1, lodDistance) * (1.0 + LOD_HYSTERESIS)) {
+                target++;
+            }
+            while (target > 0 && distance < lodThreshold(target, lodDistance) * (1.0 - LOD_HYSTERESIS)) {
+                target--;
+            }
+        }
+        
+        if (target == lodLevel) {
+            return false;
+        }
+        
+        lodLevel = target;
+        return true;
+    }
+    
+    /**
+     * Guarda la revisión de las diferencias con el mundo que afectan a la sección
+     *
+     * @return true si ha cambiado y hay que volver a mallar
+     */
+    public boolean updateMismatchRevision(long revision) {
+        if (revision == mismatchRevision) {
+            return false;
+        }
+        
+        mismatchRevision = revision;
+        return true;
+    }
+    
+    private static double lodThreshold(int level, double lodDistance) {
+        return lodDistance * (1 << (level - 1));
+    }
+    
+    /**
+     * Colocación más cercana a un punto
+     */
+    public BlockPos nearestPlacement(List<BlockPos> placements, Vec3d point) {
+        BlockPos nearest = placements.get(0);
+        double nearestDistance = Double.MAX_VALUE;
+        for (BlockPos placement : placements) {
+            double distance = squaredDistanceTo(placement, point);
+            if (distance < nearestDistance) {
+                nearest = placement;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+    
+    /**
+     * Guarda los centros de las caras de la malla recién subida
+     * El orden anterior ya no vale: la malla nueva sale con el orden del mallado
+     *
+     * @param quadCentroids centros de las caras, o null si la malla no se ordena
+     */
+    public void onMeshUploaded(int buildGeneration, float[] quadCentroids, VertexFormat.IndexType indexType) {
+        this.meshGeneration = buildGeneration;
+        this.quadCentroids = quadCentroids;
+        this.indexType = indexType;
+        this.sortPending = false;
+        this.sortedCameraX = Double.NaN;
+        
+        if (drawable == mesh.isEmpty()) {
+            drawable = !drawable;
+            onDrawableChanged.run();
+        }
+    }
+    
+    /**
+     * Sustituye la malla por una vacía como resultado del último mallado encargado
+     */
+    public void clearMesh() {
+        mesh.upload(null);
+        onMeshUploaded(generation, null, null);
+    }
+    
+    /**
+     * Indica si hay que reordenar las caras para una cámara en coordenadas relativas al origen
+     * de la sección: cuando aún no se han ordenado o la cámara se ha movido más que el umbral
+     */
+    public boolean needsSort(double cameraX, double cameraY, double cameraZ) {
+        if (quadCentroids == null || sortPending || mesh.isEmpty()) {
+            return false;
+        }
+        if (Double.isNaN(sortedCameraX)) {
+            return true;
+        }
+        
+        double half = SchematicStorage.SECTION_SIZE / 2.0;
+        double distance = Math.sqrt(squared(cameraX - half, cameraY - half, cameraZ - half));
+        double threshold = Math.max(SORT_MIN_MOVEMENT, distance * SORT_MOVEMENT_PER_BLOCK);
+        
+        return squared(cameraX - sortedCameraX, cameraY - sortedCameraY, cameraZ - sortedCameraZ) > threshold * threshold;
+    }
+    
+    /**
+     * Empieza una ordenación para la cámara indicada y devuelve la generación de la malla
+     */
+    public int beginSort(double cameraX, double cameraY, double cameraZ) {
+        sortPending = true;
+        sortedCameraX = cameraX;
+        sortedCameraY = cameraY;
+        sortedCameraZ = cameraZ;
+        return meshGeneration;
+    }
+    
+    /**
+     * Indica si una ordenación terminada corresponde todavía a la malla subida
+     */
+    public boolean acceptSort(int sortGeneration) {
+        if (sortGeneration != meshGeneration) {
+            return false;
+        }
+        
+        sortPending = false;
+        return !closed && !mesh.isEmpty();
+    }
+    
+    /**
+     * Anota que una ordenación falló o no se pudo encargar, para poder pedir otra
+     * Se conserva la cámara de beginSort: no se reintenta hasta que la cámara se mueva
+     */
+    public void failSort(int sortGeneration) {
+        if (sortGeneration == meshGeneration) {
+            sortPending = false;
+        }
+    }
+    
+    public float[] getQuadCentroids() {
+        return quadCentroids;
+    }
+    
+    public VertexFormat.IndexType getIndexType() {
+        return indexType;
+    }
+    
+    public double getViewDistance() {
+        return viewDistanceSq;
+    }
+    
+    public void setViewDistance(double viewDistanceSq) {
+        this.viewDistanceSq = viewDistanceSq;
+    }
+    
+    private static double squared(double x, double y, double z) {
+        return x * x + y * y + z * z;
+    }
+    
+    /**
+     * Empieza un mallado nuevo y devuelve su generación
+     */
+    public int beginBuild() {
+        this.dirty = false;
+        return ++generation;
+    }
+    
+    /**
+     * Indica si el resultado de un mallado sigue siendo el último encargado
+     */
+    public boolean acceptBuild(int buildGeneration) {
+        return !closed && buildGeneration == generation;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        mesh.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,267 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.config.ConfigHandler;
+import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.MapColor;
+import net.minecraft.registry.Registries;
+import net.minecraft.state.property.Property;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockView;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Propiedades de renderizado por id de estado de la paleta global: opacidad y color ARGB
+ * Se resuelven contra el registro de bloques la primera vez que se piden y se comparten
+ * entre todos los renderizadores y los hilos de mallado
+ * Se usa el estado con las propiedades del schematic: un pistón extendido no es un cubo
+ * opaco y el color de algunos bloques depende de sus propiedades (el eje de un tronco)
+ */
+public class RenderStateTable {
+    
+    private static final RenderStateTable INSTANCE = new RenderStateTable();
+    
+    private static final byte UNRESOLVED = 0;
+    private static final byte OPAQUE = 1;
+    private static final byte TRANSPARENT = 2;
+    
+    // Color de los bloques sin color de mapa (cristal, bloques desconocidos...)
+    private static final int FALLBACK_COLOR = 0xFFCCCCCC;
+    
+    private volatile byte[] flags = new byte[256];
+    
+    // Colores ARGB; 0 indica sin resolver porque el alfa siempre es 0xFF
+    private volatile int[] colors = new int[256];
+    private volatile ColorScheme colorScheme = ColorScheme.DEFAULT;
+    private volatile int colorVersion = 0;
+    
+    private RenderStateTable() {
+    }
+    
+    public static RenderStateTable getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Indica si el estado es un cubo completo opaco que tapa las caras vecinas
+     */
+    public boolean isOpaque(int state) {
+        if (state == StatePalette.EMPTY) {
+            return false;
+        }
+        
+        byte[] current = flags;
+        byte flag = state < current.length ? current[state] : UNRESOLVED;
+        if (flag == UNRESOLVED) {
+            flag = resolveFlag(state);
+        }
+        
+        return flag == OPAQUE;
+    }
+    
+    /**
+     * Obtiene el color ARGB de un estado según el esquema de colores actual
+     */
+    public int getColor(int state) {
+        if (state == StatePalette.EMPTY) {
+            return 0;
+        }
+        
+        int[] current = colors;
+        int color = state < current.length ? current[state] : 0;
+        if (color == 0) {
+            color = resolveColor(state);
+        }
+        
+        return color;
+    }
+    
+    /**
+     * Color ARGB de una clave de estado ("bloque[prop=valor]") sin registrarla en la paleta global
+     * Lo usan las miniaturas, que leen archivos que quizá nunca llegan a cargarse
+     *
+     * @return 0 si el bloque es aire
+     */
+    public int getColor(String stateKey) {
+        BlockState blockState = findBlockState(StatePalette.parseKey(stateKey));
+        if (blockState != null && blockState.isAir()) {
+            return 0;
+        }
+        
+        return colorScheme.apply(getMapColor(blockState));
+    }
+    
+    /**
+     * Aplica el esquema de colores de la configuración (NeomaticaConfig.colorScheme)
+     * Si ha cambiado, se descartan los colores calculados y aumenta la versión de colores
+     */
+    public void syncColorScheme() {
+        ConfigHandler configHandler = Neomatica.getInstance().getConfigHandler();
+        if (configHandler == null) {
+            return;
+        }
+        
+        ColorScheme configured = ColorScheme.fromName(configHandler.getConfig().getColorScheme());
+        if (configured != colorScheme) {
+            synchronized (this) {
+                colorScheme = configured;
+                colors = new int[colors.length];
+                colorVersion++;
+            }
+        }
+    }
+    
+    /**
+     * Versión de los colores; cambia cuando cambia el esquema y las mallas deben reconstruirse
+     */
+    public int getColorVersion() {
+        return colorVersion;
+    }
+    
+    /**
+     * Resuelve un estado nuevo; solo esta parte necesita sincronizarse entre hilos de mallado
+     */
+    private synchronized byte resolveFlag(int state) {
+        if (state >= flags.length) {
+            flags = Arrays.copyOf(flags, Math.max(state + 1, flags.length * 2));
+        }
+        
+        if (flags[state] == UNRESOLVED) {
+            BlockState blockState = getBlockState(state);
+            flags[state] = blockState != null && blockState.isOpaqueFullCube() ? OPAQUE : TRANSPARENT;
+        }
+        
+        return flags[state];
+    }
+    
+    private synchronized int resolveColor(int state) {
+        if (state >= colors.length) {
+            colors = Arrays.copyOf(colors, Math.max(state + 1, colors.length * 2));
+        }
+        
+        if (colors[state] == 0) {
+            colors[state] = colorScheme.apply(getMapColor(getBlockState(state)));
+        }
+        
+        return colors[state];
+    }
+    
+    /**
+     * Color RGB del mapa de un estado, o el color por defecto si no tiene
+     */
+    private static int getMapColor(BlockState blockState) {
+        if (blockState == null) {
+            return FALLBACK_COLOR;
+        }
+        
+        MapColor mapColor = blockState.getMapColor(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+        if (mapColor == null || mapColor == MapColor.CLEAR) {
+            return FALLBACK_COLOR;
+        }
+        
+        return 0xFF000000 | mapColor.color;
+    }
+    
+    /**
+     * Estado del bloque de un id de la paleta con sus propiedades (null si no existe)
+     */
+    private static BlockState getBlockState(int state) {
+        BlockState blockState = findBlockState(StatePalette.getInstance().getBlock(state));
+        return blockState == null || blockState.isOf(Blocks.AIR) ? null : blockState;
+    }
+    
+    /**
+     * Resuelve un bloque del schematic contra el registro, aire incluido, aplicando las
+     * propiedades que entienda el bloque igual que SchematicVerifier
+     * Las propiedades desconocidas o con valores inválidos se quedan por defecto
+     *
+     * @return null si el bloque no está registrado
+     */
+    private static BlockState findBlockState(SchematicBlock schematicBlock) {
+        if (schematicBlock == null) {
+            return null;
+        }
+        
+        Identifier blockId = Identifier.tryParse(schematicBlock.getBlockId());
+        if (blockId == null || !Registries.BLOCK.containsId(blockId)) {
+            return null;
+        }
+        
+        Block block = Registries.BLOCK.get(blockId);
+        BlockState blockState = block.getDefaultState();
+        Map<String, String> properties = schematicBlock.getProperties();
+        if (properties == null) {
+            return blockState;
+        }
+        
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            Property<?> property = block.getStateManager().getProperty(entry.getKey());
+            if (property != null) {
+                blockState = withParsed(blockState, property, entry.getValue());
+            }
+        }
+        return blockState;
+    }
+    
+    private static <T extends Comparable<T>> BlockState withParsed(BlockState state, Property<T> property, String value) {
+        return property.parse(value).map(parsed -> state.with(property, parsed)).orElse(state);
+    }
+    
+    /**
+     * Esquemas de color de la configuración
+     */
+    public enum ColorScheme {
+        DEFAULT("default"),
+        MONOCHROME("monochrome"),
+        HIGH_CONTRAST("high_contrast");
+        
+        private final String name;
+        
+        ColorScheme(String name) {
+            this.name = name;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Transforma un color ARGB del mapa según el esquema
+         */
+        public int apply(int argb) {
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+            
+            return switch (this) {
+                case DEFAULT -> argb;
+                case MONOCHROME -> {
+                    int luma = (r * 299 + g * 587 + b * 114) / 1000;
+                    yield 0xFF000000 | (luma << 16) | (luma << 8) | luma;
+                }
+                case HIGH_CONTRAST -> 0xFF000000 | (stretch(r) << 16) | (stretch(g) << 8) | stretch(b);
+            };
+        }
+        
+        private static int stretch(int channel) {
+            return Math.max(0, Math.min(255, (channel - 128) * 3 / 2 + 128));
+        }
+        
+        public static ColorScheme fromName(String name) {
+            for (ColorScheme scheme : values()) {
+                if (scheme.name.equalsIgnoreCase(name)) {
+                    return scheme;
+                }
+            }
+            return DEFAULT;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.neokey.neomatica.render;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.util.SaveQueue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Estadísticas del render de schematics por frame
+ * Los renderizadores suman sus contadores durante el frame; al cerrarlo se guardan como
+ * los valores del último frame, que son los que leen la superposición de depuración y el volcado JSON
+ * Todo se usa desde el hilo de render
+ */
+public class RenderStats {
+    
+    // Latencias de mallado guardadas para los percentiles
+    private static final int LATENCY_SAMPLES = 256;
+    
+    // Peso de cada frame nuevo en la media de la proporción del frame
+    private static final double SMOOTHING = 0.05;
+    
+    private static final File DUMP_FILE = new File("logs", "neomatica-render-stats.json");
+    
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    
+    // Contadores del frame en curso
+    private long frameStartNanos = 0L;
+    private long previousFrameStartNanos = 0L;
+    private int vertices = 0;
+    private int sectionsDrawn = 0;
+    private int sectionsCulledByDistance = 0;
+    private int sectionsCulledByFrustum = 0;
+    private long uploadBytes = 0L;
+    private int meshesUploaded = 0;
+    
+    // Valores del último frame terminado
+    private int lastVertices = 0;
+    private int lastSectionsDrawn = 0;
+    private int lastSectionsCulledByDistance = 0;
+    private int lastSectionsCulledByFrustum = 0;
+    private long lastUploadBytes = 0L;
+    private int lastMeshesUploaded = 0;
+    private int lastDrawCalls = 0;
+    private int lastStateChanges = 0;
+    private double lastPassMs = 0.0;
+    private double lastFrameMs = 0.0;
+    private double frameShare = 0.0;
+    
+    // Latencias de mallado en anillo, desde que se encarga hasta que se sube
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+    private int latencyIndex = 0;
+    
+    private long lastDumpNanos = 0L;
+    
+    /**
+     * Empieza un frame; el intervalo desde el anterior es el tiempo total del frame
+     */
+    public void beginFrame() {
+        previousFrameStartNanos = frameStartNanos;
+        frameStartNanos = System.nanoTime();
+        vertices = 0;
+        sectionsDrawn = 0;
+        sectionsCulledByDistance = 0;
+        sectionsCulledByFrustum = 0;
+        uploadBytes = 0L;
+        meshesUploaded = 0;
+    }
+    
+    public void addVertices(int count) {
+        vertices += count;
+    }
+    
+    /**
+     * Suma las secciones dibujadas y las descartadas por distancia y por frustum
+     */
+    public void addSections(int drawn, int culledByDistance, int culledByFrustum) {
+        sectionsDrawn += drawn;
+        sectionsCulledByDistance += culledByDistance;
+        sectionsCulledByFrustum += culledByFrustum;
+    }
+    
+    /**
+     * Anota una malla subida a la GPU
+     *
+     * @param latencyNanos tiempo desde que se encargó el mallado, o un valor negativo si no es un mallado
+     */
+    public void addUpload(long bytes, long latencyNanos) {
+        uploadBytes += bytes;
+        
+        if (latencyNanos >= 0L) {
+            meshesUploaded++;
+            latencies[latencyIndex] = latencyNanos;
+            latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(LATENCY_SAMPLES, latencyCount + 1);
+        }
+    }
+    
+    /**
+     * Cierra el frame y guarda sus valores como los del último frame
+     */
+    public void endFrame(int drawCalls, int stateChanges) {
+        long passNanos = System.nanoTime() - frameStartNanos;
+        
+        lastVertices = vertices;
+        lastSectionsDrawn = sectionsDrawn;
+        lastSectionsCulledByDistance = sectionsCulledByDistance;
+        lastSectionsCulledByFrustum = sectionsCulledByFrustum;
+        lastUploadBytes = uploadBytes;
+        lastMeshesUploaded = meshesUploaded;
+        lastDrawCalls = drawCalls;
+        lastStateChanges = stateChanges;
+        lastPassMs = passNanos / 1_000_000.0;
+        
+        if (previousFrameStartNanos != 0L) {
+            long frameNanos = frameStartNanos - previousFrameStartNanos;
+            lastFrameMs = frameNanos / 1_000_000.0;
+            
+            double share = frameNanos > 0L ? Math.min(1.0, (double) passNanos / frameNanos) : 0.0;
+            frameShare = frameShare == 0.0 ? share : frameShare + (share - frameShare) * SMOOTHING;
+        }
+    }
+    
+    /**
+     * Percentil de la latencia de mallado de las últimas mallas subidas, en milisegundos
+     *
+     * @param percentile entre 0 y 100
+     */
+    public double getLatencyPercentileMs(double percentile) {
+        if (latencyCount == 0) {
+            return 0.0;
+        }
+        
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(latencyCount - 1, index))] / 1_000_000.0;
+    }
+    
+    /**
+     * Valores del último frame como JSON
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("timestamp", System.currentTimeMillis());
+        json.addProperty("vertices", lastVertices);
+        json.addProperty("sectionsDrawn", lastSectionsDrawn);
+        json.addProperty("sectionsCulledByDistance", lastSectionsCulledByDistance);
+        json.addProperty("sectionsCulledByFrustum", lastSectionsCulledByFrustum);
+        json.addProperty("drawCalls", lastDrawCalls);
+        json.addProperty("stateChanges", lastStateChanges);
+        json.addProperty("uploadBytes", lastUploadBytes);
+        json.addProperty("meshesUploaded", lastMeshesUploaded);
+        json.addProperty("meshLatencyP50Ms", getLatencyPercentileMs(50.0));
+        json.addProperty("meshLatencyP95Ms", getLatencyPercentileMs(95.0));
+        json.addProperty("meshLatencyP99Ms", getLatencyPercentileMs(99.0));
+        json.addProperty("passMs", lastPassMs);
+        json.addProperty("frameMs", lastFrameMs);
+        json.addProperty("frameShare", frameShare);
+        return json;
+    }
+    
+    /**
+     * Vuelca las estadísticas a logs/neomatica-render-stats.json si ha pasado el intervalo
+     * La escritura va por la cola de guardado, fuera del hilo de render
+     *
+     * @param intervalSeconds segundos entre volcados, o 0 o menos para no volcar
+     */
+    public void dumpIfDue(int intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        if (lastDumpNanos != 0L && now - lastDumpNanos < intervalSeconds * 1_000_000_000L) {
+            return;
+        }
+        lastDumpNanos = now;
+        
+        SaveQueue saveQueue = Neomatica.getInstance().getSaveQueue();
+        if (saveQueue == null) {
+            return;
+        }
+        
+        byte[] json = gson.toJson(toJson()).getBytes(StandardCharsets.UTF_8);
+        saveQueue.submitWrite(DUMP_FILE, out -> out.write(json));
+    }
+    
+    public int getVertices() {
+        return lastVertices;
+    }
+    
+    public int getSectionsDrawn() {
+        return lastSectionsDrawn;
+    }
+    
+    public int getSectionsCulledByDistance() {
+        return lastSectionsCulledByDistance;
+    }
+    
+    public int getSectionsCulledByFrustum() {
+        return lastSectionsCulledByFrustum;
+    }
+    
+    public int getDrawCalls() {
+        return lastDrawCalls;
+    }
+    
+    public int getStateChanges() {
+        return lastStateChanges;
+    }
+    
+    public long getUploadBytes() {
+        return lastUploadBytes;
+    }
+    
+    public int getMeshesUploaded() {
+        return lastMeshesUploaded;
+    }
+    
+    /**
+     * Tiempo de CPU de todas las superposiciones en el último frame, en milisegundos
+     */
+    public double getPassMs() {
+        return lastPassMs;
+    }
+    
+    /**
+     * Duración del último frame completo, en milisegundos
+     */
+    public double getFrameMs() {
+        return lastFrameMs;
+    }
+    
+    /**
+     * Proporción media del frame gastada en las superposiciones, de 0 a 1
+     */
+    public double getFrameShare() {
+        return frameShare;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.client.NeomaticaClient;
+import com.neokey.neomatica.config.ConfigHandler;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.DrawContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Superposición de depuración con las estadísticas del render de schematics
+ * Solo aparece con la pantalla de depuración (F3) abierta y la opción showRenderStats activa;
+ * se dibuja en la esquina inferior izquierda para no tapar el texto de F3
+ */
+public class RenderStatsOverlay {
+    
+    // Mismos colores que la pantalla de depuración
+    private static final int BACKGROUND_COLOR = 0x90505050;
+    private static final int TEXT_COLOR = 0xE0E0E0;
+    
+    private final MinecraftClient client;
+    
+    public RenderStatsOverlay() {
+        this.client = MinecraftClient.getInstance();
+    }
+    
+    /**
+     * Dibuja las estadísticas del último frame
+     */
+    public void render(DrawContext context) {
+        if (!client.getDebugHud().shouldShowDebugHud() || !isEnabled()) {
+            return;
+        }
+        
+        NeomaticaClient neomaticaClient = NeomaticaClient.getInstance();
+        RenderStats stats = neomaticaClient.getRenderBatch().getStats();
+        SchematicWorldRenderer worldRenderer = neomaticaClient.getWorldRenderer();
+        FrameBudgetController budget = worldRenderer.getBudgetController();
+        
+        List<String> lines = new ArrayList<>();
+        lines.add("[Neomatica] Render de schematics");
+        lines.add(String.format("Secciones: %d dibujadas, %d fuera de distancia, %d fuera de vista",
+            stats.getSectionsDrawn(), stats.getSectionsCulledByDistance(), stats.getSectionsCulledByFrustum()));
+        lines.add(String.format("Vértices: %d  Llamadas: %d  Cambios de estado: %d",
+            stats.getVertices(), stats.getDrawCalls(), stats.getStateChanges()));
+        lines.add(String.format("Subidas: %d mallas, %.1f KB",
+            stats.getMeshesUploaded(), stats.getUploadBytes() / 1024.0));
+        lines.add(String.format("Latencia de mallado: p50 %.1f ms  p95 %.1f ms  p99 %.1f ms",
+            stats.getLatencyPercentileMs(50.0), stats.getLatencyPercentileMs(95.0), stats.getLatencyPercentileMs(99.0)));
+        lines.add(String.format("Pase: %.2f ms de %.2f ms (%.1f%% del frame)",
+            stats.getPassMs(), stats.getFrameMs(), stats.getFrameShare() * 100.0));
+        lines.add(String.format("Presupuesto: CPU %.2f ms  mallado %.2f ms  GPU %.2f ms",
+            budget.getDrawCpuMs(), budget.getMeshCpuMs(), budget.getGpuMs()));
+        lines.add(String.format("Calidad: x%.2f  distancia %.0f bloques",
+            budget.getScale(), worldRenderer.getEffectiveRenderDistance()));
+        
+        int lineHeight = client.textRenderer.fontHeight;
+        int y = context.getScaledWindowHeight() - 2 - lines.size() * lineHeight;
+        
+        for (String line : lines) {
+            int width = client.textRenderer.getWidth(line);
+            context.fill(1, y - 1, 2 + width + 1, y + lineHeight - 1, BACKGROUND_COLOR);
+            context.drawText(client.textRenderer, line, 2, y, TEXT_COLOR, false);
+            y += lineHeight;
+        }
+    }
+    
+    private boolean isEnabled() {
+        ConfigHandler configHandler = Neomatica.getInstance().getConfigHandler();
+        return configHandler == null || configHandler.getConfig().isShowRenderStats();
+    }
+}
\ No newline at end of file
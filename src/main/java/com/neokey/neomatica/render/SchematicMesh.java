@@ -0,0 +1,131 @@
+package com.neokey.neomatica.render;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.util.BufferAllocator;
+
+import org.joml.Matrix4f;
+
+/**
+ * Malla ya subida a la GPU
+ * Se construye una vez y se dibuja cada frame cambiando solo la matriz de modelo
+ * Las mallas en PackedVertexFormat se dibujan con su propio shader; las demás con el shader activo
+ */
+public class SchematicMesh implements AutoCloseable {
+    
+    private VertexBuffer vertexBuffer;
+    private boolean empty = true;
+    private boolean packed = false;
+    private int vertexCount = 0;
+    
+    /**
+     * Sube los vértices construidos; null indica una malla sin caras
+     * Debe llamarse desde el hilo de render
+     */
+    public void upload(BuiltBuffer builtBuffer) {
+        RenderSystem.assertOnRenderThread();
+        
+        this.empty = builtBuffer == null;
+        this.vertexCount = empty ? 0 : builtBuffer.getDrawParameters().vertexCount();
+        
+        if (empty) {
+            return;
+        }
+        
+        this.packed = builtBuffer.getDrawParameters().format() == PackedVertexFormat.FORMAT;
+        
+        if (vertexBuffer == null) {
+            vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+        }
+        
+        vertexBuffer.bind();
+        vertexBuffer.upload(builtBuffer);
+        VertexBuffer.unbind();
+    }
+    
+    /**
+     * Sustituye el orden de dibujo de las caras por un buffer de índices reordenado
+     * Debe tener el mismo número y tipo de índices que la malla subida
+     */
+    public void uploadIndices(BufferAllocator.CloseableBuffer indices) {
+        RenderSystem.assertOnRenderThread();
+        
+        if (empty || vertexBuffer == null) {
+            indices.close();
+            return;
+        }
+        
+        vertexBuffer.bind();
+        vertexBuffer.uploadIndexBuffer(indices);
+        VertexBuffer.unbind();
+    }
+    
+    /**
+     * Dibuja la malla con el shader de su formato
+     */
+    public void draw(Matrix4f modelView, Matrix4f projection) {
+        ShaderProgram shader = getShader();
+        if (empty || vertexBuffer == null || shader == null) {
+            return;
+        }
+        
+        vertexBuffer.bind();
+        vertexBuffer.draw(modelView, projection, shader);
+        VertexBuffer.unbind();
+    }
+    
+    /**
+     * Dibuja solo un tramo de caras consecutivas con el shader de su formato
+     * La malla debe ser de caras (QUADS): cada cara usa seis índices del buffer secuencial
+     */
+    public void drawQuads(Matrix4f modelView, Matrix4f projection, int firstQuad, int quadCount) {
+        ShaderProgram shader = getShader();
+        if (empty || vertexBuffer == null || shader == null || quadCount <= 0) {
+            return;
+        }
+        
+        VertexFormat.DrawMode drawMode = VertexFormat.DrawMode.QUADS;
+        VertexFormat.IndexType indexType = RenderSystem.getSequentialBuffer(drawMode).getIndexType();
+        
+        vertexBuffer.bind();
+        shader.initializeUniforms(drawMode, modelView, projection, MinecraftClient.getInstance().getWindow());
+        shader.bind();
+        GlStateManager._drawElements(drawMode.glMode, quadCount * 6, indexType.glType, (long) firstQuad * 6 * indexType.size);
+        shader.unbind();
+        VertexBuffer.unbind();
+    }
+    
+    private ShaderProgram getShader() {
+        return packed ? PackedVertexFormat.getShader() : RenderSystem.getShader();
+    }
+    
+    public boolean isEmpty() {
+        return empty;
+    }
+    
+    /**
+     * Número de vértices de la malla subida
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+    
+    /**
+     * Libera el buffer de la GPU
+     */
+    @Override
+    public void close() {
+        if (vertexBuffer != null) {
+            vertexBuffer.close();
+            vertexBuffer = null;
+        }
+        empty = true;
+        vertexCount = 0;
+    }
+}
\ No newline at end of file
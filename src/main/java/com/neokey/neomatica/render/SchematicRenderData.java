@@ -0,0 +1,539 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicRenderer.RenderMode;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+import com.neokey.neomatica.schematic.SchematicVerifier;
+
+import net.minecraft.client.render.Frustum;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Datos de render de un schematic: una RenderSection por cada sección del almacenamiento
+ * Tras una edición solo se reconstruyen las secciones modificadas y sus vecinas,
+ * porque las caras ocultas de una sección dependen de los bloques de al lado
+ * Mientras una sección se vuelve a mallar se sigue dibujando su malla anterior
+ * Las secciones que se quedan sin bloques se liberan; los recorridos de cada frame solo
+ * visitan las secciones sucias o las que tienen caras
+ * Las secciones se dibujan de atrás hacia delante y sus caras se reordenan en segundo
+ * plano cuando la cámara se mueve respecto a ellas
+ * Las colocaciones que comparten almacenamiento comparten estos datos: las mallas
+ * se construyen una vez y se dibujan en cada colocación
+ * En el modo diferencias cada colocación tiene los suyos, porque lo que falta por
+ * construir depende de dónde está
+ */
+public class SchematicRenderData implements AutoCloseable {
+    
+    private static final Comparator<RenderSection> BACK_TO_FRONT =
+        Comparator.comparingDouble(RenderSection::getViewDistance).reversed();
+    
+    private final Map<Long, RenderSection> sections = new HashMap<>();
+    
+    // Secciones pendientes de mallar y secciones con caras; la segunda se rehace al cambiar
+    private final Set<RenderSection> dirtySections = new HashSet<>();
+    private final List<RenderSection> drawableSections = new ArrayList<>();
+    private boolean drawableStale = false;
+    
+    private final Matrix4f sectionModelView = new Matrix4f();
+    private final List<RenderSection> visibleSections = new ArrayList<>();
+    
+    // Parámetros con los que se construyeron las mallas
+    private boolean initialized = false;
+    private long builtVersion;
+    private RenderMode renderMode;
+    private MeshingMode meshingMode;
+    private int colorVersion;
+    
+    // Envolvente exterior, solo en el modo fantasma
+    // Se calcula en los hilos de mallado a partir de los bloques llenos de cada sección,
+    // que aquí se actualizan solo para las secciones editadas
+    private ShellMap shellMap;
+    private CompletableFuture<ShellMap> pendingShell;
+    private final Map<Long, long[]> solidMasks = new HashMap<>();
+    private boolean solidMasksValid = false;
+    private boolean shellStale = false;
+    private long maskVersion;
+    
+    // Origen de las diferencias con el mundo, solo en el modo diferencias
+    private SchematicVerifier verifier;
+    private LoadedSchematic verifiedPlacement;
+    private long verifierRevision = Long.MIN_VALUE;
+    
+    // Contadores del frame para las estadísticas, sumando todas las colocaciones
+    private int renderedSections = 0;
+    private int renderedVertices = 0;
+    private int distanceCulledSections = 0;
+    private int frustumCulledSections = 0;
+    
+    /**
+     * Marca como sucias las secciones afectadas desde la última actualización
+     * Si cambia algún parámetro global se marcan todas
+     *
+     * @param pool hilos en los que se calcula la envolvente del modo fantasma
+     */
+    public void update(SchematicStorage storage, MeshBuilderPool pool, RenderMode renderMode,
+                       MeshingMode meshingMode, int colorVersion) {
+        long version = storage.getVersion();
+        
+        boolean parametersChanged = !initialized
+            || this.renderMode != renderMode
+            || this.meshingMode != meshingMode
+            || this.colorVersion != colorVersion;
+        
+        if (parametersChanged) {
+            for (Section section : storage.getSections()) {
+                markDirty(getOrCreate(section.getKey()));
+            }
+            sections.values().forEach(this::markDirty);
+        } else if (version != builtVersion) {
+            for (Section section : storage.getSectionsModifiedSince(builtVersion)) {
+                int sx = section.getSectionX();
+                int sy = section.getSectionY();
+                int sz = section.getSectionZ();
+                
+                markDirty(getOrCreate(section.getKey()));
+                
+                for (Direction direction : Direction.values()) {
+                    RenderSection neighbour = sections.get(SchematicStorage.sectionKey(
+                        sx + direction.getOffsetX(), sy + direction.getOffsetY(), sz + direction.getOffsetZ()));
+                    if (neighbour != null) {
+                        markDirty(neighbour);
+                    }
+                }
+            }
+        }
+        
+        if (renderMode == RenderMode.GHOST) {
+            updateShellMap(storage, pool);
+        } else {
+            discardShellMap();
+        }
+        
+        this.initialized = true;
+        this.builtVersion = version;
+        this.renderMode = renderMode;
+        this.meshingMode = meshingMode;
+        this.colorVersion = colorVersion;
+    }
+    
+    /**
+     * Mantiene la envolvente exterior al día sin recorrer el schematic en el hilo de render
+     * Solo se recalculan los bloques llenos de las secciones editadas; el relleno del aire
+     * exterior se encarga a los hilos de mallado, con un único cálculo en vuelo, y mientras
+     * tanto se sigue mallando con la envolvente anterior
+     */
+    private void updateShellMap(SchematicStorage storage, MeshBuilderPool pool) {
+        long version = storage.getVersion();
+        
+        if (!solidMasksValid) {
+            solidMasks.clear();
+            for (Section section : storage.getSections()) {
+                if (!section.isEmpty()) {
+                    solidMasks.put(section.getKey(), ShellMap.solidMask(section));
+                }
+            }
+            solidMasksValid = true;
+            shellStale = true;
+        } else if (version != maskVersion) {
+            for (Section section : storage.getSectionsModifiedSince(maskVersion)) {
+                if (section.isEmpty()) {
+                    solidMasks.remove(section.getKey());
+                } else {
+                    solidMasks.put(section.getKey(), ShellMap.solidMask(section));
+                }
+            }
+            shellStale = true;
+        }
+        maskVersion = version;
+        
+        if (pendingShell != null) {
+            if (!pendingShell.isDone()) {
+                return;
+            }
+            acceptShellMap(pendingShell);
+            pendingShell = null;
+        }
+        
+        if (shellStale) {
+            // Las máscaras no se modifican nunca, se sustituyen: basta con copiar el mapa
+            Map<Long, long[]> masks = new HashMap<>(solidMasks);
+            pendingShell = pool.supply(() -> ShellMap.build(masks));
+            shellStale = false;
+        }
+    }
+    
+    /**
+     * Sustituye la envolvente por una recién calculada y marca las secciones cuyas caras
+     * exteriores cambian; una edición puede abrir o cerrar un hueco y cambiar caras lejanas
+     */
+    private void acceptShellMap(CompletableFuture<ShellMap> built) {
+        ShellMap previous = shellMap;
+        
+        try {
+            shellMap = built.join();
+        } catch (CompletionException | CancellationException e) {
+            Neomatica.LOGGER.error("Error al calcular la envolvente del schematic", e);
+            return;
+        }
+        
+        if (previous == null) {
+            return;
+        }
+        
+        shellMap.forEachChangedSection(previous, key -> {
+            RenderSection renderSection = sections.get(key);
+            if (renderSection != null) {
+                markDirty(renderSection);
+            }
+        });
+    }
+    
+    /**
+     * Olvida la envolvente al salir del modo fantasma; un cálculo en vuelo se descarta
+     */
+    private void discardShellMap() {
+        shellMap = null;
+        pendingShell = null;
+        solidMasks.clear();
+        solidMasksValid = false;
+        shellStale = false;
+    }
+    
+    /**
+     * Indica si el modo de renderizado usa los niveles de detalle
+     * Las aristas y la envolvente ya son mucho más ligeras que los cubos y se dibujan completas
+     */
+    private boolean usesLod() {
+        return renderMode == RenderMode.SOLID || renderMode == RenderMode.TRANSLUCENT;
+    }
+    
+    /**
+     * Marca las secciones cuyas diferencias con el mundo han cambiado desde su último mallado
+     * Solo se recorren las secciones cuando el verificador tiene resultados nuevos de la colocación
+     */
+    public void updateMismatches(SchematicVerifier verifier, LoadedSchematic placement) {
+        long revision = verifier.getRevision(placement);
+        if (verifier == this.verifier && placement == verifiedPlacement && revision == verifierRevision) {
+            return;
+        }
+        
+        this.verifier = verifier;
+        this.verifiedPlacement = placement;
+        this.verifierRevision = revision;
+        
+        for (RenderSection renderSection : sections.values()) {
+            if (renderSection.updateMismatchRevision(MismatchMesher.revisionOf(verifier, placement, renderSection))) {
+                markDirty(renderSection);
+            }
+        }
+    }
+    
+    /**
+     * Actualiza el nivel de detalle de cada sección según su distancia a la cámara
+     * en la colocación más cercana
+     * Las secciones que cambian de nivel se marcan como sucias y siguen dibujando
+     * su malla anterior hasta que llega la nueva
+     *
+     * @param lodDistance distancia del primer nivel simplificado, o 0 o menos para desactivarlos
+     */
+    public void updateLod(List<BlockPos> placements, Vec3d cameraPos, double lodDistance) {
+        double effectiveLodDistance = usesLod() ? lodDistance : 0.0;
+        
+        for (RenderSection renderSection : sections.values()) {
+            if (renderSection.updateLodLevel(placements, cameraPos, effectiveLodDistance)) {
+                markDirty(renderSection);
+            }
+        }
+    }
+    
+    /**
+     * Encarga a los hilos de mallado las secciones sucias, las más cercanas a la cámara primero
+     * En este hilo solo se toma la copia de cada sección, hasta agotar el tiempo indicado
+     */
+    public void scheduleDirty(SchematicStorage storage, MeshBuilderPool pool, IntUnaryOperator colorOf,
+                              List<BlockPos> placements, Vec3d cameraPos, long deadlineNanos) {
+        // En el modo fantasma no se malla nada hasta tener la primera envolvente
+        if (dirtySections.isEmpty() || (renderMode == RenderMode.GHOST && shellMap == null)) {
+            return;
+        }
+        
+        List<RenderSection> dirty = new ArrayList<>(dirtySections);
+        dirty.sort(Comparator.comparingDouble(renderSection -> renderSection.squaredDistanceTo(placements, cameraPos)));
+        
+        for (RenderSection renderSection : dirty) {
+            if (!pool.canSubmit() || System.nanoTime() >= deadlineNanos) {
+                break;
+            }
+            
+            Section section = storage.getSection(renderSection.getKey());
+            
+            // Sin bloques no hay nada que dibujar: la sección se libera y se vuelve a crear si se edita
+            if (section == null || section.isEmpty()) {
+                removeSection(renderSection);
+                continue;
+            }
+            
+            int generation = renderSection.beginBuild();
+            dirtySections.remove(renderSection);
+            
+            if (renderMode == RenderMode.MISMATCH) {
+                scheduleMismatches(renderSection, generation, pool);
+                continue;
+            }
+            
+            SectionSnapshot snapshot = SectionSnapshot.capture(storage, section);
+            if (renderMode == RenderMode.WIREFRAME) {
+                pool.submitEdges(renderSection, generation, snapshot, colorOf);
+            } else {
+                pool.submit(renderSection, generation, snapshot, createMesher(renderSection, colorOf), colorOf);
+            }
+        }
+    }
+    
+    /**
+     * Encarga el mallado de las diferencias de una sección, o la vacía si ya está construida
+     */
+    private void scheduleMismatches(RenderSection renderSection, int generation, MeshBuilderPool pool) {
+        SectionSnapshot mismatches = verifier == null ? null : MismatchMesher.capture(verifier, verifiedPlacement,
+            renderSection.getMinX() >> 4, renderSection.getMinY() >> 4, renderSection.getMinZ() >> 4);
+        
+        if (mismatches == null) {
+            renderSection.clearMesh();
+            return;
+        }
+        
+        pool.submit(renderSection, generation, mismatches, new MismatchMesher(), MismatchMesher::colorOf);
+    }
+    
+    /**
+     * Encarga reordenar de atrás hacia delante las caras de las secciones cercanas
+     * Una sección solo se reordena cuando la cámara se ha movido respecto a ella más que
+     * un umbral que crece con la distancia; si la comparten varias colocaciones se ordena
+     * para la más cercana, y las más cercanas a la cámara van primero
+     */
+    public void scheduleResorts(MeshBuilderPool pool, List<BlockPos> placements, Vec3d cameraPos,
+                                double renderDistance, long deadlineNanos) {
+        if (renderMode == RenderMode.WIREFRAME) {
+            return;
+        }
+        
+        double maxDistanceSq = renderDistance * renderDistance;
+        List<RenderSection> unsorted = new ArrayList<>();
+        
+        for (RenderSection renderSection : getDrawableSections()) {
+            BlockPos nearest = renderSection.nearestPlacement(placements, cameraPos);
+            double distanceSq = renderSection.squaredDistanceTo(nearest, cameraPos);
+            if (distanceSq > maxDistanceSq) {
+                continue;
+            }
+            
+            if (renderSection.needsSort(
+                    cameraPos.x - nearest.getX() - renderSection.getMinX(),
+                    cameraPos.y - nearest.getY() - renderSection.getMinY(),
+                    cameraPos.z - nearest.getZ() - renderSection.getMinZ())) {
+                renderSection.setViewDistance(distanceSq);
+                unsorted.add(renderSection);
+            }
+        }
+        
+        unsorted.sort(Comparator.comparingDouble(RenderSection::getViewDistance));
+        
+        for (RenderSection renderSection : unsorted) {
+            if (!pool.canSubmit() || System.nanoTime() >= deadlineNanos) {
+                break;
+            }
+            
+            BlockPos nearest = renderSection.nearestPlacement(placements, cameraPos);
+            float cameraX = (float) (cameraPos.x - nearest.getX() - renderSection.getMinX());
+            float cameraY = (float) (cameraPos.y - nearest.getY() - renderSection.getMinY());
+            float cameraZ = (float) (cameraPos.z - nearest.getZ() - renderSection.getMinZ());
+            
+            int meshGeneration = renderSection.beginSort(cameraX, cameraY, cameraZ);
+            pool.submitSort(renderSection, meshGeneration, renderSection.getQuadCentroids(),
+                renderSection.getIndexType(), cameraX, cameraY, cameraZ);
+        }
+    }
+    
+    /**
+     * Mallador de caras de una sección según el modo de renderizado y su nivel de detalle
+     */
+    private SectionMesher createMesher(RenderSection renderSection, IntUnaryOperator colorOf) {
+        if (renderMode == RenderMode.GHOST && shellMap != null) {
+            return new ShellMesher(shellMap);
+        }
+        if (renderSection.getLodLevel() > 0) {
+            return new LodMesher(renderSection.getLodLevel());
+        }
+        return meshingMode.createMesher(colorOf);
+    }
+    
+    /**
+     * Dibuja las secciones dentro del frustum y de la distancia de renderizado en una colocación,
+     * de la más lejana a la más cercana por la distancia de la cámara a su centro
+     * Se llama una vez por colocación; las mallas son las mismas en todas
+     *
+     * @param modelView      matriz de la cámara, sin trasladar a la colocación
+     * @param frustum        frustum de la cámara, o null para no recortar
+     * @param renderDistance distancia máxima en bloques
+     */
+    public void render(Matrix4f modelView, Matrix4f projection, BlockPos placement,
+                       Vec3d cameraPos, Frustum frustum, double renderDistance) {
+        double maxDistanceSq = renderDistance * renderDistance;
+        
+        // Desplazamiento de la colocación respecto a la cámara
+        float offsetX = (float) (placement.getX() - cameraPos.x);
+        float offsetY = (float) (placement.getY() - cameraPos.y);
+        float offsetZ = (float) (placement.getZ() - cameraPos.z);
+        float half = SchematicStorage.SECTION_SIZE / 2.0f;
+        
+        visibleSections.clear();
+        for (RenderSection renderSection : getDrawableSections()) {
+            if (renderSection.squaredDistanceTo(placement, cameraPos) > maxDistanceSq) {
+                distanceCulledSections++;
+                continue;
+            }
+            
+            if (frustum != null && !frustum.isVisible(renderSection.getWorldBox(placement))) {
+                frustumCulledSections++;
+                continue;
+            }
+            
+            float centerX = offsetX + renderSection.getMinX() + half;
+            float centerY = offsetY + renderSection.getMinY() + half;
+            float centerZ = offsetZ + renderSection.getMinZ() + half;
+            renderSection.setViewDistance(centerX * centerX + centerY * centerY + centerZ * centerZ);
+            visibleSections.add(renderSection);
+        }
+        
+        // Sin escritura de profundidad, lo último que se dibuja queda delante
+        visibleSections.sort(BACK_TO_FRONT);
+        
+        for (RenderSection renderSection : visibleSections) {
+            // Las mallas son relativas al origen de su sección
+            sectionModelView.set(modelView).translate(
+                offsetX + renderSection.getMinX(),
+                offsetY + renderSection.getMinY(),
+                offsetZ + renderSection.getMinZ());
+            renderSection.getMesh().draw(sectionModelView, projection);
+            renderedSections++;
+            renderedVertices += renderSection.getMesh().getVertexCount();
+        }
+    }
+    
+    /**
+     * Empieza a contar las secciones dibujadas y descartadas de un frame nuevo
+     */
+    public void resetRenderedSectionCount() {
+        renderedSections = 0;
+        renderedVertices = 0;
+        distanceCulledSections = 0;
+        frustumCulledSections = 0;
+    }
+    
+    private RenderSection getOrCreate(long key) {
+        RenderSection renderSection = sections.get(key);
+        if (renderSection == null) {
+            renderSection = new RenderSection(key, () -> drawableStale = true);
+            sections.put(key, renderSection);
+            dirtySections.add(renderSection);
+        }
+        return renderSection;
+    }
+    
+    private void markDirty(RenderSection renderSection) {
+        renderSection.markDirty();
+        dirtySections.add(renderSection);
+    }
+    
+    /**
+     * Quita una sección y libera su malla; los resultados en vuelo se descartan al llegar
+     */
+    private void removeSection(RenderSection renderSection) {
+        sections.remove(renderSection.getKey());
+        dirtySections.remove(renderSection);
+        if (renderSection.isDrawable()) {
+            drawableStale = true;
+        }
+        renderSection.close();
+    }
+    
+    /**
+     * Secciones con caras, rehaciendo la lista si alguna malla se ha vaciado o llenado
+     */
+    private List<RenderSection> getDrawableSections() {
+        if (drawableStale) {
+            drawableSections.clear();
+            for (RenderSection renderSection : sections.values()) {
+                if (renderSection.isDrawable()) {
+                    drawableSections.add(renderSection);
+                }
+            }
+            drawableStale = false;
+        }
+        return drawableSections;
+    }
+    
+    /**
+     * Número de secciones dibujadas en el último frame, sumando todas las colocaciones
+     */
+    public int getRenderedSectionCount() {
+        return renderedSections;
+    }
+    
+    /**
+     * Vértices de las secciones dibujadas en el último frame
+     */
+    public int getRenderedVertexCount() {
+        return renderedVertices;
+    }
+    
+    /**
+     * Secciones con malla descartadas en el último frame por estar fuera de la distancia
+     */
+    public int getDistanceCulledSectionCount() {
+        return distanceCulledSections;
+    }
+    
+    /**
+     * Secciones con malla descartadas en el último frame por estar fuera del frustum
+     */
+    public int getFrustumCulledSectionCount() {
+        return frustumCulledSections;
+    }
+    
+    public int getSectionCount() {
+        return sections.size();
+    }
+    
+    /**
+     * Libera las mallas de todas las secciones
+     */
+    @Override
+    public void close() {
+        sections.values().forEach(RenderSection::close);
+        sections.clear();
+        dirtySections.clear();
+        drawableSections.clear();
+        drawableStale = false;
+        discardShellMap();
+        initialized = false;
+    }
+}
\ No newline at end of file
@@ -1,49 +1,74 @@
 ﻿package com.neokey.neomatica.render;
 
 import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.config.ConfigHandler;
 import com.neokey.neomatica.schematic.SchematicManager;
 import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
 import com.neokey.neomatica.schematic.SchematicRenderer;
+import com.neokey.neomatica.schematic.SchematicStorage;
 
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.*;
 import net.minecraft.client.util.math.MatrixStack;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Renderizador de schematics en el mundo
+ * Las distancias configuradas son la referencia: el controlador de presupuesto las escala
+ * cada frame según lo que cuesta dibujar en este equipo
  */
 public class SchematicWorldRenderer {
     
     private final MinecraftClient client;
     private final SchematicManager schematicManager;
     private final SchematicRenderer schematicRenderer;
+    private final FrameBudgetController budgetController = new FrameBudgetController();
     
     private boolean enabled = true;
     private double renderDistance = 256.0;
     
-    public SchematicWorldRenderer() {
+    // Distancia de renderizado escalada del frame actual
+    private double effectiveRenderDistance = renderDistance;
+    
+    /**
+     * @param renderBatch lote del frame que pone el estado de render de todas las superposiciones
+     */
+    public SchematicWorldRenderer(RenderBatch renderBatch) {
         this.client = MinecraftClient.getInstance();
         this.schematicManager = Neomatica.getInstance().getSchematicManager();
-        this.schematicRenderer = new SchematicRenderer();
+        this.schematicRenderer = new SchematicRenderer(renderBatch);
     }
     
     /**
      * Renderiza todos los schematics cargados en el mundo
+     * El estado de render lo aplica el lote del frame la primera vez que se dibuja algo
      */
     public void render(WorldRenderContext context) {
         if (!enabled || client.player == null) {
             return;
         }
         
+        budgetController.setBudgetMs(getRenderBudgetMs());
+        budgetController.beginFrame();
+        
         try {
             MatrixStack matrices = context.matrixStack();
-            float tickDelta = context.tickCounter().getLastFrameDuration();
+            effectiveRenderDistance = budgetController.scaleRenderDistance(renderDistance);
+            double lodDistance = budgetController.scaleLodDistance(getLodDistance());
+            
+            // Liberar las mallas de schematics descargados o reemplazados
+            schematicRenderer.retainMeshes(schematicManager.getAllSchematics());
             
-            // Configurar estado de renderizado
-            setupRenderState();
+            // Subir las mallas terminadas en segundo plano con el tiempo que deja libre el dibujo
+            schematicRenderer.beginFrame(budgetController.getMeshBudgetNanos());
             
-            // Renderizar cada schematic cargado
+            // Agrupar las colocaciones que comparten bloques para dibujarlas con las mismas mallas
+            Map<SchematicStorage, List<LoadedSchematic>> instances = new IdentityHashMap<>();
             for (LoadedSchematic schematic : schematicManager.getAllSchematics()) {
                 if (schematic == null || !schematic.isVisible()) {
                     continue;
@@ -54,46 +79,53 @@ public class SchematicWorldRenderer {
                     continue;
                 }
                 
-                // Renderizar el schematic
-                schematicRenderer.render(schematic, matrices, tickDelta);
+                instances.computeIfAbsent(schematic.getStorage(), storage -> new ArrayList<>()).add(schematic);
             }
             
-            // Restaurar estado de renderizado
-            restoreRenderState();
+            // Renderizar las secciones visibles de cada grupo, simplificando las lejanas
+            for (List<LoadedSchematic> group : instances.values()) {
+                schematicRenderer.renderInstances(group, matrices, context.frustum(), effectiveRenderDistance, lodDistance);
+            }
             
         } catch (Exception e) {
             Neomatica.LOGGER.error("Error al renderizar schematics en el mundo", e);
+        } finally {
+            budgetController.recordMeshTime(schematicRenderer.getMeshNanos());
+            budgetController.endFrame();
         }
     }
     
     /**
-     * Configura el estado de renderizado
+     * Verifica si un schematic está dentro de la distancia de renderizado
      */
-    private void setupRenderState() {
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-        RenderSystem.enableDepthTest();
-        RenderSystem.depthMask(true);
-        RenderSystem.setShader(GameRenderer::getPositionColorShader);
+    private boolean isInRenderDistance(LoadedSchematic schematic) {
+        if (client.player == null) {
+            return false;
+        }
+        
+        return schematicRenderer.isSchematicVisible(schematic, effectiveRenderDistance);
     }
     
     /**
-     * Restaura el estado de renderizado
+     * Distancia configurada a partir de la que las secciones se dibujan simplificadas
      */
-    private void restoreRenderState() {
-        RenderSystem.disableBlend();
-        RenderSystem.depthMask(true);
+    private double getLodDistance() {
+        ConfigHandler configHandler = Neomatica.getInstance().getConfigHandler();
+        if (configHandler == null) {
+            return 0.0;
+        }
+        return configHandler.getConfig().getLodDistance();
     }
     
     /**
-     * Verifica si un schematic está dentro de la distancia de renderizado
+     * Presupuesto configurado del pase de schematics por frame, en milisegundos
      */
-    private boolean isInRenderDistance(LoadedSchematic schematic) {
-        if (client.player == null) {
-            return false;
+    private double getRenderBudgetMs() {
+        ConfigHandler configHandler = Neomatica.getInstance().getConfigHandler();
+        if (configHandler == null) {
+            return 0.0;
         }
-        
-        return schematicRenderer.isSchematicVisible(schematic, renderDistance);
+        return configHandler.getConfig().getRenderBudgetMs();
     }
     
     /**
@@ -107,6 +139,14 @@ public class SchematicWorldRenderer {
         schematicRenderer.render(schematic, matrices, tickDelta);
     }
     
+    /**
+     * Libera las mallas y detiene los hilos de mallado al cerrar el juego
+     */
+    public void shutdown() {
+        schematicRenderer.shutdown();
+        budgetController.close();
+    }
+    
     /**
      * Actualiza el renderizador cada tick
      */
@@ -122,6 +162,10 @@ public class SchematicWorldRenderer {
     
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
+        
+        if (!enabled) {
+            schematicRenderer.clearMeshes();
+        }
     }
     
     public double getRenderDistance() {
@@ -132,6 +176,17 @@ public class SchematicWorldRenderer {
         this.renderDistance = Math.max(16.0, Math.min(512.0, renderDistance));
     }
     
+    /**
+     * Distancia de renderizado usada en el último frame, tras escalarla al presupuesto
+     */
+    public double getEffectiveRenderDistance() {
+        return effectiveRenderDistance;
+    }
+    
+    public FrameBudgetController getBudgetController() {
+        return budgetController;
+    }
+    
     public SchematicRenderer getSchematicRenderer() {
         return schematicRenderer;
     }
@@ -0,0 +1,61 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Mallado de una sección 16^3 que omite las caras tapadas por un vecino opaco
+ * Trabaja sobre una SectionSnapshot, así puede ejecutarse fuera del hilo que edita el schematic
+ * No es seguro entre hilos: cada hilo de mallado debe usar su propia instancia
+ */
+public class SectionMesher {
+    
+    private static final Direction[] FACES = Direction.values();
+    
+    /**
+     * Genera las caras visibles de una sección tomando la copia en el momento
+     */
+    public void mesh(SchematicStorage storage, Section section, QuadSink sink) {
+        mesh(SectionSnapshot.capture(storage, section), sink);
+    }
+    
+    /**
+     * Emite una cara por cada lado de bloque que no esté tapado
+     */
+    public void mesh(SectionSnapshot snapshot, QuadSink sink) {
+        RenderStateTable table = RenderStateTable.getInstance();
+        int baseX = snapshot.getSectionX() << 4;
+        int baseY = snapshot.getSectionY() << 4;
+        int baseZ = snapshot.getSectionZ() << 4;
+        
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                int index = SectionSnapshot.index(0, y, z);
+                for (int x = 0; x < 16; x++, index += SectionSnapshot.STRIDE_X) {
+                    int state = snapshot.getState(index);
+                    if (state == StatePalette.EMPTY) {
+                        continue;
+                    }
+                    
+                    for (Direction face : FACES) {
+                        int neighbour = snapshot.getState(index + SectionSnapshot.neighbourOffset(face));
+                        if (isFaceVisible(table, state, neighbour)) {
+                            sink.quad(face, baseX + x, baseY + y, baseZ + z, 1, 1, state);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Una cara se ve si el vecino está vacío o no es opaco, salvo entre bloques iguales
+     * (como el cristal de vanilla)
+     */
+    protected static boolean isFaceVisible(RenderStateTable table, int state, int neighbour) {
+        return neighbour != state && !table.isOpaque(neighbour);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Copia inmutable de una sección 16^3 con un borde de un bloque de sus seis vecinas
+ * Se toma en el hilo que modifica el almacenamiento y se puede mallar en cualquier otro;
+ * cada consulta de vecino es un acceso a un array
+ */
+public class SectionSnapshot {
+    
+    public static final int PADDED_SIZE = SchematicStorage.SECTION_SIZE + 2;
+    
+    static final int STRIDE_X = 1;
+    static final int STRIDE_Z = PADDED_SIZE;
+    static final int STRIDE_Y = PADDED_SIZE * PADDED_SIZE;
+    
+    private final int sectionX;
+    private final int sectionY;
+    private final int sectionZ;
+    private final int[] states = new int[PADDED_SIZE * PADDED_SIZE * PADDED_SIZE];
+    
+    // Bit por cara (ordinal de Direction) con vecina no vacía
+    private int neighbourMask = 0;
+    
+    private SectionSnapshot(int sectionX, int sectionY, int sectionZ) {
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+    }
+    
+    /**
+     * Copia la sección y el borde de sus vecinas
+     */
+    public static SectionSnapshot capture(SchematicStorage storage, Section section) {
+        int sx = section.getSectionX();
+        int sy = section.getSectionY();
+        int sz = section.getSectionZ();
+        SectionSnapshot snapshot = new SectionSnapshot(sx, sy, sz);
+        int[] states = snapshot.states;
+        
+        for (int i = 0; i < SchematicStorage.SECTION_VOLUME; i++) {
+            states[index(i & 15, i >> 8, (i >> 4) & 15)] = section.getState(i);
+        }
+        
+        for (Direction face : Direction.values()) {
+            Section neighbour = storage.getSection(SchematicStorage.sectionKey(
+                sx + face.getOffsetX(), sy + face.getOffsetY(), sz + face.getOffsetZ()));
+            if (neighbour == null || neighbour.isEmpty()) {
+                continue;
+            }
+            
+            snapshot.neighbourMask |= 1 << face.ordinal();
+            
+            for (int a = 0; a < 16; a++) {
+                for (int b = 0; b < 16; b++) {
+                    switch (face) {
+                        case DOWN -> states[index(a, -1, b)] = neighbour.getState(a, 15, b);
+                        case UP -> states[index(a, 16, b)] = neighbour.getState(a, 0, b);
+                        case NORTH -> states[index(a, b, -1)] = neighbour.getState(a, b, 15);
+                        case SOUTH -> states[index(a, b, 16)] = neighbour.getState(a, b, 0);
+                        case WEST -> states[index(-1, b, a)] = neighbour.getState(15, b, a);
+                        case EAST -> states[index(16, b, a)] = neighbour.getState(0, b, a);
+                    }
+                }
+            }
+        }
+        
+        return snapshot;
+    }
+    
+    /**
+     * Copia la sección y su borde desde otra fuente de valores, en coordenadas locales del schematic
+     * Las caras de los vecinos no se marcan: el modo esqueleto solo usa copias del almacenamiento
+     */
+    public static SectionSnapshot capture(int sectionX, int sectionY, int sectionZ, StateSource source) {
+        SectionSnapshot snapshot = new SectionSnapshot(sectionX, sectionY, sectionZ);
+        int baseX = sectionX << 4;
+        int baseY = sectionY << 4;
+        int baseZ = sectionZ << 4;
+        
+        for (int y = -1; y <= 16; y++) {
+            for (int z = -1; z <= 16; z++) {
+                for (int x = -1; x <= 16; x++) {
+                    snapshot.states[index(x, y, z)] = source.getState(baseX + x, baseY + y, baseZ + z);
+                }
+            }
+        }
+        
+        return snapshot;
+    }
+    
+    /**
+     * Estado en coordenadas de sección (de -1 a 16 en cada eje)
+     */
+    public int getState(int x, int y, int z) {
+        return states[index(x, y, z)];
+    }
+    
+    /**
+     * Estado por índice del array con borde (ver index)
+     */
+    public int getState(int index) {
+        return states[index];
+    }
+    
+    /**
+     * Indica si la sección vecina de una cara tenía bloques al tomar la copia
+     */
+    public boolean hasNeighbour(Direction face) {
+        return (neighbourMask & (1 << face.ordinal())) != 0;
+    }
+    
+    public int getSectionX() {
+        return sectionX;
+    }
+    
+    public int getSectionY() {
+        return sectionY;
+    }
+    
+    public int getSectionZ() {
+        return sectionZ;
+    }
+    
+    /**
+     * Desplazamiento en el array hasta el vecino de una cara
+     */
+    public static int neighbourOffset(Direction face) {
+        return switch (face) {
+            case DOWN -> -STRIDE_Y;
+            case UP -> STRIDE_Y;
+            case NORTH -> -STRIDE_Z;
+            case SOUTH -> STRIDE_Z;
+            case WEST -> -STRIDE_X;
+            case EAST -> STRIDE_X;
+        };
+    }
+    
+    public static int index(int x, int y, int z) {
+        return (y + 1) * STRIDE_Y + (z + 1) * STRIDE_Z + (x + 1) * STRIDE_X;
+    }
+    
+    /**
+     * Valor de cada posición en coordenadas locales del schematic
+     */
+    @FunctionalInterface
+    public interface StateSource {
+        int getState(int x, int y, int z);
+    }
+}
\ No newline at end of file
@@ -14,10 +14,12 @@ import org.joml.Matrix4f;
 
 /**
  * Renderizador de cajas de selección
+ * La geometría se añade al lote del frame, que la dibuja junto con la de los demás renderizadores
  */
 public class SelectionBoxRenderer {
     
     private final MinecraftClient client;
+    private final RenderBatch renderBatch;
     
     private boolean enabled = true;
     private float lineWidth = 2.0f;
@@ -28,8 +30,9 @@ public class SelectionBoxRenderer {
     private static final float[] COLOR_BOX = {0.0f, 1.0f, 0.0f, 0.4f};  // Verde
     private static final float[] COLOR_EDGES = {1.0f, 1.0f, 0.0f, 0.6f}; // Amarillo
     
-    public SelectionBoxRenderer() {
+    public SelectionBoxRenderer(RenderBatch renderBatch) {
         this.client = MinecraftClient.getInstance();
+        this.renderBatch = renderBatch;
     }
     
     /**
@@ -59,30 +62,21 @@ public class SelectionBoxRenderer {
             matrices.push();
             matrices.translate(-cameraPos.x, -cameraPos.y, -cameraPos.z);
             
-            // Configurar renderizado
-            setupRenderState();
-            
-            Tessellator tessellator = Tessellator.getInstance();
-            BufferBuilder buffer = tessellator.begin();
-            
             // Renderizar posición 1
             if (pos1 != null) {
-                renderPosition(matrices, buffer, pos1, COLOR_POS1);
+                renderPosition(matrices, pos1, COLOR_POS1);
             }
             
             // Renderizar posición 2
             if (pos2 != null) {
-                renderPosition(matrices, buffer, pos2, COLOR_POS2);
+                renderPosition(matrices, pos2, COLOR_POS2);
             }
             
             // Renderizar caja de selección
             if (pos1 != null && pos2 != null) {
-                renderSelectionBox(matrices, buffer, pos1, pos2);
+                renderSelectionBox(matrices, pos1, pos2);
             }
             
-            // Restaurar estado
-            restoreRenderState();
-            
             matrices.pop();
             
         } catch (Exception e) {
@@ -103,10 +97,9 @@ public class SelectionBoxRenderer {
     /**
      * Renderiza un marcador de posición
      */
-    private void renderPosition(MatrixStack matrices, BufferBuilder buffer, BlockPos pos, float[] color) {
+    private void renderPosition(MatrixStack matrices, BlockPos pos, float[] color) {
         Matrix4f matrix = matrices.peek().getPositionMatrix();
-        
-        buffer.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
+        BufferBuilder buffer = renderBatch.lines(lineWidth);
         
         float x = pos.getX();
         float y = pos.getY();
@@ -122,20 +115,14 @@ public class SelectionBoxRenderer {
         // Cruz en Z
         addLine(buffer, matrix, x + 0.5f, y + 0.5f, z - size, x + 0.5f, y + 0.5f, z + 1 + size, color);
         
-        Tessellator.getInstance().draw();
-        
         // Renderizar cubo pequeño en el centro
-        renderSmallCube(matrices, buffer, pos, color);
+        renderSmallCube(matrix, buffer, pos, color);
     }
     
     /**
      * Renderiza un cubo pequeño
      */
-    private void renderSmallCube(MatrixStack matrices, BufferBuilder buffer, BlockPos pos, float[] color) {
-        Matrix4f matrix = matrices.peek().getPositionMatrix();
-        
-        buffer.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
-        
+    private void renderSmallCube(Matrix4f matrix, BufferBuilder buffer, BlockPos pos, float[] color) {
         float x = pos.getX() + 0.4f;
         float y = pos.getY() + 0.4f;
         float z = pos.getZ() + 0.4f;
@@ -143,14 +130,12 @@ public class SelectionBoxRenderer {
         
         // Aristas del cubo
         drawCubeEdges(buffer, matrix, x, y, z, size, color);
-        
-        Tessellator.getInstance().draw();
     }
     
     /**
      * Renderiza la caja de selección completa
      */
-    private void renderSelectionBox(MatrixStack matrices, BufferBuilder buffer, BlockPos pos1, BlockPos pos2) {
+    private void renderSelectionBox(MatrixStack matrices, BlockPos pos1, BlockPos pos2) {
         Matrix4f matrix = matrices.peek().getPositionMatrix();
         
         int minX = Math.min(pos1.getX(), pos2.getX());
@@ -162,14 +147,10 @@ public class SelectionBoxRenderer {
         int maxZ = Math.max(pos1.getZ(), pos2.getZ()) + 1;
         
         // Renderizar aristas
-        buffer.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
-        drawBoxEdges(buffer, matrix, minX, minY, minZ, maxX, maxY, maxZ, COLOR_EDGES);
-        Tessellator.getInstance().draw();
+        drawBoxEdges(renderBatch.lines(lineWidth), matrix, minX, minY, minZ, maxX, maxY, maxZ, COLOR_EDGES);
         
         // Renderizar caras translúcidas
-        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
-        drawBoxFaces(buffer, matrix, minX, minY, minZ, maxX, maxY, maxZ, COLOR_BOX);
-        Tessellator.getInstance().draw();
+        drawBoxFaces(renderBatch.quads(), matrix, minX, minY, minZ, maxX, maxY, maxZ, COLOR_BOX);
     }
     
     /**
@@ -284,28 +265,6 @@ public class SelectionBoxRenderer {
         buffer.vertex(matrix, x2, y2, z2).color(color[0], color[1], color[2], color[3]);
     }
     
-    /**
-     * Configura el estado de renderizado
-     */
-    private void setupRenderState() {
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-        RenderSystem.disableDepthTest();
-        RenderSystem.depthMask(false);
-        RenderSystem.lineWidth(lineWidth);
-        RenderSystem.setShader(GameRenderer::getPositionColorShader);
-    }
-    
-    /**
-     * Restaura el estado de renderizado
-     */
-    private void restoreRenderState() {
-        RenderSystem.enableDepthTest();
-        RenderSystem.depthMask(true);
-        RenderSystem.disableBlend();
-        RenderSystem.lineWidth(1.0f);
-    }
-    
     // Getters y Setters
     
     public boolean isEnabled() {
@@ -0,0 +1,341 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.util.math.Direction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Envolvente exterior de un schematic para el modo fantasma
+ * Se rellena el aire exterior desde una caja una sección más grande que el schematic;
+ * una cara es exterior si el bloque al que mira es aire alcanzable desde fuera, así que
+ * los patios en U o en L conservan sus caras y los huecos cerrados no aparecen
+ * El aire se guarda por sección: un bit por bloque en las secciones con bloques, y un
+ * conjunto con las secciones vacías que se alcanzan enteras desde fuera
+ * Es inmutable: los hilos de mallado pueden leerla mientras se construye otra
+ */
+public class ShellMap {
+    
+    // Palabras de 64 bits por sección, un bit por bloque con el índice de Section.index
+    public static final int MASK_WORDS = SchematicStorage.SECTION_VOLUME / 64;
+    
+    private static final Direction[] DIRECTIONS = Direction.values();
+    
+    // Caja en secciones, ya ampliada una sección por cada lado
+    private final int minSx;
+    private final int minSy;
+    private final int minSz;
+    private final int maxSx;
+    private final int maxSy;
+    private final int maxSz;
+    
+    // Aire exterior de las secciones con bloques y secciones vacías alcanzadas desde fuera
+    private final Map<Long, long[]> outsideAir;
+    private final Set<Long> outsideEmpty;
+    
+    private ShellMap(int minSx, int minSy, int minSz, int maxSx, int maxSy, int maxSz,
+                     Map<Long, long[]> outsideAir, Set<Long> outsideEmpty) {
+        this.minSx = minSx;
+        this.minSy = minSy;
+        this.minSz = minSz;
+        this.maxSx = maxSx;
+        this.maxSy = maxSy;
+        this.maxSz = maxSz;
+        this.outsideAir = outsideAir;
+        this.outsideEmpty = outsideEmpty;
+    }
+    
+    /**
+     * Bits de los bloques llenos de una sección, con el índice de Section.index
+     */
+    public static long[] solidMask(Section section) {
+        long[] mask = new long[MASK_WORDS];
+        for (int i = 0; i < SchematicStorage.SECTION_VOLUME; i++) {
+            if (section.getState(i) != StatePalette.EMPTY) {
+                mask[i >> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Rellena el aire exterior a partir de los bloques llenos de cada sección no vacía
+     * Las secciones que no aparecen se tratan como aire; no se modifica ninguna máscara
+     */
+    public static ShellMap build(Map<Long, long[]> solidMasks) {
+        if (solidMasks.isEmpty()) {
+            return new ShellMap(0, 0, 0, -1, -1, -1, Map.of(), Set.of());
+        }
+        
+        int minSx = Integer.MAX_VALUE;
+        int minSy = Integer.MAX_VALUE;
+        int minSz = Integer.MAX_VALUE;
+        int maxSx = Integer.MIN_VALUE;
+        int maxSy = Integer.MIN_VALUE;
+        int maxSz = Integer.MIN_VALUE;
+        
+        for (long key : solidMasks.keySet()) {
+            minSx = Math.min(minSx, SchematicStorage.unpackX(key));
+            minSy = Math.min(minSy, SchematicStorage.unpackY(key));
+            minSz = Math.min(minSz, SchematicStorage.unpackZ(key));
+            maxSx = Math.max(maxSx, SchematicStorage.unpackX(key));
+            maxSy = Math.max(maxSy, SchematicStorage.unpackY(key));
+            maxSz = Math.max(maxSz, SchematicStorage.unpackZ(key));
+        }
+        
+        Map<Long, long[]> outsideAir = new HashMap<>();
+        for (long key : solidMasks.keySet()) {
+            outsideAir.put(key, new long[MASK_WORDS]);
+        }
+        
+        ShellMap map = new ShellMap(minSx - 1, minSy - 1, minSz - 1, maxSx + 1, maxSy + 1, maxSz + 1,
+            outsideAir, new HashSet<>());
+        new FloodFill(map, solidMasks).run();
+        return map;
+    }
+    
+    /**
+     * Indica si la cara de un bloque (en coordenadas locales del schematic) es exterior,
+     * es decir, si el bloque al que mira es aire exterior
+     */
+    public boolean isOuterFace(Direction face, int x, int y, int z) {
+        return isOutsideAir(x + face.getOffsetX(), y + face.getOffsetY(), z + face.getOffsetZ());
+    }
+    
+    /**
+     * Indica si una posición es aire alcanzable desde fuera; fuera de la caja siempre lo es
+     */
+    public boolean isOutsideAir(int x, int y, int z) {
+        long key = SchematicStorage.sectionKey(x >> 4, y >> 4, z >> 4);
+        long[] air = outsideAir.get(key);
+        if (air != null) {
+            int index = Section.index(x & 15, y & 15, z & 15);
+            return (air[index >> 6] & (1L << index)) != 0;
+        }
+        
+        if (!contains(x >> 4, y >> 4, z >> 4)) {
+            return true;
+        }
+        return outsideEmpty.contains(key);
+    }
+    
+    /**
+     * Entrega las claves de las secciones cuyas caras exteriores pueden cambiar respecto a otra
+     * envolvente: las que tienen distinto aire exterior y sus vecinas, cuyas caras miran a ese aire
+     */
+    public void forEachChangedSection(ShellMap previous, LongConsumer sectionKeys) {
+        Set<Long> changed = new HashSet<>();
+        
+        for (int sx = Math.min(minSx, previous.minSx); sx <= Math.max(maxSx, previous.maxSx); sx++) {
+            for (int sy = Math.min(minSy, previous.minSy); sy <= Math.max(maxSy, previous.maxSy); sy++) {
+                for (int sz = Math.min(minSz, previous.minSz); sz <= Math.max(maxSz, previous.maxSz); sz++) {
+                    if (sameAir(previous, sx, sy, sz)) {
+                        continue;
+                    }
+                    
+                    changed.add(SchematicStorage.sectionKey(sx, sy, sz));
+                    for (Direction direction : DIRECTIONS) {
+                        changed.add(SchematicStorage.sectionKey(
+                            sx + direction.getOffsetX(), sy + direction.getOffsetY(), sz + direction.getOffsetZ()));
+                    }
+                }
+            }
+        }
+        
+        changed.forEach(sectionKeys::accept);
+    }
+    
+    /**
+     * Compara el aire exterior de una sección en las dos envolventes
+     */
+    private boolean sameAir(ShellMap previous, int sx, int sy, int sz) {
+        long key = SchematicStorage.sectionKey(sx, sy, sz);
+        long[] air = outsideAir.get(key);
+        long[] previousAir = previous.outsideAir.get(key);
+        
+        if (air != null || previousAir != null) {
+            return air != null && previousAir != null && Arrays.equals(air, previousAir);
+        }
+        return previous.isEmptyOutside(key, sx, sy, sz) == isEmptyOutside(key, sx, sy, sz);
+    }
+    
+    private boolean isEmptyOutside(long key, int sx, int sy, int sz) {
+        return !contains(sx, sy, sz) || outsideEmpty.contains(key);
+    }
+    
+    private boolean contains(int sx, int sy, int sz) {
+        return sx >= minSx && sy >= minSy && sz >= minSz && sx <= maxSx && sy <= maxSy && sz <= maxSz;
+    }
+    
+    /**
+     * Relleno por anchura del aire exterior
+     * Las secciones vacías se recorren enteras de una vez; en las que tienen bloques se
+     * avanza bloque a bloque. La esquina de la caja ampliada siempre es vacía y sirve de semilla
+     */
+    private static class FloodFill {
+        
+        private final ShellMap map;
+        private final Map<Long, long[]> solidMasks;
+        private final LongQueue emptyQueue = new LongQueue();
+        
+        // Pares de clave de sección e índice del bloque
+        private final LongQueue cellQueue = new LongQueue();
+        
+        FloodFill(ShellMap map, Map<Long, long[]> solidMasks) {
+            this.map = map;
+            this.solidMasks = solidMasks;
+        }
+        
+        void run() {
+            visitSection(map.minSx, map.minSy, map.minSz);
+            
+            while (!emptyQueue.isEmpty() || !cellQueue.isEmpty()) {
+                while (!cellQueue.isEmpty()) {
+                    expandCell(cellQueue.poll(), (int) cellQueue.poll());
+                }
+                if (!emptyQueue.isEmpty()) {
+                    expandEmpty(emptyQueue.poll());
+                }
+            }
+        }
+        
+        /**
+         * Desde una sección vacía exterior se alcanzan las vecinas vacías enteras y
+         * la cara de bloques que toca en las vecinas con bloques
+         */
+        private void expandEmpty(long key) {
+            int sx = SchematicStorage.unpackX(key);
+            int sy = SchematicStorage.unpackY(key);
+            int sz = SchematicStorage.unpackZ(key);
+            
+            for (Direction direction : DIRECTIONS) {
+                int nx = sx + direction.getOffsetX();
+                int ny = sy + direction.getOffsetY();
+                int nz = sz + direction.getOffsetZ();
+                if (!map.contains(nx, ny, nz)) {
+                    continue;
+                }
+                
+                long neighbour = SchematicStorage.sectionKey(nx, ny, nz);
+                long[] solid = solidMasks.get(neighbour);
+                if (solid == null) {
+                    visitSection(nx, ny, nz);
+                    continue;
+                }
+                
+                long[] air = map.outsideAir.get(neighbour);
+                for (int a = 0; a < 16; a++) {
+                    for (int b = 0; b < 16; b++) {
+                        visitCell(neighbour, solid, air, faceIndex(direction.getOpposite(), a, b));
+                    }
+                }
+            }
+        }
+        
+        private void expandCell(long key, int index) {
+            long[] solid = solidMasks.get(key);
+            long[] air = map.outsideAir.get(key);
+            int x = index & 15;
+            int y = index >> 8;
+            int z = (index >> 4) & 15;
+            
+            for (Direction direction : DIRECTIONS) {
+                int nx = x + direction.getOffsetX();
+                int ny = y + direction.getOffsetY();
+                int nz = z + direction.getOffsetZ();
+                
+                if (nx >= 0 && ny >= 0 && nz >= 0 && nx < 16 && ny < 16 && nz < 16) {
+                    visitCell(key, solid, air, Section.index(nx, ny, nz));
+                    continue;
+                }
+                
+                int sx = SchematicStorage.unpackX(key) + direction.getOffsetX();
+                int sy = SchematicStorage.unpackY(key) + direction.getOffsetY();
+                int sz = SchematicStorage.unpackZ(key) + direction.getOffsetZ();
+                if (!map.contains(sx, sy, sz)) {
+                    continue;
+                }
+                
+                long neighbour = SchematicStorage.sectionKey(sx, sy, sz);
+                long[] neighbourSolid = solidMasks.get(neighbour);
+                if (neighbourSolid == null) {
+                    visitSection(sx, sy, sz);
+                } else {
+                    visitCell(neighbour, neighbourSolid, map.outsideAir.get(neighbour),
+                        Section.index(nx & 15, ny & 15, nz & 15));
+                }
+            }
+        }
+        
+        private void visitSection(int sx, int sy, int sz) {
+            long key = SchematicStorage.sectionKey(sx, sy, sz);
+            if (map.outsideEmpty.add(key)) {
+                emptyQueue.add(key);
+            }
+        }
+        
+        private void visitCell(long key, long[] solid, long[] air, int index) {
+            long bit = 1L << index;
+            if ((solid[index >> 6] & bit) != 0 || (air[index >> 6] & bit) != 0) {
+                return;
+            }
+            air[index >> 6] |= bit;
+            cellQueue.add(key);
+            cellQueue.add(index);
+        }
+        
+        /**
+         * Índice de un bloque de la cara de una sección que mira en una dirección
+         */
+        private static int faceIndex(Direction face, int a, int b) {
+            return switch (face) {
+                case DOWN -> Section.index(a, 0, b);
+                case UP -> Section.index(a, 15, b);
+                case NORTH -> Section.index(a, b, 0);
+                case SOUTH -> Section.index(a, b, 15);
+                case WEST -> Section.index(0, a, b);
+                case EAST -> Section.index(15, a, b);
+            };
+        }
+    }
+    
+    /**
+     * Cola de longs sin cajas, que crece según haga falta
+     */
+    private static class LongQueue {
+        
+        private long[] values = new long[1024];
+        private int head = 0;
+        private int tail = 0;
+        
+        void add(long value) {
+            if (tail == values.length) {
+                if (head > values.length / 2) {
+                    System.arraycopy(values, head, values, 0, tail - head);
+                } else {
+                    values = Arrays.copyOf(values, values.length * 2);
+                    System.arraycopy(values, head, values, 0, tail - head);
+                }
+                tail -= head;
+                head = 0;
+            }
+            values[tail++] = value;
+        }
+        
+        long poll() {
+            return values[head++];
+        }
+        
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+}
\ No newline at end of file
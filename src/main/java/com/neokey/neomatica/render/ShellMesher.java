@@ -0,0 +1,47 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Mallado del modo fantasma: solo las caras exteriores del schematic
+ * Una cara se emite si el bloque al que mira es aire exterior según la envolvente,
+ * así que los interiores, los huecos cerrados y las caras tapadas nunca llegan a la malla
+ * No es seguro entre hilos: cada hilo de mallado debe usar su propia instancia
+ */
+public class ShellMesher extends SectionMesher {
+    
+    private static final Direction[] FACES = Direction.values();
+    
+    private final ShellMap shellMap;
+    
+    public ShellMesher(ShellMap shellMap) {
+        this.shellMap = shellMap;
+    }
+    
+    @Override
+    public void mesh(SectionSnapshot snapshot, QuadSink sink) {
+        int baseX = snapshot.getSectionX() << 4;
+        int baseY = snapshot.getSectionY() << 4;
+        int baseZ = snapshot.getSectionZ() << 4;
+        
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                int index = SectionSnapshot.index(0, y, z);
+                for (int x = 0; x < 16; x++, index += SectionSnapshot.STRIDE_X) {
+                    int state = snapshot.getState(index);
+                    if (state == StatePalette.EMPTY) {
+                        continue;
+                    }
+                    
+                    for (Direction face : FACES) {
+                        if (shellMap.isOuterFace(face, baseX + x, baseY + y, baseZ + z)) {
+                            sink.quad(face, baseX + x, baseY + y, baseZ + z, 1, 1, state);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,350 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.render.ThumbnailRenderer.Heightmap;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.codec.CodecRegistry;
+import com.neokey.neomatica.schematic.codec.SchematicVisitor;
+import com.neokey.neomatica.util.SaveQueue;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Miniaturas de archivos de schematic para las listas
+ * Un hilo en segundo plano lee el archivo con su códec directamente a un mapa de alturas (sin
+ * cargar el schematic ni registrar sus estados en la paleta global), lo dibuja con ThumbnailRenderer y lo guarda como PNG en
+ * schematics/.thumbnails, con el hash del contenido del archivo como nombre; el hilo de render
+ * solo sube las imágenes terminadas a texturas, con un máximo por frame y un LRU de texturas
+ */
+public class ThumbnailCache {
+    
+    public static final int SIZE = 64;
+    
+    private static final String CACHE_DIRECTORY = ".thumbnails";
+    
+    // Texturas residentes en la GPU; las menos usadas se liberan
+    private static final int MAX_TEXTURES = 128;
+    
+    // Subidas a la GPU por frame, para no tener picos al desplazar una lista larga
+    private static final int MAX_UPLOADS_PER_FRAME = 2;
+    
+    // Peticiones en espera; al desplazar la lista las más antiguas ya no están a la vista
+    private static final int MAX_QUEUED = 32;
+    
+    private final File cacheDirectory;
+    private final Thread worker;
+    private final Object lock = new Object();
+    
+    // Peticiones en espera; la última pedida se atiende primero (solo con lock)
+    private final Deque<ThumbnailRequest> queue = new ArrayDeque<>();
+    private boolean running = true;
+    
+    // Claves pedidas y aún sin textura, y claves sin miniatura posible (archivo ilegible o vacío)
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+    private final Set<String> unavailable = ConcurrentHashMap.newKeySet();
+    private final Queue<ThumbnailResult> finished = new ConcurrentLinkedQueue<>();
+    
+    // LRU de texturas por clave; solo se usa desde el hilo de render
+    private final LinkedHashMap<String, Identifier> textures = new LinkedHashMap<>(16, 0.75f, true);
+    private int nextTextureId = 0;
+    
+    public ThumbnailCache(String schematicsDirectory) {
+        this.cacheDirectory = new File(schematicsDirectory, CACHE_DIRECTORY);
+        this.worker = new Thread(this::run, "Neomatica-Thumbnails");
+        this.worker.setDaemon(true);
+        this.worker.setPriority(Thread.MIN_PRIORITY);
+        this.worker.start();
+    }
+    
+    /**
+     * Clave de la miniatura de un archivo; consulta el sistema de archivos, así que quien dibuja
+     * una lista debe calcularla una vez por entrada y no en cada frame
+     *
+     * @return null si el archivo no existe
+     */
+    public static String keyOf(File file) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        
+        // El tamaño y la fecha bastan para saber si hay que volver a hashear el archivo
+        return file.getPath() + "|" + file.lastModified() + "|" + file.length();
+    }
+    
+    /**
+     * Obtiene la textura de la miniatura de un archivo, o la encarga si aún no está lista
+     * Debe llamarse desde el hilo de render
+     *
+     * @param key clave calculada con keyOf(file); null si el archivo no existe
+     * @return identificador de la textura, o null mientras se genera o si no hay miniatura
+     */
+    public Identifier getThumbnail(String key, File file) {
+        if (key == null) {
+            return null;
+        }
+        
+        Identifier texture = textures.get(key);
+        if (texture != null || unavailable.contains(key)) {
+            return texture;
+        }
+        
+        if (requested.add(key)) {
+            synchronized (lock) {
+                queue.addFirst(new ThumbnailRequest(key, file));
+                while (queue.size() > MAX_QUEUED) {
+                    requested.remove(queue.removeLast().key);
+                }
+                lock.notify();
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Sube a texturas las miniaturas terminadas, como mucho MAX_UPLOADS_PER_FRAME por llamada
+     * Debe llamarse desde el hilo de render
+     */
+    public void uploadFinished() {
+        ThumbnailResult result;
+        int uploads = 0;
+        
+        while (uploads < MAX_UPLOADS_PER_FRAME && (result = finished.poll()) != null) {
+            requested.remove(result.key);
+            
+            if (result.image == null) {
+                unavailable.add(result.key);
+                continue;
+            }
+            
+            Identifier id = Identifier.of(Neomatica.MOD_ID, "thumbnails/" + nextTextureId++);
+            MinecraftClient.getInstance().getTextureManager().registerTexture(id, new NativeImageBackedTexture(result.image));
+            textures.put(result.key, id);
+            uploads++;
+            
+            evict();
+        }
+    }
+    
+    /**
+     * Libera las texturas menos usadas por encima de MAX_TEXTURES
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Identifier>> iterator = textures.entrySet().iterator();
+        while (textures.size() > MAX_TEXTURES && iterator.hasNext()) {
+            Identifier id = iterator.next().getValue();
+            iterator.remove();
+            MinecraftClient.getInstance().getTextureManager().destroyTexture(id);
+        }
+    }
+    
+    /**
+     * Bucle del hilo de miniaturas
+     */
+    private void run() {
+        while (true) {
+            ThumbnailRequest request;
+            
+            synchronized (lock) {
+                while (running && queue.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                request = queue.removeFirst();
+            }
+            
+            NativeImage image = null;
+            try {
+                image = load(request.file);
+            } catch (Exception e) {
+                Neomatica.LOGGER.warn("No se pudo generar la miniatura de {}: {}", request.file.getName(), e.getMessage());
+            }
+            
+            finished.add(new ThumbnailResult(request.key, image));
+        }
+    }
+    
+    /**
+     * Lee la miniatura del disco o la dibuja y la guarda
+     */
+    private NativeImage load(File file) throws IOException {
+        File cacheFile = new File(cacheDirectory, hash(file) + "_" + SIZE + ".png");
+        
+        if (cacheFile.isFile()) {
+            try (InputStream in = Files.newInputStream(cacheFile.toPath())) {
+                return NativeImage.read(in);
+            } catch (IOException e) {
+                // PNG dañado: se vuelve a generar
+                Neomatica.LOGGER.warn("Miniatura en caché ilegible, regenerando: {}", cacheFile.getName());
+            }
+        }
+        
+        HeightmapVisitor visitor = new HeightmapVisitor();
+        CodecRegistry.getInstance().detect(file).read(file, visitor);
+        if (visitor.heightmap == null) {
+            return null;
+        }
+        
+        NativeImage image = ThumbnailRenderer.render(visitor.heightmap, SIZE);
+        if (image == null) {
+            return null;
+        }
+        
+        byte[] png = image.getBytes();
+        SaveQueue saveQueue = Neomatica.getInstance().getSaveQueue();
+        if (saveQueue != null) {
+            saveQueue.submitWrite(cacheFile, out -> out.write(png));
+        }
+        
+        return image;
+    }
+    
+    /**
+     * SHA-1 del contenido del archivo en hexadecimal
+     */
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    /**
+     * Detiene el hilo, descarta las imágenes pendientes y libera las texturas
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            running = false;
+            queue.clear();
+            lock.notify();
+        }
+        
+        ThumbnailResult result;
+        while ((result = finished.poll()) != null) {
+            if (result.image != null) {
+                result.image.close();
+            }
+        }
+        
+        for (Identifier id : textures.values()) {
+            MinecraftClient.getInstance().getTextureManager().destroyTexture(id);
+        }
+        textures.clear();
+        requested.clear();
+    }
+    
+    /**
+     * Rellena el mapa de alturas según el códec va entregando secciones
+     * Los colores se resuelven por clave con una paleta local, de modo que un archivo con miles
+     * de estados no llena la paleta global ni se queda en memoria
+     */
+    private static class HeightmapVisitor implements SchematicVisitor {
+        private final RenderStateTable stateTable = RenderStateTable.getInstance();
+        private final Map<String, Integer> colorsByKey = new HashMap<>();
+        private int[] colors = new int[0];
+        private Heightmap heightmap;
+        
+        @Override
+        public void visitHeader(String name, Vec3i size, BlockPos origin) {
+            int sizeX = Math.abs(size.getX());
+            int sizeZ = Math.abs(size.getZ());
+            if (sizeX > 0 && sizeZ > 0) {
+                heightmap = new Heightmap(0, 0, sizeX - 1, sizeZ - 1);
+            }
+        }
+        
+        @Override
+        public void visitPalette(String[] stateKeys) {
+            colors = new int[stateKeys.length];
+            for (int i = 0; i < stateKeys.length; i++) {
+                if (stateKeys[i] != null) {
+                    colors[i] = colorsByKey.computeIfAbsent(stateKeys[i], stateTable::getColor);
+                }
+            }
+        }
+        
+        @Override
+        public void visitSection(int sectionX, int sectionY, int sectionZ, int[] paletteIndices) {
+            if (heightmap == null) {
+                return;
+            }
+            
+            int baseX = sectionX << 4;
+            int baseY = sectionY << 4;
+            int baseZ = sectionZ << 4;
+            
+            for (int i = 0; i < SchematicStorage.SECTION_VOLUME; i++) {
+                int index = paletteIndices[i];
+                int color = index >= 0 && index < colors.length ? colors[index] : 0;
+                if (color != 0) {
+                    heightmap.add(baseX + (i & 15), baseY + (i >> 8), baseZ + ((i >> 4) & 15), color);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Miniatura pedida a la espera del hilo
+     */
+    private static class ThumbnailRequest {
+        final String key;
+        final File file;
+        
+        ThumbnailRequest(String key, File file) {
+            this.key = key;
+            this.file = file;
+        }
+    }
+    
+    /**
+     * Imagen terminada lista para subir, o null si el archivo no tiene miniatura
+     */
+    private static class ThumbnailResult {
+        final String key;
+        final NativeImage image;
+        
+        ThumbnailResult(String key, NativeImage image) {
+            this.key = key;
+            this.image = image;
+        }
+    }
+}
\ No newline at end of file
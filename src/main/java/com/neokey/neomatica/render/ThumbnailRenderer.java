@@ -0,0 +1,337 @@
+package com.neokey.neomatica.render;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import net.minecraft.client.texture.NativeImage;
+
+import java.util.Arrays;
+
+/**
+ * Miniaturas isométricas de schematics dibujadas en la CPU
+ * Cada columna XZ se reduce a su bloque más alto y a su altura (un mapa de alturas) y se dibuja
+ * como un prisma con el color de paleta de ese bloque, de atrás hacia delante
+ * No usa OpenGL, así que puede ejecutarse en cualquier hilo
+ */
+public final class ThumbnailRenderer {
+    
+    // Lado máximo del mapa de alturas; los schematics más grandes agrupan varias columnas por celda
+    private static final int MAX_GRID = 512;
+    
+    // Sombreado de las caras que miran a +Z (izquierda) y a +X (derecha)
+    private static final float LEFT_SHADE = 0.8f;
+    private static final float RIGHT_SHADE = 0.6f;
+    
+    private ThumbnailRenderer() {
+    }
+    
+    /**
+     * Dibuja la miniatura de un almacenamiento en una imagen cuadrada con fondo transparente
+     *
+     * @return null si el almacenamiento no tiene bloques
+     */
+    public static NativeImage render(SchematicStorage storage, int size) {
+        return toImage(renderPixels(storage, size), size);
+    }
+    
+    /**
+     * Dibuja la miniatura de un mapa de alturas ya rellenado
+     *
+     * @return null si el mapa no tiene bloques
+     */
+    public static NativeImage render(Heightmap heightmap, int size) {
+        return toImage(renderPixels(heightmap, size), size);
+    }
+    
+    private static NativeImage toImage(int[] pixels, int size) {
+        if (pixels == null) {
+            return null;
+        }
+        
+        NativeImage image = new NativeImage(size, size, true);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int argb = pixels[y * size + x];
+                // NativeImage guarda los píxeles en ABGR
+                int abgr = (argb & 0xFF00FF00) | ((argb >> 16) & 0xFF) | ((argb & 0xFF) << 16);
+                image.setColor(x, y, abgr);
+            }
+        }
+        return image;
+    }
+    
+    /**
+     * Dibuja la miniatura de un almacenamiento en un array de píxeles ARGB por filas
+     */
+    static int[] renderPixels(SchematicStorage storage, int size) {
+        // Límites en secciones de las secciones con bloques
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        
+        for (Section section : storage.getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            minX = Math.min(minX, section.getSectionX() << 4);
+            minZ = Math.min(minZ, section.getSectionZ() << 4);
+            maxX = Math.max(maxX, (section.getSectionX() << 4) + 15);
+            maxZ = Math.max(maxZ, (section.getSectionZ() << 4) + 15);
+        }
+        
+        if (minX == Integer.MAX_VALUE) {
+            return null;
+        }
+        
+        Heightmap heightmap = new Heightmap(minX, minZ, maxX, maxZ);
+        RenderStateTable stateTable = RenderStateTable.getInstance();
+        
+        for (Section section : storage.getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            
+            int baseX = section.getSectionX() << 4;
+            int baseY = section.getSectionY() << 4;
+            int baseZ = section.getSectionZ() << 4;
+            
+            for (int i = 0; i < SchematicStorage.SECTION_VOLUME; i++) {
+                int state = section.getState(i);
+                if (state != StatePalette.EMPTY) {
+                    heightmap.add(baseX + (i & 15), baseY + (i >> 8), baseZ + ((i >> 4) & 15), stateTable.getColor(state));
+                }
+            }
+        }
+        
+        return renderPixels(heightmap, size);
+    }
+    
+    /**
+     * Dibuja un mapa de alturas en un array de píxeles ARGB por filas
+     */
+    static int[] renderPixels(Heightmap heightmap, int size) {
+        if (heightmap.isEmpty()) {
+            return null;
+        }
+        
+        int gridWidth = heightmap.gridWidth;
+        int gridDepth = heightmap.gridDepth;
+        int cellSize = heightmap.cellSize;
+        int lowestY = heightmap.lowestY;
+        int[] top = heightmap.top;
+        int[] bottom = heightmap.bottom;
+        
+        // Proyección isométrica 2:1 en unidades de celda; las alturas también se dividen por la celda
+        float height = (heightmap.highestY - lowestY + 1) / (float) cellSize;
+        float span = gridWidth + gridDepth;
+        float unit = Math.min(size / span, size / (span / 2.0f + height));
+        float offsetX = gridDepth * unit + (size - span * unit) / 2.0f;
+        float offsetY = height * unit + (size - (span / 2.0f + height) * unit) / 2.0f;
+        
+        Projection projection = new Projection(unit, offsetX, offsetY);
+        Raster raster = new Raster(size);
+        
+        // De atrás hacia delante: las columnas con mayor X + Z quedan más cerca
+        for (int diagonal = 0; diagonal < gridWidth + gridDepth - 1; diagonal++) {
+            int fromX = Math.max(0, diagonal - gridDepth + 1);
+            int toX = Math.min(gridWidth - 1, diagonal);
+            
+            for (int cx = fromX; cx <= toX; cx++) {
+                int cz = diagonal - cx;
+                int column = cz * gridWidth + cx;
+                if (top[column] == Integer.MIN_VALUE) {
+                    continue;
+                }
+                
+                float y0 = (bottom[column] - lowestY) / (float) cellSize;
+                float y1 = (top[column] - lowestY + 1) / (float) cellSize;
+                
+                drawColumn(raster, projection, cx, cz, y0, y1, heightmap.topColor[column]);
+            }
+        }
+        
+        return raster.pixels;
+    }
+    
+    /**
+     * Dibuja las tres caras visibles de una columna: arriba, +Z y +X
+     */
+    private static void drawColumn(Raster raster, Projection p, int x, int z, float y0, float y1, int color) {
+        int x1 = x + 1;
+        int z1 = z + 1;
+        
+        raster.fillQuad(
+            p.screenX(x, z1), p.screenY(x, y0, z1),
+            p.screenX(x1, z1), p.screenY(x1, y0, z1),
+            p.screenX(x1, z1), p.screenY(x1, y1, z1),
+            p.screenX(x, z1), p.screenY(x, y1, z1),
+            shade(color, LEFT_SHADE));
+        
+        raster.fillQuad(
+            p.screenX(x1, z), p.screenY(x1, y0, z),
+            p.screenX(x1, z1), p.screenY(x1, y0, z1),
+            p.screenX(x1, z1), p.screenY(x1, y1, z1),
+            p.screenX(x1, z), p.screenY(x1, y1, z),
+            shade(color, RIGHT_SHADE));
+        
+        raster.fillQuad(
+            p.screenX(x, z), p.screenY(x, y1, z),
+            p.screenX(x1, z), p.screenY(x1, y1, z),
+            p.screenX(x1, z1), p.screenY(x1, y1, z1),
+            p.screenX(x, z1), p.screenY(x, y1, z1),
+            color);
+    }
+    
+    private static int shade(int argb, float factor) {
+        int r = (int) (((argb >> 16) & 0xFF) * factor);
+        int g = (int) (((argb >> 8) & 0xFF) * factor);
+        int b = (int) ((argb & 0xFF) * factor);
+        return (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+    
+    /**
+     * Mapa de alturas de una miniatura: bloque más alto y más bajo de cada columna XZ y el color
+     * del más alto; se rellena bloque a bloque, sin pasar por la paleta global
+     */
+    public static class Heightmap {
+        private final int minX;
+        private final int minZ;
+        private final int cellSize;
+        private final int gridWidth;
+        private final int gridDepth;
+        private final int[] top;
+        private final int[] bottom;
+        private final int[] topColor;
+        private int lowestY = Integer.MAX_VALUE;
+        private int highestY = Integer.MIN_VALUE;
+        
+        /**
+         * @param minX límites en bloques (inclusivos) de las columnas que se van a añadir
+         */
+        public Heightmap(int minX, int minZ, int maxX, int maxZ) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.cellSize = Math.max(1, (Math.max(maxX - minX + 1, maxZ - minZ + 1) + MAX_GRID - 1) / MAX_GRID);
+            this.gridWidth = (maxX - minX) / cellSize + 1;
+            this.gridDepth = (maxZ - minZ) / cellSize + 1;
+            this.top = new int[gridWidth * gridDepth];
+            this.bottom = new int[gridWidth * gridDepth];
+            this.topColor = new int[gridWidth * gridDepth];
+            Arrays.fill(top, Integer.MIN_VALUE);
+            Arrays.fill(bottom, Integer.MAX_VALUE);
+        }
+        
+        /**
+         * Añade un bloque con su color ARGB; los que quedan fuera de los límites se ignoran
+         */
+        public void add(int x, int y, int z, int color) {
+            int cx = (x - minX) / cellSize;
+            int cz = (z - minZ) / cellSize;
+            if (x < minX || z < minZ || cx >= gridWidth || cz >= gridDepth) {
+                return;
+            }
+            
+            int column = cz * gridWidth + cx;
+            if (y > top[column]) {
+                top[column] = y;
+                topColor[column] = color;
+            }
+            bottom[column] = Math.min(bottom[column], y);
+            lowestY = Math.min(lowestY, y);
+            highestY = Math.max(highestY, y);
+        }
+        
+        public boolean isEmpty() {
+            return highestY == Integer.MIN_VALUE;
+        }
+    }
+    
+    /**
+     * Proyección isométrica de celdas a píxeles
+     */
+    private static class Projection {
+        final float unit;
+        final float offsetX;
+        final float offsetY;
+        
+        Projection(float unit, float offsetX, float offsetY) {
+            this.unit = unit;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+        
+        float screenX(float x, float z) {
+            return (x - z) * unit + offsetX;
+        }
+        
+        float screenY(float x, float y, float z) {
+            return (x + z) * unit / 2.0f - y * unit + offsetY;
+        }
+    }
+    
+    /**
+     * Imagen ARGB con relleno de cuadriláteros convexos por el centro de cada píxel
+     */
+    private static class Raster {
+        final int size;
+        final int[] pixels;
+        
+        Raster(int size) {
+            this.size = size;
+            this.pixels = new int[size * size];
+        }
+        
+        /**
+         * Rellena un cuadrilátero convexo; si es más pequeño que un píxel pinta el píxel de su centro
+         * para que los schematics grandes no se queden con huecos
+         */
+        void fillQuad(float ax, float ay, float bx, float by, float cx, float cy, float dx, float dy, int color) {
+            float minX = Math.min(Math.min(ax, bx), Math.min(cx, dx));
+            float maxX = Math.max(Math.max(ax, bx), Math.max(cx, dx));
+            float minY = Math.min(Math.min(ay, by), Math.min(cy, dy));
+            float maxY = Math.max(Math.max(ay, by), Math.max(cy, dy));
+            
+            int fromX = Math.max(0, (int) Math.ceil(minX - 0.5f));
+            int toX = Math.min(size - 1, (int) Math.floor(maxX - 0.5f));
+            int fromY = Math.max(0, (int) Math.ceil(minY - 0.5f));
+            int toY = Math.min(size - 1, (int) Math.floor(maxY - 0.5f));
+            
+            if (fromX > toX || fromY > toY) {
+                plot((int) ((ax + bx + cx + dx) / 4.0f), (int) ((ay + by + cy + dy) / 4.0f), color);
+                return;
+            }
+            
+            // Sentido de giro del cuadrilátero, para aceptar ambos órdenes de vértices
+            float winding = Math.signum((bx - ax) * (cy - ay) - (by - ay) * (cx - ax)
+                + (cx - ax) * (dy - ay) - (cy - ay) * (dx - ax));
+            if (winding == 0.0f) {
+                return;
+            }
+            
+            for (int py = fromY; py <= toY; py++) {
+                float sy = py + 0.5f;
+                for (int px = fromX; px <= toX; px++) {
+                    float sx = px + 0.5f;
+                    if (inside(ax, ay, bx, by, sx, sy, winding)
+                            && inside(bx, by, cx, cy, sx, sy, winding)
+                            && inside(cx, cy, dx, dy, sx, sy, winding)
+                            && inside(dx, dy, ax, ay, sx, sy, winding)) {
+                        pixels[py * size + px] = color;
+                    }
+                }
+            }
+        }
+        
+        private static boolean inside(float x0, float y0, float x1, float y1, float px, float py, float winding) {
+            return ((x1 - x0) * (py - y0) - (y1 - y0) * (px - x0)) * winding >= 0.0f;
+        }
+        
+        private void plot(int x, int y, int color) {
+            if (x >= 0 && x < size && y >= 0 && y < size) {
+                pixels[y * size + x] = color;
+            }
+        }
+    }
+}
\ No newline at end of file
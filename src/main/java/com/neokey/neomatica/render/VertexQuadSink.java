@@ -0,0 +1,125 @@
+package com.neokey.neomatica.render;
+
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.util.math.Direction;
+
+import org.joml.Matrix4f;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Convierte las caras de un mallado en vértices de posición y color
+ */
+public class VertexQuadSink implements QuadSink {
+    
+    // Sombreado por cara (abajo, arriba, norte, sur, oeste, este)
+    private static final float[] FACE_SHADE = {0.6f, 1.2f, 0.8f, 1.0f, 1.0f, 0.8f};
+    
+    private final VertexConsumer buffer;
+    private final Matrix4f matrix;
+    private final IntUnaryOperator colorOf;
+    private final float alpha;
+    private final boolean shaded;
+    private final float inset;
+    
+    private int quadCount = 0;
+    
+    /**
+     * @param buffer  destino de los vértices
+     * @param matrix  matriz a aplicar a las posiciones, o null para dejarlas en coordenadas locales
+     * @param colorOf color RGB de un id de estado
+     * @param alpha   opacidad de todas las caras
+     * @param shaded  si se oscurecen las caras según su orientación
+     * @param inset   margen hacia dentro de cada cara para evitar z-fighting
+     */
+    public VertexQuadSink(VertexConsumer buffer, Matrix4f matrix, IntUnaryOperator colorOf,
+                          float alpha, boolean shaded, float inset) {
+        this.buffer = buffer;
+        this.matrix = matrix;
+        this.colorOf = colorOf;
+        this.alpha = alpha;
+        this.shaded = shaded;
+        this.inset = inset;
+    }
+    
+    @Override
+    public void quad(Direction face, int x, int y, int z, int width, int height, int state) {
+        int color = colorOf.applyAsInt(state);
+        float shade = shaded ? FACE_SHADE[face.ordinal()] : 1.0f;
+        float r = Math.min(((color >> 16) & 0xFF) / 255.0f * shade, 1.0f);
+        float g = Math.min(((color >> 8) & 0xFF) / 255.0f * shade, 1.0f);
+        float b = Math.min((color & 0xFF) / 255.0f * shade, 1.0f);
+        
+        // Extensión del rectángulo según los ejes U y V de la cara
+        int sizeX = face.getAxis() == Direction.Axis.X ? 1 : width;
+        int sizeY = face.getAxis() == Direction.Axis.Y ? 1 : height;
+        int sizeZ = switch (face.getAxis()) {
+            case X -> width;
+            case Y -> height;
+            case Z -> 1;
+        };
+        
+        float x1 = x + inset;
+        float y1 = y + inset;
+        float z1 = z + inset;
+        float x2 = x + sizeX - inset;
+        float y2 = y + sizeY - inset;
+        float z2 = z + sizeZ - inset;
+        
+        switch (face) {
+            case DOWN -> {
+                vertex(x1, y1, z1, r, g, b);
+                vertex(x2, y1, z1, r, g, b);
+                vertex(x2, y1, z2, r, g, b);
+                vertex(x1, y1, z2, r, g, b);
+            }
+            case UP -> {
+                vertex(x1, y2, z1, r, g, b);
+                vertex(x1, y2, z2, r, g, b);
+                vertex(x2, y2, z2, r, g, b);
+                vertex(x2, y2, z1, r, g, b);
+            }
+            case NORTH -> {
+                vertex(x1, y1, z1, r, g, b);
+                vertex(x1, y2, z1, r, g, b);
+                vertex(x2, y2, z1, r, g, b);
+                vertex(x2, y1, z1, r, g, b);
+            }
+            case SOUTH -> {
+                vertex(x1, y1, z2, r, g, b);
+                vertex(x2, y1, z2, r, g, b);
+                vertex(x2, y2, z2, r, g, b);
+                vertex(x1, y2, z2, r, g, b);
+            }
+            case WEST -> {
+                vertex(x1, y1, z1, r, g, b);
+                vertex(x1, y1, z2, r, g, b);
+                vertex(x1, y2, z2, r, g, b);
+                vertex(x1, y2, z1, r, g, b);
+            }
+            case EAST -> {
+                vertex(x2, y1, z1, r, g, b);
+                vertex(x2, y2, z1, r, g, b);
+                vertex(x2, y2, z2, r, g, b);
+                vertex(x2, y1, z2, r, g, b);
+            }
+        }
+        
+        quadCount++;
+    }
+    
+    private void vertex(float x, float y, float z, float r, float g, float b) {
+        if (matrix != null) {
+            buffer.vertex(matrix, x, y, z).color(r, g, b, alpha);
+        } else {
+            buffer.vertex(x, y, z).color(r, g, b, alpha);
+        }
+    }
+    
+    /**
+     * Número de caras emitidas hasta ahora
+     */
+    public int getQuadCount() {
+        return quadCount;
+    }
+}
\ No newline at end of file
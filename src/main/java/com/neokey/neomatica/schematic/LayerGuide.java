@@ -77,6 +77,17 @@ public class LayerGuide {
         return currentLayer;
     }
     
+    /**
+     * Obtiene la capa de una posición relativa al schematic según el eje actual
+     */
+    public int getLayerOf(int x, int y, int z) {
+        return switch (axis) {
+            case X -> x;
+            case Y -> y;
+            case Z -> z;
+        };
+    }
+    
     /**
      * Obtiene todos los bloques de la capa actual
      */
@@ -97,11 +108,7 @@ public class LayerGuide {
         for (Map.Entry<BlockPos, SchematicBlock> entry : schematic.getBlocks().entrySet()) {
             BlockPos pos = entry.getKey();
             
-            int layerCoord = switch (axis) {
-                case X -> pos.getX();
-                case Y -> pos.getY();
-                case Z -> pos.getZ();
-            };
+            int layerCoord = getLayerOf(pos.getX(), pos.getY(), pos.getZ());
             
             if (layerCoord == layer) {
                 layerBlocks.put(pos, entry.getValue());
@@ -144,11 +151,7 @@ public class LayerGuide {
         for (Map.Entry<BlockPos, SchematicBlock> entry : schematic.getBlocks().entrySet()) {
             BlockPos pos = entry.getKey();
             
-            int layerCoord = switch (axis) {
-                case X -> pos.getX();
-                case Y -> pos.getY();
-                case Z -> pos.getZ();
-            };
+            int layerCoord = getLayerOf(pos.getX(), pos.getY(), pos.getZ());
             
             if (above ? layerCoord >= startLayer : layerCoord <= startLayer) {
                 blocks.put(pos, entry.getValue());
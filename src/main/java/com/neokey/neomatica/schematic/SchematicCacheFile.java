@@ -0,0 +1,548 @@
+package com.neokey.neomatica.schematic;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+import com.neokey.neomatica.schematic.codec.FormatSignature;
+import com.neokey.neomatica.schematic.codec.SchematicCodec;
+import com.neokey.neomatica.schematic.codec.SchematicVisitor;
+import com.neokey.neomatica.util.FileUtil;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Formato de caché nativo (.nsc) con guardado incremental
+ *
+ * El archivo es una cabecera fija seguida de un registro de secciones, fragmentos de paleta
+ * e índices. Al volver a guardar solo se añaden las secciones modificadas y un índice nuevo;
+ * la cabecera se actualiza al final para que un corte a mitad deje el guardado anterior intacto.
+ * Cuando los datos obsoletos superan a los vivos, el archivo se reescribe compactado.
+ */
+public class SchematicCacheFile implements SchematicCodec {
+    
+    public static final String EXTENSION = ".nsc";
+    
+    private static final int MAGIC = 0x4E534331; // "NSC1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    
+    private static final byte RECORD_SECTION = 1;
+    private static final byte RECORD_PALETTE = 2;
+    private static final byte RECORD_INDEX = 3;
+    
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final int SECTION_PAYLOAD_SIZE = 8 + SchematicStorage.SECTION_VOLUME * 2;
+    private static final int SECTION_RECORD_SIZE = RECORD_HEADER_SIZE + SECTION_PAYLOAD_SIZE;
+    
+    private final StatePalette palette;
+    
+    public SchematicCacheFile() {
+        this.palette = StatePalette.getInstance();
+    }
+    
+    @Override
+    public String getName() {
+        return "Caché de Neomatica";
+    }
+    
+    @Override
+    public String getExtension() {
+        return EXTENSION;
+    }
+    
+    @Override
+    public int score(FormatSignature signature) {
+        return signature.getMagic() == MAGIC ? 100 : 0;
+    }
+    
+    @Override
+    public boolean write(LoadedSchematic schematic, File file) throws IOException {
+        return save(schematic, file);
+    }
+    
+    /**
+     * Guarda un schematic, reescribiendo solo las secciones modificadas si es posible
+     */
+    public boolean save(LoadedSchematic schematic, File file) throws IOException {
+        if (file.exists()) {
+            try {
+                if (saveIncremental(schematic, file)) {
+                    return true;
+                }
+            } catch (IOException e) {
+                Neomatica.LOGGER.warn("No se pudo guardar incrementalmente, reescribiendo: {}", file.getName(), e);
+            }
+        }
+        
+        saveFull(schematic, file);
+        return true;
+    }
+    
+    /**
+     * Lee la caché en streaming; los índices de las secciones son los de la paleta del archivo
+     */
+    @Override
+    public void read(File file, SchematicVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            Index index = readIndex(channel, header.indexOffset);
+            
+            visitor.visitHeader(index.name, index.size, index.origin);
+            visitor.visitPalette(readPalette(channel, index.paletteOffsets).toArray(new String[0]));
+            
+            int[] indices = new int[SchematicStorage.SECTION_VOLUME];
+            for (Map.Entry<Long, Long> entry : index.sections.entrySet()) {
+                ByteBuffer payload = readRecord(channel, entry.getValue(), RECORD_SECTION);
+                payload.getLong();
+                
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = payload.getShort() & 0xFFFF;
+                }
+                
+                long key = entry.getKey();
+                visitor.visitSection(SchematicStorage.unpackX(key), SchematicStorage.unpackY(key), SchematicStorage.unpackZ(key), indices);
+            }
+        }
+    }
+    
+    /**
+     * Carga un schematic desde un archivo de caché
+     * A diferencia de read(), conserva la identidad y versión guardadas para que el siguiente guardado sea incremental
+     */
+    @Override
+    public LoadedSchematic load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            Index index = readIndex(channel, header.indexOffset);
+            List<String> fileKeys = readPalette(channel, index.paletteOffsets);
+            
+            // Traducir los IDs del archivo a IDs de la paleta global
+            int[] toGlobal = new int[fileKeys.size()];
+            for (int i = 1; i < toGlobal.length; i++) {
+                toGlobal[i] = palette.getId(fileKeys.get(i));
+            }
+            
+            LoadedSchematic schematic = new LoadedSchematic(index.name);
+            schematic.setSize(index.size);
+            schematic.setOrigin(index.origin);
+            schematic.setPlacement(index.placement);
+            
+            SchematicStorage storage = schematic.getStorage();
+            short[] states = new short[SchematicStorage.SECTION_VOLUME];
+            
+            for (Map.Entry<Long, Long> entry : index.sections.entrySet()) {
+                ByteBuffer payload = readRecord(channel, entry.getValue(), RECORD_SECTION);
+                payload.getLong();
+                
+                for (int i = 0; i < states.length; i++) {
+                    int fileId = payload.getShort() & 0xFFFF;
+                    if (fileId >= toGlobal.length) {
+                        throw new IOException("ID de paleta fuera de rango: " + fileId);
+                    }
+                    states[i] = (short) toGlobal[fileId];
+                }
+                
+                storage.restoreSection(entry.getKey(), states);
+            }
+            
+            storage.restoreIdentity(header.storageId, header.contentVersion);
+            
+            Neomatica.LOGGER.info("Caché cargada: {} ({} secciones)", index.name, index.sections.size());
+            return schematic;
+        }
+    }
+    
+    /**
+     * Añade las secciones modificadas al final del archivo y publica un índice nuevo
+     * Devuelve false si el archivo no corresponde a este schematic y hay que reescribirlo
+     */
+    private boolean saveIncremental(LoadedSchematic schematic, File file) throws IOException {
+        SchematicStorage storage = schematic.getStorage();
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Header header = readHeader(channel);
+            
+            if (!header.storageId.equals(storage.getStorageId()) || header.contentVersion > storage.getVersion()) {
+                return false;
+            }
+            
+            Index previous = readIndex(channel, header.indexOffset);
+            List<String> fileKeys = readPalette(channel, previous.paletteOffsets);
+            FilePalette filePalette = new FilePalette(fileKeys);
+            
+            Map<Long, Long> sectionOffsets = new LinkedHashMap<>();
+            List<Section> dirty = new ArrayList<>();
+            
+            for (Section section : storage.getSections()) {
+                if (section.isEmpty()) {
+                    continue;
+                }
+                
+                Long offset = previous.sections.get(section.getKey());
+                if (section.getVersion() > header.contentVersion) {
+                    dirty.add(section);
+                } else if (offset != null) {
+                    sectionOffsets.put(section.getKey(), offset);
+                } else {
+                    // Sección sin cambios que no está en el archivo: el archivo no es fiable
+                    return false;
+                }
+            }
+            
+            long position = channel.size();
+            
+            for (Section section : dirty) {
+                writeFully(channel, encodeSection(section, filePalette), position);
+                sectionOffsets.put(section.getKey(), position);
+                position += SECTION_RECORD_SIZE;
+            }
+            
+            List<Long> paletteOffsets = new ArrayList<>(previous.paletteOffsets);
+            long paletteBytes = previous.paletteBytes;
+            
+            if (filePalette.hasNewKeys()) {
+                ByteBuffer record = encodePalette(filePalette.firstNewId, filePalette.getNewKeys());
+                writeFully(channel, record, position);
+                paletteOffsets.add(position);
+                paletteBytes += record.limit();
+                position += record.limit();
+            }
+            
+            ByteBuffer indexRecord = encodeIndex(schematic, paletteOffsets, paletteBytes, sectionOffsets);
+            long indexOffset = position;
+            writeFully(channel, indexRecord, indexOffset);
+            position += indexRecord.limit();
+            
+            long liveBytes = HEADER_SIZE + (long) sectionOffsets.size() * SECTION_RECORD_SIZE + paletteBytes + indexRecord.limit();
+            
+            if (position - liveBytes > liveBytes) {
+                // Demasiados datos obsoletos: compactar reescribiendo el archivo
+                return false;
+            }
+            
+            // Primero los datos, después la cabecera que los hace visibles
+            channel.force(true);
+            writeFully(channel, encodeHeader(storage, indexOffset), 0);
+            channel.force(true);
+            
+            Neomatica.LOGGER.debug("Caché guardada incrementalmente: {} ({} secciones modificadas)",
+                file.getName(), dirty.size());
+            return true;
+        }
+    }
+    
+    /**
+     * Reescribe el archivo completo de forma atómica
+     */
+    private void saveFull(LoadedSchematic schematic, File file) throws IOException {
+        SchematicStorage storage = schematic.getStorage();
+        FilePalette filePalette = new FilePalette(Collections.singletonList(null));
+        
+        List<ByteBuffer> sectionRecords = new ArrayList<>();
+        Map<Long, Long> sectionOffsets = new LinkedHashMap<>();
+        long position = HEADER_SIZE;
+        
+        for (Section section : storage.getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            sectionRecords.add(encodeSection(section, filePalette));
+            sectionOffsets.put(section.getKey(), position);
+            position += SECTION_RECORD_SIZE;
+        }
+        
+        ByteBuffer paletteRecord = encodePalette(1, filePalette.getNewKeys());
+        List<Long> paletteOffsets = Collections.singletonList(position);
+        position += paletteRecord.limit();
+        
+        ByteBuffer indexRecord = encodeIndex(schematic, paletteOffsets, paletteRecord.limit(), sectionOffsets);
+        ByteBuffer header = encodeHeader(storage, position);
+        
+        FileUtil.writeAtomically(file, out -> {
+            writeBuffer(out, header);
+            for (ByteBuffer record : sectionRecords) {
+                writeBuffer(out, record);
+            }
+            writeBuffer(out, paletteRecord);
+            writeBuffer(out, indexRecord);
+        });
+        
+        Neomatica.LOGGER.debug("Caché reescrita: {} ({} secciones)", file.getName(), sectionOffsets.size());
+    }
+    
+    private ByteBuffer encodeHeader(SchematicStorage storage, long indexOffset) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putLong(storage.getStorageId().getMostSignificantBits());
+        buffer.putLong(storage.getStorageId().getLeastSignificantBits());
+        buffer.putLong(storage.getVersion());
+        buffer.putLong(indexOffset);
+        buffer.position(HEADER_SIZE);
+        return buffer.flip();
+    }
+    
+    private ByteBuffer encodeSection(Section section, FilePalette filePalette) {
+        ByteBuffer buffer = ByteBuffer.allocate(SECTION_RECORD_SIZE);
+        buffer.put(RECORD_SECTION);
+        buffer.putInt(SECTION_PAYLOAD_SIZE);
+        buffer.putLong(section.getKey());
+        
+        short[] states = section.getStates();
+        for (short state : states) {
+            buffer.putShort((short) filePalette.toFileId(state & 0xFFFF));
+        }
+        
+        return buffer.flip();
+    }
+    
+    private ByteBuffer encodePalette(int firstId, List<String> keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(firstId);
+        data.writeInt(keys.size());
+        for (String key : keys) {
+            data.writeUTF(key);
+        }
+        return wrapRecord(RECORD_PALETTE, bytes.toByteArray());
+    }
+    
+    private ByteBuffer encodeIndex(LoadedSchematic schematic, List<Long> paletteOffsets, long paletteBytes,
+                                   Map<Long, Long> sectionOffsets) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        
+        data.writeUTF(schematic.getName() != null ? schematic.getName() : "");
+        
+        Vec3i size = schematic.getSize() != null ? schematic.getSize() : Vec3i.ZERO;
+        data.writeInt(size.getX());
+        data.writeInt(size.getY());
+        data.writeInt(size.getZ());
+        
+        BlockPos origin = schematic.getOrigin();
+        data.writeBoolean(origin != null);
+        if (origin != null) {
+            data.writeInt(origin.getX());
+            data.writeInt(origin.getY());
+            data.writeInt(origin.getZ());
+        }
+        
+        BlockPos placement = schematic.getPlacement() != null ? schematic.getPlacement() : BlockPos.ORIGIN;
+        data.writeInt(placement.getX());
+        data.writeInt(placement.getY());
+        data.writeInt(placement.getZ());
+        
+        data.writeLong(paletteBytes);
+        data.writeInt(paletteOffsets.size());
+        for (long offset : paletteOffsets) {
+            data.writeLong(offset);
+        }
+        
+        data.writeInt(sectionOffsets.size());
+        for (Map.Entry<Long, Long> entry : sectionOffsets.entrySet()) {
+            data.writeLong(entry.getKey());
+            data.writeLong(entry.getValue());
+        }
+        
+        return wrapRecord(RECORD_INDEX, bytes.toByteArray());
+    }
+    
+    private static ByteBuffer wrapRecord(byte type, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buffer.put(type);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        return buffer.flip();
+    }
+    
+    private Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, buffer, 0);
+        
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("No es un archivo de caché de Neomatica");
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Versión de caché no soportada: " + version);
+        }
+        
+        Header header = new Header();
+        header.storageId = new UUID(buffer.getLong(), buffer.getLong());
+        header.contentVersion = buffer.getLong();
+        header.indexOffset = buffer.getLong();
+        return header;
+    }
+    
+    private Index readIndex(FileChannel channel, long offset) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteBufferInputStream(readRecord(channel, offset, RECORD_INDEX)));
+        
+        Index index = new Index();
+        index.name = data.readUTF();
+        index.size = new Vec3i(data.readInt(), data.readInt(), data.readInt());
+        if (data.readBoolean()) {
+            index.origin = new BlockPos(data.readInt(), data.readInt(), data.readInt());
+        }
+        index.placement = new BlockPos(data.readInt(), data.readInt(), data.readInt());
+        
+        index.paletteBytes = data.readLong();
+        int paletteCount = data.readInt();
+        index.paletteOffsets = new ArrayList<>(paletteCount);
+        for (int i = 0; i < paletteCount; i++) {
+            index.paletteOffsets.add(data.readLong());
+        }
+        
+        int sectionCount = data.readInt();
+        index.sections = new LinkedHashMap<>();
+        for (int i = 0; i < sectionCount; i++) {
+            index.sections.put(data.readLong(), data.readLong());
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Lee los fragmentos de paleta; la posición 0 (vacío) queda como null
+     */
+    private List<String> readPalette(FileChannel channel, List<Long> offsets) throws IOException {
+        List<String> keys = new ArrayList<>();
+        keys.add(null);
+        
+        for (long offset : offsets) {
+            DataInputStream data = new DataInputStream(new ByteBufferInputStream(readRecord(channel, offset, RECORD_PALETTE)));
+            int firstId = data.readInt();
+            int count = data.readInt();
+            
+            if (firstId != keys.size()) {
+                throw new IOException("Fragmento de paleta fuera de orden");
+            }
+            for (int i = 0; i < count; i++) {
+                keys.add(data.readUTF());
+            }
+        }
+        
+        return keys;
+    }
+    
+    private ByteBuffer readRecord(FileChannel channel, long offset, byte expectedType) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, header, offset);
+        
+        byte type = header.get();
+        int length = header.getInt();
+        if (type != expectedType || length < 0 || offset + RECORD_HEADER_SIZE + length > channel.size()) {
+            throw new IOException("Registro de caché corrupto en " + offset);
+        }
+        
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + RECORD_HEADER_SIZE);
+        return payload;
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Fin de archivo inesperado");
+            }
+        }
+        buffer.flip();
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+    
+    private static void writeBuffer(OutputStream out, ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    
+    /**
+     * Paleta propia del archivo: traduce IDs globales a IDs del archivo y acumula las claves nuevas
+     */
+    private class FilePalette {
+        private final Map<Integer, Integer> globalToFile = new HashMap<>();
+        private final List<String> newKeys = new ArrayList<>();
+        private final int firstNewId;
+        
+        FilePalette(List<String> existingKeys) {
+            for (int i = 1; i < existingKeys.size(); i++) {
+                globalToFile.put(palette.getId(existingKeys.get(i)), i);
+            }
+            this.firstNewId = existingKeys.size();
+        }
+        
+        int toFileId(int globalId) {
+            if (globalId == StatePalette.EMPTY) {
+                return StatePalette.EMPTY;
+            }
+            
+            Integer fileId = globalToFile.get(globalId);
+            if (fileId == null) {
+                fileId = firstNewId + newKeys.size();
+                globalToFile.put(globalId, fileId);
+                newKeys.add(palette.getKey(globalId));
+            }
+            return fileId;
+        }
+        
+        boolean hasNewKeys() {
+            return !newKeys.isEmpty();
+        }
+        
+        List<String> getNewKeys() {
+            return newKeys;
+        }
+    }
+    
+    private static class Header {
+        private UUID storageId;
+        private long contentVersion;
+        private long indexOffset;
+    }
+    
+    private static class Index {
+        private String name;
+        private Vec3i size;
+        private BlockPos origin;
+        private BlockPos placement;
+        private long paletteBytes;
+        private List<Long> paletteOffsets;
+        private Map<Long, Long> sections;
+    }
+    
+    /**
+     * Lee un ByteBuffer como InputStream
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
\ No newline at end of file
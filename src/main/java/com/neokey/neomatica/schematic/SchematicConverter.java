@@ -2,8 +2,12 @@ package com.neokey.neomatica.schematic;
 
 import com.neokey.neomatica.Neomatica;
 import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.codec.CodecRegistry;
+import com.neokey.neomatica.schematic.codec.SchematicCodec;
+import com.neokey.neomatica.schematic.codec.VanillaStructureCodec;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Conversor entre diferentes formatos de schematics
@@ -118,24 +122,56 @@ public class SchematicConverter {
             case LITEMATIC -> convertToLitematica(inputFile, outputFile);
             case SPONGE -> convertToSponge(inputFile, outputFile);
             case WORLDEDIT -> convertToWorldEdit(inputFile, outputFile);
+            case STRUCTURE, NATIVE_CACHE -> convertByExtension(inputFile, outputFile, targetFormat);
+            case UNKNOWN -> false;
         };
     }
     
+    /**
+     * Convierte a cualquier formato con códec registrado, eligiéndolo por la extensión
+     */
+    private boolean convertByExtension(File inputFile, File outputFile, SchematicFormat targetFormat) {
+        try {
+            LoadedSchematic schematic = loader.load(inputFile);
+            
+            if (schematic == null) {
+                return false;
+            }
+            
+            if (!outputFile.getName().endsWith(targetFormat.getExtension())) {
+                outputFile = new File(outputFile.getParent(), outputFile.getName() + targetFormat.getExtension());
+            }
+            
+            boolean success = exporter.export(schematic, outputFile);
+            
+            if (success) {
+                Neomatica.LOGGER.info("Conversión exitosa a {}: {}", targetFormat.getDisplayName(), outputFile.getName());
+            }
+            
+            return success;
+            
+        } catch (Exception e) {
+            Neomatica.LOGGER.error("Error al convertir a {}", targetFormat.getDisplayName(), e);
+            return false;
+        }
+    }
+    
     /**
      * Detecta el formato de un archivo schematic
      */
     public SchematicFormat detectFormat(File file) {
-        String name = file.getName().toLowerCase();
+        CodecRegistry registry = CodecRegistry.getInstance();
+        SchematicCodec codec = null;
         
-        if (name.endsWith(".litematic")) {
-            return SchematicFormat.LITEMATIC;
-        } else if (name.endsWith(".schem")) {
-            return SchematicFormat.SPONGE;
-        } else if (name.endsWith(".schematic")) {
-            return SchematicFormat.WORLDEDIT;
+        try {
+            // Los archivos existentes se reconocen por su contenido aunque tengan mal la extensión
+            codec = file.exists() ? registry.detect(file) : registry.getByExtension(file.getName());
+        } catch (IOException e) {
+            Neomatica.LOGGER.warn("No se pudo leer la firma de {}", file.getName(), e);
+            codec = registry.getByExtension(file.getName());
         }
         
-        return SchematicFormat.UNKNOWN;
+        return codec != null ? SchematicFormat.fromExtension(codec.getExtension()) : SchematicFormat.UNKNOWN;
     }
     
     /**
@@ -145,6 +181,8 @@ public class SchematicConverter {
         LITEMATIC("Litematica", ".litematic"),
         SPONGE("Sponge Schematic", ".schem"),
         WORLDEDIT("WorldEdit Legacy", ".schematic"),
+        STRUCTURE("Estructura vanilla", VanillaStructureCodec.EXTENSION),
+        NATIVE_CACHE("Caché de Neomatica", SchematicCacheFile.EXTENSION),
         UNKNOWN("Desconocido", "");
         
         private final String displayName;
@@ -162,5 +200,17 @@ public class SchematicConverter {
         public String getExtension() {
             return extension;
         }
+        
+        /**
+         * Obtiene el formato asociado a una extensión (".litematic", ".schem"...)
+         */
+        public static SchematicFormat fromExtension(String extension) {
+            for (SchematicFormat format : values()) {
+                if (!format.extension.isEmpty() && format.extension.equalsIgnoreCase(extension)) {
+                    return format;
+                }
+            }
+            return UNKNOWN;
+        }
     }
 }
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.neokey.neomatica.schematic;
 
 import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.codec.CodecRegistry;
+import com.neokey.neomatica.util.SaveQueue;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3i;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -18,11 +21,16 @@ public class SchematicManager {
     private final SchematicLoader loader;
     private final SchematicExporter exporter;
     private final SchematicConverter converter;
+    private final SaveQueue saveQueue;
+    
+    // Archivo de la exportación en cola y aún sin empezar de cada schematic
+    private final Map<String, File> queuedExports = new ConcurrentHashMap<>();
     
     private LoadedSchematic activeSchematic;
     private String schematicsDirectory;
     
-    public SchematicManager() {
+    public SchematicManager(SaveQueue saveQueue) {
+        this.saveQueue = saveQueue;
         this.loadedSchematics = new ConcurrentHashMap<>();
         this.loader = new SchematicLoader();
         this.exporter = new SchematicExporter();
@@ -92,6 +100,7 @@ public class SchematicManager {
     
     /**
      * Exporta un schematic a archivo
+     * En formato de caché (.nsc) solo se reescriben las secciones modificadas desde el último guardado
      */
     public boolean exportSchematic(LoadedSchematic schematic, File outputFile) {
         try {
@@ -102,6 +111,27 @@ public class SchematicManager {
         }
     }
     
+    /**
+     * Exporta un schematic en segundo plano a un archivo nuevo, nombre_<milisegundos>.litematic
+     * Se exporta una copia, así que el schematic puede seguir editándose
+     * Si el schematic ya tiene una exportación en cola sin empezar, se reutiliza su archivo y la
+     * cola de guardado las fusiona: solo se escribe la última copia y nunca se pisa una exportación anterior
+     *
+     * @return archivo exportado, o null si falló
+     */
+    public CompletableFuture<File> exportSchematicAsync(LoadedSchematic schematic, File exportDirectory) {
+        LoadedSchematic snapshot = schematic.snapshot();
+        String key = schematic.getId() != null ? schematic.getId() : schematic.getName();
+        File outputFile = queuedExports.computeIfAbsent(key,
+            k -> new File(exportDirectory, schematic.getName() + "_" + System.currentTimeMillis() + ".litematic"));
+        
+        return saveQueue.submit(outputFile, () -> {
+            // Desde aquí una exportación nueva del schematic ya lleva otro nombre
+            queuedExports.remove(key, outputFile);
+            return exportSchematic(snapshot, outputFile);
+        }).thenApply(success -> success ? outputFile : null);
+    }
+    
     /**
      * Convierte un schematic a formato Litematica
      */
@@ -168,6 +198,8 @@ public class SchematicManager {
     public void removeSchematic(String id) {
         LoadedSchematic removed = loadedSchematics.remove(id);
         if (removed != null) {
+            // Si solo queda otra colocación con sus bloques, esa ya no necesita copiarlos al editar
+            removed.releaseStorage();
             if (removed == activeSchematic) {
                 activeSchematic = null;
             }
@@ -201,11 +233,8 @@ public class SchematicManager {
         File dir = new File(schematicsDirectory);
         
         if (dir.exists() && dir.isDirectory()) {
-            File[] fileArray = dir.listFiles((d, name) -> 
-                name.endsWith(".litematic") || 
-                name.endsWith(".schem") || 
-                name.endsWith(".schematic")
-            );
+            CodecRegistry registry = CodecRegistry.getInstance();
+            File[] fileArray = dir.listFiles((d, name) -> registry.isSupported(name));
             
             if (fileArray != null) {
                 files.addAll(Arrays.asList(fileArray));
@@ -240,6 +269,7 @@ public class SchematicManager {
      * Limpia todos los schematics cargados
      */
     public void clearAll() {
+        loadedSchematics.values().forEach(LoadedSchematic::releaseStorage);
         loadedSchematics.clear();
         activeSchematic = null;
         Neomatica.LOGGER.info("Todos los schematics han sido limpiados");
@@ -271,11 +301,15 @@ public class SchematicManager {
         private BlockPos placement;
         private boolean visible = true;
         private float opacity = 1.0f;
-        private Map<BlockPos, SchematicBlock> blocks;
+        private SchematicStorage storage;
+        
+        // Colocaciones que comparten el almacenamiento (null si no se ha compartido nunca);
+        // mientras haya más de una, la que se edite pasa a tener su propia copia
+        private StorageShare storageShare;
         
         public LoadedSchematic(String name) {
             this.name = name;
-            this.blocks = new HashMap<>();
+            this.storage = new SchematicStorage();
             this.placement = BlockPos.ORIGIN;
         }
         
@@ -301,16 +335,118 @@ public class SchematicManager {
         public float getOpacity() { return opacity; }
         public void setOpacity(float opacity) { this.opacity = Math.max(0.0f, Math.min(1.0f, opacity)); }
         
-        public Map<BlockPos, SchematicBlock> getBlocks() { return blocks; }
-        public void setBlocks(Map<BlockPos, SchematicBlock> blocks) { this.blocks = blocks; }
+        /**
+         * Obtiene los bloques como mapa de solo lectura; es una vista sobre el almacenamiento
+         * por secciones, que puede estar compartido: para editar usar addBlock o removeBlock
+         */
+        public Map<BlockPos, SchematicBlock> getBlocks() { return Collections.unmodifiableMap(storage.asMap()); }
+        
+        public void setBlocks(Map<BlockPos, SchematicBlock> blocks) {
+            if (isSharedStorage()) {
+                // No hace falta copiar lo que se va a borrar
+                storage = new SchematicStorage();
+                releaseStorage();
+            }
+            storage.clear();
+            blocks.forEach(storage::setBlock);
+        }
+        
+        /**
+         * Obtiene el almacenamiento por secciones
+         * Puede estar compartido con otras colocaciones: para editar usar addBlock o removeBlock
+         */
+        public SchematicStorage getStorage() { return storage; }
         
         public void addBlock(BlockPos pos, SchematicBlock block) {
-            blocks.put(pos, block);
+            ensureOwnStorage();
+            storage.setBlock(pos, block);
+        }
+        
+        public void removeBlock(BlockPos pos) {
+            ensureOwnStorage();
+            storage.setBlock(pos, null);
+        }
+        
+        /**
+         * Crea otra colocación del mismo schematic que comparte sus bloques
+         * Todas las colocaciones se dibujan con las mismas mallas; la primera que se edite
+         * pasa a tener su propia copia
+         */
+        public LoadedSchematic createInstance(BlockPos placement) {
+            LoadedSchematic instance = new LoadedSchematic(name);
+            instance.size = size;
+            instance.origin = origin;
+            instance.placement = placement;
+            instance.visible = visible;
+            instance.opacity = opacity;
+            instance.storage = storage;
+            
+            if (storageShare == null) {
+                storageShare = new StorageShare();
+            }
+            storageShare.placements++;
+            instance.storageShare = storageShare;
+            return instance;
+        }
+        
+        /**
+         * Indica si los bloques están compartidos con otra colocación
+         */
+        public boolean isSharedStorage() { return storageShare != null && storageShare.placements > 1; }
+        
+        /**
+         * Deja de contar esta colocación entre las que comparten el almacenamiento
+         * Se llama al copiarlo y al quitar la colocación del gestor
+         */
+        void releaseStorage() {
+            if (storageShare != null) {
+                storageShare.placements--;
+                storageShare = null;
+            }
+        }
+        
+        private void ensureOwnStorage() {
+            if (isSharedStorage()) {
+                // Identidad nueva: la copia ya no es el contenido de la caché del original
+                storage = storage.copy();
+                storage.restoreIdentity(UUID.randomUUID(), storage.getVersion());
+                releaseStorage();
+            }
         }
         
         public SchematicBlock getBlock(BlockPos pos) {
-            return blocks.get(pos);
+            return storage.getBlock(pos);
         }
+        
+        /**
+         * Obtiene la versión del contenido; cambia con cada bloque modificado
+         */
+        public long getContentVersion() {
+            return storage.getVersion();
+        }
+        
+        /**
+         * Crea una copia del schematic para guardarla desde otro hilo
+         * La copia conserva las versiones, así que un guardado incremental sigue siendo posible
+         */
+        public LoadedSchematic snapshot() {
+            LoadedSchematic copy = new LoadedSchematic(name);
+            copy.id = id;
+            copy.size = size;
+            copy.origin = origin;
+            copy.placement = placement;
+            copy.visible = visible;
+            copy.opacity = opacity;
+            copy.storage = storage.copy();
+            return copy;
+        }
+    }
+    
+    /**
+     * Contador de colocaciones que comparten un mismo almacenamiento
+     */
+    private static class StorageShare {
+        private int placements = 1;
     }
     
     /**
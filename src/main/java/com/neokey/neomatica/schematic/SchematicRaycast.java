@@ -0,0 +1,332 @@
+package com.neokey.neomatica.schematic;
+
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3i;
+
+import java.util.Collection;
+
+/**
+ * Trazado de rayos contra los bloques de los schematics colocados
+ * Recorre el almacenamiento bloque a bloque con el algoritmo de Amanatides y Woo y salta
+ * de una vez las secciones 16^3 vacías o inexistentes, así que el coste depende de los
+ * bloques ocupados que cruza el rayo y no de la distancia
+ */
+public final class SchematicRaycast {
+    
+    private SchematicRaycast() {
+    }
+    
+    /**
+     * Primer bloque de schematic que corta el segmento, entre todas las colocaciones visibles
+     *
+     * @return null si el segmento no toca ningún bloque
+     */
+    public static Hit raycast(Collection<LoadedSchematic> schematics, Vec3d from, Vec3d to) {
+        Hit nearest = null;
+        Vec3d end = to;
+        
+        for (LoadedSchematic schematic : schematics) {
+            if (schematic == null || !schematic.isVisible()) {
+                continue;
+            }
+            
+            // Cada acierto acorta el segmento para las colocaciones siguientes
+            Hit hit = raycast(schematic, from, end);
+            if (hit != null) {
+                nearest = hit;
+                end = hit.getHitPos();
+            }
+        }
+        
+        return nearest;
+    }
+    
+    /**
+     * Primer bloque de un schematic que corta el segmento, en coordenadas de mundo
+     *
+     * @return null si el segmento no toca ningún bloque
+     */
+    public static Hit raycast(LoadedSchematic schematic, Vec3d from, Vec3d to) {
+        SchematicStorage storage = schematic.getStorage();
+        if (storage.getBlockCount() == 0) {
+            return null;
+        }
+        
+        BlockPos placement = schematic.getPlacement();
+        
+        // Rayo en coordenadas locales del schematic
+        double ox = from.x - placement.getX();
+        double oy = from.y - placement.getY();
+        double oz = from.z - placement.getZ();
+        double dx = to.x - from.x;
+        double dy = to.y - from.y;
+        double dz = to.z - from.z;
+        
+        // Recortar el segmento a la caja del schematic (t de 0 a 1 sobre el segmento)
+        int[] bounds = getBounds(schematic);
+        double tEnter = 0.0;
+        double tExit = 1.0;
+        int enterAxis = -1;
+        
+        double[] origin = {ox, oy, oz};
+        double[] direction = {dx, dy, dz};
+        for (int axis = 0; axis < 3; axis++) {
+            double min = bounds[axis];
+            double max = bounds[axis + 3];
+            
+            if (direction[axis] == 0.0) {
+                if (origin[axis] < min || origin[axis] >= max) {
+                    return null;
+                }
+                continue;
+            }
+            
+            double t0 = (min - origin[axis]) / direction[axis];
+            double t1 = (max - origin[axis]) / direction[axis];
+            if (t0 > t1) {
+                double swap = t0;
+                t0 = t1;
+                t1 = swap;
+            }
+            
+            if (t0 > tEnter) {
+                tEnter = t0;
+                enterAxis = axis;
+            }
+            tExit = Math.min(tExit, t1);
+            
+            if (tEnter > tExit) {
+                return null;
+            }
+        }
+        
+        return traverse(schematic, storage, origin, direction, tEnter, tExit, enterAxis);
+    }
+    
+    /**
+     * Recorrido de Amanatides y Woo desde tEnter hasta tExit
+     * Dentro de una sección con bloques avanza de bloque en bloque; al entrar en una sección
+     * vacía calcula dónde sale el rayo de ella y sigue desde ahí
+     */
+    private static Hit traverse(LoadedSchematic schematic, SchematicStorage storage, double[] origin,
+                                double[] direction, double tEnter, double tExit, int enterAxis) {
+        int[] step = new int[3];
+        double[] tDelta = new double[3];
+        for (int axis = 0; axis < 3; axis++) {
+            step[axis] = direction[axis] > 0.0 ? 1 : (direction[axis] < 0.0 ? -1 : 0);
+            tDelta[axis] = step[axis] != 0 ? Math.abs(1.0 / direction[axis]) : Double.POSITIVE_INFINITY;
+        }
+        
+        int[] cell = new int[3];
+        double[] tMax = new double[3];
+        double t = tEnter;
+        int lastAxis = enterAxis;
+        
+        startAt(origin, direction, step, t, lastAxis, cell, tMax);
+        
+        while (t <= tExit) {
+            Section section = storage.getSection(SchematicStorage.sectionKey(cell[0] >> 4, cell[1] >> 4, cell[2] >> 4));
+            
+            if (section == null || section.isEmpty()) {
+                // Saltar la sección entera: t en el que el rayo cruza su primera cara de salida
+                double tSectionExit = Double.POSITIVE_INFINITY;
+                int exitAxis = -1;
+                for (int axis = 0; axis < 3; axis++) {
+                    if (step[axis] == 0) {
+                        continue;
+                    }
+                    int sectionMin = cell[axis] & ~15;
+                    double boundary = step[axis] > 0 ? sectionMin + 16 : sectionMin;
+                    double tAxis = (boundary - origin[axis]) / direction[axis];
+                    if (tAxis < tSectionExit) {
+                        tSectionExit = tAxis;
+                        exitAxis = axis;
+                    }
+                }
+                
+                if (exitAxis < 0 || tSectionExit > tExit) {
+                    return null;
+                }
+                
+                t = tSectionExit;
+                lastAxis = exitAxis;
+                startAt(origin, direction, step, t, exitAxis, cell, tMax);
+                continue;
+            }
+            
+            // Recorrer bloque a bloque mientras siga en esta sección
+            int sectionX = cell[0] >> 4;
+            int sectionY = cell[1] >> 4;
+            int sectionZ = cell[2] >> 4;
+            
+            while (t <= tExit && (cell[0] >> 4) == sectionX && (cell[1] >> 4) == sectionY && (cell[2] >> 4) == sectionZ) {
+                int state = section.getState(cell[0] & 15, cell[1] & 15, cell[2] & 15);
+                if (state != StatePalette.EMPTY) {
+                    return createHit(schematic, origin, direction, cell, t, lastAxis, step, state);
+                }
+                
+                int axis = tMax[0] < tMax[1]
+                    ? (tMax[0] < tMax[2] ? 0 : 2)
+                    : (tMax[1] < tMax[2] ? 1 : 2);
+                
+                t = tMax[axis];
+                tMax[axis] += tDelta[axis];
+                cell[axis] += step[axis];
+                lastAxis = axis;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Inicializa la celda y los t de la siguiente frontera de cada eje en el punto t del rayo
+     *
+     * @param entryAxis eje de la cara por la que se entra en ese punto, o -1 si no está en una cara
+     */
+    private static void startAt(double[] origin, double[] direction, int[] step, double t, int entryAxis,
+                                int[] cell, double[] tMax) {
+        for (int axis = 0; axis < 3; axis++) {
+            double position = origin[axis] + direction[axis] * t;
+            
+            if (axis == entryAxis) {
+                // En el eje de entrada el punto está sobre la frontera: la celda es la del lado al que va el rayo
+                int boundary = (int) Math.round(position);
+                cell[axis] = step[axis] > 0 ? boundary : boundary - 1;
+            } else {
+                cell[axis] = (int) Math.floor(position);
+            }
+            
+            if (step[axis] == 0) {
+                tMax[axis] = Double.POSITIVE_INFINITY;
+            } else {
+                double boundary = step[axis] > 0 ? cell[axis] + 1 : cell[axis];
+                tMax[axis] = (boundary - origin[axis]) / direction[axis];
+            }
+        }
+    }
+    
+    private static Hit createHit(LoadedSchematic schematic, double[] origin, double[] direction, int[] cell,
+                                 double t, int lastAxis, int[] step, int state) {
+        BlockPos placement = schematic.getPlacement();
+        BlockPos localPos = new BlockPos(cell[0], cell[1], cell[2]);
+        
+        // La cara de entrada mira hacia el origen del rayo; dentro de un bloque se usa la contraria al rayo
+        Direction side;
+        if (lastAxis >= 0) {
+            side = faceOf(lastAxis, -step[lastAxis]);
+        } else {
+            side = Direction.getFacing(-direction[0], -direction[1], -direction[2]);
+        }
+        
+        Vec3d hitPos = new Vec3d(
+            placement.getX() + origin[0] + direction[0] * t,
+            placement.getY() + origin[1] + direction[1] * t,
+            placement.getZ() + origin[2] + direction[2] * t);
+        
+        return new Hit(schematic, localPos, localPos.add(placement), side, hitPos, state);
+    }
+    
+    private static Direction faceOf(int axis, int sign) {
+        return switch (axis) {
+            case 0 -> sign > 0 ? Direction.EAST : Direction.WEST;
+            case 1 -> sign > 0 ? Direction.UP : Direction.DOWN;
+            default -> sign > 0 ? Direction.SOUTH : Direction.NORTH;
+        };
+    }
+    
+    /**
+     * Caja local del schematic como {minX, minY, minZ, maxX, maxY, maxZ}, con los máximos exclusivos
+     * Sin tamaño conocido se usa la envolvente de las secciones con bloques
+     */
+    private static int[] getBounds(LoadedSchematic schematic) {
+        Vec3i size = schematic.getSize();
+        if (size != null) {
+            return new int[] {0, 0, 0, size.getX(), size.getY(), size.getZ()};
+        }
+        
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (Section section : schematic.getStorage().getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            bounds[0] = Math.min(bounds[0], section.getSectionX() << 4);
+            bounds[1] = Math.min(bounds[1], section.getSectionY() << 4);
+            bounds[2] = Math.min(bounds[2], section.getSectionZ() << 4);
+            bounds[3] = Math.max(bounds[3], (section.getSectionX() << 4) + 16);
+            bounds[4] = Math.max(bounds[4], (section.getSectionY() << 4) + 16);
+            bounds[5] = Math.max(bounds[5], (section.getSectionZ() << 4) + 16);
+        }
+        return bounds;
+    }
+    
+    /**
+     * Bloque de schematic alcanzado por un rayo
+     */
+    public static class Hit {
+        private final LoadedSchematic schematic;
+        private final BlockPos localPos;
+        private final BlockPos worldPos;
+        private final Direction side;
+        private final Vec3d hitPos;
+        private final int state;
+        
+        Hit(LoadedSchematic schematic, BlockPos localPos, BlockPos worldPos, Direction side, Vec3d hitPos, int state) {
+            this.schematic = schematic;
+            this.localPos = localPos;
+            this.worldPos = worldPos;
+            this.side = side;
+            this.hitPos = hitPos;
+            this.state = state;
+        }
+        
+        public LoadedSchematic getSchematic() {
+            return schematic;
+        }
+        
+        /**
+         * Posición del bloque en coordenadas locales del schematic
+         */
+        public BlockPos getLocalPos() {
+            return localPos;
+        }
+        
+        public BlockPos getWorldPos() {
+            return worldPos;
+        }
+        
+        /**
+         * Cara del bloque por la que entra el rayo
+         */
+        public Direction getSide() {
+            return side;
+        }
+        
+        /**
+         * Punto de impacto en coordenadas de mundo
+         */
+        public Vec3d getHitPos() {
+            return hitPos;
+        }
+        
+        /**
+         * Id de estado de la paleta global del bloque alcanzado
+         */
+        public int getState() {
+            return state;
+        }
+        
+        /**
+         * Bloque alcanzado con sus propiedades
+         */
+        public SchematicManager.SchematicBlock getBlock() {
+            return schematic.getStorage().getBlock(localPos);
+        }
+    }
+}
\ No newline at end of file
@@ -1,41 +1,101 @@
 ﻿package com.neokey.neomatica.schematic;
 
+import com.mojang.blaze3d.systems.RenderSystem;
 import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.client.NeomaticaClient;
+import com.neokey.neomatica.render.MeshBuilderPool;
+import com.neokey.neomatica.render.MeshingMode;
+import com.neokey.neomatica.render.MismatchMesher;
+import com.neokey.neomatica.render.RenderBatch;
+import com.neokey.neomatica.render.RenderSection;
+import com.neokey.neomatica.render.RenderStats;
+import com.neokey.neomatica.render.RenderStateTable;
+import com.neokey.neomatica.render.SchematicRenderData;
 import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
-import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
 
-import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.*;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.registry.Registries;
-import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3i;
 
 import org.joml.Matrix4f;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Renderizador de schematics en el mundo
+ * Los datos de render se guardan por almacenamiento, así que las colocaciones
+ * que comparten bloques comparten también las mallas
+ * En el modo diferencias se guardan por colocación
  */
 public class SchematicRenderer {
     
     private final MinecraftClient client;
+    private final RenderBatch renderBatch;
+    private final Map<SchematicStorage, SchematicRenderData> renderDataMap = new IdentityHashMap<>();
+    private final Map<LoadedSchematic, SchematicRenderData> mismatchDataMap = new IdentityHashMap<>();
+    private final MeshBuilderPool meshBuilderPool = new MeshBuilderPool();
+    private long frameDeadlineNanos = Long.MAX_VALUE;
+    
+    // Tiempo gastado este frame en subir mallas y encargar mallados y reordenaciones
+    private long meshNanos = 0L;
     private boolean enabled = true;
     private RenderMode renderMode = RenderMode.TRANSLUCENT;
     
-    public SchematicRenderer() {
+    /**
+     * @param renderBatch lote del frame con el que se comparte el estado de render
+     */
+    public SchematicRenderer(RenderBatch renderBatch) {
         this.client = MinecraftClient.getInstance();
+        this.renderBatch = renderBatch;
     }
     
     /**
-     * Renderiza un schematic en el mundo
+     * Renderiza un schematic en el mundo sin recortar por frustum ni distancia
+     * y con todo el detalle
      */
     public void render(LoadedSchematic schematic, MatrixStack matrices, float tickDelta) {
-        if (!enabled || schematic == null || !schematic.isVisible()) {
+        render(schematic, matrices, null, Double.MAX_VALUE, 0.0);
+    }
+    
+    /**
+     * Renderiza un schematic en el mundo por secciones de 16^3
+     *
+     * @param lodDistance distancia a partir de la que las secciones se simplifican,
+     *                    o 0 para dibujarlas siempre bloque a bloque
+     */
+    public void render(LoadedSchematic schematic, MatrixStack matrices, Frustum frustum,
+                       double renderDistance, double lodDistance) {
+        if (schematic != null) {
+            renderInstances(List.of(schematic), matrices, frustum, renderDistance, lodDistance);
+        }
+    }
+    
+    /**
+     * Renderiza varias colocaciones que comparten almacenamiento
+     * Las mallas se construyen una vez y se dibujan con el desplazamiento de cada colocación
+     * Solo se dibujan las secciones dentro del frustum y de la distancia de renderizado,
+     * y solo se reconstruyen las que ha tocado una edición
+     * Mover un schematic solo cambia su desplazamiento
+     * El estado de render lo pone el lote del frame; fuera de un frame se abre uno solo para esta llamada
+     *
+     * @param instances   colocaciones con el mismo SchematicStorage
+     * @param lodDistance distancia a partir de la que las secciones se simplifican,
+     *                    o 0 para dibujarlas siempre bloque a bloque
+     */
+    public void renderInstances(List<LoadedSchematic> instances, MatrixStack matrices, Frustum frustum,
+                                double renderDistance, double lodDistance) {
+        if (!enabled || instances.isEmpty()) {
             return;
         }
         
@@ -44,23 +104,67 @@ public class SchematicRenderer {
         }
         
         try {
-            matrices.push();
-            
-            // Obtener posición del jugador para calcular offset
+            // Obtener posición de la cámara para calcular los desplazamientos
             Vec3d cameraPos = client.gameRenderer.getCamera().getPos();
-            BlockPos placement = schematic.getPlacement();
             
-            // Trasladar a la posición de colocación
-            matrices.translate(
-                placement.getX() - cameraPos.x,
-                placement.getY() - cameraPos.y,
-                placement.getZ() - cameraPos.z
-            );
+            List<LoadedSchematic> visible = new ArrayList<>(instances.size());
+            List<BlockPos> placements = new ArrayList<>(instances.size());
+            for (LoadedSchematic instance : instances) {
+                if (instance.isVisible()) {
+                    visible.add(instance);
+                    placements.add(instance.getPlacement());
+                }
+            }
+            
+            if (visible.isEmpty()) {
+                return;
+            }
+            
+            Matrix4f modelView = matrices.peek().getPositionMatrix();
+            Matrix4f projection = RenderSystem.getProjectionMatrix();
+            
+            boolean ownFrame = !renderBatch.isInFrame();
+            if (ownFrame) {
+                renderBatch.beginFrame();
+            }
+            
+            renderBatch.applyState();
+            if (renderMode == RenderMode.WIREFRAME) {
+                renderBatch.setLineWidth(2.0f);
+            }
+            
+            if (renderMode == RenderMode.MISMATCH) {
+                // Lo que falta por construir depende de la colocación: cada una tiene sus mallas
+                for (LoadedSchematic instance : visible) {
+                    SchematicRenderData renderData = getMismatchRenderData(instance, cameraPos, renderDistance);
+                    if (renderData == null) {
+                        continue;
+                    }
+                    
+                    renderData.resetRenderedSectionCount();
+                    RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, instance.getOpacity());
+                    renderData.render(modelView, projection, instance.getPlacement(), cameraPos, frustum, renderDistance);
+                    recordStats(renderData);
+                }
+            } else {
+                SchematicRenderData renderData = getRenderData(
+                    visible.get(0).getStorage(), placements, cameraPos, renderDistance, lodDistance);
+                renderData.resetRenderedSectionCount();
+                
+                for (LoadedSchematic instance : visible) {
+                    // La opacidad de cada colocación no forma parte de la malla; el modo sólido la ignora
+                    float alpha = renderMode == RenderMode.SOLID ? 1.0f : instance.getOpacity();
+                    RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, alpha);
+                    renderData.render(modelView, projection, instance.getPlacement(), cameraPos, frustum, renderDistance);
+                }
+                recordStats(renderData);
+            }
             
-            // Renderizar bloques
-            renderBlocks(schematic, matrices, tickDelta);
+            RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
             
-            matrices.pop();
+            if (ownFrame) {
+                renderBatch.endFrame();
+            }
             
         } catch (Exception e) {
             Neomatica.LOGGER.error("Error al renderizar schematic", e);
@@ -68,217 +172,150 @@ public class SchematicRenderer {
     }
     
     /**
-     * Renderiza los bloques del schematic
+     * Empieza un frame: sube las mallas que han terminado los hilos de mallado
+     * dentro del presupuesto de tiempo del frame
+     *
+     * @param meshBudgetNanos tiempo del frame para subir mallas y copiar secciones en el hilo de render
      */
-    private void renderBlocks(LoadedSchematic schematic, MatrixStack matrices, float tickDelta) {
-        Map<BlockPos, SchematicBlock> blocks = schematic.getBlocks();
-        
-        Tessellator tessellator = Tessellator.getInstance();
-        BufferBuilder buffer = tessellator.begin();
-        
-        // Configurar renderizado
-        setupRenderState();
-        
-        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
-        
-        for (Map.Entry<BlockPos, SchematicBlock> entry : blocks.entrySet()) {
-            BlockPos pos = entry.getKey();
-            SchematicBlock schematicBlock = entry.getValue();
-            
-            renderBlock(pos, schematicBlock, matrices, buffer, schematic.getOpacity());
-        }
-        
-        tessellator.draw();
-        restoreRenderState();
+    public void beginFrame(long meshBudgetNanos) {
+        long start = System.nanoTime();
+        frameDeadlineNanos = start + meshBudgetNanos;
+        RenderStateTable.getInstance().syncColorScheme();
+        meshBuilderPool.uploadFinished(frameDeadlineNanos, renderBatch.getStats());
+        meshNanos = System.nanoTime() - start;
     }
     
     /**
-     * Renderiza un bloque individual
+     * Suma a las estadísticas del frame lo dibujado y descartado con unos datos de render
      */
-    private void renderBlock(BlockPos pos, SchematicBlock schematicBlock, 
-                            MatrixStack matrices, BufferBuilder buffer, float opacity) {
-        try {
-            // Obtener el block state de Minecraft
-            Identifier blockId = Identifier.tryParse(schematicBlock.getBlockId());
-            if (blockId == null) {
-                return;
-            }
-            
-            Block block = Registries.BLOCK.get(blockId);
-            BlockState state = block.getDefaultState();
-            
-            // Obtener color del bloque
-            int color = getBlockColor(state);
-            float r = ((color >> 16) & 0xFF) / 255.0f;
-            float g = ((color >> 8) & 0xFF) / 255.0f;
-            float b = (color & 0xFF) / 255.0f;
-            float a = opacity;
-            
-            // Renderizar las caras del bloque
-            renderBlockBox(pos, matrices, buffer, r, g, b, a);
-            
-        } catch (Exception e) {
-            // Ignorar errores de bloques individuales
-        }
+    private void recordStats(SchematicRenderData renderData) {
+        renderBatch.recordMeshDraws(renderData.getRenderedSectionCount());
+        
+        RenderStats stats = renderBatch.getStats();
+        stats.addVertices(renderData.getRenderedVertexCount());
+        stats.addSections(renderData.getRenderedSectionCount(),
+            renderData.getDistanceCulledSectionCount(), renderData.getFrustumCulledSectionCount());
     }
     
     /**
-     * Renderiza una caja de bloque
+     * Tiempo gastado en el frame actual en subir mallas y encargar trabajo a los hilos de mallado
      */
-    private void renderBlockBox(BlockPos pos, MatrixStack matrices, BufferBuilder buffer,
-                                float r, float g, float b, float a) {
-        Matrix4f matrix = matrices.peek().getPositionMatrix();
-        
-        float x1 = pos.getX();
-        float y1 = pos.getY();
-        float z1 = pos.getZ();
-        float x2 = x1 + 1.0f;
-        float y2 = y1 + 1.0f;
-        float z2 = z1 + 1.0f;
-        
-        // Ajustar ligeramente para evitar z-fighting
-        float offset = 0.001f;
-        x1 += offset;
-        y1 += offset;
-        z1 += offset;
-        x2 -= offset;
-        y2 -= offset;
-        z2 -= offset;
-        
-        // Cara inferior (Y-)
-        buffer.vertex(matrix, x1, y1, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y1, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y1, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y1, z2).color(r, g, b, a);
-        
-        // Cara superior (Y+)
-        buffer.vertex(matrix, x1, y2, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y2, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z1).color(r, g, b, a);
-        
-        // Cara norte (Z-)
-        buffer.vertex(matrix, x1, y1, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y2, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y1, z1).color(r, g, b, a);
-        
-        // Cara sur (Z+)
-        buffer.vertex(matrix, x1, y1, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y1, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y2, z2).color(r, g, b, a);
-        
-        // Cara oeste (X-)
-        buffer.vertex(matrix, x1, y1, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y1, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y2, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x1, y2, z1).color(r, g, b, a);
-        
-        // Cara este (X+)
-        buffer.vertex(matrix, x2, y1, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z1).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y2, z2).color(r, g, b, a);
-        buffer.vertex(matrix, x2, y1, z2).color(r, g, b, a);
+    public long getMeshNanos() {
+        return meshNanos;
     }
     
     /**
-     * Configura el estado de renderizado
+     * Hilos de mallado, compartidos con el preview 3D de la GUI
      */
-    private void setupRenderState() {
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-        RenderSystem.disableDepthTest();
-        RenderSystem.depthMask(false);
-        RenderSystem.setShader(GameRenderer::getPositionColorShader);
+    public MeshBuilderPool getMeshBuilderPool() {
+        return meshBuilderPool;
     }
     
     /**
-     * Restaura el estado de renderizado
+     * Obtiene los datos de render de un almacenamiento y encarga el mallado de las secciones
+     * afectadas por ediciones, por un cambio de nivel de detalle o por un cambio de colores
+     * o de modo de renderizado o de mallado
+     * Después reordena las caras de las secciones respecto a las que se ha movido la cámara
      */
-    private void restoreRenderState() {
-        RenderSystem.depthMask(true);
-        RenderSystem.enableDepthTest();
-        RenderSystem.disableBlend();
+    private SchematicRenderData getRenderData(SchematicStorage storage, List<BlockPos> placements,
+                                              Vec3d cameraPos, double renderDistance, double lodDistance) {
+        SchematicRenderData renderData = renderDataMap.computeIfAbsent(storage, s -> new SchematicRenderData());
+        
+        RenderStateTable stateTable = RenderStateTable.getInstance();
+        long start = System.nanoTime();
+        
+        renderData.update(storage, meshBuilderPool, renderMode, MeshingMode.fromConfig(), stateTable.getColorVersion());
+        renderData.updateLod(placements, cameraPos, lodDistance);
+        renderData.scheduleDirty(storage, meshBuilderPool, stateTable::getColor, placements, cameraPos, frameDeadlineNanos);
+        renderData.scheduleResorts(meshBuilderPool, placements, cameraPos, renderDistance, frameDeadlineNanos);
+        
+        meshNanos += System.nanoTime() - start;
+        return renderData;
     }
     
     /**
-     * Obtiene el color de un bloque
+     * Obtiene los datos de render de las diferencias de una colocación con el mundo
+     * Solo se vuelven a mallar las secciones cuya clasificación ha cambiado
+     *
+     * @return null si el verificador no está disponible
      */
-    private int getBlockColor(BlockState state) {
-        // Colores básicos para diferentes tipos de bloques
-        String blockName = Registries.BLOCK.getId(state.getBlock()).getPath();
-        
-        // Madera
-        if (blockName.contains("planks") || blockName.contains("log")) {
-            return 0x8B4513; // Marrón
-        }
-        // Piedra
-        if (blockName.contains("stone") || blockName.contains("cobblestone")) {
-            return 0x808080; // Gris
-        }
-        // Tierra
-        if (blockName.contains("dirt") || blockName.contains("grass_block")) {
-            return 0x8B4513; // Marrón tierra
-        }
-        // Cristal
-        if (blockName.contains("glass")) {
-            return 0x87CEEB; // Azul claro
+    private SchematicRenderData getMismatchRenderData(LoadedSchematic schematic, Vec3d cameraPos, double renderDistance) {
+        NeomaticaClient neomaticaClient = NeomaticaClient.getInstance();
+        SchematicVerifier verifier = neomaticaClient != null ? neomaticaClient.getVerifier() : null;
+        if (verifier == null) {
+            return null;
         }
-        // Lana
-        if (blockName.contains("wool")) {
-            return getWoolColor(blockName);
-        }
-        // Ladrillos
-        if (blockName.contains("brick")) {
-            return 0xB22222; // Rojo ladrillo
-        }
-        // Oro
-        if (blockName.contains("gold")) {
-            return 0xFFD700; // Dorado
-        }
-        // Hierro
-        if (blockName.contains("iron")) {
-            return 0xC0C0C0; // Plateado
+        
+        SchematicRenderData renderData = mismatchDataMap.computeIfAbsent(schematic, s -> new SchematicRenderData());
+        SchematicStorage storage = schematic.getStorage();
+        List<BlockPos> placements = List.of(schematic.getPlacement());
+        long start = System.nanoTime();
+        
+        renderData.update(storage, meshBuilderPool, renderMode, MeshingMode.fromConfig(),
+            RenderStateTable.getInstance().getColorVersion());
+        renderData.updateMismatches(verifier, schematic);
+        renderData.scheduleDirty(storage, meshBuilderPool, MismatchMesher::colorOf, placements, cameraPos, frameDeadlineNanos);
+        renderData.scheduleResorts(meshBuilderPool, placements, cameraPos, renderDistance, frameDeadlineNanos);
+        
+        meshNanos += System.nanoTime() - start;
+        return renderData;
+    }
+    
+    /**
+     * Libera las mallas de los almacenamientos que ya no usa ningún schematic cargado
+     * Las mallas de diferencias se liberan también al salir de ese modo
+     */
+    public void retainMeshes(Collection<LoadedSchematic> schematics) {
+        Set<SchematicStorage> alive = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LoadedSchematic schematic : schematics) {
+            alive.add(schematic.getStorage());
         }
-        // Diamante
-        if (blockName.contains("diamond")) {
-            return 0x00FFFF; // Cian
+        
+        Set<LoadedSchematic> aliveInstances = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (renderMode == RenderMode.MISMATCH) {
+            aliveInstances.addAll(schematics);
         }
-        // Esmeralda
-        if (blockName.contains("emerald")) {
-            return 0x00FF00; // Verde
+        
+        Iterator<Map.Entry<LoadedSchematic, SchematicRenderData>> instanceIterator = mismatchDataMap.entrySet().iterator();
+        while (instanceIterator.hasNext()) {
+            Map.Entry<LoadedSchematic, SchematicRenderData> entry = instanceIterator.next();
+            if (!aliveInstances.contains(entry.getKey())) {
+                entry.getValue().close();
+                instanceIterator.remove();
+            }
         }
         
-        // Color por defecto
-        return 0xFFFFFF; // Blanco
+        Iterator<Map.Entry<SchematicStorage, SchematicRenderData>> iterator = renderDataMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<SchematicStorage, SchematicRenderData> entry = iterator.next();
+            if (!alive.contains(entry.getKey())) {
+                entry.getValue().close();
+                iterator.remove();
+            }
+        }
+    }
+    
+    /**
+     * Libera todas las mallas de la GPU
+     */
+    public void clearMeshes() {
+        renderDataMap.values().forEach(SchematicRenderData::close);
+        renderDataMap.clear();
+        mismatchDataMap.values().forEach(SchematicRenderData::close);
+        mismatchDataMap.clear();
     }
     
     /**
-     * Obtiene el color específico de lana
+     * Libera las mallas y detiene los hilos de mallado
      */
-    private int getWoolColor(String blockName) {
-        if (blockName.contains("white")) return 0xFFFFFF;
-        if (blockName.contains("orange")) return 0xFF8C00;
-        if (blockName.contains("magenta")) return 0xFF00FF;
-        if (blockName.contains("light_blue")) return 0x87CEEB;
-        if (blockName.contains("yellow")) return 0xFFFF00;
-        if (blockName.contains("lime")) return 0x00FF00;
-        if (blockName.contains("pink")) return 0xFFC0CB;
-        if (blockName.contains("gray")) return 0x808080;
-        if (blockName.contains("light_gray")) return 0xD3D3D3;
-        if (blockName.contains("cyan")) return 0x00FFFF;
-        if (blockName.contains("purple")) return 0x800080;
-        if (blockName.contains("blue")) return 0x0000FF;
-        if (blockName.contains("brown")) return 0x8B4513;
-        if (blockName.contains("green")) return 0x008000;
-        if (blockName.contains("red")) return 0xFF0000;
-        if (blockName.contains("black")) return 0x000000;
-        return 0xFFFFFF; // Blanco por defecto
+    public void shutdown() {
+        clearMeshes();
+        meshBuilderPool.shutdown();
     }
     
     /**
      * Verifica si un schematic es visible desde la posición de la cámara
+     * Se mide hasta el punto más cercano de su caja, no hasta la esquina de colocación
      */
     public boolean isSchematicVisible(LoadedSchematic schematic, double renderDistance) {
         if (client.player == null) {
@@ -287,14 +324,14 @@ public class SchematicRenderer {
         
         Vec3d cameraPos = client.gameRenderer.getCamera().getPos();
         BlockPos placement = schematic.getPlacement();
+        Vec3i size = schematic.getSize() != null ? schematic.getSize() : Vec3i.ZERO;
         
-        double distance = cameraPos.distanceTo(new Vec3d(
-            placement.getX(), 
-            placement.getY(), 
-            placement.getZ()
-        ));
+        Box box = new Box(
+            placement.getX(), placement.getY(), placement.getZ(),
+            placement.getX() + size.getX(), placement.getY() + size.getY(), placement.getZ() + size.getZ()
+        );
         
-        return distance <= renderDistance;
+        return RenderSection.squaredDistance(box, cameraPos) <= renderDistance * renderDistance;
     }
     
     // Getters y Setters
@@ -317,12 +354,16 @@ public class SchematicRenderer {
     
     /**
      * Modos de renderizado
+     * SOLID y TRANSLUCENT dibujan las caras visibles; WIREFRAME solo las aristas donde
+     * dobla la superficie y GHOST solo las caras exteriores del schematic
+     * MISMATCH solo dibuja lo que falta o tiene otro estado en el mundo, según el verificador
      */
     public enum RenderMode {
         SOLID("Sólido"),
         TRANSLUCENT("Translúcido"),
         WIREFRAME("Esqueleto"),
-        GHOST("Fantasma");
+        GHOST("Fantasma"),
+        MISMATCH("Diferencias");
         
         private final String displayName;
         
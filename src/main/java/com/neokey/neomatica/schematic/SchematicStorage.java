@@ -0,0 +1,418 @@
+package com.neokey.neomatica.schematic;
+
+import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.*;
+
+/**
+ * Almacenamiento compacto de bloques de un schematic
+ * Los bloques se guardan en secciones de 16x16x16 con IDs de la paleta global,
+ * y cada sección recuerda la versión en la que se modificó por última vez
+ */
+public class SchematicStorage {
+    
+    public static final int SECTION_SIZE = 16;
+    public static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+    
+    private final StatePalette palette;
+    private final Map<Long, Section> sections;
+    private UUID storageId;
+    private long version;
+    private int blockCount;
+    
+    public SchematicStorage() {
+        this.palette = StatePalette.getInstance();
+        this.sections = new HashMap<>();
+        this.storageId = UUID.randomUUID();
+    }
+    
+    /**
+     * Obtiene el ID de estado en una posición (EMPTY si no hay bloque)
+     */
+    public int getState(int x, int y, int z) {
+        Section section = sections.get(sectionKey(x >> 4, y >> 4, z >> 4));
+        if (section == null) {
+            return StatePalette.EMPTY;
+        }
+        return section.getState(x & 15, y & 15, z & 15);
+    }
+    
+    /**
+     * Establece el ID de estado en una posición y devuelve el anterior
+     */
+    public int setState(int x, int y, int z, int state) {
+        long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        Section section = sections.get(key);
+        
+        if (section == null) {
+            if (state == StatePalette.EMPTY) {
+                return StatePalette.EMPTY;
+            }
+            section = new Section(key);
+            sections.put(key, section);
+        }
+        
+        int index = Section.index(x & 15, y & 15, z & 15);
+        int previous = section.states[index] & 0xFFFF;
+        if (previous == state) {
+            return previous;
+        }
+        
+        section.states[index] = (short) state;
+        if (previous == StatePalette.EMPTY) {
+            section.count++;
+            blockCount++;
+        } else if (state == StatePalette.EMPTY) {
+            section.count--;
+            blockCount--;
+        }
+        
+        section.version = ++version;
+        return previous;
+    }
+    
+    /**
+     * Copia los bloques no vacíos de una sección completa (índices según Section.index)
+     * Los vacíos no borran lo que ya hubiera, así se pueden superponer regiones
+     */
+    public void mergeSection(int sectionX, int sectionY, int sectionZ, short[] states) {
+        long key = sectionKey(sectionX, sectionY, sectionZ);
+        Section section = sections.get(key);
+        boolean changed = false;
+        
+        for (int index = 0; index < SECTION_VOLUME; index++) {
+            short state = states[index];
+            if (state == StatePalette.EMPTY) {
+                continue;
+            }
+            
+            if (section == null) {
+                section = new Section(key);
+                sections.put(key, section);
+            }
+            
+            short previous = section.states[index];
+            if (previous != state) {
+                if (previous == StatePalette.EMPTY) {
+                    section.count++;
+                    blockCount++;
+                }
+                section.states[index] = state;
+                changed = true;
+            }
+        }
+        
+        if (changed) {
+            section.version = ++version;
+        }
+    }
+    
+    /**
+     * Obtiene el bloque en una posición
+     */
+    public SchematicBlock getBlock(BlockPos pos) {
+        return palette.getBlock(getState(pos.getX(), pos.getY(), pos.getZ()));
+    }
+    
+    /**
+     * Establece el bloque en una posición (null para eliminarlo) y devuelve el anterior
+     */
+    public SchematicBlock setBlock(BlockPos pos, SchematicBlock block) {
+        int previous = setState(pos.getX(), pos.getY(), pos.getZ(), palette.getId(block));
+        return palette.getBlock(previous);
+    }
+    
+    /**
+     * Elimina todos los bloques
+     */
+    public void clear() {
+        for (Section section : sections.values()) {
+            if (section.count > 0) {
+                Arrays.fill(section.states, (short) 0);
+                section.count = 0;
+                section.version = version + 1;
+            }
+        }
+        version++;
+        blockCount = 0;
+    }
+    
+    /**
+     * Obtiene el número de bloques almacenados
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+    
+    /**
+     * Obtiene la versión del contenido; aumenta con cada modificación
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Obtiene el identificador de este almacenamiento
+     * Se conserva en las copias para reconocer guardados anteriores del mismo contenido
+     */
+    public UUID getStorageId() {
+        return storageId;
+    }
+    
+    /**
+     * Obtiene una sección por su clave (puede ser null)
+     */
+    public Section getSection(long key) {
+        return sections.get(key);
+    }
+    
+    /**
+     * Obtiene todas las secciones, incluidas las que se han quedado vacías
+     */
+    public Collection<Section> getSections() {
+        return Collections.unmodifiableCollection(sections.values());
+    }
+    
+    /**
+     * Obtiene las secciones modificadas después de una versión
+     */
+    public List<Section> getSectionsModifiedSince(long sinceVersion) {
+        List<Section> modified = new ArrayList<>();
+        for (Section section : sections.values()) {
+            if (section.version > sinceVersion) {
+                modified.add(section);
+            }
+        }
+        return modified;
+    }
+    
+    /**
+     * Crea una copia independiente, con el mismo identificador y versiones
+     */
+    public SchematicStorage copy() {
+        SchematicStorage copy = new SchematicStorage();
+        copy.storageId = storageId;
+        copy.version = version;
+        copy.blockCount = blockCount;
+        
+        for (Section section : sections.values()) {
+            if (section.count > 0) {
+                Section sectionCopy = new Section(section.key);
+                System.arraycopy(section.states, 0, sectionCopy.states, 0, SECTION_VOLUME);
+                sectionCopy.count = section.count;
+                sectionCopy.version = section.version;
+                copy.sections.put(section.key, sectionCopy);
+            }
+        }
+        
+        return copy;
+    }
+    
+    /**
+     * Restaura una sección leída de disco sin marcarla como modificada
+     */
+    void restoreSection(long key, short[] states) {
+        Section section = new Section(key);
+        System.arraycopy(states, 0, section.states, 0, SECTION_VOLUME);
+        
+        for (short state : states) {
+            if (state != StatePalette.EMPTY) {
+                section.count++;
+            }
+        }
+        
+        Section previous = sections.put(key, section);
+        if (previous != null) {
+            blockCount -= previous.count;
+        }
+        blockCount += section.count;
+    }
+    
+    /**
+     * Restaura el identificador y la versión guardados en disco
+     */
+    void restoreIdentity(UUID storageId, long version) {
+        this.storageId = storageId;
+        this.version = Math.max(this.version, version);
+    }
+    
+    /**
+     * Obtiene una vista de los bloques como mapa posición -> bloque
+     * La vista refleja el almacenamiento y las modificaciones se aplican sobre él
+     */
+    public Map<BlockPos, SchematicBlock> asMap() {
+        return new BlockMapView();
+    }
+    
+    /**
+     * Calcula la clave de una sección a partir de sus coordenadas de sección
+     */
+    public static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((long) (sectionX & 0x1FFFFF) << 42) | ((long) (sectionY & 0x1FFFFF) << 21) | (sectionZ & 0x1FFFFF);
+    }
+    
+    public static int unpackX(long key) {
+        return (int) (key << 1 >> 43);
+    }
+    
+    public static int unpackY(long key) {
+        return (int) (key << 22 >> 43);
+    }
+    
+    public static int unpackZ(long key) {
+        return (int) (key << 43 >> 43);
+    }
+    
+    /**
+     * Sección de 16x16x16 bloques
+     */
+    public static class Section {
+        private final long key;
+        private final short[] states;
+        private int count;
+        private long version;
+        
+        Section(long key) {
+            this.key = key;
+            this.states = new short[SECTION_VOLUME];
+        }
+        
+        /**
+         * Índice de una posición local dentro de la sección
+         */
+        public static int index(int x, int y, int z) {
+            return (y << 8) | (z << 4) | x;
+        }
+        
+        public int getState(int x, int y, int z) {
+            return states[index(x, y, z)] & 0xFFFF;
+        }
+        
+        public int getState(int index) {
+            return states[index] & 0xFFFF;
+        }
+        
+        /**
+         * Obtiene los estados en bruto; el array no debe modificarse
+         */
+        public short[] getStates() {
+            return states;
+        }
+        
+        public long getKey() { return key; }
+        public int getSectionX() { return unpackX(key); }
+        public int getSectionY() { return unpackY(key); }
+        public int getSectionZ() { return unpackZ(key); }
+        public int getCount() { return count; }
+        public boolean isEmpty() { return count == 0; }
+        public long getVersion() { return version; }
+    }
+    
+    /**
+     * Vista de mapa sobre el almacenamiento
+     */
+    private class BlockMapView extends AbstractMap<BlockPos, SchematicBlock> {
+        
+        @Override
+        public int size() {
+            return blockCount;
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+        
+        @Override
+        public SchematicBlock get(Object key) {
+            return key instanceof BlockPos pos ? getBlock(pos) : null;
+        }
+        
+        @Override
+        public SchematicBlock put(BlockPos key, SchematicBlock value) {
+            return setBlock(key, value);
+        }
+        
+        @Override
+        public SchematicBlock remove(Object key) {
+            return key instanceof BlockPos pos ? setBlock(pos, null) : null;
+        }
+        
+        @Override
+        public void clear() {
+            SchematicStorage.this.clear();
+        }
+        
+        @Override
+        public Set<Entry<BlockPos, SchematicBlock>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return blockCount;
+                }
+                
+                @Override
+                public Iterator<Entry<BlockPos, SchematicBlock>> iterator() {
+                    return new BlockIterator();
+                }
+            };
+        }
+    }
+    
+    /**
+     * Iterador sobre los bloques no vacíos, sección a sección
+     */
+    private class BlockIterator implements Iterator<Map.Entry<BlockPos, SchematicBlock>> {
+        private final Iterator<Section> sectionIterator = new ArrayList<>(sections.values()).iterator();
+        private Section section;
+        private int index = SECTION_VOLUME;
+        private BlockPos last;
+        
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                if (section != null) {
+                    while (index < SECTION_VOLUME) {
+                        if (section.states[index] != StatePalette.EMPTY) {
+                            return true;
+                        }
+                        index++;
+                    }
+                }
+                
+                if (!sectionIterator.hasNext()) {
+                    return false;
+                }
+                
+                section = sectionIterator.next();
+                index = section.count > 0 ? 0 : SECTION_VOLUME;
+            }
+        }
+        
+        @Override
+        public Map.Entry<BlockPos, SchematicBlock> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            
+            int x = (section.getSectionX() << 4) | (index & 15);
+            int y = (section.getSectionY() << 4) | (index >> 8);
+            int z = (section.getSectionZ() << 4) | ((index >> 4) & 15);
+            int state = section.states[index] & 0xFFFF;
+            index++;
+            
+            last = new BlockPos(x, y, z);
+            return new AbstractMap.SimpleImmutableEntry<>(last, palette.getBlock(state));
+        }
+        
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            setBlock(last, null);
+            last = null;
+        }
+    }
+}
\ No newline at end of file
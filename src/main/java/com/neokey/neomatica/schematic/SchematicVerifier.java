@@ -0,0 +1,681 @@
+package com.neokey.neomatica.schematic;
+
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
+import com.neokey.neomatica.schematic.SchematicStorage.Section;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.registry.Registries;
+import net.minecraft.state.property.Property;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Verificador de schematics contra el mundo del cliente
+ * Clasifica cada posición de cada colocación como correcta, ausente, con otro estado o sobrante
+ * Los resultados se guardan por sección 16^3 alineada con el mundo; solo se vuelven a comprobar
+ * las secciones de los chunks recién cargados y las partes editadas del schematic, repartidas
+ * entre ticks con un límite de tiempo
+ * Cada bloque que cambia en el mundo se reclasifica al momento sin recorrer nada más
+ * Todo se ejecuta en el hilo del cliente
+ */
+public class SchematicVerifier {
+    
+    // Tiempo máximo por tick para comprobar secciones pendientes
+    private static final long TICK_BUDGET_NANOS = 2_000_000L;
+    
+    private final MinecraftClient client;
+    private final SchematicManager schematicManager;
+    private final Map<LoadedSchematic, PlacementCheck> placements = new IdentityHashMap<>();
+    
+    // Estado esperado por id de la paleta global, resuelto la primera vez que se pide
+    private ExpectedState[] expectedStates = new ExpectedState[256];
+    
+    // Contador global de revisiones; cada cambio de resultados recibe un valor nuevo
+    private long revisionCounter = 0;
+    
+    private ClientWorld world;
+    private boolean enabled = true;
+    
+    public SchematicVerifier(SchematicManager schematicManager) {
+        this.client = MinecraftClient.getInstance();
+        this.schematicManager = schematicManager;
+    }
+    
+    /**
+     * Sincroniza las colocaciones y comprueba secciones pendientes hasta agotar el tiempo del tick
+     */
+    public void tick() {
+        if (!enabled || client.world == null) {
+            clear();
+            return;
+        }
+        
+        if (client.world != world) {
+            clear();
+            world = client.world;
+        }
+        
+        syncPlacements();
+        
+        long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        for (PlacementCheck check : placements.values()) {
+            if (!processPending(check, deadline)) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Empieza a seguir las colocaciones nuevas, deja las descargadas y encola lo que haya cambiado
+     */
+    private void syncPlacements() {
+        Set<LoadedSchematic> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        
+        for (LoadedSchematic schematic : schematicManager.getAllSchematics()) {
+            if (schematic == null) {
+                continue;
+            }
+            live.add(schematic);
+            
+            PlacementCheck check = placements.get(schematic);
+            if (check == null) {
+                check = new PlacementCheck(schematic);
+                placements.put(schematic, check);
+                reset(check);
+            } else {
+                sync(check);
+            }
+        }
+        
+        placements.keySet().retainAll(live);
+    }
+    
+    /**
+     * Encola las secciones afectadas por cambios en el schematic
+     * Si cambia la colocación, el almacenamiento o los límites se vuelve a comprobar todo
+     */
+    private void sync(PlacementCheck check) {
+        SchematicStorage storage = check.schematic.getStorage();
+        BlockPos placement = check.schematic.getPlacement();
+        
+        if (storage != check.storage || !placement.equals(check.placement)) {
+            reset(check);
+            return;
+        }
+        
+        long version = storage.getVersion();
+        if (version == check.version) {
+            return;
+        }
+        
+        if (!Objects.equals(computeBounds(check.schematic, storage, placement), check.bounds)) {
+            reset(check);
+            return;
+        }
+        
+        for (Section section : storage.getSectionsModifiedSince(check.version)) {
+            int minX = placement.getX() + (section.getSectionX() << 4);
+            int minY = placement.getY() + (section.getSectionY() << 4);
+            int minZ = placement.getZ() + (section.getSectionZ() << 4);
+            
+            // Una sección del schematic se reparte en hasta ocho secciones del mundo
+            queueRange(check, minX >> 4, minY >> 4, minZ >> 4, (minX + 15) >> 4, (minY + 15) >> 4, (minZ + 15) >> 4);
+        }
+        
+        check.version = version;
+    }
+    
+    /**
+     * Descarta los resultados de una colocación y encola todas sus secciones
+     */
+    private void reset(PlacementCheck check) {
+        check.storage = check.schematic.getStorage();
+        check.placement = check.schematic.getPlacement();
+        check.version = check.storage.getVersion();
+        check.bounds = computeBounds(check.schematic, check.storage, check.placement);
+        
+        check.sections.clear();
+        check.pending.clear();
+        Arrays.fill(check.totals, 0);
+        touch(check, null);
+        
+        BlockBox bounds = check.bounds;
+        if (bounds != null) {
+            queueRange(check, bounds.getMinX() >> 4, bounds.getMinY() >> 4, bounds.getMinZ() >> 4,
+                bounds.getMaxX() >> 4, bounds.getMaxY() >> 4, bounds.getMaxZ() >> 4);
+        }
+    }
+    
+    /**
+     * Encola las secciones del mundo de un rango, recortado a los límites de la colocación
+     * y a la altura del mundo
+     */
+    private void queueRange(PlacementCheck check, int minSX, int minSY, int minSZ, int maxSX, int maxSY, int maxSZ) {
+        BlockBox bounds = check.bounds;
+        if (bounds == null) {
+            return;
+        }
+        
+        int fromX = Math.max(minSX, bounds.getMinX() >> 4);
+        int fromY = Math.max(Math.max(minSY, bounds.getMinY() >> 4), world.getBottomSectionCoord());
+        int fromZ = Math.max(minSZ, bounds.getMinZ() >> 4);
+        int toX = Math.min(maxSX, bounds.getMaxX() >> 4);
+        int toY = Math.min(Math.min(maxSY, bounds.getMaxY() >> 4), world.getTopSectionCoord() - 1);
+        int toZ = Math.min(maxSZ, bounds.getMaxZ() >> 4);
+        
+        for (int sx = fromX; sx <= toX; sx++) {
+            for (int sz = fromZ; sz <= toZ; sz++) {
+                for (int sy = fromY; sy <= toY; sy++) {
+                    check.pending.add(ChunkSectionPos.asLong(sx, sy, sz));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Comprueba secciones pendientes de una colocación
+     *
+     * @return false si se ha agotado el tiempo
+     */
+    private boolean processPending(PlacementCheck check, long deadlineNanos) {
+        Iterator<Long> iterator = check.pending.iterator();
+        while (iterator.hasNext()) {
+            if (System.nanoTime() >= deadlineNanos) {
+                return false;
+            }
+            
+            long key = iterator.next();
+            iterator.remove();
+            checkSection(check, key);
+        }
+        return true;
+    }
+    
+    /**
+     * Clasifica todas las posiciones de una sección del mundo dentro de la colocación
+     * Las secciones de chunks sin cargar se descartan; se encolan de nuevo al cargarse
+     */
+    private void checkSection(PlacementCheck check, long key) {
+        int sx = ChunkSectionPos.unpackX(key);
+        int sy = ChunkSectionPos.unpackY(key);
+        int sz = ChunkSectionPos.unpackZ(key);
+        
+        if (!world.getChunkManager().isChunkLoaded(sx, sz)) {
+            removeSection(check, key);
+            return;
+        }
+        
+        WorldChunk chunk = world.getChunk(sx, sz);
+        ChunkSection chunkSection = chunk.getSection(world.sectionCoordToIndex(sy));
+        boolean emptyInWorld = chunkSection == null || chunkSection.isEmpty();
+        
+        SectionResult result = check.sections.get(key);
+        boolean changed = result == null;
+        if (result == null) {
+            result = new SectionResult();
+            check.sections.put(key, result);
+        } else {
+            check.subtract(result);
+        }
+        
+        BlockBox bounds = check.bounds;
+        BlockPos placement = check.placement;
+        int minX = Math.max(sx << 4, bounds.getMinX());
+        int minY = Math.max(sy << 4, bounds.getMinY());
+        int minZ = Math.max(sz << 4, bounds.getMinZ());
+        int maxX = Math.min((sx << 4) + 15, bounds.getMaxX());
+        int maxY = Math.min((sy << 4) + 15, bounds.getMaxY());
+        int maxZ = Math.min((sz << 4) + 15, bounds.getMaxZ());
+        
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int expected = check.storage.getState(x - placement.getX(), y - placement.getY(), z - placement.getZ());
+                    BlockState actual = emptyInWorld
+                        ? Blocks.AIR.getDefaultState()
+                        : chunkSection.getBlockState(x & 15, y & 15, z & 15);
+                    Result updated = classify(expected, actual);
+                    if (result.set(SectionResult.index(x, y, z), updated) != updated) {
+                        changed = true;
+                    }
+                }
+            }
+        }
+        
+        check.add(result);
+        if (changed) {
+            touch(check, result);
+        }
+    }
+    
+    private void removeSection(PlacementCheck check, long key) {
+        SectionResult removed = check.sections.remove(key);
+        if (removed != null) {
+            check.subtract(removed);
+            touch(check, null);
+        }
+    }
+    
+    /**
+     * Da una revisión nueva a la colocación y, si se indica, a la sección que ha cambiado
+     */
+    private void touch(PlacementCheck check, SectionResult result) {
+        long revision = ++revisionCounter;
+        check.revision = revision;
+        if (result != null) {
+            result.revision = revision;
+        }
+    }
+    
+    /**
+     * Reclasifica una posición que ha cambiado en el mundo
+     * Las secciones aún sin comprobar se ignoran: ya leerán el estado nuevo
+     */
+    public void onBlockChanged(BlockPos pos, BlockState state) {
+        if (placements.isEmpty()) {
+            return;
+        }
+        
+        long key = ChunkSectionPos.toLong(pos);
+        int index = SectionResult.index(pos.getX(), pos.getY(), pos.getZ());
+        
+        for (PlacementCheck check : placements.values()) {
+            if (check.bounds == null || !check.bounds.contains(pos)) {
+                continue;
+            }
+            
+            SectionResult result = check.sections.get(key);
+            if (result == null) {
+                continue;
+            }
+            
+            int expected = check.storage.getState(
+                pos.getX() - check.placement.getX(),
+                pos.getY() - check.placement.getY(),
+                pos.getZ() - check.placement.getZ());
+            Result updated = classify(expected, state);
+            Result previous = result.set(index, updated);
+            if (previous == updated) {
+                continue;
+            }
+            touch(check, result);
+            
+            if (previous != Result.NONE) {
+                check.totals[previous.ordinal()]--;
+            }
+            if (updated != Result.NONE) {
+                check.totals[updated.ordinal()]++;
+            }
+        }
+    }
+    
+    /**
+     * Encola las secciones de un chunk recién cargado que solapan alguna colocación
+     */
+    public void onChunkLoad(ClientWorld chunkWorld, WorldChunk chunk) {
+        if (chunkWorld != world) {
+            return;
+        }
+        
+        int cx = chunk.getPos().x;
+        int cz = chunk.getPos().z;
+        for (PlacementCheck check : placements.values()) {
+            if (check.bounds != null) {
+                queueRange(check, cx, check.bounds.getMinY() >> 4, cz, cx, check.bounds.getMaxY() >> 4, cz);
+            }
+        }
+    }
+    
+    /**
+     * Descarta los resultados de un chunk descargado; ya no se puede saber qué hay en él
+     */
+    public void onChunkUnload(ClientWorld chunkWorld, WorldChunk chunk) {
+        if (chunkWorld != world) {
+            return;
+        }
+        
+        int cx = chunk.getPos().x;
+        int cz = chunk.getPos().z;
+        for (PlacementCheck check : placements.values()) {
+            BlockBox bounds = check.bounds;
+            if (bounds == null || cx < bounds.getMinX() >> 4 || cx > bounds.getMaxX() >> 4
+                    || cz < bounds.getMinZ() >> 4 || cz > bounds.getMaxZ() >> 4) {
+                continue;
+            }
+            
+            for (int sy = bounds.getMinY() >> 4; sy <= bounds.getMaxY() >> 4; sy++) {
+                removeSection(check, ChunkSectionPos.asLong(cx, sy, cz));
+            }
+        }
+    }
+    
+    /**
+     * Clasifica una posición comparando el estado del schematic con el del mundo
+     */
+    private Result classify(int expected, BlockState actual) {
+        ExpectedState expectedState = getExpected(expected);
+        boolean expectedAir = expectedState == null || expectedState.air;
+        
+        if (actual.isAir()) {
+            return expectedAir ? Result.NONE : Result.MISSING;
+        }
+        if (expectedAir) {
+            return Result.EXTRA;
+        }
+        return expectedState.matches(actual) ? Result.CORRECT : Result.WRONG_STATE;
+    }
+    
+    /**
+     * Estado esperado de un id de la paleta global (null para EMPTY)
+     */
+    private ExpectedState getExpected(int id) {
+        if (id == StatePalette.EMPTY) {
+            return null;
+        }
+        
+        if (id >= expectedStates.length) {
+            expectedStates = Arrays.copyOf(expectedStates, Math.max(id + 1, expectedStates.length * 2));
+        }
+        
+        ExpectedState expected = expectedStates[id];
+        if (expected == null) {
+            expected = ExpectedState.resolve(StatePalette.getInstance().getBlock(id));
+            expectedStates[id] = expected;
+        }
+        return expected;
+    }
+    
+    /**
+     * Límites de una colocación en coordenadas de mundo (null si está vacía)
+     * Se usa el tamaño declarado y, si no lo tiene, la extensión de sus secciones
+     */
+    private static BlockBox computeBounds(LoadedSchematic schematic, SchematicStorage storage, BlockPos placement) {
+        Vec3i size = schematic.getSize();
+        if (size != null && size.getX() > 0 && size.getY() > 0 && size.getZ() > 0) {
+            return new BlockBox(placement.getX(), placement.getY(), placement.getZ(),
+                placement.getX() + size.getX() - 1, placement.getY() + size.getY() - 1, placement.getZ() + size.getZ() - 1);
+        }
+        
+        BlockBox bounds = null;
+        for (Section section : storage.getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            
+            int minX = placement.getX() + (section.getSectionX() << 4);
+            int minY = placement.getY() + (section.getSectionY() << 4);
+            int minZ = placement.getZ() + (section.getSectionZ() << 4);
+            BlockBox sectionBox = new BlockBox(minX, minY, minZ, minX + 15, minY + 15, minZ + 15);
+            bounds = bounds == null ? sectionBox : bounds.encompass(sectionBox);
+        }
+        return bounds;
+    }
+    
+    /**
+     * Olvida todas las colocaciones y sus resultados
+     */
+    public void clear() {
+        placements.clear();
+        world = null;
+    }
+    
+    /**
+     * Clasificación de una posición en el mundo (NONE si no está comprobada o no aplica)
+     */
+    public Result getResult(LoadedSchematic schematic, BlockPos pos) {
+        PlacementCheck check = placements.get(schematic);
+        if (check == null) {
+            return Result.NONE;
+        }
+        
+        SectionResult result = check.sections.get(ChunkSectionPos.toLong(pos));
+        return result != null ? result.getResult(pos.getX(), pos.getY(), pos.getZ()) : Result.NONE;
+    }
+    
+    /**
+     * Resultados por sección del mundo de una colocación, con claves de ChunkSectionPos.asLong
+     * Solo incluye las secciones ya comprobadas de chunks cargados
+     */
+    public Map<Long, SectionResult> getSectionResults(LoadedSchematic schematic) {
+        PlacementCheck check = placements.get(schematic);
+        return check != null ? Collections.unmodifiableMap(check.sections) : Collections.emptyMap();
+    }
+    
+    /**
+     * Revisión de los resultados de una colocación; cambia con cualquier clasificación
+     * Devuelve -1 si la colocación no se está verificando
+     */
+    public long getRevision(LoadedSchematic schematic) {
+        PlacementCheck check = placements.get(schematic);
+        return check != null ? check.revision : -1L;
+    }
+    
+    /**
+     * Combina las revisiones de las secciones del mundo que solapan una caja
+     * Cambia si cambia la clasificación de alguna posición de la caja, o si alguna de sus
+     * secciones se comprueba o se descarta
+     */
+    public long getAreaRevision(LoadedSchematic schematic, BlockBox box) {
+        PlacementCheck check = placements.get(schematic);
+        if (check == null) {
+            return -1L;
+        }
+        
+        long hash = 1L;
+        for (int sx = box.getMinX() >> 4; sx <= box.getMaxX() >> 4; sx++) {
+            for (int sy = box.getMinY() >> 4; sy <= box.getMaxY() >> 4; sy++) {
+                for (int sz = box.getMinZ() >> 4; sz <= box.getMaxZ() >> 4; sz++) {
+                    SectionResult result = check.sections.get(ChunkSectionPos.asLong(sx, sy, sz));
+                    hash = hash * 31L + (result != null ? result.revision : -1L);
+                }
+            }
+        }
+        return hash;
+    }
+    
+    /**
+     * Número de posiciones con una clasificación en toda la colocación
+     */
+    public int getCount(LoadedSchematic schematic, Result result) {
+        PlacementCheck check = placements.get(schematic);
+        return check != null ? check.totals[result.ordinal()] : 0;
+    }
+    
+    /**
+     * Número de secciones que aún faltan por comprobar en una colocación
+     */
+    public int getPendingSectionCount(LoadedSchematic schematic) {
+        PlacementCheck check = placements.get(schematic);
+        return check != null ? check.pending.size() : 0;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Clasificación de una posición
+     * NONE: no hay bloque ni en el schematic ni en el mundo, o aún no se ha comprobado
+     */
+    public enum Result {
+        NONE,
+        CORRECT,
+        MISSING,
+        WRONG_STATE,
+        EXTRA;
+        
+        private static final Result[] VALUES = values();
+        
+        static Result byOrdinal(int ordinal) {
+            return VALUES[ordinal];
+        }
+    }
+    
+    /**
+     * Resultados de una sección 16^3 del mundo: una clasificación por posición y sus recuentos
+     * Las posiciones NONE no se cuentan
+     */
+    public static class SectionResult {
+        private final byte[] results = new byte[SchematicStorage.SECTION_VOLUME];
+        private final int[] counts = new int[Result.VALUES.length];
+        private long revision;
+        
+        /**
+         * Clasificación de una posición en coordenadas de mundo dentro de la sección
+         */
+        public Result getResult(int x, int y, int z) {
+            return Result.byOrdinal(results[index(x, y, z)]);
+        }
+        
+        public int getCount(Result result) {
+            return counts[result.ordinal()];
+        }
+        
+        /**
+         * Revisión de la última comprobación o cambio que modificó alguna clasificación
+         */
+        public long getRevision() {
+            return revision;
+        }
+        
+        /**
+         * Posiciones ausentes, con otro estado o sobrantes
+         */
+        public int getMismatchCount() {
+            return counts[Result.MISSING.ordinal()] + counts[Result.WRONG_STATE.ordinal()] + counts[Result.EXTRA.ordinal()];
+        }
+        
+        /**
+         * Cambia la clasificación de una posición y devuelve la anterior
+         */
+        Result set(int index, Result result) {
+            Result previous = Result.byOrdinal(results[index]);
+            if (previous != Result.NONE) {
+                counts[previous.ordinal()]--;
+            }
+            if (result != Result.NONE) {
+                counts[result.ordinal()]++;
+            }
+            results[index] = (byte) result.ordinal();
+            return previous;
+        }
+        
+        static int index(int x, int y, int z) {
+            return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        }
+    }
+    
+    /**
+     * Estado de verificación de una colocación
+     */
+    private static class PlacementCheck {
+        final LoadedSchematic schematic;
+        final Map<Long, SectionResult> sections = new HashMap<>();
+        final LinkedHashSet<Long> pending = new LinkedHashSet<>();
+        final int[] totals = new int[Result.VALUES.length];
+        
+        // Datos con los que se calcularon los resultados
+        SchematicStorage storage;
+        BlockPos placement;
+        long version;
+        BlockBox bounds;
+        long revision;
+        
+        PlacementCheck(LoadedSchematic schematic) {
+            this.schematic = schematic;
+        }
+        
+        void add(SectionResult result) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += result.counts[i];
+            }
+        }
+        
+        void subtract(SectionResult result) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] -= result.counts[i];
+            }
+        }
+    }
+    
+    /**
+     * Estado que espera el schematic en una posición
+     * Si el bloque del schematic no indica propiedades solo se compara el bloque
+     */
+    private static class ExpectedState {
+        final Block block;
+        final BlockState state;
+        final boolean air;
+        
+        ExpectedState(Block block, BlockState state) {
+            this.block = block;
+            this.state = state;
+            this.air = block != null && block.getDefaultState().isAir();
+        }
+        
+        boolean matches(BlockState actual) {
+            if (block == null || !actual.isOf(block)) {
+                return false;
+            }
+            return state == null || actual == state;
+        }
+        
+        /**
+         * Resuelve un bloque del schematic contra el registro; los bloques desconocidos
+         * no coinciden con nada
+         */
+        static ExpectedState resolve(SchematicBlock schematicBlock) {
+            if (schematicBlock == null) {
+                return new ExpectedState(null, null);
+            }
+            
+            Identifier blockId = Identifier.tryParse(schematicBlock.getBlockId());
+            if (blockId == null || !Registries.BLOCK.containsId(blockId)) {
+                return new ExpectedState(null, null);
+            }
+            
+            Block block = Registries.BLOCK.get(blockId);
+            Map<String, String> properties = schematicBlock.getProperties();
+            if (properties == null || properties.isEmpty()) {
+                return new ExpectedState(block, null);
+            }
+            
+            BlockState state = block.getDefaultState();
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                Property<?> property = block.getStateManager().getProperty(entry.getKey());
+                if (property != null) {
+                    state = withParsed(state, property, entry.getValue());
+                }
+            }
+            return new ExpectedState(block, state);
+        }
+        
+        private static <T extends Comparable<T>> BlockState withParsed(BlockState state, Property<T> property, String value) {
+            return property.parse(value).map(parsed -> state.with(property, parsed)).orElse(state);
+        }
+    }
+}
\ No newline at end of file
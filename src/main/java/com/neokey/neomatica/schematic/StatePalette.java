@@ -0,0 +1,155 @@
+package com.neokey.neomatica.schematic;
+
+import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Paleta global de estados de bloque
+ * Asigna a cada estado (bloque + propiedades) un ID numérico compartido por todos los schematics
+ * El ID 0 está reservado para "sin bloque"
+ */
+public class StatePalette {
+    
+    public static final int EMPTY = 0;
+    public static final int MAX_STATES = 0xFFFF;
+    
+    private static final StatePalette INSTANCE = new StatePalette();
+    
+    private final Map<String, Integer> ids;
+    private volatile SchematicBlock[] blocks;
+    private volatile String[] keys;
+    private volatile int size;
+    
+    private StatePalette() {
+        this.ids = new ConcurrentHashMap<>();
+        this.blocks = new SchematicBlock[256];
+        this.keys = new String[256];
+        this.size = 1;
+    }
+    
+    /**
+     * Obtiene la paleta global
+     */
+    public static StatePalette getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Obtiene el ID de un bloque, registrándolo si es nuevo
+     */
+    public int getId(SchematicBlock block) {
+        if (block == null) {
+            return EMPTY;
+        }
+        return getId(createKey(block.getBlockId(), block.getProperties()));
+    }
+    
+    /**
+     * Obtiene el ID de un estado a partir de su clave, registrándolo si es nuevo
+     */
+    public int getId(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        
+        synchronized (this) {
+            id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            
+            int newId = size;
+            if (newId > MAX_STATES) {
+                throw new IllegalStateException("La paleta de estados está llena");
+            }
+            
+            if (newId >= blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            
+            blocks[newId] = parseKey(key);
+            keys[newId] = key;
+            size = newId + 1;
+            
+            // Publicar el ID solo cuando el bloque ya es visible para otros hilos
+            ids.put(key, newId);
+            return newId;
+        }
+    }
+    
+    /**
+     * Obtiene el bloque de un ID (null para EMPTY)
+     * El bloque devuelto es compartido y no debe modificarse
+     */
+    public SchematicBlock getBlock(int id) {
+        if (id <= EMPTY || id >= size) {
+            return null;
+        }
+        return blocks[id];
+    }
+    
+    /**
+     * Obtiene la clave de estado de un ID
+     */
+    public String getKey(int id) {
+        if (id <= EMPTY || id >= size) {
+            return null;
+        }
+        return keys[id];
+    }
+    
+    /**
+     * Obtiene el número de IDs asignados (incluido EMPTY)
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Crea la clave de un estado: "bloque[prop=valor,...]" con propiedades ordenadas
+     */
+    public static String createKey(String blockId, Map<String, String> properties) {
+        if (properties == null || properties.isEmpty()) {
+            return blockId;
+        }
+        
+        StringBuilder key = new StringBuilder(blockId).append('[');
+        boolean first = true;
+        for (Map.Entry<String, String> entry : new TreeMap<>(properties).entrySet()) {
+            if (!first) {
+                key.append(',');
+            }
+            key.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+        return key.append(']').toString();
+    }
+    
+    /**
+     * Reconstruye un bloque a partir de su clave de estado
+     */
+    public static SchematicBlock parseKey(String key) {
+        int bracket = key.indexOf('[');
+        if (bracket < 0 || !key.endsWith("]")) {
+            return new SchematicBlock(key);
+        }
+        
+        SchematicBlock block = new SchematicBlock(key.substring(0, bracket));
+        String properties = key.substring(bracket + 1, key.length() - 1);
+        
+        for (String property : properties.split(",")) {
+            int equals = property.indexOf('=');
+            if (equals > 0) {
+                block.setProperty(property.substring(0, equals), property.substring(equals + 1));
+            }
+        }
+        
+        return block;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicCacheFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registro de códecs de schematic
+ * Detecta el formato por la firma del contenido (gzip y claves NBT) y usa la extensión solo para desempatar
+ */
+public class CodecRegistry {
+    
+    private static final int EXTENSION_BONUS = 10;
+    
+    private static final CodecRegistry INSTANCE = new CodecRegistry();
+    
+    private final List<SchematicCodec> codecs;
+    
+    private CodecRegistry() {
+        this.codecs = new ArrayList<>();
+        
+        register(new LitematicCodec());
+        register(new SpongeCodec());
+        register(new WorldEditCodec());
+        register(new VanillaStructureCodec());
+        register(new SchematicCacheFile());
+    }
+    
+    /**
+     * Obtiene el registro global
+     */
+    public static CodecRegistry getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Registra un códec adicional
+     */
+    public synchronized void register(SchematicCodec codec) {
+        codecs.add(codec);
+        Neomatica.LOGGER.debug("Códec registrado: {} ({})", codec.getName(), codec.getExtension());
+    }
+    
+    /**
+     * Obtiene todos los códecs registrados
+     */
+    public synchronized List<SchematicCodec> getCodecs() {
+        return Collections.unmodifiableList(new ArrayList<>(codecs));
+    }
+    
+    /**
+     * Detecta el códec de un archivo existente a partir de su contenido
+     * Devuelve null si ningún códec lo reconoce
+     */
+    public SchematicCodec detect(File file) throws IOException {
+        FormatSignature signature = FormatSignature.read(file);
+        
+        SchematicCodec best = null;
+        int bestScore = 0;
+        
+        for (SchematicCodec codec : getCodecs()) {
+            int score = codec.score(signature);
+            if (signature.hasExtension(codec.getExtension())) {
+                score += EXTENSION_BONUS;
+            }
+            
+            if (score > bestScore) {
+                best = codec;
+                bestScore = score;
+            }
+        }
+        
+        if (best != null && !signature.hasExtension(best.getExtension())) {
+            Neomatica.LOGGER.info("Formato detectado por contenido: {} es {}", file.getName(), best.getName());
+        }
+        
+        return best;
+    }
+    
+    /**
+     * Obtiene el códec asociado a la extensión de un nombre de archivo
+     */
+    public SchematicCodec getByExtension(String fileName) {
+        String name = fileName.toLowerCase();
+        for (SchematicCodec codec : getCodecs()) {
+            if (name.endsWith(codec.getExtension())) {
+                return codec;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Indica si algún códec maneja la extensión del archivo
+     */
+    public boolean isSupported(String fileName) {
+        return getByExtension(fileName) != null;
+    }
+}
\ No newline at end of file
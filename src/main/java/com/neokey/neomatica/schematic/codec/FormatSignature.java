@@ -0,0 +1,170 @@
+package com.neokey.neomatica.schematic.codec;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Firma de un archivo: primeros bytes, si está en gzip y las claves NBT de los primeros niveles
+ * Se obtiene leyendo solo un prefijo del archivo descomprimido
+ */
+public class FormatSignature {
+    
+    public static final int PREFIX_SIZE = 64 * 1024;
+    
+    private static final int GZIP_MAGIC = 0x1F8B;
+    private static final int MAX_KEY_DEPTH = 2;
+    
+    private final String fileName;
+    private final int magic;
+    private final boolean gzip;
+    private final Set<String> keys;
+    
+    private FormatSignature(String fileName, int magic, boolean gzip, Set<String> keys) {
+        this.fileName = fileName;
+        this.magic = magic;
+        this.gzip = gzip;
+        this.keys = keys;
+    }
+    
+    /**
+     * Lee la firma de un archivo
+     */
+    public static FormatSignature read(File file) throws IOException {
+        byte[] head = new byte[4];
+        int headLength;
+        try (InputStream in = new FileInputStream(file)) {
+            headLength = in.readNBytes(head, 0, head.length);
+        }
+        
+        int magic = headLength == 4 ? ByteBuffer.wrap(head).getInt() : 0;
+        boolean gzip = headLength >= 2 && ((head[0] & 0xFF) << 8 | (head[1] & 0xFF)) == GZIP_MAGIC;
+        
+        byte[] prefix;
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file));
+             InputStream in = gzip ? new GZIPInputStream(raw) : raw) {
+            prefix = in.readNBytes(PREFIX_SIZE);
+        } catch (IOException e) {
+            // gzip corrupto o truncado: sin claves, se decidirá por la extensión
+            prefix = new byte[0];
+        }
+        
+        Set<String> keys = new HashSet<>();
+        scanNbtKeys(ByteBuffer.wrap(prefix), keys);
+        
+        return new FormatSignature(file.getName().toLowerCase(), magic, gzip, keys);
+    }
+    
+    /**
+     * Indica si el archivo tiene una clave NBT; las anidadas se escriben "padre/hijo"
+     */
+    public boolean hasKey(String path) {
+        return keys.contains(path);
+    }
+    
+    public boolean hasExtension(String extension) {
+        return fileName.endsWith(extension);
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public int getMagic() {
+        return magic;
+    }
+    
+    public boolean isGzip() {
+        return gzip;
+    }
+    
+    /**
+     * Recorre el compuesto raíz anotando las claves hasta MAX_KEY_DEPTH
+     * Si el prefijo se corta a mitad, se devuelve lo encontrado hasta ese punto
+     */
+    private static void scanNbtKeys(ByteBuffer buffer, Set<String> keys) {
+        try {
+            if (buffer.remaining() < 3 || buffer.get() != 10) {
+                return;
+            }
+            skipString(buffer);
+            scanCompound(buffer, "", 1, keys);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Prefijo agotado o datos que no son NBT
+        }
+    }
+    
+    private static void scanCompound(ByteBuffer buffer, String parent, int depth, Set<String> keys) {
+        while (true) {
+            byte type = buffer.get();
+            if (type == 0) {
+                return;
+            }
+            
+            String name = readString(buffer);
+            String path = parent.isEmpty() ? name : parent + "/" + name;
+            keys.add(path);
+            
+            if (type == 10 && depth < MAX_KEY_DEPTH) {
+                scanCompound(buffer, path, depth + 1, keys);
+            } else {
+                skipPayload(buffer, type);
+            }
+        }
+    }
+    
+    private static void skipPayload(ByteBuffer buffer, byte type) {
+        switch (type) {
+            case 1 -> skip(buffer, 1);
+            case 2 -> skip(buffer, 2);
+            case 3, 5 -> skip(buffer, 4);
+            case 4, 6 -> skip(buffer, 8);
+            case 7 -> skip(buffer, buffer.getInt());
+            case 8 -> skipString(buffer);
+            case 9 -> {
+                byte elementType = buffer.get();
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    skipPayload(buffer, elementType);
+                }
+            }
+            case 10 -> {
+                byte child;
+                while ((child = buffer.get()) != 0) {
+                    skipString(buffer);
+                    skipPayload(buffer, child);
+                }
+            }
+            case 11 -> skip(buffer, buffer.getInt() * 4L);
+            case 12 -> skip(buffer, buffer.getInt() * 8L);
+            default -> throw new IllegalArgumentException("Tipo NBT desconocido: " + type);
+        }
+    }
+    
+    private static void skip(ByteBuffer buffer, long length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + (int) length);
+    }
+    
+    private static void skipString(ByteBuffer buffer) {
+        skip(buffer, buffer.getShort() & 0xFFFF);
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        // Las claves NBT son UTF-8 modificado; para nombres normales coincide con UTF-8
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,350 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+import com.neokey.neomatica.util.NbtStreamWriter;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Códec del formato de Litematica (.litematic)
+ */
+public class LitematicCodec extends NbtSchematicCodec {
+    
+    public static final String EXTENSION = ".litematic";
+    
+    private static final int LITEMATIC_VERSION = 6;
+    
+    @Override
+    public String getName() {
+        return "Litematica";
+    }
+    
+    @Override
+    public String getExtension() {
+        return EXTENSION;
+    }
+    
+    @Override
+    public int score(FormatSignature signature) {
+        if (!signature.isGzip()) {
+            return 0;
+        }
+        if (signature.hasKey("Regions") && signature.hasKey("Metadata")) {
+            return 100;
+        }
+        return signature.hasKey("Regions") ? 80 : 0;
+    }
+    
+    @Override
+    public void read(File file, SchematicVisitor visitor) throws IOException {
+        NbtCompound nbt = readRoot(file);
+        
+        if (!nbt.contains("Metadata") || !nbt.contains("Regions")) {
+            throw new IOException("Archivo litematic inválido");
+        }
+        
+        NbtCompound metadata = nbt.getCompound("Metadata").orElse(new NbtCompound());
+        String name = metadata.getString("Name").orElse("");
+        NbtCompound regions = nbt.getCompound("Regions").orElse(new NbtCompound());
+        
+        // Calcular la caja que engloba todas las regiones (los tamaños pueden ser negativos)
+        BlockPos min = null;
+        BlockPos max = null;
+        for (String regionName : regions.getKeys()) {
+            NbtCompound region = regions.getCompound(regionName).orElse(new NbtCompound());
+            BlockPos regionMin = getRegionMin(region);
+            Vec3i regionSize = getRegionSize(region);
+            BlockPos regionMax = regionMin.add(regionSize.getX() - 1, regionSize.getY() - 1, regionSize.getZ() - 1);
+            
+            min = min == null ? regionMin : new BlockPos(
+                Math.min(min.getX(), regionMin.getX()), Math.min(min.getY(), regionMin.getY()), Math.min(min.getZ(), regionMin.getZ()));
+            max = max == null ? regionMax : new BlockPos(
+                Math.max(max.getX(), regionMax.getX()), Math.max(max.getY(), regionMax.getY()), Math.max(max.getZ(), regionMax.getZ()));
+        }
+        
+        if (min == null) {
+            visitor.visitHeader(name, Vec3i.ZERO, null);
+            return;
+        }
+        
+        Vec3i size = new Vec3i(max.getX() - min.getX() + 1, max.getY() - min.getY() + 1, max.getZ() - min.getZ() + 1);
+        visitor.visitHeader(name, size, min);
+        
+        for (String regionName : regions.getKeys()) {
+            NbtCompound region = regions.getCompound(regionName).orElse(new NbtCompound());
+            readRegion(region, getRegionMin(region).subtract(min), visitor);
+        }
+        
+        Neomatica.LOGGER.info("Litematic cargado: {}", name.isEmpty() ? file.getName() : name);
+    }
+    
+    /**
+     * Lee una región: su paleta y sus estados empaquetados
+     */
+    private void readRegion(NbtCompound region, Vec3i offset, SchematicVisitor visitor) {
+        if (!region.contains("Size") || !region.contains("BlockStates")) {
+            return;
+        }
+        
+        Vec3i size = getRegionSize(region);
+        String[] palette = readPalette(region);
+        visitor.visitPalette(palette);
+        
+        long[] blockStates = region.getLongArray("BlockStates").orElse(new long[0]);
+        int bitsPerBlock = getBitsPerBlock(palette.length);
+        
+        if (offset.equals(Vec3i.ZERO)) {
+            SectionEmitter.emitLinear(size, index -> extractPaletteId(blockStates, index, bitsPerBlock), visitor);
+            return;
+        }
+        
+        // Región desplazada: sus secciones no coinciden con las del schematic
+        SectionEmitter emitter = new SectionEmitter();
+        int index = 0;
+        for (int y = 0; y < size.getY(); y++) {
+            for (int z = 0; z < size.getZ(); z++) {
+                for (int x = 0; x < size.getX(); x++) {
+                    int paletteId = extractPaletteId(blockStates, index++, bitsPerBlock);
+                    if (paletteId < palette.length && palette[paletteId] != null) {
+                        emitter.set(offset.getX() + x, offset.getY() + y, offset.getZ() + z, paletteId);
+                    }
+                }
+            }
+        }
+        emitter.emitSparse(visitor);
+    }
+    
+    /**
+     * Lee la paleta de una región: lista de compuestos (Litematica) o compuesto con claves numéricas
+     */
+    private String[] readPalette(NbtCompound region) {
+        NbtList list = region.getListOrEmpty("BlockStatePalette");
+        if (!list.isEmpty()) {
+            String[] palette = new String[list.size()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = readState(list.getCompoundOrEmpty(i));
+            }
+            return palette;
+        }
+        
+        NbtCompound compound = region.getCompound("BlockStatePalette").orElse(new NbtCompound());
+        String[] palette = new String[compound.getSize()];
+        for (String key : compound.getKeys()) {
+            try {
+                int index = Integer.parseInt(key);
+                if (index >= 0 && index < palette.length) {
+                    palette[index] = readState(compound.getCompound(key).orElse(new NbtCompound()));
+                }
+            } catch (NumberFormatException e) {
+                // Ignorar claves inválidas
+            }
+        }
+        return palette;
+    }
+    
+    private String readState(NbtCompound state) {
+        String name = state.getString("Name").orElse("minecraft:air");
+        return toStateKey(name, readProperties(state.getCompoundOrEmpty("Properties")));
+    }
+    
+    private BlockPos getRegionMin(NbtCompound region) {
+        NbtCompound posNbt = region.getCompound("Position").orElse(new NbtCompound());
+        NbtCompound sizeNbt = region.getCompound("Size").orElse(new NbtCompound());
+        
+        int[] pos = { posNbt.getInt("x").orElse(0), posNbt.getInt("y").orElse(0), posNbt.getInt("z").orElse(0) };
+        int[] size = { sizeNbt.getInt("x").orElse(0), sizeNbt.getInt("y").orElse(0), sizeNbt.getInt("z").orElse(0) };
+        
+        // Con tamaño negativo la región se extiende hacia atrás desde su posición
+        for (int i = 0; i < 3; i++) {
+            if (size[i] < 0) {
+                pos[i] += size[i] + 1;
+            }
+        }
+        return new BlockPos(pos[0], pos[1], pos[2]);
+    }
+    
+    private Vec3i getRegionSize(NbtCompound region) {
+        NbtCompound sizeNbt = region.getCompound("Size").orElse(new NbtCompound());
+        return new Vec3i(
+            Math.abs(sizeNbt.getInt("x").orElse(0)),
+            Math.abs(sizeNbt.getInt("y").orElse(0)),
+            Math.abs(sizeNbt.getInt("z").orElse(0))
+        );
+    }
+    
+    @Override
+    public boolean write(LoadedSchematic schematic, File file) throws IOException {
+        SchematicStorage storage = schematic.getStorage();
+        StatePalette globalPalette = StatePalette.getInstance();
+        Vec3i size = schematic.getSize() != null ? schematic.getSize() : Vec3i.ZERO;
+        BlockPos origin = schematic.getOrigin() != null ? schematic.getOrigin() : BlockPos.ORIGIN;
+        
+        // TotalVolume es un int y el array de estados también tiene longitud int
+        checkLinearVolume(size, getName());
+        
+        // Paleta con el aire en la posición 0
+        LocalPalette palette = LocalPalette.collect(storage, true);
+        int bitsPerBlock = getBitsPerBlock(palette.size());
+        
+        // Los estados se empaquetan capa a capa de 16 filas (las posiciones vacías quedan como aire)
+        long totalBlocks = (long) size.getX() * size.getY() * size.getZ();
+        int longCount = (int) ((totalBlocks * bitsPerBlock + 63) / 64);
+        int[] slab = newSlab(size);
+        
+        long now = System.currentTimeMillis();
+        
+        writeRoot(file, writer -> {
+            writer.putInt("Version", LITEMATIC_VERSION);
+            writer.putInt("MinecraftDataVersion", DATA_VERSION);
+            
+            // Metadata
+            writer.beginCompound("Metadata");
+            writer.putString("Name", schematic.getName());
+            writer.putString("Author", "Neomatica");
+            writer.putString("Description", "Exportado con Neomatica");
+            writer.putLong("TimeCreated", now);
+            writer.putLong("TimeModified", now);
+            writer.putInt("RegionCount", 1);
+            writer.putInt("TotalVolume", (int) totalBlocks);
+            writer.putInt("TotalBlocks", storage.getBlockCount());
+            writeVec(writer, "EnclosingSize", size);
+            writer.endCompound();
+            
+            // Regions
+            writer.beginCompound("Regions");
+            writer.beginCompound(schematic.getName());
+            writeVec(writer, "Position", origin);
+            writeVec(writer, "Size", size);
+            
+            writer.beginList("BlockStatePalette", NbtStreamWriter.TAG_COMPOUND, palette.size());
+            for (int local = 0; local < palette.size(); local++) {
+                SchematicBlock block = globalPalette.getBlock(palette.getGlobal(local));
+                writer.putString("Name", block != null ? block.getBlockId() : "minecraft:air");
+                if (block != null && !block.getProperties().isEmpty()) {
+                    writer.beginCompound("Properties");
+                    for (var property : block.getProperties().entrySet()) {
+                        writer.putString(property.getKey(), property.getValue());
+                    }
+                    writer.endCompound();
+                }
+                writer.endCompound();
+            }
+            
+            writer.beginLongArray("BlockStates", longCount);
+            BitPacker packer = new BitPacker(writer, bitsPerBlock);
+            for (int sy = 0; sy << 4 < size.getY(); sy++) {
+                int slabVolume = fillSlab(storage, size, sy, slab, palette::toLocal);
+                for (int i = 0; i < slabVolume; i++) {
+                    packer.put(slab[i]);
+                }
+            }
+            packer.finish();
+            
+            writer.beginList("TileEntities", NbtStreamWriter.TAG_COMPOUND, 0);
+            writer.beginList("Entities", NbtStreamWriter.TAG_COMPOUND, 0);
+            writer.beginList("PendingBlockTicks", NbtStreamWriter.TAG_COMPOUND, 0);
+            writer.endCompound();
+            writer.endCompound();
+        });
+        
+        Neomatica.LOGGER.info("Schematic exportado a Litematica: {}", file.getName());
+        return true;
+    }
+    
+    private static void writeVec(NbtStreamWriter writer, String name, Vec3i vec) throws IOException {
+        writer.beginCompound(name);
+        writer.putInt("x", vec.getX());
+        writer.putInt("y", vec.getY());
+        writer.putInt("z", vec.getZ());
+        writer.endCompound();
+    }
+    
+    private static int getBitsPerBlock(int paletteSize) {
+        return Math.max(2, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(1, paletteSize - 1)));
+    }
+    
+    /**
+     * Extrae el ID de paleta de un array de longs
+     */
+    private static int extractPaletteId(long[] data, int index, int bitsPerBlock) {
+        if (data.length == 0) return 0;
+        
+        long startBitLong = (long) index * bitsPerBlock;
+        int longIndex = (int) (startBitLong / 64);
+        int startBit = (int) (startBitLong % 64);
+        
+        if (longIndex >= data.length) {
+            return 0;
+        }
+        
+        long value = data[longIndex] >>> startBit;
+        
+        if (startBit + bitsPerBlock > 64 && longIndex + 1 < data.length) {
+            value |= data[longIndex + 1] << (64 - startBit);
+        }
+        
+        return (int) (value & ((1L << bitsPerBlock) - 1));
+    }
+    
+    /**
+     * Empaqueta estados en longs en orden, con el mismo formato que lee extractPaletteId
+     * (un valor puede partirse entre dos longs), y los escribe por trozos
+     */
+    private static class BitPacker {
+        
+        private final NbtStreamWriter writer;
+        private final int bitsPerBlock;
+        private final long[] buffer = new long[4096];
+        private int buffered = 0;
+        private long current = 0;
+        private int currentBits = 0;
+        
+        BitPacker(NbtStreamWriter writer, int bitsPerBlock) {
+            this.writer = writer;
+            this.bitsPerBlock = bitsPerBlock;
+        }
+        
+        void put(int value) throws IOException {
+            current |= (long) value << currentBits;
+            currentBits += bitsPerBlock;
+            
+            if (currentBits >= 64) {
+                emit(current);
+                currentBits -= 64;
+                // Bits altos del valor que no cabían en el long completo
+                current = currentBits > 0 ? (long) value >>> (bitsPerBlock - currentBits) : 0;
+            }
+        }
+        
+        /**
+         * Escribe el último long incompleto y lo que quede en el buffer
+         */
+        void finish() throws IOException {
+            if (currentBits > 0) {
+                emit(current);
+                current = 0;
+                currentBits = 0;
+            }
+            writer.writeLongs(buffer, buffered);
+            buffered = 0;
+        }
+        
+        private void emit(long value) throws IOException {
+            buffer[buffered++] = value;
+            if (buffered == buffer.length) {
+                writer.writeLongs(buffer, buffered);
+                buffered = 0;
+            }
+        }
+    }
+}
\ No newline at end of file
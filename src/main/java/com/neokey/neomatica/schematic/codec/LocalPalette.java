@@ -0,0 +1,87 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+
+import java.util.Arrays;
+
+/**
+ * Paleta local de un archivo al escribir: traduce IDs globales a índices consecutivos
+ * El índice 0 puede reservarse para el aire, como piden Litematica y Sponge
+ */
+class LocalPalette {
+    
+    private final boolean reserveAir;
+    private int[] globalToLocal;
+    private int[] localToGlobal;
+    private int size;
+    
+    LocalPalette(boolean reserveAir) {
+        this.reserveAir = reserveAir;
+        this.globalToLocal = new int[StatePalette.getInstance().size()];
+        this.localToGlobal = new int[16];
+        Arrays.fill(globalToLocal, -1);
+        
+        if (reserveAir) {
+            globalToLocal[StatePalette.EMPTY] = 0;
+            localToGlobal[0] = StatePalette.EMPTY;
+            size = 1;
+        }
+    }
+    
+    /**
+     * Crea la paleta con todos los estados usados por un almacenamiento
+     */
+    static LocalPalette collect(SchematicStorage storage, boolean reserveAir) {
+        LocalPalette palette = new LocalPalette(reserveAir);
+        for (SchematicStorage.Section section : storage.getSections()) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            for (short state : section.getStates()) {
+                if (state != StatePalette.EMPTY) {
+                    palette.toLocal(state & 0xFFFF);
+                }
+            }
+        }
+        return palette;
+    }
+    
+    /**
+     * Obtiene el índice local de un ID global, asignándolo si es nuevo
+     */
+    int toLocal(int globalId) {
+        if (globalId >= globalToLocal.length) {
+            int oldLength = globalToLocal.length;
+            globalToLocal = Arrays.copyOf(globalToLocal, Math.max(globalId + 1, oldLength * 2));
+            Arrays.fill(globalToLocal, oldLength, globalToLocal.length, -1);
+        }
+        
+        int local = globalToLocal[globalId];
+        if (local < 0 && reserveAir && "minecraft:air".equals(StatePalette.getInstance().getKey(globalId))) {
+            // Un aire explícito comparte el índice reservado para no duplicarlo en la paleta
+            globalToLocal[globalId] = 0;
+            return 0;
+        }
+        if (local < 0) {
+            local = size++;
+            if (local >= localToGlobal.length) {
+                localToGlobal = Arrays.copyOf(localToGlobal, localToGlobal.length * 2);
+            }
+            localToGlobal[local] = globalId;
+            globalToLocal[globalId] = local;
+        }
+        return local;
+    }
+    
+    /**
+     * Obtiene el ID global de un índice local (EMPTY para el aire reservado)
+     */
+    int getGlobal(int local) {
+        return localToGlobal[local];
+    }
+    
+    int size() {
+        return size;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+import com.neokey.neomatica.util.FileUtil;
+import com.neokey.neomatica.util.NbtStreamReader;
+import com.neokey.neomatica.util.NbtStreamWriter;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Base de los códecs de formatos NBT comprimidos con gzip
+ */
+public abstract class NbtSchematicCodec implements SchematicCodec {
+    
+    /**
+     * Versión de datos de Minecraft que se escribe en los archivos (1.21.8)
+     */
+    public static final int DATA_VERSION = 4440;
+    
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * Lee el compuesto raíz de un archivo NBT comprimido, con todo el árbol en memoria
+     * Lo usan Litematica (sus estados empaquetados ocupan pocos bits por bloque y la caja
+     * de todas las regiones hace falta antes de emitir nada) y las piezas de estructura vanilla
+     */
+    protected NbtCompound readRoot(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return NbtIo.readCompressed(in, NbtSizeTracker.ofUnlimitedBytes());
+        }
+    }
+    
+    /**
+     * Lee el compuesto raíz entregando en streaming los arrays de bytes de las rutas indicadas
+     * El resto del árbol se construye en memoria como en readRoot(File)
+     */
+    protected NbtCompound readRoot(File file, Map<String, NbtStreamReader.ByteArrayHandler> handlers) throws IOException {
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(raw, GZIP_BUFFER_SIZE)))) {
+            return new NbtStreamReader(handlers).readRoot(in);
+        }
+    }
+    
+    /**
+     * Escribe un archivo NBT comprimido en streaming y de forma atómica
+     * El cuerpo escribe las etiquetas del compuesto raíz, que se abre y cierra aquí
+     */
+    protected void writeRoot(File file, RootWriter body) throws IOException {
+        FileUtil.writeAtomically(file, out -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+            NbtStreamWriter writer = new NbtStreamWriter(gzip);
+            
+            writer.beginRoot();
+            body.write(writer);
+            writer.endCompound();
+            
+            writer.flush();
+            gzip.finish();
+        });
+    }
+    
+    /**
+     * Convierte un estado de bloque a clave de paleta; el aire se devuelve como null
+     */
+    protected static String toStateKey(String blockId, Map<String, String> properties) {
+        if (blockId == null || isAir(blockId)) {
+            return null;
+        }
+        return StatePalette.createKey(blockId, properties);
+    }
+    
+    /**
+     * Normaliza una cadena de estado "bloque[prop=valor,...]" (propiedades ordenadas; aire como null)
+     */
+    protected static String normalizeStateString(String state) {
+        int bracket = state.indexOf('[');
+        if (bracket < 0 || !state.endsWith("]")) {
+            return toStateKey(state, null);
+        }
+        
+        Map<String, String> properties = new HashMap<>();
+        for (String property : state.substring(bracket + 1, state.length() - 1).split(",")) {
+            int equals = property.indexOf('=');
+            if (equals > 0) {
+                properties.put(property.substring(0, equals).trim(), property.substring(equals + 1).trim());
+            }
+        }
+        return toStateKey(state.substring(0, bracket), properties);
+    }
+    
+    /**
+     * Lee un compuesto de propiedades de estado (todas son cadenas)
+     */
+    protected static Map<String, String> readProperties(NbtCompound properties) {
+        Map<String, String> map = new HashMap<>();
+        for (String key : properties.getKeys()) {
+            properties.getString(key).ifPresent(value -> map.put(key, value));
+        }
+        return map;
+    }
+    
+    /**
+     * Descarta los bytes que quedan de un array leído en streaming
+     */
+    protected static void skipFully(DataInput in, int length) throws IOException {
+        byte[] buffer = new byte[Math.min(length, 8192)];
+        while (length > 0) {
+            int skipped = Math.min(buffer.length, length);
+            in.readFully(buffer, 0, skipped);
+            length -= skipped;
+        }
+    }
+    
+    /**
+     * Comprueba que un volumen lineal cabe en un array NBT, cuya longitud es un int
+     */
+    protected static void checkLinearVolume(Vec3i size, String format) throws IOException {
+        long volume = (long) size.getX() * size.getY() * size.getZ();
+        if (size.getX() < 0 || size.getY() < 0 || size.getZ() < 0 || volume > Integer.MAX_VALUE - 8) {
+            throw new IOException("Schematic demasiado grande para " + format + ": " + size.toShortString());
+        }
+    }
+    
+    /**
+     * Comprueba que las dimensiones caben en los campos short sin signo de Sponge y WorldEdit
+     */
+    protected static void checkShortDimensions(Vec3i size, String format) throws IOException {
+        if (size.getX() > 0xFFFF || size.getY() > 0xFFFF || size.getZ() > 0xFFFF) {
+            throw new IOException("Dimensiones demasiado grandes para " + format + ": " + size.toShortString());
+        }
+    }
+    
+    /**
+     * Buffer para una capa de 16 filas de un volumen lineal; requiere checkLinearVolume
+     */
+    protected static int[] newSlab(Vec3i size) {
+        return new int[Math.min(16, size.getY()) * size.getX() * size.getZ()];
+    }
+    
+    /**
+     * Rellena una capa de 16 filas de un volumen lineal (x, luego z, luego y) con el valor
+     * de cada bloque; las posiciones vacías quedan a 0
+     *
+     * @param valueOf convierte un ID de estado global en el valor que guarda el formato
+     * @return número de valores de la capa; la última puede tener menos de 16 filas
+     */
+    protected static int fillSlab(SchematicStorage storage, Vec3i size, int sy, int[] slab, IntUnaryOperator valueOf) {
+        int rows = Math.min(16, size.getY() - (sy << 4));
+        int slabVolume = rows * size.getX() * size.getZ();
+        Arrays.fill(slab, 0, slabVolume, 0);
+        
+        for (int sz = 0; sz << 4 < size.getZ(); sz++) {
+            for (int sx = 0; sx << 4 < size.getX(); sx++) {
+                SchematicStorage.Section section = storage.getSection(SchematicStorage.sectionKey(sx, sy, sz));
+                if (section == null || section.isEmpty()) {
+                    continue;
+                }
+                
+                int maxZ = Math.min(16, size.getZ() - (sz << 4));
+                int maxX = Math.min(16, size.getX() - (sx << 4));
+                
+                for (int y = 0; y < rows; y++) {
+                    for (int z = 0; z < maxZ; z++) {
+                        int linear = (y * size.getZ() + (sz << 4) + z) * size.getX() + (sx << 4);
+                        for (int x = 0; x < maxX; x++) {
+                            int state = section.getState(x, y, z);
+                            if (state != StatePalette.EMPTY) {
+                                slab[linear + x] = valueOf.applyAsInt(state);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        return slabVolume;
+    }
+    
+    protected static boolean isAir(String blockId) {
+        return blockId.equals("minecraft:air") || blockId.equals("air");
+    }
+    
+    /**
+     * Escribe el cuerpo del compuesto raíz
+     */
+    @FunctionalInterface
+    protected interface RootWriter {
+        void write(NbtStreamWriter writer) throws IOException;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+import com.neokey.neomatica.util.FileUtil;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.File;
+
+/**
+ * Visitante que construye un LoadedSchematic a partir de la lectura de un códec
+ */
+public class SchematicBuilder implements SchematicVisitor {
+    
+    private final LoadedSchematic schematic;
+    private final StatePalette palette;
+    private final short[] sectionStates;
+    private int[] toGlobal;
+    
+    public SchematicBuilder(File file) {
+        this.schematic = new LoadedSchematic(FileUtil.getNameWithoutExtension(file));
+        this.palette = StatePalette.getInstance();
+        this.sectionStates = new short[SchematicStorage.SECTION_VOLUME];
+        this.toGlobal = new int[0];
+    }
+    
+    @Override
+    public void visitHeader(String name, Vec3i size, BlockPos origin) {
+        if (name != null && !name.isEmpty()) {
+            schematic.setName(name);
+        }
+        schematic.setSize(size);
+        schematic.setOrigin(origin);
+    }
+    
+    @Override
+    public void visitPalette(String[] stateKeys) {
+        toGlobal = new int[stateKeys.length];
+        for (int i = 0; i < stateKeys.length; i++) {
+            toGlobal[i] = stateKeys[i] != null ? palette.getId(stateKeys[i]) : StatePalette.EMPTY;
+        }
+    }
+    
+    @Override
+    public void visitSection(int sectionX, int sectionY, int sectionZ, int[] paletteIndices) {
+        for (int i = 0; i < SchematicStorage.SECTION_VOLUME; i++) {
+            int index = paletteIndices[i];
+            sectionStates[i] = (short) (index >= 0 && index < toGlobal.length ? toGlobal[index] : StatePalette.EMPTY);
+        }
+        schematic.getStorage().mergeSection(sectionX, sectionY, sectionZ, sectionStates);
+    }
+    
+    /**
+     * Obtiene el schematic construido
+     */
+    public LoadedSchematic build() {
+        if (schematic.getSize() == null) {
+            schematic.setSize(Vec3i.ZERO);
+        }
+        return schematic;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Códec de un formato de schematic
+ * Se registra en CodecRegistry, que elige el códec por la firma del archivo o por su extensión
+ */
+public interface SchematicCodec {
+    
+    /**
+     * Nombre legible del formato
+     */
+    String getName();
+    
+    /**
+     * Extensión de archivo, con punto (".litematic")
+     */
+    String getExtension();
+    
+    /**
+     * Puntuación de 0 a 100 de cuánto se parece la firma a este formato (0 = no es este formato)
+     */
+    int score(FormatSignature signature);
+    
+    /**
+     * Lee el archivo en streaming: cabecera, paleta y secciones
+     */
+    void read(File file, SchematicVisitor visitor) throws IOException;
+    
+    /**
+     * Escribe el schematic en este formato
+     */
+    boolean write(LoadedSchematic schematic, File file) throws IOException;
+    
+    /**
+     * Carga el archivo completo como schematic
+     */
+    default LoadedSchematic load(File file) throws IOException {
+        SchematicBuilder builder = new SchematicBuilder(file);
+        read(file, builder);
+        return builder.build();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.neokey.neomatica.schematic.codec;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+/**
+ * Receptor de la lectura en streaming de un schematic
+ * Los códecs llaman en orden: cabecera, paleta y después las secciones de 16x16x16
+ * Un formato con varias regiones puede volver a llamar a visitPalette antes de sus secciones
+ */
+public interface SchematicVisitor {
+    
+    /**
+     * Datos generales del schematic (el origen puede ser null)
+     */
+    void visitHeader(String name, Vec3i size, BlockPos origin);
+    
+    /**
+     * Paleta del archivo: claves de estado ("bloque[prop=valor]"); null indica aire/vacío
+     */
+    void visitPalette(String[] stateKeys);
+    
+    /**
+     * Una sección de 16x16x16 con índices de la última paleta visitada
+     * Los índices negativos son vacíos; el array se reutiliza y debe copiarse si se guarda
+     */
+    void visitSection(int sectionX, int sectionY, int sectionZ, int[] paletteIndices);
+}
\ No newline at end of file
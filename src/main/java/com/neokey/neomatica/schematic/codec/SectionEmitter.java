@@ -0,0 +1,91 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.schematic.SchematicStorage;
+import net.minecraft.util.math.Vec3i;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Convierte bloques de un archivo en secciones de 16x16x16 para el SchematicVisitor
+ * Sirve tanto para formatos con un array lineal (x, luego z, luego y) como para listas de bloques sueltos
+ */
+public class SectionEmitter {
+    
+    private final Map<Long, int[]> sparseSections = new HashMap<>();
+    
+    /**
+     * Emite las secciones de un volumen almacenado como array lineal
+     * paletteAt recibe el índice lineal (y * largo + z) * ancho + x y devuelve el índice de paleta
+     */
+    public static void emitLinear(Vec3i size, IntUnaryOperator paletteAt, SchematicVisitor visitor) {
+        int sizeX = Math.abs(size.getX());
+        int sizeY = Math.abs(size.getY());
+        int sizeZ = Math.abs(size.getZ());
+        
+        for (int sy = 0; sy << 4 < sizeY; sy++) {
+            int slabStart = (sy << 4) * sizeZ * sizeX;
+            emitSlab(size, sy, index -> paletteAt.applyAsInt(slabStart + index), visitor);
+        }
+    }
+    
+    /**
+     * Emite las secciones de una capa de 16 filas de un volumen lineal
+     * paletteAt recibe el índice lineal relativo al comienzo de la capa, (y * largo + z) * ancho + x
+     * con y entre 0 y 15; así el formato puede decodificar una capa cada vez
+     */
+    public static void emitSlab(Vec3i size, int sy, IntUnaryOperator paletteAt, SchematicVisitor visitor) {
+        int sizeX = Math.abs(size.getX());
+        int sizeY = Math.abs(size.getY());
+        int sizeZ = Math.abs(size.getZ());
+        int[] section = new int[SchematicStorage.SECTION_VOLUME];
+        int maxY = Math.min(16, sizeY - (sy << 4));
+        
+        for (int sz = 0; sz << 4 < sizeZ; sz++) {
+            for (int sx = 0; sx << 4 < sizeX; sx++) {
+                Arrays.fill(section, -1);
+                
+                int maxZ = Math.min(16, sizeZ - (sz << 4));
+                int maxX = Math.min(16, sizeX - (sx << 4));
+                
+                for (int y = 0; y < maxY; y++) {
+                    for (int z = 0; z < maxZ; z++) {
+                        int linear = (y * sizeZ + (sz << 4) + z) * sizeX + (sx << 4);
+                        int index = SchematicStorage.Section.index(0, y, z);
+                        for (int x = 0; x < maxX; x++) {
+                            section[index + x] = paletteAt.applyAsInt(linear + x);
+                        }
+                    }
+                }
+                
+                visitor.visitSection(sx, sy, sz, section);
+            }
+        }
+    }
+    
+    /**
+     * Registra un bloque suelto; se emitirá con emitSparse()
+     */
+    public void set(int x, int y, int z, int paletteIndex) {
+        long key = SchematicStorage.sectionKey(x >> 4, y >> 4, z >> 4);
+        int[] section = sparseSections.computeIfAbsent(key, k -> {
+            int[] states = new int[SchematicStorage.SECTION_VOLUME];
+            Arrays.fill(states, -1);
+            return states;
+        });
+        section[SchematicStorage.Section.index(x & 15, y & 15, z & 15)] = paletteIndex;
+    }
+    
+    /**
+     * Emite las secciones acumuladas con set() y las descarta
+     */
+    public void emitSparse(SchematicVisitor visitor) {
+        for (Map.Entry<Long, int[]> entry : sparseSections.entrySet()) {
+            long key = entry.getKey();
+            visitor.visitSection(SchematicStorage.unpackX(key), SchematicStorage.unpackY(key), SchematicStorage.unpackZ(key), entry.getValue());
+        }
+        sparseSections.clear();
+    }
+}
\ No newline at end of file
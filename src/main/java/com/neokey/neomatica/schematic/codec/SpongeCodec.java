@@ -0,0 +1,319 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+import com.neokey.neomatica.util.NbtStreamReader;
+import com.neokey.neomatica.util.NbtStreamWriter;
+
+import net.minecraft.nbt.NbtByteArray;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Códec del formato Sponge Schematic (.schem), versiones 1 a 3
+ * Los datos de bloques son índices de paleta codificados como varint
+ * Se leen y escriben por capas de 16 filas, una fila de secciones cada vez, para no
+ * tener en memoria un índice por bloque de todo el volumen; al leer, los varint se
+ * decodifican directamente del archivo mientras se descomprime
+ */
+public class SpongeCodec extends NbtSchematicCodec {
+    
+    public static final String EXTENSION = ".schem";
+    
+    private static final int SPONGE_VERSION = 2;
+    
+    // Bytes de varint leídos del archivo de una vez
+    private static final int READ_CHUNK_SIZE = 8192;
+    
+    @Override
+    public String getName() {
+        return "Sponge Schematic";
+    }
+    
+    @Override
+    public String getExtension() {
+        return EXTENSION;
+    }
+    
+    @Override
+    public int score(FormatSignature signature) {
+        if (!signature.isGzip()) {
+            return 0;
+        }
+        if (signature.hasKey("Schematic/Blocks") || (signature.hasKey("Palette") && signature.hasKey("BlockData"))) {
+            return 90;
+        }
+        return signature.hasKey("PaletteMax") || signature.hasKey("Schematic/Version") ? 70 : 0;
+    }
+    
+    @Override
+    public void read(File file, SchematicVisitor visitor) throws IOException {
+        BlockDataReader legacyData = new BlockDataReader(visitor, false);
+        BlockDataReader data = new BlockDataReader(visitor, true);
+        NbtCompound nbt = readRoot(file, Map.of("BlockData", legacyData, "Schematic/Blocks/Data", data));
+        
+        if (!legacyData.streamed && !data.streamed) {
+            // La cabecera iba detrás de los bloques: se decodifican desde el array leído
+            NbtCompound schematicNbt = schematicOf(nbt);
+            int version = versionOf(schematicNbt);
+            NbtCompound blocksNbt = blocksOf(schematicNbt, version);
+            
+            Vec3i size = visitHeader(schematicNbt, blocksNbt, visitor);
+            byte[] blockData = blocksNbt.getByteArray(version == 3 ? "Data" : "BlockData").orElse(new byte[0]);
+            decodeBlockData(new DataInputStream(new ByteArrayInputStream(blockData)), blockData.length, size, visitor);
+        }
+        
+        Neomatica.LOGGER.info("Sponge Schematic cargado: {}", file.getName());
+    }
+    
+    /**
+     * La versión 3 guarda todo dentro de "Schematic"
+     */
+    private static NbtCompound schematicOf(NbtCompound root) {
+        return root.contains("Schematic") ? root.getCompoundOrEmpty("Schematic") : root;
+    }
+    
+    private static int versionOf(NbtCompound schematicNbt) throws IOException {
+        int version = schematicNbt.getInt("Version").orElse(0);
+        if (version < 1 || version > 3) {
+            throw new IOException("Versión de Sponge Schematic no soportada: " + version);
+        }
+        return version;
+    }
+    
+    /**
+     * La versión 3 guarda la paleta y los datos de bloques dentro de "Blocks"
+     */
+    private static NbtCompound blocksOf(NbtCompound schematicNbt, int version) {
+        return version == 3 ? schematicNbt.getCompoundOrEmpty("Blocks") : schematicNbt;
+    }
+    
+    /**
+     * Entrega al visitante la cabecera y la paleta
+     *
+     * @return dimensiones del volumen
+     */
+    private static Vec3i visitHeader(NbtCompound schematicNbt, NbtCompound blocksNbt, SchematicVisitor visitor) {
+        int width = schematicNbt.getShort("Width").orElse((short) 0) & 0xFFFF;
+        int height = schematicNbt.getShort("Height").orElse((short) 0) & 0xFFFF;
+        int length = schematicNbt.getShort("Length").orElse((short) 0) & 0xFFFF;
+        Vec3i size = new Vec3i(width, height, length);
+        
+        BlockPos origin = null;
+        int[] offset = schematicNbt.getIntArray("Offset").orElse(new int[0]);
+        if (offset.length == 3) {
+            origin = new BlockPos(offset[0], offset[1], offset[2]);
+        }
+        
+        String name = schematicNbt.getCompoundOrEmpty("Metadata").getString("Name").orElse("");
+        visitor.visitHeader(name, size, origin);
+        
+        // Paleta: cadena de estado -> índice
+        NbtCompound paletteNbt = blocksNbt.getCompoundOrEmpty("Palette");
+        int paletteSize = 0;
+        for (String key : paletteNbt.getKeys()) {
+            paletteSize = Math.max(paletteSize, paletteNbt.getInt(key).orElse(0) + 1);
+        }
+        
+        String[] palette = new String[paletteSize];
+        for (String key : paletteNbt.getKeys()) {
+            int index = paletteNbt.getInt(key).orElse(-1);
+            if (index >= 0) {
+                palette[index] = normalizeStateString(key);
+            }
+        }
+        visitor.visitPalette(palette);
+        
+        return size;
+    }
+    
+    /**
+     * Decodifica los varint de los bloques y emite sus secciones
+     * Van en orden lineal (x, luego z, luego y): se decodifican capa a capa de 16 filas
+     * sobre el mismo buffer; consume exactamente dataLength bytes
+     */
+    private static void decodeBlockData(DataInput in, int dataLength, Vec3i size, SchematicVisitor visitor) throws IOException {
+        int layerVolume = size.getX() * size.getZ();
+        int[] slab = new int[Math.min(16, size.getY()) * layerVolume];
+        byte[] chunk = new byte[READ_CHUNK_SIZE];
+        int chunkPosition = 0;
+        int chunkLength = 0;
+        int remaining = dataLength;
+        
+        for (int sy = 0; sy << 4 < size.getY(); sy++) {
+            int slabVolume = Math.min(16, size.getY() - (sy << 4)) * layerVolume;
+            
+            for (int i = 0; i < slabVolume; i++) {
+                int value = 0;
+                int shift = 0;
+                while (chunkPosition < chunkLength || remaining > 0) {
+                    if (chunkPosition == chunkLength) {
+                        chunkLength = Math.min(chunk.length, remaining);
+                        in.readFully(chunk, 0, chunkLength);
+                        remaining -= chunkLength;
+                        chunkPosition = 0;
+                    }
+                    
+                    byte current = chunk[chunkPosition++];
+                    value |= (current & 0x7F) << shift;
+                    shift += 7;
+                    if ((current & 0x80) == 0) {
+                        break;
+                    }
+                }
+                slab[i] = value;
+            }
+            
+            SectionEmitter.emitSlab(size, sy, index -> slab[index], visitor);
+        }
+        
+        // Datos sobrantes detrás del volumen
+        skipFully(in, remaining);
+    }
+    
+    @Override
+    public boolean write(LoadedSchematic schematic, File file) throws IOException {
+        SchematicStorage storage = schematic.getStorage();
+        StatePalette globalPalette = StatePalette.getInstance();
+        Vec3i size = schematic.getSize() != null ? schematic.getSize() : Vec3i.ZERO;
+        BlockPos origin = schematic.getOrigin();
+        
+        checkShortDimensions(size, getName());
+        checkLinearVolume(size, getName());
+        
+        LocalPalette palette = LocalPalette.collect(storage, true);
+        
+        // Los índices (aire = 0) se generan capa a capa de 16 filas sobre el mismo buffer
+        // Con menos de 128 estados cada varint ocupa un byte; si no, hay que medirlos antes
+        int[] slab = newSlab(size);
+        byte[] slabBytes = new byte[slab.length * varintSize(Math.max(0, palette.size() - 1))];
+        long dataLength = palette.size() <= 128 ? (long) size.getX() * size.getY() * size.getZ()
+            : measureBlockData(storage, palette, size, slab);
+        
+        if (dataLength > Integer.MAX_VALUE) {
+            throw new IOException("Schematic demasiado grande para Sponge: " + size.toShortString());
+        }
+        
+        writeRoot(file, writer -> {
+            writer.putInt("Version", SPONGE_VERSION);
+            writer.putInt("DataVersion", DATA_VERSION);
+            
+            // Dimensiones
+            writer.putShort("Width", (short) size.getX());
+            writer.putShort("Height", (short) size.getY());
+            writer.putShort("Length", (short) size.getZ());
+            
+            // Offset
+            if (origin != null) {
+                writer.putIntArray("Offset", origin.getX(), origin.getY(), origin.getZ());
+            }
+            
+            // Metadata
+            writer.beginCompound("Metadata");
+            writer.putString("Name", schematic.getName());
+            writer.putString("Author", "Neomatica");
+            writer.putLong("Date", System.currentTimeMillis());
+            writer.endCompound();
+            
+            // Paleta
+            writer.putInt("PaletteMax", palette.size());
+            writer.beginCompound("Palette");
+            for (int local = 0; local < palette.size(); local++) {
+                String key = globalPalette.getKey(palette.getGlobal(local));
+                writer.putInt(key != null ? key : "minecraft:air", local);
+            }
+            writer.endCompound();
+            
+            writer.beginByteArray("BlockData", (int) dataLength);
+            for (int sy = 0; sy << 4 < size.getY(); sy++) {
+                int slabVolume = fillSlab(storage, size, sy, slab, palette::toLocal);
+                int length = 0;
+                for (int i = 0; i < slabVolume; i++) {
+                    int index = slab[i];
+                    while ((index & ~0x7F) != 0) {
+                        slabBytes[length++] = (byte) ((index & 0x7F) | 0x80);
+                        index >>>= 7;
+                    }
+                    slabBytes[length++] = (byte) index;
+                }
+                writer.writeBytes(slabBytes, length);
+            }
+            writer.beginList("BlockEntities", NbtStreamWriter.TAG_COMPOUND, 0);
+        });
+        
+        Neomatica.LOGGER.info("Schematic exportado a Sponge: {}", file.getName());
+        return true;
+    }
+    
+    /**
+     * Calcula cuántos bytes ocupan los varint de todo el volumen, que NBT necesita antes de los datos
+     */
+    private static long measureBlockData(SchematicStorage storage, LocalPalette palette, Vec3i size, int[] slab) {
+        long length = 0;
+        for (int sy = 0; sy << 4 < size.getY(); sy++) {
+            int slabVolume = fillSlab(storage, size, sy, slab, palette::toLocal);
+            for (int i = 0; i < slabVolume; i++) {
+                length += varintSize(slab[i]);
+            }
+        }
+        return length;
+    }
+    
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+    
+    /**
+     * Decodifica los bloques mientras se lee el archivo cuando la cabecera y la paleta ya
+     * se han leído, que es lo habitual; si no, guarda el array para decodificarlo al final
+     */
+    private static class BlockDataReader implements NbtStreamReader.ByteArrayHandler {
+        
+        private final SchematicVisitor visitor;
+        private final boolean versionThree;
+        private boolean streamed = false;
+        
+        BlockDataReader(SchematicVisitor visitor, boolean versionThree) {
+            this.visitor = visitor;
+            this.versionThree = versionThree;
+        }
+        
+        @Override
+        public NbtElement read(NbtCompound root, DataInput in, int length) throws IOException {
+            NbtCompound schematicNbt = schematicOf(root);
+            
+            if (!streamed && schematicNbt.contains("Version")) {
+                int version = versionOf(schematicNbt);
+                NbtCompound blocksNbt = blocksOf(schematicNbt, version);
+                
+                if ((version == 3) == versionThree && schematicNbt.contains("Width") && schematicNbt.contains("Height")
+                        && schematicNbt.contains("Length") && blocksNbt.contains("Palette")) {
+                    Vec3i size = visitHeader(schematicNbt, blocksNbt, visitor);
+                    decodeBlockData(in, length, size, visitor);
+                    streamed = true;
+                    return null;
+                }
+            }
+            
+            byte[] data = new byte[length];
+            in.readFully(data);
+            return new NbtByteArray(data);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,448 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicManager.SchematicBlock;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+import com.neokey.neomatica.util.FileUtil;
+import com.neokey.neomatica.util.NbtStreamWriter;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Códec del formato de estructura vanilla (.nbt, bloque de estructuras)
+ * Los schematics mayores de 48x48x48 se exportan como una cuadrícula de piezas en un
+ * directorio "<nombre>_tiles", con un manifiesto JSON en la ruta pedida, y un conjunto de
+ * piezas se vuelve a unir al importarlo
+ */
+public class VanillaStructureCodec extends NbtSchematicCodec {
+    
+    public static final String EXTENSION = ".nbt";
+    public static final String MANIFEST_NAME = "manifest.json";
+    public static final int MAX_TILE_SIZE = 48;
+    
+    // Hilos propios para escribir y leer piezas, sin ocupar el pool común
+    private static final int TILE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    
+    private final Gson gson;
+    
+    public VanillaStructureCodec() {
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    }
+    
+    @Override
+    public String getName() {
+        return "Estructura vanilla";
+    }
+    
+    @Override
+    public String getExtension() {
+        return EXTENSION;
+    }
+    
+    @Override
+    public int score(FormatSignature signature) {
+        if (signature.getFileName().equals(MANIFEST_NAME)) {
+            return 60;
+        }
+        if (!signature.isGzip()) {
+            // Manifiesto de un conjunto de piezas guardado con la extensión .nbt
+            return signature.hasExtension(EXTENSION) && (signature.getMagic() >>> 24) == '{' ? 60 : 0;
+        }
+        boolean hasPalette = signature.hasKey("palette") || signature.hasKey("palettes");
+        return hasPalette && signature.hasKey("blocks") && signature.hasKey("size") ? 90 : 0;
+    }
+    
+    /**
+     * Exporta un schematic; si no cabe en una estructura se divide en piezas
+     */
+    @Override
+    public boolean write(LoadedSchematic schematic, File outputFile) throws IOException {
+        Vec3i size = schematic.getSize() != null ? schematic.getSize() : Vec3i.ZERO;
+        
+        if (size.getX() <= MAX_TILE_SIZE && size.getY() <= MAX_TILE_SIZE && size.getZ() <= MAX_TILE_SIZE) {
+            writeTile(schematic, BlockPos.ORIGIN, size, outputFile);
+            Neomatica.LOGGER.info("Estructura exportada: {}", outputFile.getName());
+            return true;
+        }
+        
+        return exportTiled(schematic, size, outputFile);
+    }
+    
+    /**
+     * Exporta una cuadrícula de piezas de 48x48x48 en paralelo, más el manifiesto en outputFile
+     * Las piezas se escriben en un directorio temporal que sustituye al anterior solo cuando
+     * están todas; el manifiesto anterior se borra antes del cambio y el nuevo se escribe después,
+     * así que ningún manifiesto apunta a una mezcla de piezas nuevas y viejas
+     */
+    private boolean exportTiled(LoadedSchematic schematic, Vec3i size, File outputFile) throws IOException {
+        File parent = outputFile.getAbsoluteFile().getParentFile();
+        String baseName = FileUtil.getNameWithoutExtension(outputFile);
+        File tileDir = new File(parent, baseName + "_tiles");
+        
+        Files.createDirectories(parent.toPath());
+        File stagingDir = Files.createTempDirectory(parent.toPath(), "." + baseName + "_tiles.").toFile();
+        
+        Manifest manifest = new Manifest();
+        manifest.name = schematic.getName();
+        manifest.directory = tileDir.getName();
+        manifest.tileSize = MAX_TILE_SIZE;
+        manifest.size = new int[] { size.getX(), size.getY(), size.getZ() };
+        
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        ExecutorService executor = newTileExecutor();
+        
+        for (int x = 0; x < size.getX(); x += MAX_TILE_SIZE) {
+            for (int y = 0; y < size.getY(); y += MAX_TILE_SIZE) {
+                for (int z = 0; z < size.getZ(); z += MAX_TILE_SIZE) {
+                    BlockPos min = new BlockPos(x, y, z);
+                    Vec3i tileSize = new Vec3i(
+                        Math.min(MAX_TILE_SIZE, size.getX() - x),
+                        Math.min(MAX_TILE_SIZE, size.getY() - y),
+                        Math.min(MAX_TILE_SIZE, size.getZ() - z)
+                    );
+                    
+                    TileEntry tile = new TileEntry();
+                    tile.file = baseName + "_" + (x / MAX_TILE_SIZE) + "_" + (y / MAX_TILE_SIZE) + "_" + (z / MAX_TILE_SIZE) + EXTENSION;
+                    tile.offset = new int[] { x, y, z };
+                    tile.size = new int[] { tileSize.getX(), tileSize.getY(), tileSize.getZ() };
+                    manifest.tiles.add(tile);
+                    
+                    File tileFile = new File(stagingDir, tile.file);
+                    writes.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            writeTile(schematic, min, tileSize, tileFile);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, executor));
+                }
+            }
+        }
+        
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            FileUtil.deleteDirectory(stagingDir);
+            throw new IOException("Error al escribir piezas de estructura", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        
+        // Primero desaparece el manifiesto anterior, después se cambia el directorio entero:
+        // las piezas sobrantes de una exportación más grande se van con el directorio viejo
+        Files.deleteIfExists(outputFile.toPath());
+        
+        File oldDir = null;
+        if (tileDir.exists()) {
+            oldDir = Files.createTempDirectory(parent.toPath(), "." + baseName + "_tiles.old.").toFile();
+            Files.delete(oldDir.toPath());
+            Files.move(tileDir.toPath(), oldDir.toPath());
+        }
+        Files.move(stagingDir.toPath(), tileDir.toPath());
+        
+        String json = gson.toJson(manifest);
+        FileUtil.writeAtomically(outputFile, out -> out.write(json.getBytes(StandardCharsets.UTF_8)));
+        
+        if (oldDir != null) {
+            FileUtil.deleteDirectory(oldDir);
+        }
+        
+        Neomatica.LOGGER.info("Estructura exportada en {} piezas: {}", manifest.tiles.size(), outputFile.getName());
+        return true;
+    }
+    
+    /**
+     * Pool acotado para las piezas de una exportación o importación; se cierra al terminar
+     */
+    private static ExecutorService newTileExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(TILE_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "Neomatica-Tiles-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Escribe una región del schematic como estructura vanilla, sin construir el árbol NBT
+     */
+    private void writeTile(LoadedSchematic schematic, BlockPos min, Vec3i size, File file) throws IOException {
+        SchematicStorage storage = schematic.getStorage();
+        StatePalette palette = StatePalette.getInstance();
+        
+        // Recorrer las secciones de la región y recoger bloques con paleta local
+        Map<Integer, Integer> localIds = new LinkedHashMap<>();
+        int volume = size.getX() * size.getY() * size.getZ();
+        int[] positions = new int[Math.max(16, Math.min(volume, 4096))];
+        int[] states = new int[positions.length];
+        int count = 0;
+        
+        int maxX = min.getX() + size.getX();
+        int maxY = min.getY() + size.getY();
+        int maxZ = min.getZ() + size.getZ();
+        
+        for (int sy = min.getY() >> 4; sy <= (maxY - 1) >> 4; sy++) {
+            for (int sz = min.getZ() >> 4; sz <= (maxZ - 1) >> 4; sz++) {
+                for (int sx = min.getX() >> 4; sx <= (maxX - 1) >> 4; sx++) {
+                    SchematicStorage.Section section = storage.getSection(SchematicStorage.sectionKey(sx, sy, sz));
+                    if (section == null || section.isEmpty()) {
+                        continue;
+                    }
+                    
+                    for (int index = 0; index < SchematicStorage.SECTION_VOLUME; index++) {
+                        int state = section.getState(index);
+                        if (state == StatePalette.EMPTY) {
+                            continue;
+                        }
+                        
+                        int x = (sx << 4) | (index & 15);
+                        int y = (sy << 4) | (index >> 8);
+                        int z = (sz << 4) | ((index >> 4) & 15);
+                        if (x < min.getX() || y < min.getY() || z < min.getZ() || x >= maxX || y >= maxY || z >= maxZ) {
+                            continue;
+                        }
+                        
+                        if (count == positions.length) {
+                            positions = Arrays.copyOf(positions, count * 2);
+                            states = Arrays.copyOf(states, count * 2);
+                        }
+                        
+                        // Coordenadas relativas a la pieza, empaquetadas en 8 bits cada una
+                        positions[count] = ((x - min.getX()) << 16) | ((y - min.getY()) << 8) | (z - min.getZ());
+                        states[count] = localIds.computeIfAbsent(state, key -> localIds.size());
+                        count++;
+                    }
+                }
+            }
+        }
+        
+        int blockCount = count;
+        int[] blockPositions = positions;
+        int[] blockStates = states;
+        
+        writeRoot(file, writer -> {
+            writer.putInt("DataVersion", DATA_VERSION);
+            writer.putIntList("size", size.getX(), size.getY(), size.getZ());
+            
+            writer.beginList("palette", NbtStreamWriter.TAG_COMPOUND, localIds.size());
+            for (int globalId : localIds.keySet()) {
+                SchematicBlock block = palette.getBlock(globalId);
+                writer.putString("Name", block.getBlockId());
+                if (!block.getProperties().isEmpty()) {
+                    writer.beginCompound("Properties");
+                    for (Map.Entry<String, String> property : block.getProperties().entrySet()) {
+                        writer.putString(property.getKey(), property.getValue());
+                    }
+                    writer.endCompound();
+                }
+                writer.endCompound();
+            }
+            
+            writer.beginList("blocks", NbtStreamWriter.TAG_COMPOUND, blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                int packed = blockPositions[i];
+                writer.putIntList("pos", packed >> 16, (packed >> 8) & 0xFF, packed & 0xFF);
+                writer.putInt("state", blockStates[i]);
+                writer.endCompound();
+            }
+            
+            writer.beginList("entities", NbtStreamWriter.TAG_COMPOUND, 0);
+        });
+    }
+    
+    /**
+     * Lee una estructura vanilla o un conjunto de piezas
+     * Se acepta el manifiesto, o cualquier pieza de una exportación antigua que tenga un
+     * manifest.json junto a ella
+     */
+    @Override
+    public void read(File file, SchematicVisitor visitor) throws IOException {
+        if (isManifest(file)) {
+            readTiled(file, readManifest(file), visitor);
+            return;
+        }
+        
+        File manifestFile = new File(file.getParentFile(), MANIFEST_NAME);
+        if (manifestFile.exists()) {
+            Manifest manifest = readManifest(manifestFile);
+            if (file == manifestFile || manifest.containsTile(file.getName())) {
+                readTiled(manifestFile, manifest, visitor);
+                return;
+            }
+        }
+        
+        TileData tile = readTile(file, BlockPos.ORIGIN);
+        visitor.visitHeader(null, tile.size, null);
+        tile.emitTo(visitor);
+        
+        Neomatica.LOGGER.info("Estructura cargada: {}", file.getName());
+    }
+    
+    /**
+     * Une un conjunto de piezas: se decodifican en paralelo y se entregan en orden
+     */
+    private void readTiled(File manifestFile, Manifest manifest, SchematicVisitor visitor) throws IOException {
+        // Los manifiestos antiguos están dentro del directorio de piezas y no lo indican
+        File tileDir = manifest.directory != null
+            ? new File(manifestFile.getAbsoluteFile().getParentFile(), manifest.directory)
+            : manifestFile.getAbsoluteFile().getParentFile();
+        List<CompletableFuture<TileData>> reads = new ArrayList<>();
+        ExecutorService executor = newTileExecutor();
+        
+        for (TileEntry entry : manifest.tiles) {
+            File tileFile = new File(tileDir, entry.file);
+            BlockPos offset = new BlockPos(entry.offset[0], entry.offset[1], entry.offset[2]);
+            reads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return readTile(tileFile, offset);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        
+        String name = manifest.name != null ? manifest.name : tileDir.getName();
+        visitor.visitHeader(name, new Vec3i(manifest.size[0], manifest.size[1], manifest.size[2]), null);
+        
+        try {
+            for (CompletableFuture<TileData> read : reads) {
+                read.join().emitTo(visitor);
+            }
+        } catch (CompletionException e) {
+            throw new IOException("Error al leer piezas de estructura", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        
+        Neomatica.LOGGER.info("Estructura unida desde {} piezas: {}", manifest.tiles.size(), name);
+    }
+    
+    /**
+     * Decodifica un archivo de estructura a su paleta y posiciones
+     */
+    private TileData readTile(File file, BlockPos offset) throws IOException {
+        NbtCompound root = readRoot(file);
+        
+        NbtList sizeList = root.getListOrEmpty("size");
+        TileData tile = new TileData();
+        tile.size = new Vec3i(sizeList.getIntOr(0, 0), sizeList.getIntOr(1, 0), sizeList.getIntOr(2, 0));
+        
+        // Las estructuras con variantes guardan varias paletas en "palettes"; se usa la primera
+        NbtList paletteList = root.contains("palettes")
+            ? root.getListOrEmpty("palettes").getListOrEmpty(0)
+            : root.getListOrEmpty("palette");
+        tile.palette = new String[paletteList.size()];
+        
+        for (int i = 0; i < tile.palette.length; i++) {
+            NbtCompound entry = paletteList.getCompoundOrEmpty(i);
+            String name = entry.getString("Name").orElse("minecraft:air");
+            tile.palette[i] = toStateKey(name, readProperties(entry.getCompoundOrEmpty("Properties")));
+        }
+        
+        NbtList blocks = root.getListOrEmpty("blocks");
+        tile.positions = new BlockPos[blocks.size()];
+        tile.states = new int[blocks.size()];
+        
+        for (int i = 0; i < blocks.size(); i++) {
+            NbtCompound block = blocks.getCompoundOrEmpty(i);
+            NbtList pos = block.getListOrEmpty("pos");
+            
+            tile.positions[i] = offset.add(pos.getIntOr(0, 0), pos.getIntOr(1, 0), pos.getIntOr(2, 0));
+            tile.states[i] = block.getInt("state").orElse(-1);
+        }
+        
+        return tile;
+    }
+    
+    /**
+     * Indica si un archivo es un manifiesto: se llama manifest.json o es JSON en lugar de NBT
+     */
+    private static boolean isManifest(File file) throws IOException {
+        if (file.getName().equals(MANIFEST_NAME)) {
+            return true;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == '{';
+        }
+    }
+    
+    private Manifest readManifest(File file) throws IOException {
+        String json = FileUtil.readFileAsString(file);
+        if (json == null) {
+            throw new IOException("No se pudo leer el manifiesto: " + file.getPath());
+        }
+        
+        Manifest manifest = gson.fromJson(json, Manifest.class);
+        if (manifest == null || manifest.size == null || manifest.size.length != 3 || manifest.tiles == null) {
+            throw new IOException("Manifiesto de piezas inválido: " + file.getPath());
+        }
+        return manifest;
+    }
+    
+    /**
+     * Bloques decodificados de una pieza
+     */
+    private static class TileData {
+        private Vec3i size;
+        private String[] palette;
+        private BlockPos[] positions;
+        private int[] states;
+        
+        void emitTo(SchematicVisitor visitor) {
+            visitor.visitPalette(palette);
+            
+            SectionEmitter emitter = new SectionEmitter();
+            for (int i = 0; i < positions.length; i++) {
+                if (states[i] >= 0 && states[i] < palette.length) {
+                    BlockPos pos = positions[i];
+                    emitter.set(pos.getX(), pos.getY(), pos.getZ(), states[i]);
+                }
+            }
+            emitter.emitSparse(visitor);
+        }
+    }
+    
+    /**
+     * Manifiesto de un conjunto de piezas (manifest.json)
+     */
+    private static class Manifest {
+        private String format = "vanilla_structure";
+        private String name;
+        private String directory;
+        private int tileSize;
+        private int[] size;
+        private List<TileEntry> tiles = new ArrayList<>();
+        
+        boolean containsTile(String fileName) {
+            for (TileEntry tile : tiles) {
+                if (fileName.equals(tile.file)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private static class TileEntry {
+        private String file;
+        private int[] offset;
+        private int[] size;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.neokey.neomatica.schematic.codec;
+
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicManager.LoadedSchematic;
+import com.neokey.neomatica.schematic.SchematicStorage;
+import com.neokey.neomatica.schematic.StatePalette;
+import com.neokey.neomatica.util.NbtStreamReader;
+import com.neokey.neomatica.util.NbtStreamWriter;
+
+import net.minecraft.nbt.NbtByteArray;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.util.math.Vec3i;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Códec del formato WorldEdit legacy (.schematic, IDs numéricos anteriores a 1.13)
+ * Los bloques se leen y escriben por capas de 16 filas, sin el array del volumen entero
+ */
+public class WorldEditCodec extends NbtSchematicCodec {
+    
+    public static final String EXTENSION = ".schematic";
+    
+    @Override
+    public String getName() {
+        return "WorldEdit Legacy";
+    }
+    
+    @Override
+    public String getExtension() {
+        return EXTENSION;
+    }
+    
+    @Override
+    public int score(FormatSignature signature) {
+        if (!signature.isGzip() || !signature.hasKey("Blocks")) {
+            return 0;
+        }
+        return signature.hasKey("Materials") ? 90 : 60;
+    }
+    
+    @Override
+    public void read(File file, SchematicVisitor visitor) throws IOException {
+        BlocksReader blocksReader = new BlocksReader(visitor);
+        NbtCompound nbt = readRoot(file, Map.of("Blocks", blocksReader));
+        
+        if (!blocksReader.streamed) {
+            // Las dimensiones iban detrás de los bloques: se emiten desde el array leído
+            Vec3i size = visitHeader(nbt, visitor);
+            byte[] blocks = nbt.getByteArray("Blocks").orElse(new byte[0]);
+            SectionEmitter.emitLinear(size, index -> index < blocks.length ? blocks[index] & 0xFF : 0, visitor);
+        }
+        
+        Neomatica.LOGGER.info("WorldEdit Schematic cargado: {}", file.getName());
+    }
+    
+    /**
+     * Entrega al visitante la cabecera y la paleta
+     *
+     * @return dimensiones del volumen
+     */
+    private static Vec3i visitHeader(NbtCompound nbt, SchematicVisitor visitor) {
+        int width = nbt.getShort("Width").orElse((short) 0) & 0xFFFF;
+        int height = nbt.getShort("Height").orElse((short) 0) & 0xFFFF;
+        int length = nbt.getShort("Length").orElse((short) 0) & 0xFFFF;
+        Vec3i size = new Vec3i(width, height, length);
+        
+        visitor.visitHeader(null, size, null);
+        
+        // La paleta son los 256 IDs legacy; el 0 es aire
+        String[] palette = new String[256];
+        for (int id = 1; id < palette.length; id++) {
+            palette[id] = convertLegacyBlockId(id, 0);
+        }
+        visitor.visitPalette(palette);
+        
+        return size;
+    }
+    
+    @Override
+    public boolean write(LoadedSchematic schematic, File file) throws IOException {
+        SchematicStorage storage = schematic.getStorage();
+        StatePalette palette = StatePalette.getInstance();
+        Vec3i size = schematic.getSize() != null ? schematic.getSize() : Vec3i.ZERO;
+        
+        checkShortDimensions(size, getName());
+        checkLinearVolume(size, getName());
+        
+        // Formato legacy simplificado, sin metadatos: los bloques se generan capa a capa
+        // y "Data" son todo ceros
+        int totalBlocks = size.getX() * size.getY() * size.getZ();
+        int[] slab = newSlab(size);
+        byte[] slabBytes = new byte[slab.length];
+        
+        writeRoot(file, writer -> {
+            writer.putShort("Width", (short) size.getX());
+            writer.putShort("Height", (short) size.getY());
+            writer.putShort("Length", (short) size.getZ());
+            writer.putString("Materials", "Alpha");
+            
+            writer.beginByteArray("Blocks", totalBlocks);
+            for (int sy = 0; sy << 4 < size.getY(); sy++) {
+                int slabVolume = fillSlab(storage, size, sy, slab,
+                    state -> convertToLegacyId(palette.getBlock(state).getBlockId()));
+                for (int i = 0; i < slabVolume; i++) {
+                    slabBytes[i] = (byte) slab[i];
+                }
+                writer.writeBytes(slabBytes, slabVolume);
+            }
+            
+            Arrays.fill(slabBytes, (byte) 0);
+            writer.beginByteArray("Data", totalBlocks);
+            for (int written = 0; written < totalBlocks; written += slabBytes.length) {
+                writer.writeBytes(slabBytes, Math.min(slabBytes.length, totalBlocks - written));
+            }
+            
+            // TileEntities y Entities vacíos
+            writer.beginList("TileEntities", NbtStreamWriter.TAG_COMPOUND, 0);
+            writer.beginList("Entities", NbtStreamWriter.TAG_COMPOUND, 0);
+        });
+        
+        Neomatica.LOGGER.info("Schematic exportado a WorldEdit: {}", file.getName());
+        return true;
+    }
+    
+    /**
+     * Convierte un ID de bloque legacy a nombre moderno
+     */
+    private static String convertLegacyBlockId(int id, int data) {
+        // Conversión básica de IDs legacy a nombres modernos
+        return switch (id) {
+            case 1 -> "minecraft:stone";
+            case 2 -> "minecraft:grass_block";
+            case 3 -> "minecraft:dirt";
+            case 4 -> "minecraft:cobblestone";
+            case 5 -> "minecraft:oak_planks";
+            default -> "minecraft:stone";
+        };
+    }
+    
+    /**
+     * Convierte nombre de bloque moderno a ID legacy
+     */
+    private static int convertToLegacyId(String blockId) {
+        // Conversión simplificada
+        return switch (blockId) {
+            case "minecraft:air" -> 0;
+            case "minecraft:stone" -> 1;
+            case "minecraft:grass_block" -> 2;
+            case "minecraft:dirt" -> 3;
+            case "minecraft:cobblestone" -> 4;
+            case "minecraft:oak_planks" -> 5;
+            // ... agregar más conversiones
+            default -> 1; // stone por defecto
+        };
+    }
+    
+    /**
+     * Emite los bloques mientras se lee el archivo cuando las dimensiones ya se han leído,
+     * que es lo habitual; si no, guarda el array para emitirlo al final
+     */
+    private static class BlocksReader implements NbtStreamReader.ByteArrayHandler {
+        
+        private final SchematicVisitor visitor;
+        private boolean streamed = false;
+        
+        BlocksReader(SchematicVisitor visitor) {
+            this.visitor = visitor;
+        }
+        
+        @Override
+        public NbtElement read(NbtCompound root, DataInput in, int length) throws IOException {
+            if (streamed || !root.contains("Width") || !root.contains("Height") || !root.contains("Length")) {
+                byte[] blocks = new byte[length];
+                in.readFully(blocks);
+                return new NbtByteArray(blocks);
+            }
+            
+            Vec3i size = visitHeader(root, visitor);
+            byte[] slab = new byte[Math.min(16, size.getY()) * size.getX() * size.getZ()];
+            int remaining = length;
+            
+            for (int sy = 0; sy << 4 < size.getY(); sy++) {
+                int slabVolume = Math.min(16, size.getY() - (sy << 4)) * size.getX() * size.getZ();
+                int read = Math.min(slabVolume, remaining);
+                in.readFully(slab, 0, read);
+                Arrays.fill(slab, read, slabVolume, (byte) 0);
+                remaining -= read;
+                
+                SectionEmitter.emitSlab(size, sy, index -> slab[index] & 0xFF, visitor);
+            }
+            
+            // Datos sobrantes detrás del volumen
+            skipFully(in, remaining);
+            
+            streamed = true;
+            return null;
+        }
+    }
+}
\ No newline at end of file
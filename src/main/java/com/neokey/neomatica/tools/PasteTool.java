@@ -62,6 +62,35 @@ public class PasteTool {
         }
     }
     
+    /**
+     * Pega otra colocación de un schematic ya cargado
+     * La colocación nueva comparte los bloques y las mallas del original, así que repetir
+     * un módulo muchas veces solo cuesta la geometría de una copia
+     *
+     * @return la colocación nueva, o null si no se pudo pegar
+     */
+    public LoadedSchematic pasteInstance(LoadedSchematic schematic, BlockPos position) {
+        if (schematic == null || position == null) {
+            return null;
+        }
+        
+        try {
+            LoadedSchematic instance = schematic.createInstance(position);
+            instance.setVisible(true);
+            
+            String id = (schematic.getId() != null ? schematic.getId() : schematic.getName())
+                + "#" + position.toShortString().replace(", ", "_");
+            Neomatica.getInstance().getSchematicManager().addSchematic(id, instance);
+            
+            Neomatica.LOGGER.info("Colocación de {} añadida en: {}", schematic.getName(), position);
+            return instance;
+            
+        } catch (Exception e) {
+            Neomatica.LOGGER.error("Error al pegar colocación", e);
+            return null;
+        }
+    }
+    
     /**
      * Pega un schematic con opciones
      */
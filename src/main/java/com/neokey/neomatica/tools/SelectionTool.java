@@ -1,9 +1,14 @@
 package com.neokey.neomatica.tools;
 
+import com.neokey.neomatica.Neomatica;
+import com.neokey.neomatica.schematic.SchematicRaycast;
+
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
 
 /**
  * Herramienta de selección de área
@@ -14,6 +19,7 @@ public class SelectionTool {
     private final MinecraftClient client;
     
     private BlockPos hoveredPos;
+    private SchematicRaycast.Hit hoveredSchematicHit;
     private boolean isSelecting;
     
     public SelectionTool(ToolManager toolManager) {
@@ -35,13 +41,32 @@ public class SelectionTool {
     
     /**
      * Actualiza el bloque sobre el que está el cursor
+     * Gana el más cercano entre el bloque del mundo apuntado y el primer bloque de schematic
+     * que corta el rayo de la cámara dentro del alcance del jugador
      */
     private void updateHoveredBlock() {
         HitResult hitResult = client.crosshairTarget;
+        BlockHitResult worldHit = hitResult != null && hitResult.getType() == HitResult.Type.BLOCK
+            ? (BlockHitResult) hitResult : null;
+        
+        hoveredSchematicHit = null;
+        Entity camera = client.getCameraEntity();
+        if (camera != null) {
+            Vec3d from = camera.getCameraPosVec(1.0f);
+            
+            // El bloque del mundo acorta el rayo: lo que haya detrás queda tapado
+            Vec3d to = worldHit != null
+                ? worldHit.getPos()
+                : from.add(camera.getRotationVec(1.0f).multiply(client.player.getBlockInteractionRange()));
+            
+            hoveredSchematicHit = SchematicRaycast.raycast(
+                Neomatica.getInstance().getSchematicManager().getAllSchematics(), from, to);
+        }
         
-        if (hitResult != null && hitResult.getType() == HitResult.Type.BLOCK) {
-            BlockHitResult blockHit = (BlockHitResult) hitResult;
-            hoveredPos = blockHit.getBlockPos();
+        if (hoveredSchematicHit != null) {
+            hoveredPos = hoveredSchematicHit.getWorldPos();
+        } else if (worldHit != null) {
+            hoveredPos = worldHit.getBlockPos();
         } else {
             hoveredPos = null;
         }
@@ -123,6 +148,15 @@ public class SelectionTool {
         return hoveredPos;
     }
     
+    /**
+     * Obtiene el bloque de schematic sobre el que está el cursor, con su schematic y su cara
+     *
+     * @return null si el cursor no apunta a ningún bloque de schematic
+     */
+    public SchematicRaycast.Hit getHoveredSchematicHit() {
+        return hoveredSchematicHit;
+    }
+    
     /**
      * Verifica si está seleccionando
      */
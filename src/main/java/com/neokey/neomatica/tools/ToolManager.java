@@ -272,16 +272,16 @@ public class ToolManager {
             return;
         }
         
-        String fileName = active.getName() + "_" + System.currentTimeMillis() + ".litematic";
-        File outputFile = new File("schematics/exports", fileName);
-        
-        boolean success = schematicManager.exportSchematic(active, outputFile);
-        
-        if (success) {
-            sendMessage("neomatica.message.exported", outputFile.getPath());
-        } else {
-            sendMessage("neomatica.message.error", "Error al exportar");
-        }
+        // Cada exportación tiene su propio archivo; las que se piden mientras otra espera en cola se fusionan
+        File exportDirectory = new File("schematics/exports");
+        
+        schematicManager.exportSchematicAsync(active, exportDirectory).thenAccept(outputFile -> client.execute(() -> {
+            if (outputFile != null) {
+                sendMessage("neomatica.message.exported", outputFile.getPath());
+            } else {
+                sendMessage("neomatica.message.error", "Error al exportar");
+            }
+        }));
     }
     
     /**
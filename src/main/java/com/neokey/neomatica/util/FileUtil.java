@@ -3,9 +3,15 @@ package com.neokey.neomatica.util;
 import com.neokey.neomatica.Neomatica;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
@@ -17,6 +23,20 @@ import java.util.zip.ZipOutputStream;
  */
 public class FileUtil {
     
+    // Buffer único de escritura para volcar al canal en bloques grandes
+    private static final int WRITE_BUFFER_SIZE = 1 << 20; // 1 MiB
+    
+    // Buffers directos compartidos, reutilizados entre escrituras: reservar uno en cada guardado
+    // agota el límite de memoria directa y la JVM acaba llamando a System.gc()
+    // Son pocos y no por hilo, para que los hilos de piezas o de descargas no retengan uno cada uno
+    private static final int MAX_WRITE_BUFFERS = 2;
+    private static final BlockingQueue<ByteBuffer> WRITE_BUFFERS = new ArrayBlockingQueue<>(MAX_WRITE_BUFFERS);
+    private static final AtomicInteger ALLOCATED_WRITE_BUFFERS = new AtomicInteger();
+    
+    // Buffer en el heap cuando todos los directos están en uso; pequeño porque el JDK lo copia
+    // a un buffer directo temporal que guarda por hilo con el tamaño de cada escritura
+    private static final int FALLBACK_BUFFER_SIZE = 64 * 1024;
+    
     /**
      * Crea un directorio si no existe
      */
@@ -171,7 +191,7 @@ public class FileUtil {
                 parentDir.mkdirs();
             }
             
-            Files.write(file.toPath(), content.getBytes());
+            writeAtomically(file, out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
             return true;
         } catch (IOException e) {
             Neomatica.LOGGER.error("Error al escribir archivo: {}", file.getName(), e);
@@ -442,4 +462,167 @@ public class FileUtil {
             return null;
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Escribe un archivo de forma atómica: archivo temporal hermano, fsync y renombrado.
+     * Si el proceso se interrumpe a mitad, el destino conserva su contenido anterior
+     */
+    public static void writeAtomically(File target, StreamWriter writer) throws IOException {
+        Path targetPath = target.toPath().toAbsolutePath();
+        Path parent = targetPath.getParent();
+        Files.createDirectories(parent);
+        
+        // El temporal va en el mismo directorio para que el renombrado no cruce sistemas de archivos
+        Path tempPath = Files.createTempFile(parent, "." + targetPath.getFileName() + ".", ".tmp");
+        boolean committed = false;
+        
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 ChannelOutputStream out = new ChannelOutputStream(channel)) {
+                writer.write(out);
+                out.flush();
+                channel.force(true);
+            }
+            
+            moveAtomically(tempPath, targetPath);
+            committed = true;
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+    }
+    
+    /**
+     * Renombra un archivo reemplazando el destino, atómicamente cuando el sistema lo permite
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        // Sincronizar el directorio para que el renombrado sobreviva a un corte (no soportado en Windows)
+        try (FileChannel dir = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+    
+    /**
+     * Escritor de contenido para escrituras atómicas
+     */
+    @FunctionalInterface
+    public interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+    
+    /**
+     * Toma un buffer directo libre, reservándolo si aún no se llegó a MAX_WRITE_BUFFERS
+     *
+     * @return null si están todos en uso
+     */
+    private static ByteBuffer acquireWriteBuffer() {
+        ByteBuffer buffer = WRITE_BUFFERS.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        
+        int allocated = ALLOCATED_WRITE_BUFFERS.get();
+        while (allocated < MAX_WRITE_BUFFERS) {
+            if (ALLOCATED_WRITE_BUFFERS.compareAndSet(allocated, allocated + 1)) {
+                return ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            }
+            allocated = ALLOCATED_WRITE_BUFFERS.get();
+        }
+        return null;
+    }
+    
+    /**
+     * OutputStream que acumula en un único buffer grande y vuelca al canal por bloques.
+     * Usa un buffer directo compartido y lo devuelve al cerrarse; si están todos en uso
+     * (escrituras simultáneas o anidadas), usa uno temporal más pequeño en el heap.
+     * No cierra el canal para que el llamador pueda hacer fsync después
+     */
+    private static class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final boolean pooled;
+        private boolean closed;
+        
+        ChannelOutputStream(FileChannel channel) {
+            this.channel = channel;
+            
+            ByteBuffer sharedBuffer = acquireWriteBuffer();
+            this.pooled = sharedBuffer != null;
+            if (pooled) {
+                sharedBuffer.clear();
+                this.buffer = sharedBuffer;
+            } else {
+                this.buffer = ByteBuffer.allocate(FALLBACK_BUFFER_SIZE);
+            }
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int chunk = Math.min(len, buffer.remaining());
+                buffer.put(b, off, chunk);
+                off += chunk;
+                len -= chunk;
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (!closed) {
+                drain();
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            
+            closed = true;
+            try {
+                drain();
+            } finally {
+                if (pooled) {
+                    buffer.clear();
+                    WRITE_BUFFERS.offer(buffer);
+                }
+            }
+        }
+        
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Stream cerrado");
+            }
+        }
+    }
+}
@@ -38,15 +38,7 @@ public class NBTUtil {
         }
         
         try {
-            File parentDir = file.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
-            }
-            
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                NbtIo.writeCompressed(nbt, fos);
-            }
-            
+            FileUtil.writeAtomically(file, out -> NbtIo.writeCompressed(nbt, out));
             return true;
         } catch (IOException e) {
             Neomatica.LOGGER.error("Error al escribir archivo NBT: {}", file.getName(), e);
@@ -0,0 +1,99 @@
+package com.neokey.neomatica.util;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.nbt.NbtTypes;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lector de NBT en streaming, pareja de NbtStreamWriter
+ * Construye el árbol como NbtIo salvo los arrays de bytes de las rutas indicadas, que se
+ * entregan a su manejador mientras se leen; así un códec puede decodificar los bloques
+ * de un volumen grande sin tener el array entero en memoria
+ * Los compuestos se añaden a su padre al abrirse, de modo que el manejador ve todo lo
+ * leído hasta ese momento a partir de la raíz
+ */
+public class NbtStreamReader {
+    
+    private final Map<String, ByteArrayHandler> handlers;
+    private final Set<String> handlerParents = new HashSet<>();
+    private final NbtSizeTracker tracker = NbtSizeTracker.ofUnlimitedBytes();
+    
+    /**
+     * @param handlers manejadores por ruta, con los nombres separados por "/" ("Schematic/Blocks/Data")
+     */
+    public NbtStreamReader(Map<String, ByteArrayHandler> handlers) {
+        this.handlers = handlers;
+        
+        for (String path : handlers.keySet()) {
+            int separator = path.lastIndexOf('/');
+            while (separator > 0) {
+                path = path.substring(0, separator);
+                handlerParents.add(path);
+                separator = path.lastIndexOf('/');
+            }
+        }
+    }
+    
+    /**
+     * Lee el compuesto raíz (con nombre, como lo escribe NbtIo)
+     */
+    public NbtCompound readRoot(DataInput in) throws IOException {
+        byte type = in.readByte();
+        if (type != NbtStreamWriter.TAG_COMPOUND) {
+            throw new IOException("La raíz NBT no es un compuesto: " + type);
+        }
+        in.readUTF();
+        
+        NbtCompound root = new NbtCompound();
+        readCompound(in, root, root, "");
+        return root;
+    }
+    
+    private void readCompound(DataInput in, NbtCompound target, NbtCompound root, String path) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            if (type == NbtStreamWriter.TAG_END) {
+                return;
+            }
+            
+            String name = in.readUTF();
+            String childPath = path.isEmpty() ? name : path + "/" + name;
+            ByteArrayHandler handler = handlers.get(childPath);
+            
+            if (type == NbtStreamWriter.TAG_BYTE_ARRAY && handler != null) {
+                NbtElement element = handler.read(root, in, in.readInt());
+                if (element != null) {
+                    target.put(name, element);
+                }
+            } else if (type == NbtStreamWriter.TAG_COMPOUND && handlerParents.contains(childPath)) {
+                NbtCompound child = new NbtCompound();
+                target.put(name, child);
+                readCompound(in, child, root, childPath);
+            } else {
+                target.put(name, NbtTypes.byId(type).read(in, tracker));
+            }
+        }
+    }
+    
+    /**
+     * Recibe un array de bytes interceptado
+     */
+    @FunctionalInterface
+    public interface ByteArrayHandler {
+        
+        /**
+         * Lee el contenido del array; debe consumir exactamente "length" bytes
+         *
+         * @param root raíz con todo lo leído antes del array
+         * @return elemento que se guarda en el árbol en lugar del array, o null si ya se procesó
+         */
+        NbtElement read(NbtCompound root, DataInput in, int length) throws IOException;
+    }
+}
\ No newline at end of file
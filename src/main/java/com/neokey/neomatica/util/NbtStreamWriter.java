@@ -0,0 +1,151 @@
+package com.neokey.neomatica.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escritor de NBT en streaming
+ * Escribe las etiquetas directamente al flujo sin construir el árbol de NbtCompound en memoria
+ * El llamador es responsable de abrir y cerrar compuestos y listas en orden
+ */
+public class NbtStreamWriter {
+    
+    public static final byte TAG_END = 0;
+    public static final byte TAG_SHORT = 2;
+    public static final byte TAG_INT = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_BYTE_ARRAY = 7;
+    public static final byte TAG_STRING = 8;
+    public static final byte TAG_LIST = 9;
+    public static final byte TAG_COMPOUND = 10;
+    public static final byte TAG_INT_ARRAY = 11;
+    public static final byte TAG_LONG_ARRAY = 12;
+    
+    private final DataOutputStream out;
+    
+    public NbtStreamWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+    
+    /**
+     * Abre el compuesto raíz (sin nombre)
+     */
+    public void beginRoot() throws IOException {
+        beginCompound("");
+    }
+    
+    /**
+     * Abre un compuesto con nombre dentro del compuesto actual
+     */
+    public void beginCompound(String name) throws IOException {
+        writeHeader(TAG_COMPOUND, name);
+    }
+    
+    /**
+     * Cierra el compuesto actual
+     * Los compuestos que son elementos de una lista no se abren: se escriben sus campos y se cierran
+     */
+    public void endCompound() throws IOException {
+        out.writeByte(TAG_END);
+    }
+    
+    public void putInt(String name, int value) throws IOException {
+        writeHeader(TAG_INT, name);
+        out.writeInt(value);
+    }
+    
+    public void putShort(String name, short value) throws IOException {
+        writeHeader(TAG_SHORT, name);
+        out.writeShort(value);
+    }
+    
+    public void putLong(String name, long value) throws IOException {
+        writeHeader(TAG_LONG, name);
+        out.writeLong(value);
+    }
+    
+    public void putByteArray(String name, byte[] value, int length) throws IOException {
+        writeHeader(TAG_BYTE_ARRAY, name);
+        out.writeInt(length);
+        out.write(value, 0, length);
+    }
+    
+    /**
+     * Abre un array de bytes; a continuación deben escribirse exactamente "length" bytes
+     * con writeBytes, en uno o varios trozos
+     */
+    public void beginByteArray(String name, int length) throws IOException {
+        writeHeader(TAG_BYTE_ARRAY, name);
+        out.writeInt(length);
+    }
+    
+    public void writeBytes(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+    }
+    
+    public void putIntArray(String name, int... values) throws IOException {
+        writeHeader(TAG_INT_ARRAY, name);
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+    
+    /**
+     * Abre un array de longs; a continuación deben escribirse exactamente "length" valores
+     * con writeLongs, en uno o varios trozos
+     */
+    public void beginLongArray(String name, int length) throws IOException {
+        writeHeader(TAG_LONG_ARRAY, name);
+        out.writeInt(length);
+    }
+    
+    public void writeLongs(long[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeLong(values[i]);
+        }
+    }
+    
+    public void putLongArray(String name, long[] values) throws IOException {
+        writeHeader(TAG_LONG_ARRAY, name);
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+    
+    public void putString(String name, String value) throws IOException {
+        writeHeader(TAG_STRING, name);
+        out.writeUTF(value);
+    }
+    
+    /**
+     * Escribe una lista de enteros completa
+     */
+    public void putIntList(String name, int... values) throws IOException {
+        beginList(name, TAG_INT, values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+    
+    /**
+     * Abre una lista; a continuación deben escribirse exactamente "count" elementos
+     * Una lista vacía se escribe con tipo TAG_END, como hace Minecraft
+     */
+    public void beginList(String name, byte elementType, int count) throws IOException {
+        writeHeader(TAG_LIST, name);
+        out.writeByte(count == 0 ? TAG_END : elementType);
+        out.writeInt(count);
+    }
+    
+    public void flush() throws IOException {
+        out.flush();
+    }
+    
+    private void writeHeader(byte type, String name) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.neokey.neomatica.util;
+
+import com.neokey.neomatica.Neomatica;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola de guardado en segundo plano (write-behind)
+ * Las escrituras repetidas al mismo archivo se fusionan: solo se escribe la última
+ */
+public class SaveQueue {
+    
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    
+    private final ExecutorService executor;
+    private final Map<Path, PendingWrite> pending;
+    private final AtomicLong coalescedWrites;
+    
+    public SaveQueue() {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Neomatica-SaveQueue");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pending = new ConcurrentHashMap<>();
+        this.coalescedWrites = new AtomicLong();
+    }
+    
+    /**
+     * Encola un trabajo de guardado para un archivo
+     * El trabajo debe trabajar sobre una copia (snapshot) tomada por el llamador
+     */
+    public CompletableFuture<Boolean> submit(File target, Callable<Boolean> job) {
+        Path key = target.toPath().toAbsolutePath().normalize();
+        PendingWrite write = new PendingWrite(job);
+        PendingWrite previous = pending.put(key, write);
+        
+        if (previous != null) {
+            // La escritura anterior aún no empezó: la nueva la sustituye y hereda su resultado
+            coalescedWrites.incrementAndGet();
+            write.future.whenComplete((result, error) -> {
+                if (error != null) {
+                    previous.future.completeExceptionally(error);
+                } else {
+                    previous.future.complete(result);
+                }
+            });
+            return write.future;
+        }
+        
+        try {
+            executor.execute(() -> drain(key));
+        } catch (RejectedExecutionException e) {
+            // La cola ya se cerró: escribir en el hilo actual para no perder datos
+            drain(key);
+        }
+        
+        return write.future;
+    }
+    
+    /**
+     * Encola una escritura atómica de contenido ya preparado
+     */
+    public CompletableFuture<Boolean> submitWrite(File target, FileUtil.StreamWriter writer) {
+        return submit(target, () -> {
+            FileUtil.writeAtomically(target, writer);
+            return true;
+        });
+    }
+    
+    /**
+     * Ejecuta la escritura pendiente de un archivo, si sigue habiéndola
+     */
+    private void drain(Path key) {
+        PendingWrite write = pending.remove(key);
+        if (write == null) {
+            return;
+        }
+        
+        try {
+            write.future.complete(Boolean.TRUE.equals(write.job.call()));
+        } catch (Exception e) {
+            Neomatica.LOGGER.error("Error en guardado en segundo plano: {}", key.getFileName(), e);
+            write.future.complete(false);
+        }
+    }
+    
+    /**
+     * Espera a que se completen todas las escrituras encoladas hasta ahora
+     */
+    public void flush() {
+        try {
+            // El executor es de un solo hilo: esta tarea corre después de todas las anteriores
+            executor.submit(() -> { }).get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Ya cerrada, no hay nada pendiente en el executor
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            Neomatica.LOGGER.error("Error al vaciar la cola de guardado", e);
+        }
+    }
+    
+    /**
+     * Vacía la cola y detiene el hilo de escritura
+     */
+    public void shutdown() {
+        flush();
+        executor.shutdown();
+        
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                Neomatica.LOGGER.warn("La cola de guardado no terminó a tiempo");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        
+        // Lo que haya quedado se escribe en el hilo actual
+        for (Path key : pending.keySet()) {
+            drain(key);
+        }
+        
+        Neomatica.LOGGER.info("Cola de guardado cerrada ({} escrituras fusionadas)", coalescedWrites.get());
+    }
+    
+    /**
+     * Obtiene el número de escrituras pendientes
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Obtiene cuántas escrituras se han fusionado con otra posterior
+     */
+    public long getCoalescedCount() {
+        return coalescedWrites.get();
+    }
+    
+    /**
+     * Escritura pendiente
+     */
+    private static class PendingWrite {
+        private final Callable<Boolean> job;
+        private final CompletableFuture<Boolean> future;
+        
+        PendingWrite(Callable<Boolean> job) {
+            this.job = job;
+            this.future = new CompletableFuture<>();
+        }
+    }
+}
\ No newline at end of file